@@ -0,0 +1,147 @@
+/*
+ * DSS - Digital Signature Services
+ *
+ * Copyright (C) 2013 European Commission, Directorate-General Internal Market and Services (DG MARKT), B-1049 Bruxelles/Brussel
+ *
+ * Developed by: 2013 ARHS Developments S.A. (rue Nicolas Bové 2B, L-1253 Luxembourg) http://www.arhs-developments.com
+ *
+ * This file is part of the "DSS - Digital Signature Services" project.
+ *
+ * "DSS - Digital Signature Services" is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU Lesser General Public License as published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * DSS is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * "DSS - Digital Signature Services".  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.europa.ec.markt.dss.signature;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.EnumMap;
+import java.util.Map;
+
+import eu.europa.ec.markt.dss.DigestAlgorithm;
+import eu.europa.ec.markt.dss.exception.DSSException;
+
+/**
+ * Document known only by its name, its mime-type and the digest(s) of its content. It allows to create detached
+ * signatures (XAdES, CAdES) of a document which is not available to the signing service: the content is never
+ * accessed, {@link #openStream()}, {@link #getBytes()} and {@link #save(String)} throw a {@link DSSException}.
+ */
+
+public class DigestDocument implements DSSDocument {
+
+   private final String name;
+
+   private final MimeType mimeType;
+
+   private final Map<DigestAlgorithm, byte[]> digests = new EnumMap<DigestAlgorithm, byte[]>(DigestAlgorithm.class);
+
+   /**
+    * Creates a document without digest, the digests must be added with {@link #addDigest(DigestAlgorithm, byte[])}.
+    * 
+    * @param name the name of the document, used as reference URI of the detached signature
+    * @param mimeType the mime-type of the document, can be null
+    */
+   public DigestDocument(final String name, final MimeType mimeType) {
+
+      this.name = name;
+      this.mimeType = mimeType;
+   }
+
+   /**
+    * Creates a document with the given digest.
+    * 
+    * @param name the name of the document, used as reference URI of the detached signature
+    * @param mimeType the mime-type of the document, can be null
+    * @param digestAlgorithm the algorithm used to compute the digest
+    * @param digest the digest of the content of the document
+    */
+   public DigestDocument(final String name, final MimeType mimeType, final DigestAlgorithm digestAlgorithm, final byte[] digest) {
+
+      this(name, mimeType);
+      addDigest(digestAlgorithm, digest);
+   }
+
+   /**
+    * Adds the digest of the content computed with the given algorithm.
+    * 
+    * @param digestAlgorithm
+    * @param digest
+    */
+   public void addDigest(final DigestAlgorithm digestAlgorithm, final byte[] digest) {
+
+      if (digestAlgorithm == null || digest == null) {
+
+         throw new DSSException("The digest algorithm and the digest value must be provided.");
+      }
+      digests.put(digestAlgorithm, digest.clone());
+   }
+
+   /**
+    * Returns the digest of the content computed with the given algorithm.
+    * 
+    * @param digestAlgorithm
+    * @return the digest
+    * @throws DSSException if the digest for this algorithm is not known
+    */
+   public byte[] getDigest(final DigestAlgorithm digestAlgorithm) throws DSSException {
+
+      final byte[] digest = digests.get(digestAlgorithm);
+      if (digest == null) {
+
+         throw new DSSException("The digest " + digestAlgorithm + " of the document '" + name + "' is not available.");
+      }
+      return digest.clone();
+   }
+
+   /**
+    * @param digestAlgorithm
+    * @return true if the digest computed with the given algorithm is known
+    */
+   public boolean hasDigest(final DigestAlgorithm digestAlgorithm) {
+
+      return digests.containsKey(digestAlgorithm);
+   }
+
+   @Override
+   public InputStream openStream() throws IOException {
+
+      throw new DSSException("The content of the document '" + name + "' is not available, only its digest is known.");
+   }
+
+   @Override
+   public byte[] getBytes() throws DSSException {
+
+      throw new DSSException("The content of the document '" + name + "' is not available, only its digest is known.");
+   }
+
+   @Override
+   public String getName() {
+
+      return name;
+   }
+
+   @Override
+   public String getAbsolutePath() {
+
+      return name;
+   }
+
+   @Override
+   public MimeType getMimeType() {
+
+      return mimeType;
+   }
+
+   @Override
+   public void save(final String filePath) {
+
+      throw new DSSException("The content of the document '" + name + "' is not available, only its digest is known.");
+   }
+}
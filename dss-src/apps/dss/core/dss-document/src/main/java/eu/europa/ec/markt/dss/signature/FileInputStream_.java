@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 /**
@@ -14,22 +15,32 @@ public final class FileInputStream_ extends FileInputStream {
     private static final Logger LOG = Logger.getLogger(FileInputStream_.class.getName());
 
     private boolean opened = false;
-    static int nextId = 0;
+    static final AtomicInteger nextId = new AtomicInteger();
     private final int openId = getNextId();
     String fileName;
+    private final File file;
 
     private static int getNextId() {
 
-        return ++nextId;
+        return nextId.incrementAndGet();
     }
 
     public FileInputStream_(File file) throws FileNotFoundException {
         super(file);
+        this.file = file;
         fileName = file.getName();
         opened = true;
         LOG.fine("--------> opened [" + fileName + "] : " + openId);
     }
 
+    /**
+     * @return the file read by this stream, which allows a reader to access it randomly instead of sequentially
+     */
+    public File getFile() {
+
+        return file;
+    }
+
     @Override
     public void close() throws IOException {
 
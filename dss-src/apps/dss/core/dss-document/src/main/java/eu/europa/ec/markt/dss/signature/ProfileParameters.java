@@ -20,6 +20,7 @@
 
 package eu.europa.ec.markt.dss.signature;
 
+import eu.europa.ec.markt.dss.signature.pades.PAdESSigningSession;
 import eu.europa.ec.markt.dss.signature.xades.SignatureBuilder;
 import eu.europa.ec.markt.dss.signature.xades.XAdESService;
 
@@ -33,6 +34,25 @@ public class ProfileParameters {
 
 	private SignatureProfile profile;
 
+	/**
+	 * The default constructor for ProfileParameters.
+	 */
+	public ProfileParameters() {
+
+	}
+
+	/**
+	 * Copy constructor: only the XAdES service, which can be shared, is copied. The state of an operation in progress
+	 * (profile, builder, operation kind, prepared PAdES revision) is left empty so that the copy and the source can be
+	 * used by different signature operations (threads) without interfering with each other.
+	 * 
+	 * @param source
+	 */
+	public ProfileParameters(final ProfileParameters source) {
+
+		xadesService = source.xadesService;
+	}
+
 	/**
 	 * Returns the current Profile used to generate the signature or its extension
 	 * 
@@ -109,4 +129,20 @@ public class ProfileParameters {
 
 		this.xadesService = xadesService;
 	}
+
+	/*
+	 * The prepared PDF revision kept between the computation of the data to be signed and the signature. It belongs to
+	 * one signature operation and is not copied by the copy constructor.
+	 */
+	private PAdESSigningSession padesSession;
+
+	public PAdESSigningSession getPAdESSession() {
+
+		return padesSession;
+	}
+
+	public void setPAdESSession(PAdESSigningSession padesSession) {
+
+		this.padesSession = padesSession;
+	}
 }
@@ -106,8 +106,8 @@ public class SignatureParameters {
         contactInfo = source.contactInfo;
         location = source.location;
         deterministicId = source.deterministicId;
-        // This is a simple copy of reference and not of the object content!
-        context = source.context;
+        // The context holds the state of one signature operation: the copy gets its own context.
+        context = source.context == null ? null : new ProfileParameters(source.context);
     }
 
     public SignatureParameters copy() {
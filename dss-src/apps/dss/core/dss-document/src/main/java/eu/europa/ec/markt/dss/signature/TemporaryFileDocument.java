@@ -0,0 +1,71 @@
+/*
+ * DSS - Digital Signature Services
+ *
+ * Copyright (C) 2013 European Commission, Directorate-General Internal Market and Services (DG MARKT), B-1049 Bruxelles/Brussel
+ *
+ * Developed by: 2013 ARHS Developments S.A. (rue Nicolas Bové 2B, L-1253 Luxembourg) http://www.arhs-developments.com
+ *
+ * This file is part of the "DSS - Digital Signature Services" project.
+ *
+ * "DSS - Digital Signature Services" is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU Lesser General Public License as published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * DSS is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * "DSS - Digital Signature Services".  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.europa.ec.markt.dss.signature;
+
+import java.io.File;
+import java.util.logging.Logger;
+
+/**
+ * Document stored in a temporary file created by DSS (for example a signed PDF too large to be kept in memory). The
+ * document owns the file: {@link #release()} deletes it once the document is no longer used.
+ */
+
+public class TemporaryFileDocument extends FileDocument {
+
+   private static final Logger LOG = Logger.getLogger(TemporaryFileDocument.class.getName());
+
+   private final File file;
+
+   /**
+    * Create a TemporaryFileDocument
+    * 
+    * @param file the temporary file, deleted by {@link #release()}
+    */
+   public TemporaryFileDocument(final File file) {
+
+      super(file);
+      this.file = file;
+   }
+
+   /**
+    * Deletes the temporary file. The document cannot be read anymore.
+    */
+   public void release() {
+
+      if (!file.delete() && file.exists()) {
+
+         LOG.warning("Cannot delete the temporary file: " + file.getAbsolutePath());
+      }
+   }
+
+   /**
+    * Releases the given document if it is a {@code TemporaryFileDocument}, does nothing otherwise.
+    * 
+    * @param document the document (can be null)
+    */
+   public static void release(final DSSDocument document) {
+
+      if (document instanceof TemporaryFileDocument) {
+
+         ((TemporaryFileDocument) document).release();
+      }
+   }
+}
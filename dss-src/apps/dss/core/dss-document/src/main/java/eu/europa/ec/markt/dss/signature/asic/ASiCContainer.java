@@ -0,0 +1,287 @@
+/*
+ * DSS - Digital Signature Services
+ *
+ * Copyright (C) 2013 European Commission, Directorate-General Internal Market and Services (DG MARKT), B-1049 Bruxelles/Brussel
+ *
+ * Developed by: 2013 ARHS Developments S.A. (rue Nicolas Bové 2B, L-1253 Luxembourg) http://www.arhs-developments.com
+ *
+ * This file is part of the "DSS - Digital Signature Services" project.
+ *
+ * "DSS - Digital Signature Services" is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU Lesser General Public License as published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * DSS is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * "DSS - Digital Signature Services".  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.europa.ec.markt.dss.signature.asic;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Enumeration;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import org.apache.commons.io.IOUtils;
+
+import eu.europa.ec.markt.dss.DSSUtils;
+import eu.europa.ec.markt.dss.exception.DSSException;
+import eu.europa.ec.markt.dss.exception.NotETSICompliantException;
+import eu.europa.ec.markt.dss.exception.NotETSICompliantException.MSG;
+import eu.europa.ec.markt.dss.signature.DSSDocument;
+import eu.europa.ec.markt.dss.signature.FileDocument;
+import eu.europa.ec.markt.dss.signature.InMemoryDocument;
+import eu.europa.ec.markt.dss.signature.ProfileException;
+
+/**
+ * Read access to the entries of an ASiC-S container.
+ * <p>
+ * When the container is stored on the file-system ({@link FileDocument}) only the central directory is read: the
+ * signatures and the data object are returned as {@link ZipEntryDocument}s which are opened lazily, in place. A
+ * container held in memory is read in memory. Any other document is first copied to a temporary file which is deleted by
+ * {@link #close()}.
+ */
+
+public class ASiCContainer {
+
+   private static final Logger LOG = Logger.getLogger(ASiCContainer.class.getName());
+
+   public static final String MIMETYPE = "mimetype";
+
+   public static final String PATTERN_SIGNATURES_XML = "META-INF/(.*)(?i)signature(.*).xml";
+
+   public static final String PATTERN_SIGNATURES_P7S = "META-INF/(.*)(?i)signature(.*).p7s";
+
+   private DSSDocument signatures;
+
+   private boolean xadesSigned;
+
+   private boolean cadesSigned;
+
+   private DSSDocument dataFile;
+
+   /**
+    * The temporary copy of the container, null if the container is read in place or in memory.
+    */
+   private File temporaryFile;
+
+   private ASiCContainer() {
+
+   }
+
+   /**
+    * Reads the entries of the container. The returned container must be closed once its entries are no longer used.
+    * 
+    * @param container the ASiC-S container
+    * @return the entries of the container
+    * @throws DSSException
+    */
+   public static ASiCContainer open(final DSSDocument container) throws DSSException {
+
+      final ASiCContainer asics = new ASiCContainer();
+      boolean opened = false;
+      try {
+
+         if (container instanceof FileDocument) {
+
+            asics.readCentralDirectory(new File(container.getAbsolutePath()));
+         } else if (container instanceof InMemoryDocument) {
+
+            asics.readInMemory(container);
+         } else {
+
+            asics.temporaryFile = copyToTemporaryFile(container);
+            asics.readCentralDirectory(asics.temporaryFile);
+         }
+         opened = true;
+         return asics;
+      } catch (IOException e) {
+
+         throw new DSSException(e);
+      } finally {
+
+         if (!opened) {
+
+            asics.close();
+         }
+      }
+   }
+
+   /**
+    * Deletes the temporary copy of the container, if any. The entries read from the copy can no longer be opened.
+    */
+   public void close() {
+
+      if (temporaryFile != null) {
+
+         if (!temporaryFile.delete() && temporaryFile.exists()) {
+
+            LOG.warning("Cannot delete the temporary file: " + temporaryFile.getAbsolutePath());
+         }
+         temporaryFile = null;
+      }
+   }
+
+   private void readCentralDirectory(final File file) throws IOException {
+
+      final ZipFile zip = new ZipFile(file);
+      try {
+
+         final Enumeration<? extends ZipEntry> entries = zip.entries();
+         while (entries.hasMoreElements()) {
+
+            final ZipEntry entry = entries.nextElement();
+            final String name = entry.getName();
+            if (isSignatures(name)) {
+
+               signatures = new ZipEntryDocument(file, name);
+            } else if (isDataFile(name)) {
+
+               dataFile = new ZipEntryDocument(file, name);
+            }
+         }
+      } finally {
+
+         zip.close();
+      }
+   }
+
+   private void readInMemory(final DSSDocument container) throws IOException {
+
+      final ZipInputStream input = new ZipInputStream(container.openStream());
+      try {
+
+         ZipEntry entry;
+         while ((entry = input.getNextEntry()) != null) {
+
+            final String name = entry.getName();
+            if (isSignatures(name)) {
+
+               signatures = new InMemoryDocument(IOUtils.toByteArray(input), name);
+            } else if (isDataFile(name)) {
+
+               dataFile = new InMemoryDocument(IOUtils.toByteArray(input), name);
+            }
+         }
+      } finally {
+
+         DSSUtils.closeQuietly(input);
+      }
+   }
+
+   /**
+    * Identifies the signatures entry. An ASiC-S container holds either a XAdES or a CAdES signatures file.
+    * 
+    * @param name the name of the entry
+    * @return true if the entry contains the signatures
+    */
+   private boolean isSignatures(final String name) {
+
+      if (name.matches(PATTERN_SIGNATURES_P7S)) {
+
+         if (xadesSigned) {
+
+            throw new NotETSICompliantException(MSG.MORE_THAN_ONE_SIGNATURE);
+         }
+         cadesSigned = true;
+         return true;
+      }
+      if (name.matches(PATTERN_SIGNATURES_XML)) {
+
+         if (cadesSigned) {
+
+            throw new NotETSICompliantException(MSG.MORE_THAN_ONE_SIGNATURE);
+         }
+         xadesSigned = true;
+         return true;
+      }
+      return false;
+   }
+
+   /**
+    * Identifies the data object: the only entry of the root folder other than the mimetype.
+    * 
+    * @param name the name of the entry
+    * @return true if the entry is the data object
+    */
+   private boolean isDataFile(final String name) {
+
+      // Mime type implementers MAY use "application/vnd.etsi.asic-s+zip" to identify this format or MAY maintain the
+      // original mimetype of the signed data object.
+      if (name.equalsIgnoreCase(MIMETYPE) || name.indexOf("/") != -1) {
+
+         return false;
+      }
+      if (dataFile != null) {
+
+         throw new ProfileException("ASiC-S profile support only one data file");
+      }
+      return true;
+   }
+
+   private static File copyToTemporaryFile(final DSSDocument container) throws IOException {
+
+      final File file = File.createTempFile("dss-asics-", ".zip");
+      InputStream input = null;
+      OutputStream output = null;
+      boolean copied = false;
+      try {
+
+         input = container.openStream();
+         output = new FileOutputStream(file);
+         IOUtils.copyLarge(input, output);
+         output.close();
+         copied = true;
+      } finally {
+
+         DSSUtils.closeQuietly(input);
+         DSSUtils.closeQuietly(output);
+         if (!copied) {
+
+            file.delete();
+         }
+      }
+      return file;
+   }
+
+   /**
+    * @return the signatures file (META-INF/signatures.xml or META-INF/signatures.p7s), null if absent
+    */
+   public DSSDocument getSignatures() {
+
+      return signatures;
+   }
+
+   /**
+    * @return the signed data object, null if absent
+    */
+   public DSSDocument getDataFile() {
+
+      return dataFile;
+   }
+
+   /**
+    * @return true if the container holds XAdES signatures
+    */
+   public boolean isXAdESSigned() {
+
+      return xadesSigned;
+   }
+
+   /**
+    * @return true if the container holds CAdES signatures
+    */
+   public boolean isCAdESSigned() {
+
+      return cadesSigned;
+   }
+}
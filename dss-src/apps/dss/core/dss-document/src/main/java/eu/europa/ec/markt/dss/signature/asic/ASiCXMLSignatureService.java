@@ -12,6 +12,7 @@ package eu.europa.ec.markt.dss.signature.asic;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.FileNameMap;
 import java.net.URL;
 import java.net.URLConnection;
@@ -33,10 +34,12 @@ import org.apache.commons.lang.StringUtils;
 import org.w3c.dom.DOMImplementation;
 import org.w3c.dom.Element;
 
+import eu.europa.ec.markt.dss.DSSUtils;
 import eu.europa.ec.markt.dss.exception.DSSException;
 import eu.europa.ec.markt.dss.Digest;
 import eu.europa.ec.markt.dss.DigestAlgorithm;
 import eu.europa.ec.markt.dss.signature.DSSDocument;
+import eu.europa.ec.markt.dss.signature.DigestDocument;
 import eu.europa.ec.markt.dss.signature.DocumentSignatureService;
 import eu.europa.ec.markt.dss.signature.InMemoryDocument;
 import eu.europa.ec.markt.dss.signature.MimeType;
@@ -45,7 +48,6 @@ import eu.europa.ec.markt.dss.signature.SignaturePackaging;
 import eu.europa.ec.markt.dss.signature.SignatureParameters;
 import eu.europa.ec.markt.dss.signature.xades.XAdESService;
 import eu.europa.ec.markt.dss.validation.CertificateVerifier;
-import eu.europa.ec.markt.dss.validation.SignedDocumentValidator;
 import eu.europa.ec.markt.dss.validation.tsp.TSPSource;
 
 /**
@@ -173,32 +175,37 @@ public class ASiCXMLSignatureService implements DocumentSignatureService {
    @Override
    public DSSDocument signDocument(DSSDocument document, SignatureParameters parameters, byte[] signatureValue) throws DSSException {
 
-      try {
-
-         // Signs the document first
-         setXAdESParams(parameters, false);
+      final ByteArrayOutputStream outBytes = new ByteArrayOutputStream();
+      signDocument(document, parameters, signatureValue, outBytes);
 
-         final XAdESService xadesService = parameters.getContext().getXadesService();
-         System.out.println("File name: " + document.getName());
-         final DSSDocument signedDocument = xadesService.signDocument(document, parameters, signatureValue);
+      // return the new document = ASiC-S
+      return new InMemoryDocument(outBytes.toByteArray(), document.getName() != null ? document.getName() + ASICS_EXTENSION : null, MimeType.ASICS);
+   }
 
-         // Creates the XAdES signature
-         final DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-         dbf.setNamespaceAware(true);
-         final org.w3c.dom.Document xmlSignatureDoc = dbf.newDocumentBuilder().parse(signedDocument.openStream());
-         final Element xmlSignatureElement = (Element) xmlSignatureDoc.removeChild(xmlSignatureDoc.getDocumentElement());
+   /**
+    * Signs the document and writes the ASiC-S container straight to the given stream: the signed document is copied
+    * from its stream and is never loaded in memory. See {@link #signDocument(DSSDocument, SignatureParameters, byte[])}
+    * for the content of the container.
+    * 
+    * @param document the document to sign
+    * @param parameters
+    * @param signatureValue the value of the signature of the data returned by
+    *           {@link #toBeSigned(DSSDocument, SignatureParameters)}
+    * @param output the stream to which the container is written, it is not closed
+    * @throws DSSException
+    */
+   public void signDocument(final DSSDocument document, final SignatureParameters parameters, final byte[] signatureValue, final OutputStream output) throws DSSException {
 
-         final DocumentBuilder builder = dbf.newDocumentBuilder();
-         final DOMImplementation domImpl = builder.getDOMImplementation();
+      if (document instanceof DigestDocument) {
 
-         final org.w3c.dom.Document xmlXadesDoc = domImpl.createDocument(ASICS_URI, ASICS_NS, null);
-         final Element xmlXadesElement = xmlXadesDoc.getDocumentElement();
+         throw new DSSException("The ASiC-S container must hold the signed document: the content of a digest document is not available, use signatures(DSSDocument, SignatureParameters, byte[]) instead.");
+      }
+      InputStream content = null;
+      try {
 
-         xmlXadesDoc.adoptNode(xmlSignatureElement);
-         xmlXadesElement.appendChild(xmlSignatureElement);
+         final org.w3c.dom.Document xmlXadesDoc = createXAdESSignatures(document, parameters, signatureValue);
 
-         final ByteArrayOutputStream outBytes = new ByteArrayOutputStream();
-         final ZipOutputStream outZip = new ZipOutputStream(outBytes);
+         final ZipOutputStream outZip = new ZipOutputStream(output);
 
          // Zip comment
          if (parameters.isAsicComment() && StringUtils.isNotEmpty(document.getName())) {
@@ -216,38 +223,110 @@ public class ASiCXMLSignatureService implements DocumentSignatureService {
          }
 
          // Stores the ASiC mime-type
-         final String aSiCMimeType = MimeType.ASICS.getCode();
-         final ZipEntry entryMimetype = new ZipEntry(ZIP_ENTRY_MIMETYPE);
-         entryMimetype.setMethod(ZipEntry.STORED);
-         entryMimetype.setSize(aSiCMimeType.getBytes().length);
-         entryMimetype.setCompressedSize(aSiCMimeType.getBytes().length);
-         final CRC32 crc = new CRC32();
-         crc.update(aSiCMimeType.getBytes());
-         entryMimetype.setCrc(crc.getValue());
-         outZip.putNextEntry(entryMimetype);
-         outZip.write(aSiCMimeType.getBytes());
+         storeMimeType(outZip);
 
          // Stores the original document
          final ZipEntry entryDocument = new ZipEntry(document.getName() != null ? document.getName() : ZIP_ENTRY_DETACHED_FILE);
          outZip.setLevel(ZipEntry.DEFLATED);
          outZip.putNextEntry(entryDocument);
-         IOUtils.copy(document.openStream(), outZip);
+         content = document.openStream();
+         IOUtils.copyLarge(content, outZip);
 
          // Stores the XAdES signature
          final ZipEntry entrySignature = new ZipEntry(ZIP_ENTRY_METAINF_SIGNATURE);
          outZip.putNextEntry(entrySignature);
          TransformerFactory.newInstance().newTransformer().transform(new DOMSource(xmlXadesDoc), new StreamResult(outZip));
 
-         // Finishes the ZIP (with implicit finish/flush)
-         outZip.close();
+         // Finishes the ZIP, the output stream belongs to the caller
+         outZip.finish();
+      } catch (Exception e) {
+
+         throw new DSSException(e);
+      } finally {
+
+         DSSUtils.closeQuietly(content);
+      }
+   }
+
+   /**
+    * Stores the ASiC mime-type: it has to be the first entry of the container and cannot be compressed.
+    * 
+    * @param outZip
+    * @throws IOException
+    */
+   private static void storeMimeType(final ZipOutputStream outZip) throws IOException {
+
+      final byte[] aSiCMimeType = MimeType.ASICS.getCode().getBytes();
+      final ZipEntry entryMimetype = new ZipEntry(ZIP_ENTRY_MIMETYPE);
+      entryMimetype.setMethod(ZipEntry.STORED);
+      entryMimetype.setSize(aSiCMimeType.length);
+      entryMimetype.setCompressedSize(aSiCMimeType.length);
+      final CRC32 crc = new CRC32();
+      crc.update(aSiCMimeType);
+      entryMimetype.setCrc(crc.getValue());
+      outZip.putNextEntry(entryMimetype);
+      outZip.write(aSiCMimeType);
+   }
 
-         // return the new document = ASiC-S
-         return new InMemoryDocument(outBytes.toByteArray(), document.getName() != null ? document.getName() + ASICS_EXTENSION : null, MimeType.ASICS);
+   /**
+    * Creates the signatures file (META-INF/signatures.xml) of the ASiC-S container without building the container. The
+    * signed document is never accessed when it is a {@link DigestDocument}, the container can then be assembled by the
+    * caller from the original document and the returned signatures.
+    * 
+    * @param document the document to sign, a {@link DigestDocument} is accepted
+    * @param parameters
+    * @param signatureValue the value of the signature of the data returned by
+    *           {@link #toBeSigned(DSSDocument, SignatureParameters)}
+    * @return the &lt;asic:XAdESSignatures&gt; document
+    * @throws DSSException
+    */
+   public DSSDocument signatures(final DSSDocument document, final SignatureParameters parameters, final byte[] signatureValue) throws DSSException {
+
+      try {
+
+         final org.w3c.dom.Document xmlXadesDoc = createXAdESSignatures(document, parameters, signatureValue);
+         final ByteArrayOutputStream output = new ByteArrayOutputStream();
+         TransformerFactory.newInstance().newTransformer().transform(new DOMSource(xmlXadesDoc), new StreamResult(output));
+         return new InMemoryDocument(output.toByteArray(), ZIP_ENTRY_METAINF_SIGNATURE, MimeType.XML);
       } catch (Exception e) {
 
          throw new DSSException(e);
       }
+   }
+
+   /**
+    * Signs the document with a detached XAdES signature and wraps the signature in an &lt;asic:XAdESSignatures&gt;
+    * element.
+    * 
+    * @param document
+    * @param parameters
+    * @param signatureValue
+    * @return the &lt;asic:XAdESSignatures&gt; DOM document
+    * @throws Exception
+    */
+   private org.w3c.dom.Document createXAdESSignatures(final DSSDocument document, final SignatureParameters parameters, final byte[] signatureValue) throws Exception {
+
+      // Signs the document first
+      setXAdESParams(parameters, false);
 
+      final XAdESService xadesService = parameters.getContext().getXadesService();
+      final DSSDocument signedDocument = xadesService.signDocument(document, parameters, signatureValue);
+
+      // Creates the XAdES signature
+      final DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+      dbf.setNamespaceAware(true);
+      final org.w3c.dom.Document xmlSignatureDoc = dbf.newDocumentBuilder().parse(signedDocument.openStream());
+      final Element xmlSignatureElement = (Element) xmlSignatureDoc.removeChild(xmlSignatureDoc.getDocumentElement());
+
+      final DocumentBuilder builder = dbf.newDocumentBuilder();
+      final DOMImplementation domImpl = builder.getDOMImplementation();
+
+      final org.w3c.dom.Document xmlXadesDoc = domImpl.createDocument(ASICS_URI, ASICS_NS, null);
+      final Element xmlXadesElement = xmlXadesDoc.getDocumentElement();
+
+      xmlXadesDoc.adoptNode(xmlSignatureElement);
+      xmlXadesElement.appendChild(xmlSignatureElement);
+      return xmlXadesDoc;
    }
 
    /*
@@ -289,46 +368,71 @@ public class ASiCXMLSignatureService implements DocumentSignatureService {
    @Override
    public DSSDocument extendDocument(DSSDocument document, SignatureParameters parameters) throws DSSException {
 
+      final ByteArrayOutputStream output = new ByteArrayOutputStream();
+      extendDocument(document, parameters, output);
+      return new InMemoryDocument(output.toByteArray());
+   }
+
+   /**
+    * Extends the signatures of the ASiC-S container and writes the new container straight to the given stream. Only the
+    * signatures are loaded in memory, the other entries are copied from the original container.
+    * 
+    * @param document the ASiC-S container
+    * @param parameters
+    * @param output the stream to which the container is written, it is not closed
+    * @throws DSSException
+    */
+   public void extendDocument(final DSSDocument document, final SignatureParameters parameters, final OutputStream output) throws DSSException {
+
       if (parameters.getSignatureFormat() != SignatureFormat.ASiC_S_T) {
 
          throw new DSSException("Unsupported signature format " + parameters.getSignatureFormat());
       }
+      ZipInputStream input = null;
+      InputStream signatures = null;
+      ASiCContainer asics = null;
       try {
 
-         SignedDocumentValidator validator = SignedDocumentValidator.fromDocument(document);
-         validator.setExternalContent(parameters.getOriginalDocument());
+         asics = ASiCContainer.open(document);
 
          final XAdESService service = parameters.getContext().getXadesService();
          service.setCertificateVerifier(certificateVerifier);
          service.setTspSource(tspSource);
 
          setXAdESParams(parameters, true);
-         final DSSDocument signedDocument = service.extendDocument(validator.getDocument(), parameters);
+         final DSSDocument signedDocument = service.extendDocument(asics.getSignatures(), parameters);
 
-         final ByteArrayOutputStream output = new ByteArrayOutputStream();
          final ZipOutputStream zip = new ZipOutputStream(output);
-
-         final ZipInputStream input = new ZipInputStream(document.openStream());
+         input = new ZipInputStream(document.openStream());
          ZipEntry entry = null;
          while ((entry = input.getNextEntry()) != null) {
 
-            ZipEntry newEntry = new ZipEntry(entry.getName());
-            if (ZIP_ENTRY_METAINF_SIGNATURE.equals(entry.getName())) {
+            if (ZIP_ENTRY_MIMETYPE.equals(entry.getName())) {
+
+               storeMimeType(zip);
+            } else if (ZIP_ENTRY_METAINF_SIGNATURE.equals(entry.getName())) {
 
-               zip.putNextEntry(newEntry);
-               IOUtils.copy(signedDocument.openStream(), zip);
+               zip.putNextEntry(new ZipEntry(entry.getName()));
+               signatures = signedDocument.openStream();
+               IOUtils.copy(signatures, zip);
             } else {
 
-               zip.putNextEntry(newEntry);
-               IOUtils.copy(input, zip);
+               zip.putNextEntry(new ZipEntry(entry.getName()));
+               IOUtils.copyLarge(input, zip);
             }
-
          }
-         zip.close();
-         return new InMemoryDocument(output.toByteArray());
+         zip.finish();
       } catch (IOException e) {
 
          throw new DSSException(e);
+      } finally {
+
+         DSSUtils.closeQuietly(input);
+         DSSUtils.closeQuietly(signatures);
+         if (asics != null) {
+
+            asics.close();
+         }
       }
    }
 
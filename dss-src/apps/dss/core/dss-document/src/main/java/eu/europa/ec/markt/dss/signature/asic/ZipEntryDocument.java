@@ -0,0 +1,155 @@
+/*
+ * DSS - Digital Signature Services
+ *
+ * Copyright (C) 2013 European Commission, Directorate-General Internal Market and Services (DG MARKT), B-1049 Bruxelles/Brussel
+ *
+ * Developed by: 2013 ARHS Developments S.A. (rue Nicolas Bové 2B, L-1253 Luxembourg) http://www.arhs-developments.com
+ *
+ * This file is part of the "DSS - Digital Signature Services" project.
+ *
+ * "DSS - Digital Signature Services" is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU Lesser General Public License as published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * DSS is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * "DSS - Digital Signature Services".  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.europa.ec.markt.dss.signature.asic;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.io.IOUtils;
+
+import eu.europa.ec.markt.dss.DSSUtils;
+import eu.europa.ec.markt.dss.exception.DSSException;
+import eu.europa.ec.markt.dss.signature.DSSDocument;
+import eu.europa.ec.markt.dss.signature.MimeType;
+
+/**
+ * An entry of a ZIP file on the file-system. The entry is located through the central directory each time its stream is
+ * opened: the content is never loaded in memory.
+ */
+
+public class ZipEntryDocument implements DSSDocument {
+
+   private final File zipFile;
+
+   private final String entryName;
+
+   /**
+    * The default constructor for ZipEntryDocument.
+    * 
+    * @param zipFile the ZIP file
+    * @param entryName the name of the entry within the ZIP file
+    */
+   public ZipEntryDocument(final File zipFile, final String entryName) {
+
+      this.zipFile = zipFile;
+      this.entryName = entryName;
+   }
+
+   /**
+    * Opens the entry, the returned stream closes the ZIP file when it is closed.
+    */
+   @Override
+   public InputStream openStream() throws IOException {
+
+      final ZipFile zip = new ZipFile(zipFile);
+      try {
+
+         final ZipEntry entry = zip.getEntry(entryName);
+         if (entry == null) {
+
+            throw new IOException("The entry " + entryName + " does not exist in " + zipFile.getAbsolutePath());
+         }
+         return new FilterInputStream(zip.getInputStream(entry)) {
+
+            @Override
+            public void close() throws IOException {
+
+               try {
+
+                  super.close();
+               } finally {
+
+                  zip.close();
+               }
+            }
+         };
+      } catch (IOException e) {
+
+         zip.close();
+         throw e;
+      } catch (RuntimeException e) {
+
+         zip.close();
+         throw e;
+      }
+   }
+
+   @Override
+   public byte[] getBytes() throws DSSException {
+
+      InputStream input = null;
+      try {
+
+         input = openStream();
+         return IOUtils.toByteArray(input);
+      } catch (IOException e) {
+
+         throw new DSSException(e);
+      } finally {
+
+         DSSUtils.closeQuietly(input);
+      }
+   }
+
+   @Override
+   public String getName() {
+
+      return entryName;
+   }
+
+   @Override
+   public String getAbsolutePath() {
+
+      return zipFile.getAbsolutePath() + "!/" + entryName;
+   }
+
+   @Override
+   public MimeType getMimeType() {
+
+      return MimeType.fromFileName(entryName);
+   }
+
+   @Override
+   public void save(final String filePath) {
+
+      InputStream input = null;
+      OutputStream output = null;
+      try {
+
+         input = openStream();
+         output = new FileOutputStream(filePath);
+         IOUtils.copyLarge(input, output);
+      } catch (IOException e) {
+
+         throw new DSSException(e);
+      } finally {
+
+         DSSUtils.closeQuietly(input);
+         DSSUtils.closeQuietly(output);
+      }
+   }
+}
@@ -55,6 +55,15 @@ public class CAdESProfileA extends CAdESProfileXL {
 
    public static final ASN1ObjectIdentifier id_aa_ets_archiveTimestampV2 = PKCSObjectIdentifiers.id_aa.branch("48");
 
+   /**
+    * The archive timestamp covers the encapsulated content.
+    */
+   @Override
+   protected boolean isContentRequired() {
+
+      return true;
+   }
+
    @Override
    @SuppressWarnings("unchecked")
    protected SignerInformation extendCMSSignature(CMSSignedData cmsSignedData, SignerInformation si, SignatureParameters parameters) throws IOException {
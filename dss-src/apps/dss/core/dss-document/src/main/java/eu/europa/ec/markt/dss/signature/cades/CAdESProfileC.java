@@ -109,7 +109,7 @@ public class CAdESProfileC extends CAdESProfileT {
 
       MessageDigest sha1digest = MessageDigest.getInstance(X509ObjectIdentifiers.id_SHA1.getId(), new BouncyCastleProvider());
       byte[] digest = sha1digest.digest(cert.getEncoded());
-      if (LOG.isLoggable(Level.INFO)) LOG.info("Computing digest for " + CertificateIdentifier.getId(cert) + ": " + new DEROctetString(digest).getDERObject().toString());
+      if (LOG.isLoggable(Level.INFO)) LOG.info("Computing digest for " + CertificateIdentifier.getIdAsString(cert) + ": " + new DEROctetString(digest).getDERObject().toString());
       OtherHash hash = new OtherHash(digest);
       OtherCertID othercertid = new OtherCertID(new DERSequence(hash.getDERObject()));
       return othercertid;
@@ -20,9 +20,13 @@
 
 package eu.europa.ec.markt.dss.signature.cades;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.Security;
@@ -40,6 +44,9 @@ import org.bouncycastle.cms.CMSException;
 import org.bouncycastle.cms.CMSProcessableByteArray;
 import org.bouncycastle.cms.CMSSignedData;
 import org.bouncycastle.cms.CMSSignedDataGenerator;
+import org.bouncycastle.cms.CMSSignedDataStreamGenerator;
+import org.bouncycastle.cms.CMSSignedGenerator;
+import org.bouncycastle.cms.CMSTypedData;
 import org.bouncycastle.cms.DefaultSignedAttributeTableGenerator;
 import org.bouncycastle.cms.SignerInfoGenerator;
 import org.bouncycastle.cms.SignerInfoGeneratorBuilder;
@@ -55,7 +62,9 @@ import eu.europa.ec.markt.dss.DSSUtils;
 import eu.europa.ec.markt.dss.Digest;
 import eu.europa.ec.markt.dss.SignatureAlgorithm;
 import eu.europa.ec.markt.dss.signature.DSSDocument;
+import eu.europa.ec.markt.dss.signature.DigestDocument;
 import eu.europa.ec.markt.dss.signature.DocumentSignatureService;
+import eu.europa.ec.markt.dss.signature.FileDocument;
 import eu.europa.ec.markt.dss.signature.SignaturePackaging;
 import eu.europa.ec.markt.dss.signature.SignatureParameters;
 import eu.europa.ec.markt.dss.signature.provider.SignatureInterceptorProvider;
@@ -186,24 +195,19 @@ public class CAdESService implements DocumentSignatureService {
 
          throw new IllegalArgumentException("Unsupported signature packaging " + packaging);
       }
-      InputStream input = null;
       try {
 
          final SignatureAlgorithm signatureAlgo = SignatureAlgorithm.getAlgorithm(parameters.getEncryptionAlgorithm(), parameters.getDigestAlgorithm());
          final PreComputedContentSigner pccs = new PreComputedContentSigner(signatureAlgo.getJAVAId());
-         final DigestCalculatorProvider dcp = new BcDigestCalculatorProvider();
+         final DigestCalculatorProvider dcp = getDigestCalculatorProvider(document, packaging);
          final CMSSignedDataGenerator generator = createCMSSignedDataGenerator(pccs, dcp, parameters, getSigningProfile(parameters), false, null);
 
-         input = document.openStream();
-         final CMSProcessableByteArray content = new CMSProcessableByteArray(IOUtils.toByteArray(input));
-         generator.generate(content, !packaging.equals(SignaturePackaging.DETACHED));
+         // The encapsulation of the content does not change the signed attributes: the content is only digested.
+         generator.generate(getContent(document), false);
          return new ByteArrayInputStream(pccs.getByteOutputStream().toByteArray());
       } catch (Exception e) {
 
          throw new DSSException(e);
-      } finally {
-
-         DSSUtils.closeQuietly(input);
       }
    }
 
@@ -223,12 +227,19 @@ public class CAdESService implements DocumentSignatureService {
 
          final SignatureAlgorithm signatureAlgo = SignatureAlgorithm.getAlgorithm(parameters.getEncryptionAlgorithm(), parameters.getDigestAlgorithm());
          final PreComputedContentSigner pccs = new PreComputedContentSigner(signatureAlgo.getJAVAId(), signatureValue);
-         final DigestCalculatorProvider dcp = new BcDigestCalculatorProvider();
+         final DigestCalculatorProvider dcp = getDigestCalculatorProvider(document, packaging);
          final CMSSignedDataGenerator generator = createCMSSignedDataGenerator(pccs, dcp, parameters, getSigningProfile(parameters), true, null);
 
-         input = document.openStream();
-         final CMSProcessableByteArray content = new CMSProcessableByteArray(IOUtils.toByteArray(input));
-         final CMSSignedData data = generator.generate(content, !packaging.equals(SignaturePackaging.DETACHED));
+         final CMSSignedData data;
+         if (packaging.equals(SignaturePackaging.DETACHED)) {
+
+            data = generator.generate(getContent(document), false);
+         } else {
+
+            input = document.openStream();
+            final CMSProcessableByteArray content = new CMSProcessableByteArray(IOUtils.toByteArray(input));
+            data = generator.generate(content, true);
+         }
          DSSDocument signedDocument = new CMSSignedDocument(data);
          /*
           * Extend the file if needed
@@ -251,6 +262,98 @@ public class CAdESService implements DocumentSignatureService {
       }
    }
 
+   /**
+    * Signs the document and writes the signature to the given stream. The document is read in a single pass and is
+    * never loaded in memory: in case of enveloping packaging the content is encapsulated on the fly by a streaming CMS
+    * generator. When the signature format requires an extension the signature is first written to a temporary file and
+    * then extended with {@link CAdESSignatureExtension#extendSignatures(DSSDocument, SignatureParameters, OutputStream)}.
+    * 
+    * @param document the document to sign
+    * @param parameters
+    * @param signatureValue the value of the signature of the data returned by
+    *           {@link #toBeSigned(DSSDocument, SignatureParameters)}
+    * @param output the stream to which the signature is written, it is not closed
+    * @throws DSSException
+    */
+   public void signDocument(final DSSDocument document, final SignatureParameters parameters, final byte[] signatureValue, final OutputStream output) throws DSSException {
+
+      final SignaturePackaging packaging = parameters.getSignaturePackaging();
+      if (!packaging.equals(SignaturePackaging.ENVELOPING) && !packaging.equals(SignaturePackaging.DETACHED)) {
+
+         throw new IllegalArgumentException("Unsupported signature packaging " + packaging);
+      }
+      final CAdESSignatureExtension extension = getExtensionProfile(parameters);
+      if (extension == null) {
+
+         writeSignature(document, parameters, signatureValue, output);
+         return;
+      }
+      File signatureFile = null;
+      OutputStream signatureOutput = null;
+      try {
+
+         signatureFile = File.createTempFile("dss-cades-", ".p7s");
+         signatureOutput = new BufferedOutputStream(new FileOutputStream(signatureFile));
+         writeSignature(document, parameters, signatureValue, signatureOutput);
+         signatureOutput.close();
+         signatureOutput = null;
+
+         parameters.setOriginalDocument(document);
+         extension.extendSignatures(new FileDocument(signatureFile), parameters, output);
+      } catch (IOException e) {
+
+         throw new DSSException(e);
+      } finally {
+
+         DSSUtils.closeQuietly(signatureOutput);
+         if (signatureFile != null && !signatureFile.delete()) {
+
+            signatureFile.deleteOnExit();
+         }
+      }
+   }
+
+   /**
+    * Writes the CMS signature of the document with the streaming generator.
+    * 
+    * @param document
+    * @param parameters
+    * @param signatureValue
+    * @param output
+    * @throws DSSException
+    */
+   private void writeSignature(final DSSDocument document, final SignatureParameters parameters, final byte[] signatureValue, final OutputStream output) throws DSSException {
+
+      InputStream input = null;
+      try {
+
+         final SignatureAlgorithm signatureAlgo = SignatureAlgorithm.getAlgorithm(parameters.getEncryptionAlgorithm(), parameters.getDigestAlgorithm());
+         final PreComputedContentSigner pccs = new PreComputedContentSigner(signatureAlgo.getJAVAId(), signatureValue);
+         final SignaturePackaging packaging = parameters.getSignaturePackaging();
+         final DigestCalculatorProvider dcp = getDigestCalculatorProvider(document, packaging);
+         final CMSSignedDataStreamGenerator generator = new CMSSignedDataStreamGenerator();
+         initCMSSignedGenerator(generator, pccs, dcp, parameters, getSigningProfile(parameters), true, null);
+
+         final boolean encapsulate = !packaging.equals(SignaturePackaging.DETACHED);
+         final OutputStream signedContent = generator.open(output, encapsulate);
+         if (!(document instanceof DigestDocument)) {
+
+            input = document.openStream();
+            IOUtils.copyLarge(input, signedContent);
+         }
+         signedContent.close();
+      } catch (CMSException e) {
+
+         throw new DSSException(e);
+      } catch (IOException e) {
+
+         throw new DSSException(e);
+      } finally {
+
+         DSSUtils.closeQuietly(input);
+      }
+   }
+
    /**
     * Signs the document in the single operation
     * 
@@ -388,12 +491,91 @@ public class CAdESService implements DocumentSignatureService {
       return document;
    }
 
+   /**
+    * Extends the signatures of the document and writes the result to the given stream. The content of an enveloping
+    * signature is streamed and never loaded in memory (see
+    * {@link CAdESSignatureExtension#extendSignatures(DSSDocument, SignatureParameters, OutputStream)}).
+    * 
+    * @param document the signature to extend
+    * @param parameters
+    * @param output the stream to which the extended signature is written, it is not closed
+    * @throws DSSException
+    */
+   public void extendDocument(final DSSDocument document, final SignatureParameters parameters, final OutputStream output) throws DSSException {
+
+      final CAdESSignatureExtension extension = getExtensionProfile(parameters);
+      if (extension != null) {
+
+         extension.extendSignatures(document, parameters, output);
+      } else {
+
+         LOG.info("No extension for " + parameters.getSignatureFormat());
+         InputStream input = null;
+         try {
+
+            input = document.openStream();
+            IOUtils.copyLarge(input, output);
+         } catch (IOException e) {
+
+            throw new DSSException(e);
+         } finally {
+
+            DSSUtils.closeQuietly(input);
+         }
+      }
+   }
+
+   /**
+    * Returns the provider of the digest calculators used to compute the message-digest signed attribute. For a
+    * {@link DigestDocument} the pre-computed digests are used, such a document can only be signed with a detached
+    * packaging.
+    * 
+    * @param document the document to sign
+    * @param packaging the packaging of the signature
+    * @return the {@code DigestCalculatorProvider} to use
+    * @throws DSSException
+    */
+   private DigestCalculatorProvider getDigestCalculatorProvider(final DSSDocument document, final SignaturePackaging packaging) throws DSSException {
+
+      if (document instanceof DigestDocument) {
+
+         if (!packaging.equals(SignaturePackaging.DETACHED)) {
+
+            throw new DSSException("The content of a digest document cannot be encapsulated, the packaging must be " + SignaturePackaging.DETACHED);
+         }
+         return new PreComputedDigestCalculatorProvider((DigestDocument) document);
+      }
+      return new BcDigestCalculatorProvider();
+   }
+
+   /**
+    * Returns the content to digest for a detached signature. The content of a {@link DigestDocument} is not available:
+    * an empty content is returned and the digest comes from {@link PreComputedDigestCalculatorProvider}.
+    * 
+    * @param document the document to sign
+    * @return the content to process
+    */
+   private CMSTypedData getContent(final DSSDocument document) {
+
+      if (document instanceof DigestDocument) {
+
+         return new CMSProcessableByteArray(new byte[0]);
+      }
+      return new CMSProcessableDSSDocument(document);
+   }
+
    private CMSSignedDataGenerator createCMSSignedDataGenerator(ContentSigner contentSigner, DigestCalculatorProvider digestCalculatorProvider, SignatureParameters parameters,
             CAdESProfileBES cadesProfile, boolean includeUnsignedAttributes, CMSSignedData originalSignedData) throws IOException {
 
-      try {
+      final CMSSignedDataGenerator generator = new CMSSignedDataGenerator();
+      initCMSSignedGenerator(generator, contentSigner, digestCalculatorProvider, parameters, cadesProfile, includeUnsignedAttributes, originalSignedData);
+      return generator;
+   }
+
+   private void initCMSSignedGenerator(CMSSignedGenerator generator, ContentSigner contentSigner, DigestCalculatorProvider digestCalculatorProvider,
+            SignatureParameters parameters, CAdESProfileBES cadesProfile, boolean includeUnsignedAttributes, CMSSignedData originalSignedData) throws IOException {
 
-         CMSSignedDataGenerator generator = new CMSSignedDataGenerator();
+      try {
 
          X509Certificate signerCertificate = parameters.getSigningCertificate();
 
@@ -429,9 +611,6 @@ public class CAdESService implements DocumentSignatureService {
          if (originalSignedData != null) {
             generator.addCertificates(originalSignedData.getCertificates());
          }
-
-         return generator;
-
       } catch (CMSException e) {
          throw new IOException(e);
       } catch (CertificateEncodingException e) {
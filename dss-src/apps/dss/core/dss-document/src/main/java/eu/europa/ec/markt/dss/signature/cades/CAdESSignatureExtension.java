@@ -22,19 +22,25 @@ package eu.europa.ec.markt.dss.signature.cades;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.logging.Logger;
 
+import org.apache.commons.io.IOUtils;
 import org.bouncycastle.asn1.ASN1Object;
 import org.bouncycastle.asn1.ASN1ObjectIdentifier;
 import org.bouncycastle.asn1.DERSet;
 import org.bouncycastle.asn1.cms.Attribute;
 import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
 import org.bouncycastle.cms.CMSException;
+import org.bouncycastle.cms.CMSProcessableByteArray;
 import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.cms.CMSSignedDataGenerator;
+import org.bouncycastle.cms.CMSSignedDataParser;
+import org.bouncycastle.cms.CMSTypedStream;
 import org.bouncycastle.cms.SignerId;
 import org.bouncycastle.cms.SignerInformation;
 import org.bouncycastle.cms.SignerInformationStore;
@@ -87,33 +93,113 @@ public abstract class CAdESSignatureExtension implements SignatureExtension {
 
          input = document.openStream();
          CMSSignedData signedData = new CMSSignedData(input);
-         SignerInformationStore signerStore = signedData.getSignerInfos();
-         ArrayList<SignerInformation> siArray = new ArrayList<SignerInformation>();
-         Iterator<?> infos = signerStore.getSigners().iterator();
-         while (infos.hasNext()) {
+         SignerInformationStore newSignerStore = new SignerInformationStore(extendSigners(signedData, parameters));
+         CMSSignedData extended = CMSSignedData.replaceSigners(signedData, newSignerStore);
+         return new InMemoryDocument(extended.getEncoded());
+      } catch (Exception e) {
+
+         throw new DSSException("Cannot parse CMS data", e);
+      } finally {
 
-            SignerInformation si = (SignerInformation) infos.next();
-            try {
+         DSSUtils.closeQuietly(input);
+      }
+   }
 
-               siArray.add(extendCMSSignature(signedData, si, parameters));
-            } catch (IOException ex) {
+   /**
+    * Extends the signatures of the document and writes the result to the given stream. The content of an enveloping
+    * signature is not loaded in memory: the signature is parsed once to extend the signer information (against a
+    * detached copy of the signed data) and the content is streamed a second time to the output when the signer
+    * information is replaced. The profiles which need the encapsulated content itself (see
+    * {@link #isContentRequired()}) fall back to {@link #extendSignatures(DSSDocument, SignatureParameters)}.
+    * 
+    * @param document the signature to extend, it must be possible to open its stream twice
+    * @param parameters
+    * @param output the stream to which the extended signature is written, it is not closed
+    * @throws DSSException
+    */
+   public void extendSignatures(final DSSDocument document, final SignatureParameters parameters, final OutputStream output) throws DSSException {
 
-               LOG.severe("Exception when extending signature");
-               siArray.add(si);
+      InputStream input = null;
+      try {
+
+         input = document.openStream();
+         final CMSSignedDataParser parser = new CMSSignedDataParser(input);
+         final CMSTypedStream signedContent = parser.getSignedContent();
+         if (signedContent != null) {
+
+            if (isContentRequired()) {
+
+               DSSUtils.closeQuietly(input);
+               input = null;
+               LOG.info("The content of the signature is required by the extension, it is loaded in memory.");
+               IOUtils.write(extendSignatures(document, parameters).getBytes(), output);
+               return;
             }
+            signedContent.drain();
          }
-         SignerInformationStore newSignerStore = new SignerInformationStore(siArray);
-         CMSSignedData extended = CMSSignedData.replaceSigners(signedData, newSignerStore);
-         return new InMemoryDocument(extended.getEncoded());
-      } catch (Exception e) {
+         final SignerInformationStore signerStore = parser.getSignerInfos();
+
+         final CMSSignedDataGenerator generator = new CMSSignedDataGenerator();
+         generator.addSigners(signerStore);
+         generator.addCertificates(parser.getCertificates());
+         generator.addCRLs(parser.getCRLs());
+         final CMSSignedData detachedSignedData = generator.generate(new CMSProcessableByteArray(new byte[0]), false);
+         DSSUtils.closeQuietly(input);
+         input = null;
+
+         final SignerInformationStore newSignerStore = new SignerInformationStore(extendSigners(detachedSignedData, parameters));
+
+         input = document.openStream();
+         CMSSignedDataParser.replaceSigners(input, newSignerStore, output);
+      } catch (CMSException e) {
 
          throw new DSSException("Cannot parse CMS data", e);
+      } catch (IOException e) {
+
+         throw new DSSException(e);
       } finally {
 
          DSSUtils.closeQuietly(input);
       }
    }
 
+   /**
+    * Extends all signers of the signed data. A signer which cannot be extended is kept unchanged.
+    * 
+    * @param signedData
+    * @param parameters
+    * @return the list of the extended signers
+    */
+   private ArrayList<SignerInformation> extendSigners(final CMSSignedData signedData, final SignatureParameters parameters) {
+
+      final ArrayList<SignerInformation> siArray = new ArrayList<SignerInformation>();
+      final Iterator<?> infos = signedData.getSignerInfos().getSigners().iterator();
+      while (infos.hasNext()) {
+
+         final SignerInformation si = (SignerInformation) infos.next();
+         try {
+
+            siArray.add(extendCMSSignature(signedData, si, parameters));
+         } catch (IOException ex) {
+
+            LOG.severe("Exception when extending signature");
+            siArray.add(si);
+         }
+      }
+      return siArray;
+   }
+
+   /**
+    * Indicates if the extension needs the encapsulated content of the signature (and not only its signer information,
+    * certificates and revocation data).
+    * 
+    * @return false by default
+    */
+   protected boolean isContentRequired() {
+
+      return false;
+   }
+
    public DSSDocument extendSignature(Object signatureId, DSSDocument document, DSSDocument originalData, SignatureParameters parameters) throws IOException {
 
       final SignerId toExtendId = (SignerId) signatureId;
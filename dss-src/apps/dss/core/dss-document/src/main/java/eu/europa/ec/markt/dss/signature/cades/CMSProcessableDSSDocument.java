@@ -0,0 +1,84 @@
+/*
+ * DSS - Digital Signature Services
+ *
+ * Copyright (C) 2013 European Commission, Directorate-General Internal Market and Services (DG MARKT), B-1049 Bruxelles/Brussel
+ *
+ * Developed by: 2013 ARHS Developments S.A. (rue Nicolas Bové 2B, L-1253 Luxembourg) http://www.arhs-developments.com
+ *
+ * This file is part of the "DSS - Digital Signature Services" project.
+ *
+ * "DSS - Digital Signature Services" is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU Lesser General Public License as published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * DSS is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * "DSS - Digital Signature Services".  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.europa.ec.markt.dss.signature.cades;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.cms.CMSObjectIdentifiers;
+import org.bouncycastle.cms.CMSException;
+import org.bouncycastle.cms.CMSTypedData;
+
+import eu.europa.ec.markt.dss.DSSUtils;
+import eu.europa.ec.markt.dss.signature.DSSDocument;
+
+/**
+ * CMS content backed by a {@link DSSDocument}: the document is read from its stream each time the content is written,
+ * it is never loaded in memory.
+ */
+
+public class CMSProcessableDSSDocument implements CMSTypedData {
+
+   private final DSSDocument document;
+
+   private final ASN1ObjectIdentifier contentType = new ASN1ObjectIdentifier(CMSObjectIdentifiers.data.getId());
+
+   /**
+    * The default constructor for CMSProcessableDSSDocument.
+    * 
+    * @param document the content
+    */
+   public CMSProcessableDSSDocument(final DSSDocument document) {
+
+      this.document = document;
+   }
+
+   @Override
+   public void write(final OutputStream output) throws IOException, CMSException {
+
+      final InputStream input = document.openStream();
+      try {
+
+         IOUtils.copyLarge(input, output);
+      } finally {
+
+         DSSUtils.closeQuietly(input);
+      }
+   }
+
+   /**
+    * @return the {@code DSSDocument}
+    */
+   @Override
+   public Object getContent() {
+
+      return document;
+   }
+
+   @Override
+   public ASN1ObjectIdentifier getContentType() {
+
+      return contentType;
+   }
+}
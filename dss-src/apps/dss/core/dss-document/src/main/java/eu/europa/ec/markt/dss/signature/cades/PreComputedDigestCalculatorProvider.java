@@ -0,0 +1,91 @@
+/*
+ * DSS - Digital Signature Services
+ *
+ * Copyright (C) 2013 European Commission, Directorate-General Internal Market and Services (DG MARKT), B-1049 Bruxelles/Brussel
+ *
+ * Developed by: 2013 ARHS Developments S.A. (rue Nicolas Bové 2B, L-1253 Luxembourg) http://www.arhs-developments.com
+ *
+ * This file is part of the "DSS - Digital Signature Services" project.
+ *
+ * "DSS - Digital Signature Services" is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU Lesser General Public License as published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * DSS is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * "DSS - Digital Signature Services".  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.europa.ec.markt.dss.signature.cades;
+
+import java.io.OutputStream;
+
+import org.apache.commons.io.output.NullOutputStream;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.operator.DigestCalculator;
+import org.bouncycastle.operator.DigestCalculatorProvider;
+import org.bouncycastle.operator.OperatorCreationException;
+
+import eu.europa.ec.markt.dss.DigestAlgorithm;
+import eu.europa.ec.markt.dss.signature.DigestDocument;
+
+/**
+ * Provides the digests of a {@link DigestDocument}: the returned calculators ignore the data written to them and
+ * return the pre-computed digest of the document. This allows the creation of detached CMS signatures without
+ * accessing the content.
+ */
+
+public class PreComputedDigestCalculatorProvider implements DigestCalculatorProvider {
+
+   private final DigestDocument document;
+
+   /**
+    * The default constructor for PreComputedDigestCalculatorProvider.
+    * 
+    * @param document the document providing the digests
+    */
+   public PreComputedDigestCalculatorProvider(final DigestDocument document) {
+
+      this.document = document;
+   }
+
+   @Override
+   public DigestCalculator get(final AlgorithmIdentifier digestAlgorithmIdentifier) throws OperatorCreationException {
+
+      final DigestAlgorithm digestAlgorithm;
+      try {
+
+         digestAlgorithm = DigestAlgorithm.forOID(digestAlgorithmIdentifier.getAlgorithm().getId());
+      } catch (RuntimeException e) {
+
+         throw new OperatorCreationException("Unsupported digest algorithm: " + digestAlgorithmIdentifier.getAlgorithm().getId(), e);
+      }
+      if (!document.hasDigest(digestAlgorithm)) {
+
+         throw new OperatorCreationException("No " + digestAlgorithm.getName() + " digest for the document " + document.getName());
+      }
+      final byte[] digest = document.getDigest(digestAlgorithm);
+      return new DigestCalculator() {
+
+         @Override
+         public AlgorithmIdentifier getAlgorithmIdentifier() {
+
+            return digestAlgorithmIdentifier;
+         }
+
+         @Override
+         public OutputStream getOutputStream() {
+
+            return new NullOutputStream();
+         }
+
+         @Override
+         public byte[] getDigest() {
+
+            return digest.clone();
+         }
+      };
+   }
+}
@@ -28,6 +28,7 @@ import eu.europa.ec.markt.dss.signature.DSSDocument;
 import eu.europa.ec.markt.dss.signature.InMemoryDocument;
 import eu.europa.ec.markt.dss.signature.SignatureExtension;
 import eu.europa.ec.markt.dss.signature.SignatureParameters;
+import eu.europa.ec.markt.dss.signature.TemporaryFileDocument;
 import eu.europa.ec.markt.dss.signature.pdf.PDFSignatureService;
 import eu.europa.ec.markt.dss.signature.pdf.PdfArray;
 import eu.europa.ec.markt.dss.signature.pdf.PdfDict;
@@ -46,11 +47,12 @@ import eu.europa.ec.markt.dss.validation.tsp.TSPSource;
 import eu.europa.ec.markt.dss.validation.x509.TimestampToken;
 
 import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.DeferredFileOutputStream;
 import org.bouncycastle.cms.CMSException;
 import org.bouncycastle.ocsp.BasicOCSPResp;
 import org.bouncycastle.tsp.TimeStampResponse;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -297,7 +299,7 @@ public class PAdESProfileLTV implements SignatureExtension {
     * @param document
     * @param originalData
     * @param params
-    * @return
+    * @return the extended document, in memory or in a {@link TemporaryFileDocument} which the caller releases
     * @throws IOException
     */
    public DSSDocument extendSignatures(DSSDocument document, DSSDocument originalData, SignatureParameters params) throws IOException {
@@ -308,11 +310,14 @@ public class PAdESProfileLTV implements SignatureExtension {
        * compared with revision 1137 and this parameter has not been used either.
        */
 
+      DeferredFileOutputStream output = null;
+      DeferredFileOutputStream ltvDoc = null;
+      boolean extended = false;
       try {
 
          PdfObjFactory factory = PdfObjFactory.getInstance();
          final PdfReader reader = factory.newReader(document.openStream());
-         final ByteArrayOutputStream output = new ByteArrayOutputStream();
+         output = newOutput();
          final PdfWriter stamper = factory.newWriter(reader, output);
 
          LTVSignatureValidationCallback callback = new LTVSignatureValidationCallback(stamper);
@@ -347,21 +352,62 @@ public class PAdESProfileLTV implements SignatureExtension {
          stamper.close();
          output.close();
 
-         DSSDocument extendedDocument = new InMemoryDocument(output.toByteArray());
+         DSSDocument extendedDocument = toDocument(output);
 
-         ByteArrayOutputStream ltvDoc = new ByteArrayOutputStream();
+         ltvDoc = newOutput();
 
          PDFSignatureService service = factory.newTimestampSignatureService();
          byte[] digest = service.digest(extendedDocument.openStream(), params);
          TimeStampResponse tsToken = tspSource.getTimeStampResponse(params.getDigestAlgorithm(), digest);
          service.sign(extendedDocument.openStream(), tsToken.getTimeStampToken().getEncoded(), ltvDoc, params);
+         ltvDoc.close();
 
-         return new InMemoryDocument(ltvDoc.toByteArray());
+         final DSSDocument ltvDocument = toDocument(ltvDoc);
+         extended = true;
+         return ltvDocument;
 
       } catch (SignatureException e) {
          throw new RuntimeException(e);
       } catch (NoSuchAlgorithmException e) {
          throw new RuntimeException(e);
+      } finally {
+
+         // the intermediate revision is not needed anymore, the result is deleted on failure
+         delete(output);
+         if (!extended) {
+
+            delete(ltvDoc);
+         }
+      }
+   }
+
+   /**
+    * The revisions are written in memory up to {@link PAdESSigningSession#MEMORY_THRESHOLD} bytes, in a temporary file
+    * beyond. The file is only created when the threshold is exceeded.
+    */
+   private static DeferredFileOutputStream newOutput() {
+
+      return new DeferredFileOutputStream(PAdESSigningSession.MEMORY_THRESHOLD, "dss-pades", ".pdf", null);
+   }
+
+   private static DSSDocument toDocument(final DeferredFileOutputStream output) {
+
+      if (output.isInMemory()) {
+
+         return new InMemoryDocument(output.getData());
+      }
+      return new TemporaryFileDocument(output.getFile());
+   }
+
+   /**
+    * Deletes the temporary file of the given output, if any.
+    */
+   private static void delete(final DeferredFileOutputStream output) {
+
+      if (output != null && !output.isInMemory()) {
+
+         IOUtils.closeQuietly(output);
+         output.getFile().delete();
       }
    }
 
@@ -21,7 +21,6 @@
 package eu.europa.ec.markt.dss.signature.pades;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.security.MessageDigest;
@@ -31,7 +30,6 @@ import java.util.logging.Logger;
 
 import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.io.IOUtils;
-import org.apache.commons.lang.StringUtils;
 import org.bouncycastle.cms.CMSException;
 import org.bouncycastle.cms.CMSProcessableByteArray;
 import org.bouncycastle.cms.CMSSignedData;
@@ -44,8 +42,8 @@ import eu.europa.ec.markt.dss.Digest;
 import eu.europa.ec.markt.dss.SignatureAlgorithm;
 import eu.europa.ec.markt.dss.signature.DSSDocument;
 import eu.europa.ec.markt.dss.signature.DocumentSignatureService;
-import eu.europa.ec.markt.dss.signature.InMemoryDocument;
 import eu.europa.ec.markt.dss.signature.SignatureParameters;
+import eu.europa.ec.markt.dss.signature.TemporaryFileDocument;
 import eu.europa.ec.markt.dss.signature.cades.CAdESProfileT;
 import eu.europa.ec.markt.dss.signature.cades.PreComputedContentSigner;
 import eu.europa.ec.markt.dss.signature.pdf.PDFSignatureService;
@@ -54,7 +52,12 @@ import eu.europa.ec.markt.dss.validation.CertificateVerifier;
 import eu.europa.ec.markt.dss.validation.tsp.TSPSource;
 
 /**
- * PAdES implementation of the DocumentSignatureService
+ * PAdES implementation of the DocumentSignatureService<br>
+ * The new revision of the PDF is prepared once by {@link #toBeSigned(DSSDocument, SignatureParameters)} and kept in the
+ * parameters' context until {@link #signDocument(DSSDocument, SignatureParameters, byte[])} injects the signature in
+ * it, see {@link PAdESSigningSession}. A caller which does not complete the signature calls
+ * {@link #abortSignature(SignatureParameters)}. A signed document too large to be kept in memory is returned as a
+ * {@link TemporaryFileDocument} which the caller releases once it is used.
  * 
  * 
  * @version $Revision: 2823 $ - $Date: 2013-10-29 20:39:42 +0100 (mar., 29 oct. 2013) $
@@ -108,7 +111,15 @@ public class PAdESServiceV2 implements DocumentSignatureService {
          final DigestCalculatorProvider digestCalculatorProvider = new BcDigestCalculatorProvider();
 
          final PDFSignatureService pdfSignatureService = PdfObjFactory.getInstance().newPAdESSignatureService();
-         final byte[] messageDigest = pdfSignatureService.digest(document.openStream(), parameters);
+         final PAdESSigningSession previousSession = parameters.getContext().getPAdESSession();
+         if (previousSession != null) {
+
+            parameters.getContext().setPAdESSession(null);
+            previousSession.close();
+         }
+         final PAdESSigningSession session = PAdESSigningSession.prepare(pdfSignatureService, document, parameters);
+         parameters.getContext().setPAdESSession(session);
+         final byte[] messageDigest = session.getMessageDigest();
          if (LOG.isLoggable(Level.FINE)) LOG.fine("Calculated digest on byterange " + Hex.encodeHexString(messageDigest));
 
          final CMSSignedDataGenerator generator = padesProfile.createCMSSignedDataGenerator(contentSigner, digestCalculatorProvider, parameters, messageDigest);
@@ -128,6 +139,24 @@ public class PAdESServiceV2 implements DocumentSignatureService {
 
    }
 
+   /**
+    * Releases the PDF revision prepared by {@link #toBeSigned(DSSDocument, SignatureParameters)} when the signature is
+    * not completed with {@link #signDocument(DSSDocument, SignatureParameters, byte[])} on the same parameters: failed
+    * or cancelled signature, stateless caller which prepares the revision again. Does nothing if no revision is
+    * prepared.
+    * 
+    * @param parameters the parameters given to toBeSigned
+    */
+   public void abortSignature(SignatureParameters parameters) {
+
+      final PAdESSigningSession session = parameters.getContext().getPAdESSession();
+      if (session != null) {
+
+         parameters.getContext().setPAdESSession(null);
+         session.close();
+      }
+   }
+
    @Deprecated
    public Digest digest(DSSDocument document, SignatureParameters parameters) throws IOException {
 
@@ -157,41 +186,53 @@ public class PAdESServiceV2 implements DocumentSignatureService {
          final PreComputedContentSigner contentSigner = new PreComputedContentSigner(signatureAlgo.getJAVAId(), signatureValue);
          final DigestCalculatorProvider digestCalculatorProvider = new BcDigestCalculatorProvider();
 
-         final PDFSignatureService pdfSignatureService = PdfObjFactory.getInstance().newPAdESSignatureService();
-         final byte[] messageDigest = pdfSignatureService.digest(document.openStream(), parameters);
-         if (LOG.isLoggable(Level.FINE)) LOG.fine("Calculated digest on byterange " + Hex.encodeHexString(messageDigest));
+         PAdESSigningSession session = parameters.getContext().getPAdESSession();
+         parameters.getContext().setPAdESSession(null);
+         if (session == null || !session.isPreparedFor(document, parameters)) {
 
-         final CMSSignedDataGenerator generator = padesProfile.createCMSSignedDataGenerator(contentSigner, digestCalculatorProvider, parameters, messageDigest);
+            if (session != null) {
 
-         final CMSProcessableByteArray content = new CMSProcessableByteArray(messageDigest);
-
-         CMSSignedData data = generator.generate(content, false);
-         if (tspSource != null) {
-
-            final CAdESProfileT cadesProfileT = new CAdESProfileT();
-            cadesProfileT.setSignatureTsa(tspSource);
-            data = cadesProfileT.extendCMSSignedData(data, null, parameters);
+               session.close();
+            }
+            final PDFSignatureService pdfSignatureService = PdfObjFactory.getInstance().newPAdESSignatureService();
+            session = PAdESSigningSession.prepare(pdfSignatureService, document, parameters);
          }
+         final DSSDocument doc;
+         try {
 
-         final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            final byte[] messageDigest = session.getMessageDigest();
+            if (LOG.isLoggable(Level.FINE)) LOG.fine("Calculated digest on byterange " + Hex.encodeHexString(messageDigest));
 
-         pdfSignatureService.sign(document.openStream(), data.getEncoded(), output, parameters);
-         output.close();
+            final CMSSignedDataGenerator generator = padesProfile.createCMSSignedDataGenerator(contentSigner, digestCalculatorProvider, parameters, messageDigest);
 
-         DSSDocument doc = null;
+            final CMSProcessableByteArray content = new CMSProcessableByteArray(messageDigest);
 
-         if (StringUtils.isEmpty(document.getName())) {
+            CMSSignedData data = generator.generate(content, false);
+            if (tspSource != null) {
 
-            doc = new InMemoryDocument(output.toByteArray());
-         } else {
+               final CAdESProfileT cadesProfileT = new CAdESProfileT();
+               cadesProfileT.setSignatureTsa(tspSource);
+               data = cadesProfileT.extendCMSSignedData(data, null, parameters);
+            }
 
-            doc = new InMemoryDocument(output.toByteArray(), document.getName());
+            doc = session.sign(data.getEncoded());
+         } finally {
+
+            // does nothing once the signature is injected
+            session.close();
          }
 
          final PAdESProfileLTV extension = getExtensionProfile(parameters);
          if (extension != null) {
 
-            return extension.extendSignatures(doc, null, parameters);
+            try {
+
+               return extension.extendSignatures(doc, null, parameters);
+            } finally {
+
+               // the extended document is written in a new revision
+               TemporaryFileDocument.release(doc);
+            }
          } else {
 
             return doc;
@@ -0,0 +1,365 @@
+/*
+ * DSS - Digital Signature Services
+ *
+ * Copyright (C) 2013 European Commission, Directorate-General Internal Market and Services (DG MARKT), B-1049 Bruxelles/Brussel
+ *
+ * Developed by: 2013 ARHS Developments S.A. (rue Nicolas Bové 2B, L-1253 Luxembourg) http://www.arhs-developments.com
+ *
+ * This file is part of the "DSS - Digital Signature Services" project.
+ *
+ * "DSS - Digital Signature Services" is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU Lesser General Public License as published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * DSS is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * "DSS - Digital Signature Services".  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.europa.ec.markt.dss.signature.pades;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.logging.Logger;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.DeferredFileOutputStream;
+import org.apache.commons.lang.StringUtils;
+
+import eu.europa.ec.markt.dss.DigestAlgorithm;
+import eu.europa.ec.markt.dss.exception.DSSException;
+import eu.europa.ec.markt.dss.signature.DSSDocument;
+import eu.europa.ec.markt.dss.signature.InMemoryDocument;
+import eu.europa.ec.markt.dss.signature.SignatureParameters;
+import eu.europa.ec.markt.dss.signature.TemporaryFileDocument;
+import eu.europa.ec.markt.dss.signature.pdf.PDFSignatureService;
+
+/**
+ * The state of one PAdES signature between the computation of the data to be signed and the injection of the signature
+ * value. The new revision of the PDF is written once, with an empty /Contents placeholder, and kept in memory or, above
+ * {@link #MEMORY_THRESHOLD} bytes, in a temporary file. The digest of its byte ranges is the message digest of the CMS
+ * signature, and the final CMS signature is written in the placeholder at its position, without parsing the PDF again.
+ * <p>
+ * The temporary file belongs to the session until the signature is injected, then to the returned
+ * {@link TemporaryFileDocument}. A session which is abandoned must be closed with {@link #close()}.
+ */
+public class PAdESSigningSession {
+
+   private static final Logger LOG = Logger.getLogger(PAdESSigningSession.class.getName());
+
+   /**
+    * The size above which the prepared revision is written to a temporary file rather than kept in memory.
+    */
+   public static final int MEMORY_THRESHOLD = 10 * 1024 * 1024;
+
+   private static final byte[] BYTE_RANGE = "/ByteRange".getBytes();
+
+   private static final int BLOCK_SIZE = 64 * 1024;
+
+   private final DSSDocument document;
+
+   private final DigestAlgorithm digestAlgorithm;
+
+   private final Date signingDate;
+
+   private byte[] preparedData;
+
+   private File preparedFile;
+
+   private final long[] byteRange;
+
+   private final byte[] messageDigest;
+
+   private PAdESSigningSession(final DSSDocument document, final SignatureParameters parameters, final DeferredFileOutputStream prepared) throws IOException {
+
+      this.document = document;
+      this.digestAlgorithm = parameters.getDigestAlgorithm();
+      this.signingDate = parameters.getSigningDate();
+      if (prepared.isInMemory()) {
+
+         preparedData = prepared.getData();
+      } else {
+
+         preparedFile = prepared.getFile();
+      }
+      byteRange = findByteRange();
+      if (byteRange[0] != 0 || byteRange[2] + byteRange[3] != getLength() || byteRange[1] >= byteRange[2]) {
+
+         throw new DSSException("Invalid /ByteRange in the prepared PDF revision.");
+      }
+      messageDigest = digestByteRange();
+   }
+
+   /**
+    * Writes the new revision of the PDF with an empty signature and computes the digest of its byte ranges.
+    * 
+    * @param pdfSignatureService the service which creates the PDF revision
+    * @param document the PDF document to sign
+    * @param parameters the signature parameters: the signing date and the digest algorithm must not change until the
+    *           signature value is injected
+    * @return the session
+    * @throws DSSException
+    */
+   public static PAdESSigningSession prepare(final PDFSignatureService pdfSignatureService, final DSSDocument document, final SignatureParameters parameters) throws DSSException {
+
+      // the temporary file is only created when the threshold is exceeded
+      final DeferredFileOutputStream prepared = new DeferredFileOutputStream(MEMORY_THRESHOLD, "dss-pades", ".pdf", null);
+      InputStream pdfData = null;
+      PAdESSigningSession session = null;
+      try {
+
+         pdfData = document.openStream();
+         try {
+
+            pdfSignatureService.sign(pdfData, new byte[0], prepared, parameters);
+         } finally {
+
+            prepared.close();
+         }
+         session = new PAdESSigningSession(document, parameters, prepared);
+         return session;
+      } catch (IOException e) {
+
+         throw new DSSException(e);
+      } finally {
+
+         IOUtils.closeQuietly(pdfData);
+         if (session == null && !prepared.isInMemory()) {
+
+            delete(prepared.getFile());
+         }
+      }
+   }
+
+   /**
+    * Releases the session when the signature value is not injected: the temporary file of the prepared revision, if
+    * any, is deleted. Once the signature is injected the file belongs to the signed document and this method does
+    * nothing.
+    */
+   public void close() {
+
+      final File file = preparedFile;
+      preparedData = null;
+      preparedFile = null;
+      delete(file);
+   }
+
+   private static void delete(final File file) {
+
+      if (file != null && !file.delete() && file.exists()) {
+
+         LOG.warning("Cannot delete the temporary file: " + file.getAbsolutePath());
+      }
+   }
+
+   /**
+    * Indicates whether this session was prepared for the given document and parameters.
+    * 
+    * @param document
+    * @param parameters
+    * @return
+    */
+   public boolean isPreparedFor(final DSSDocument document, final SignatureParameters parameters) {
+
+      return this.document == document && digestAlgorithm == parameters.getDigestAlgorithm() && signingDate != null && signingDate.equals(parameters.getSigningDate());
+   }
+
+   /**
+    * @return the digest of the byte ranges of the prepared revision, which is the message digest of the CMS signature
+    */
+   public byte[] getMessageDigest() {
+
+      return messageDigest;
+   }
+
+   /**
+    * Writes the CMS signature in the /Contents placeholder of the prepared revision. The session cannot be used anymore
+    * afterwards.
+    * 
+    * @param cmsSignature the encoded CMS signature
+    * @return the signed PDF document, in memory or in a {@link TemporaryFileDocument} which the caller releases
+    * @throws DSSException if the signature does not fit in the placeholder
+    */
+   public DSSDocument sign(final byte[] cmsSignature) throws DSSException {
+
+      if (preparedData == null && preparedFile == null) {
+
+         throw new DSSException("The signature value has already been injected.");
+      }
+      final byte[] hex = new String(Hex.encodeHex(cmsSignature)).getBytes();
+      // the placeholder is '<' + hexadecimal digits + '>'
+      if (hex.length > byteRange[2] - byteRange[1] - 2) {
+
+         throw new DSSException("The signature (" + cmsSignature.length + " bytes) does not fit in the reserved /Contents space.");
+      }
+      try {
+
+         final DSSDocument signedDocument;
+         if (preparedData != null) {
+
+            System.arraycopy(hex, 0, preparedData, (int) byteRange[1] + 1, hex.length);
+            if (StringUtils.isEmpty(document.getName())) {
+
+               signedDocument = new InMemoryDocument(preparedData);
+            } else {
+
+               signedDocument = new InMemoryDocument(preparedData, document.getName());
+            }
+         } else {
+
+            final RandomAccessFile file = new RandomAccessFile(preparedFile, "rw");
+            try {
+
+               file.seek(byteRange[1] + 1);
+               file.write(hex);
+            } finally {
+
+               file.close();
+            }
+            signedDocument = new TemporaryFileDocument(preparedFile);
+         }
+         preparedData = null;
+         preparedFile = null;
+         return signedDocument;
+      } catch (IOException e) {
+
+         close();
+         throw new DSSException(e);
+      }
+   }
+
+   private long getLength() {
+
+      return preparedData != null ? preparedData.length : preparedFile.length();
+   }
+
+   private void read(final long position, final byte[] buffer, final int length) throws IOException {
+
+      if (preparedData != null) {
+
+         System.arraycopy(preparedData, (int) position, buffer, 0, length);
+         return;
+      }
+      final RandomAccessFile file = new RandomAccessFile(preparedFile, "r");
+      try {
+
+         file.seek(position);
+         file.readFully(buffer, 0, length);
+      } finally {
+
+         file.close();
+      }
+   }
+
+   /**
+    * The signature dictionary is in the last revision: the last /ByteRange of the PDF is the one of the new signature.
+    * The blocks are read from the end of the PDF.
+    */
+   private long[] findByteRange() throws IOException {
+
+      final long length = getLength();
+      final byte[] buffer = new byte[BLOCK_SIZE + BYTE_RANGE.length];
+      long end = length;
+      while (end > 0) {
+
+         final long start = Math.max(0, end - BLOCK_SIZE);
+         final int size = (int) (Math.min(length, end + BYTE_RANGE.length) - start);
+         read(start, buffer, size);
+         for (int ii = size - BYTE_RANGE.length; ii >= 0; ii--) {
+
+            if (matches(buffer, ii)) {
+
+               return parseByteRange(start + ii + BYTE_RANGE.length);
+            }
+         }
+         end = start;
+      }
+      throw new DSSException("No /ByteRange found in the prepared PDF revision.");
+   }
+
+   private static boolean matches(final byte[] buffer, final int offset) {
+
+      for (int ii = 0; ii < BYTE_RANGE.length; ii++) {
+
+         if (buffer[offset + ii] != BYTE_RANGE[ii]) {
+
+            return false;
+         }
+      }
+      return true;
+   }
+
+   private long[] parseByteRange(final long position) throws IOException {
+
+      final byte[] buffer = new byte[(int) Math.min(128, getLength() - position)];
+      read(position, buffer, buffer.length);
+      final String array = new String(buffer, "ISO-8859-1");
+      final int open = array.indexOf('[');
+      final int close = array.indexOf(']');
+      if (open < 0 || close < open) {
+
+         throw new DSSException("Invalid /ByteRange in the prepared PDF revision.");
+      }
+      final String[] values = StringUtils.split(array.substring(open + 1, close));
+      if (values.length != 4) {
+
+         throw new DSSException("Invalid /ByteRange in the prepared PDF revision.");
+      }
+      final long[] range = new long[4];
+      for (int ii = 0; ii < 4; ii++) {
+
+         range[ii] = Long.parseLong(values[ii]);
+      }
+      return range;
+   }
+
+   private byte[] digestByteRange() throws IOException {
+
+      final MessageDigest digest;
+      try {
+
+         digest = MessageDigest.getInstance(digestAlgorithm.getName());
+      } catch (NoSuchAlgorithmException e) {
+
+         throw new DSSException(e);
+      }
+      if (preparedData != null) {
+
+         digest.update(preparedData, (int) byteRange[0], (int) byteRange[1]);
+         digest.update(preparedData, (int) byteRange[2], (int) byteRange[3]);
+         return digest.digest();
+      }
+      final RandomAccessFile file = new RandomAccessFile(preparedFile, "r");
+      try {
+
+         final byte[] buffer = new byte[BLOCK_SIZE];
+         for (int ii = 0; ii < 4; ii += 2) {
+
+            file.seek(byteRange[ii]);
+            long remaining = byteRange[ii + 1];
+            while (remaining > 0) {
+
+               final int read = file.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+               if (read < 0) {
+
+                  throw new DSSException("Unexpected end of the prepared PDF revision.");
+               }
+               digest.update(buffer, 0, read);
+               remaining -= read;
+            }
+         }
+         return digest.digest();
+      } finally {
+
+         file.close();
+      }
+   }
+}
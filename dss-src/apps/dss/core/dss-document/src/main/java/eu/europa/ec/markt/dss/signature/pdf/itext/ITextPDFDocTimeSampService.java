@@ -21,36 +21,30 @@ package eu.europa.ec.markt.dss.signature.pdf.itext;
 
 import eu.europa.ec.markt.dss.signature.SignatureParameters;
 import eu.europa.ec.markt.dss.signature.pdf.PDFSignatureService;
-import eu.europa.ec.markt.dss.signature.pdf.PdfDict;
 import eu.europa.ec.markt.dss.signature.pdf.SignatureValidationCallback;
 
 import com.lowagie.text.DocumentException;
-import com.lowagie.text.pdf.AcroFields;
 import com.lowagie.text.pdf.PdfDate;
 import com.lowagie.text.pdf.PdfDictionary;
 import com.lowagie.text.pdf.PdfName;
-import com.lowagie.text.pdf.PdfPKCS7;
 import com.lowagie.text.pdf.PdfReader;
 import com.lowagie.text.pdf.PdfSignature;
 import com.lowagie.text.pdf.PdfSignatureAppearance;
 import com.lowagie.text.pdf.PdfStamper;
 import com.lowagie.text.pdf.PdfString;
 
-import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SignatureException;
-import java.security.cert.Certificate;
-import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.HashMap;
-import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.logging.Logger;
 
 /**
@@ -64,6 +58,8 @@ class ITextPDFDocTimeSampService implements PDFSignatureService {
 
    private int signatureSize = 12000;
 
+   private ExecutorService executorService;
+
    ITextPDFDocTimeSampService() {
    }
 
@@ -81,12 +77,29 @@ class ITextPDFDocTimeSampService implements PDFSignatureService {
       return signatureSize;
    }
 
+   /**
+    * @param executorService the executor used to verify the signatures of a document in parallel or null (default) to
+    *           verify them one after the other. The executor is not shut down by the service.
+    */
+   public void setExecutorService(ExecutorService executorService) {
+      this.executorService = executorService;
+   }
+
+   /**
+    * @return the executor used to verify the signatures of a document or null
+    */
+   public ExecutorService getExecutorService() {
+      return executorService;
+   }
+
    @SuppressWarnings({ "unchecked", "rawtypes" })
    private PdfStamper prepareStamper(InputStream pdfData, OutputStream output, SignatureParameters parameters) throws IOException {
 
       try {
-         PdfReader reader = new PdfReader(pdfData);
-         PdfStamper stamper = PdfStamper.createSignature(reader, output, '\0', null, true);
+         // a PDF read from a file is written to a temporary file rather than in memory
+         final File tempDirectory = ITextPdfUtils.getTempDirectory(pdfData);
+         PdfReader reader = ITextPdfUtils.newReader(pdfData);
+         PdfStamper stamper = PdfStamper.createSignature(reader, output, '\0', tempDirectory, true);
 
          PdfSignatureAppearance appearance = stamper.getSignatureAppearance();
          appearance.setAcro6Layers(true);
@@ -121,7 +134,7 @@ class ITextPDFDocTimeSampService implements PDFSignatureService {
    @Override
    public byte[] digest(InputStream pdfData, SignatureParameters parameters) throws IOException {
 
-      PdfStamper stp = prepareStamper(pdfData, new ByteArrayOutputStream(), parameters);
+      PdfStamper stp = prepareStamper(pdfData, new NullOutputStream(), parameters);
       PdfSignatureAppearance sap = stp.getSignatureAppearance();
 
       MessageDigest md;
@@ -138,10 +151,25 @@ class ITextPDFDocTimeSampService implements PDFSignatureService {
       }
 
       byte[] digest = md.digest();
+      close(sap);
       return digest;
 
    }
 
+   /**
+    * Completes the revision prepared to compute the digest, so that the PDF and the temporary files are released.
+    */
+   private void close(PdfSignatureAppearance sap) throws IOException {
+
+      PdfDictionary dic2 = new PdfDictionary();
+      dic2.put(PdfName.CONTENTS, new PdfString(new byte[getSignatureSize()]).setHexWriting(true));
+      try {
+         sap.close(dic2);
+      } catch (DocumentException e) {
+         throw new IOException(e);
+      }
+   }
+
    @Override
    public void sign(InputStream pdfData, byte[] signatureValue, OutputStream signedStream, SignatureParameters parameters) throws IOException {
 
@@ -168,69 +196,12 @@ class ITextPDFDocTimeSampService implements PDFSignatureService {
 
    @Override
    public void validateSignatures(InputStream input, SignatureValidationCallback callback) throws IOException, SignatureException {
-      validateSignatures(input, null, callback, new ArrayList<String>());
-   }
-
-   @SuppressWarnings("unchecked")
-   private void validateSignatures(InputStream input, PdfDict outerCatalog, SignatureValidationCallback callback, List<String> alreadyLoadedRevisions) throws IOException, SignatureException {
-
-      PdfReader reader = new PdfReader(input);
-      AcroFields af = reader.getAcroFields();
-
-      /*
-       * Search the whole document of a signature
-       */
-      ArrayList<String> names = af.getSignatureNames();
-
-      LOG.info(names.size() + " signature(s)");
-      // For every signature :
-      for (String name : names) {
-
-         // Affichage du nom
-         LOG.info("Signature name: " + name);
-         LOG.info("Signature covers whole document: " + af.signatureCoversWholeDocument(name));
-         // Affichage sur les revision - version
-         LOG.info("Document revision: " + af.getRevision(name) + " of " + af.getTotalRevisions());
-
-         /*
-          * We are only interested in the validation of signature that covers the whole document.
-          */
-         if (af.signatureCoversWholeDocument(name)) {
-
-            PdfPKCS7 pk = af.verifySignature(name);
-            Calendar cal = pk.getSignDate();
-            Certificate pkc[] = pk.getCertificates();
-
-            PdfDict signatureDictionary = new ITextPdfDict(af.getSignatureDictionary(name));
-            String revisionName = Integer.toString(af.getRevision(name));
-            if (!alreadyLoadedRevisions.contains(revisionName)) {
-               callback.validate(new ITextPdfDict(reader.getCatalog()), outerCatalog, pk.getSigningCertificate(), cal != null ? cal.getTime() : null, pkc, signatureDictionary,
-                        new ITextPdfSignatureInfo(pk));
-               alreadyLoadedRevisions.add(revisionName);
-            }
-
-         } else {
-
-            PdfDict catalog = new ITextPdfDict(reader.getCatalog());
-
-            /*
-             * We open the version of the document that was protected by the signature
-             */
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            InputStream ip = af.extractRevision(name);
-            IOUtils.copy(ip, out);
-            out.close();
-            ip.close();
-
-            /*
-             * You can sign a PDF document with only one signature. So when we want the multiple signatures, the
-             * signatures are appended sequentially to the end of the document. The recursive call helps to get the
-             * signature from the original document.
-             */
-            validateSignatures(new ByteArrayInputStream(out.toByteArray()), catalog, callback, alreadyLoadedRevisions);
 
-         }
+      PdfReader reader = ITextPdfUtils.newReader(input);
+      try {
+         new ITextPdfRevisionIndex(reader, executorService).validateSignatures(callback);
+      } finally {
+         reader.close();
       }
-
    }
 }
@@ -23,6 +23,7 @@ package eu.europa.ec.markt.dss.signature.pdf.itext;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
 
 import eu.europa.ec.markt.dss.signature.pdf.PDFSignatureService;
 import eu.europa.ec.markt.dss.signature.pdf.PdfArray;
@@ -34,6 +35,24 @@ import eu.europa.ec.markt.dss.signature.pdf.PdfWriter;
 
 public class ITextPdfObjFactory extends PdfObjFactory {
 
+	private ExecutorService executorService;
+
+	/**
+	 * @param executorService the executor shared by the signature services created by this factory to verify the
+	 *           signatures of a document in parallel, or null (default) to verify them one after the other. The executor
+	 *           is not shut down by the factory.
+	 */
+	public void setExecutorService(ExecutorService executorService) {
+		this.executorService = executorService;
+	}
+
+	/**
+	 * @return the executor shared by the signature services or null
+	 */
+	public ExecutorService getExecutorService() {
+		return executorService;
+	}
+
 	@Override
 	public PdfArray newArray() {
 		return new ITextPdfArray();
@@ -62,12 +81,16 @@ public class ITextPdfObjFactory extends PdfObjFactory {
 	
 	@Override
 	public PDFSignatureService newPAdESSignatureService() {
-		return new ITextPDFSignatureService();
+		ITextPDFSignatureService service = new ITextPDFSignatureService();
+		service.setExecutorService(executorService);
+		return service;
 	}
 	
 	@Override
 	public PDFSignatureService newTimestampSignatureService() {
-		return new ITextPDFDocTimeSampService();
+		ITextPDFDocTimeSampService service = new ITextPDFDocTimeSampService();
+		service.setExecutorService(executorService);
+		return service;
 	}
 
 }
@@ -31,7 +31,7 @@ class ITextPdfReader implements PdfReader {
 	com.lowagie.text.pdf.PdfReader wrapped;
 
 	ITextPdfReader(InputStream input) throws IOException {
-		this.wrapped = new com.lowagie.text.pdf.PdfReader(input);
+		this.wrapped = ITextPdfUtils.newReader(input);
 	}
 
 	@Override
@@ -0,0 +1,369 @@
+/*
+ * DSS - Digital Signature Services
+ *
+ * Copyright (C) 2013 European Commission, Directorate-General Internal Market and Services (DG MARKT), B-1049 Bruxelles/Brussel
+ *
+ * Developed by: 2013 ARHS Developments S.A. (rue Nicolas Bové 2B, L-1253 Luxembourg) http://www.arhs-developments.com
+ *
+ * This file is part of the "DSS - Digital Signature Services" project.
+ *
+ * "DSS - Digital Signature Services" is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU Lesser General Public License as published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * DSS is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * "DSS - Digital Signature Services".  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.europa.ec.markt.dss.signature.pdf.itext;
+
+import java.io.IOException;
+import java.security.SignatureException;
+import java.security.cert.Certificate;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import com.lowagie.text.pdf.AcroFields;
+import com.lowagie.text.pdf.PdfArray;
+import com.lowagie.text.pdf.PdfDictionary;
+import com.lowagie.text.pdf.PdfName;
+import com.lowagie.text.pdf.PdfPKCS7;
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.RandomAccessFileOrArray;
+
+import eu.europa.ec.markt.dss.signature.pdf.PdfDict;
+import eu.europa.ec.markt.dss.signature.pdf.SignatureValidationCallback;
+
+/**
+ * Index of the signed revisions of a PDF document, built in one pass over the signature fields of the last revision:
+ * for each signature, its revision number, its /ByteRange and the end offset of the revision it covers (the end of its
+ * last byte range).<br>
+ * The signatures are verified on bounded views of the document, without copying the revisions: each verification has
+ * its own reader on its own view of the data, so that they can run in parallel on the given executor.
+ */
+final class ITextPdfRevisionIndex {
+
+   private static final Logger LOG = Logger.getLogger(ITextPdfRevisionIndex.class.getName());
+
+   /**
+    * A signed revision of the document.
+    */
+   static final class Revision {
+
+      private final String signatureName;
+
+      private final int number;
+
+      private final int[] byteRange;
+
+      private final boolean coversWholeDocument;
+
+      private Revision(final String signatureName, final int number, final int[] byteRange, final boolean coversWholeDocument) {
+
+         this.signatureName = signatureName;
+         this.number = number;
+         this.byteRange = byteRange;
+         this.coversWholeDocument = coversWholeDocument;
+      }
+
+      String getSignatureName() {
+
+         return signatureName;
+      }
+
+      int getNumber() {
+
+         return number;
+      }
+
+      int[] getByteRange() {
+
+         return byteRange;
+      }
+
+      /**
+       * @return the length of the revision signed by this signature: the end of the last byte range
+       */
+      int getLength() {
+
+         return byteRange[byteRange.length - 2] + byteRange[byteRange.length - 1];
+      }
+
+      boolean coversWholeDocument() {
+
+         return coversWholeDocument;
+      }
+   }
+
+   /**
+    * The result of the verification of one signature.
+    */
+   private static final class Verification {
+
+      /**
+       * The reader of the revision: the objects of the catalog and of the signature dictionary are read lazily from it.
+       */
+      private PdfReader revisionReader;
+
+      private PdfPKCS7 pk;
+
+      private PdfDictionary catalog;
+
+      private PdfDictionary signatureDictionary;
+   }
+
+   private final PdfReader reader;
+
+   private final ExecutorService executorService;
+
+   private final List<Revision> revisions = new ArrayList<Revision>();
+
+   /**
+    * The default constructor for ITextPdfRevisionIndex.
+    * 
+    * @param reader the reader of the whole document
+    * @param executorService the executor used to verify the signatures in parallel or null to verify them one after the
+    *           other in the calling thread. The executor is not shut down by the index.
+    */
+   @SuppressWarnings("unchecked")
+   ITextPdfRevisionIndex(final PdfReader reader, final ExecutorService executorService) {
+
+      this.reader = reader;
+      this.executorService = executorService;
+      final AcroFields af = reader.getAcroFields();
+      final List<String> names = af.getSignatureNames();
+      for (final String name : names) {
+
+         final PdfArray array = af.getSignatureDictionary(name).getAsArray(PdfName.BYTERANGE);
+         final int[] byteRange = new int[array.size()];
+         for (int ii = 0; ii < byteRange.length; ii++) {
+
+            byteRange[ii] = array.getAsNumber(ii).intValue();
+         }
+         revisions.add(new Revision(name, af.getRevision(name), byteRange, af.signatureCoversWholeDocument(name)));
+      }
+      Collections.sort(revisions, new Comparator<Revision>() {
+
+         @Override
+         public int compare(final Revision revision1, final Revision revision2) {
+
+            return revision1.getNumber() - revision2.getNumber();
+         }
+      });
+      LOG.info(revisions.size() + " signature(s) in " + af.getTotalRevisions() + " revision(s)");
+   }
+
+   /**
+    * Verifies all the signatures, in parallel if an executor is set, then calls the callback for each of them, from the
+    * oldest to the newest, in the calling thread. The catalog given to the callback is the one of the revision covered
+    * by the signature; the outer catalog is the one of the whole document, unless the signature covers the whole
+    * document. The readers of the revisions are closed once all the callbacks are done.
+    * 
+    * @param callback
+    * @throws IOException
+    * @throws SignatureException
+    */
+   void validateSignatures(final SignatureValidationCallback callback) throws IOException, SignatureException {
+
+      if (revisions.isEmpty()) {
+
+         return;
+      }
+      final List<Verification> verifications = new ArrayList<Verification>();
+      try {
+
+         verify(verifications);
+         final PdfDict outerCatalog = new ITextPdfDict(reader.getCatalog());
+         for (int ii = 0; ii < revisions.size(); ii++) {
+
+            final Revision revision = revisions.get(ii);
+            final Verification verification = verifications.get(ii);
+            LOG.info("Signature name: " + revision.getSignatureName() + ", revision " + revision.getNumber() + ", covers whole document: " + revision.coversWholeDocument());
+
+            final PdfPKCS7 pk = verification.pk;
+            final Calendar cal = pk.getSignDate();
+            final Certificate pkc[] = pk.getCertificates();
+            callback.validate(new ITextPdfDict(verification.catalog), revision.coversWholeDocument() ? null : outerCatalog, pk.getSigningCertificate(), cal != null ? cal.getTime() : null,
+                     pkc, new ITextPdfDict(verification.signatureDictionary), new ITextPdfSignatureInfo(pk));
+         }
+      } finally {
+
+         for (final Verification verification : verifications) {
+
+            verification.revisionReader.close();
+         }
+      }
+   }
+
+   /**
+    * Verifies the signatures of all the revisions and adds the verifications to the given list, in the order of the
+    * revisions. If a verification fails, the list holds the verifications that succeeded so that their readers can be
+    * closed.
+    */
+   private void verify(final List<Verification> verifications) throws IOException, SignatureException {
+
+      final List<Callable<Verification>> tasks = new ArrayList<Callable<Verification>>();
+      for (final Revision revision : revisions) {
+
+         // each task has its own view of the data: a RandomAccessFileOrArray is not thread-safe
+         final RandomAccessFileOrArray view = new BoundedRandomAccessFileOrArray(reader.getSafeFile(), revision.getLength());
+         tasks.add(new Callable<Verification>() {
+
+            @Override
+            public Verification call() throws IOException {
+
+               return verify(view, revision);
+            }
+         });
+      }
+      if (executorService == null || tasks.size() == 1) {
+
+         for (final Callable<Verification> task : tasks) {
+
+            try {
+
+               verifications.add(task.call());
+            } catch (IOException e) {
+
+               throw e;
+            } catch (Exception e) {
+
+               throw unwrap(e);
+            }
+         }
+         return;
+      }
+      final List<Future<Verification>> futures;
+      try {
+
+         futures = executorService.invokeAll(tasks);
+      } catch (InterruptedException e) {
+
+         Thread.currentThread().interrupt();
+         throw new IOException(e);
+      }
+      // all the results are collected before a failure is reported: the readers of the other revisions must be closed
+      Throwable failure = null;
+      for (final Future<Verification> future : futures) {
+
+         try {
+
+            verifications.add(future.get());
+         } catch (ExecutionException e) {
+
+            if (failure == null) {
+
+               failure = e.getCause();
+            }
+         } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+            if (failure == null) {
+
+               failure = new IOException(e);
+            }
+         }
+      }
+      if (failure instanceof IOException) {
+
+         throw (IOException) failure;
+      }
+      if (failure != null) {
+
+         throw unwrap(failure);
+      }
+   }
+
+   private static RuntimeException unwrap(final Throwable cause) {
+
+      if (cause instanceof RuntimeException) {
+
+         return (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+
+         throw (Error) cause;
+      }
+      return new RuntimeException(cause);
+   }
+
+   /**
+    * Opens the revision covered by the signature in partial mode on the given view and verifies the signature. The
+    * reader of the revision is left open in the returned verification, unless the verification fails.
+    */
+   private static Verification verify(final RandomAccessFileOrArray view, final Revision revision) throws IOException {
+
+      view.reOpen();
+      final PdfReader revisionReader = new PdfReader(view, null);
+      boolean verified = false;
+      try {
+
+         final AcroFields af = revisionReader.getAcroFields();
+         final Verification verification = new Verification();
+         verification.revisionReader = revisionReader;
+         verification.pk = af.verifySignature(revision.getSignatureName());
+         verification.signatureDictionary = af.getSignatureDictionary(revision.getSignatureName());
+         verification.catalog = revisionReader.getCatalog();
+         verified = true;
+         return verification;
+      } finally {
+
+         if (!verified) {
+
+            revisionReader.close();
+         }
+      }
+   }
+
+   /**
+    * A view of the first bytes of a PDF: the data are shared with the original, not copied.
+    */
+   private static final class BoundedRandomAccessFileOrArray extends RandomAccessFileOrArray {
+
+      private final int limit;
+
+      BoundedRandomAccessFileOrArray(final RandomAccessFileOrArray file, final int limit) {
+
+         super(file);
+         this.limit = limit;
+      }
+
+      @Override
+      public int length() throws IOException {
+
+         return Math.min(limit, super.length());
+      }
+
+      @Override
+      public int read() throws IOException {
+
+         if (getFilePointer() >= limit) {
+
+            return -1;
+         }
+         return super.read();
+      }
+
+      @Override
+      public int read(final byte[] b, final int off, final int len) throws IOException {
+
+         final int remaining = limit - getFilePointer();
+         if (remaining <= 0) {
+
+            return -1;
+         }
+         return super.read(b, off, Math.min(len, remaining));
+      }
+   }
+}
@@ -0,0 +1,90 @@
+/*
+ * DSS - Digital Signature Services
+ *
+ * Copyright (C) 2013 European Commission, Directorate-General Internal Market and Services (DG MARKT), B-1049 Bruxelles/Brussel
+ *
+ * Developed by: 2013 ARHS Developments S.A. (rue Nicolas Bové 2B, L-1253 Luxembourg) http://www.arhs-developments.com
+ *
+ * This file is part of the "DSS - Digital Signature Services" project.
+ *
+ * "DSS - Digital Signature Services" is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU Lesser General Public License as published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * DSS is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * "DSS - Digital Signature Services".  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.europa.ec.markt.dss.signature.pdf.itext;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.RandomAccessFileOrArray;
+
+import eu.europa.ec.markt.dss.signature.FileInputStream_;
+
+/**
+ * Opens the PDF documents for iText. A document read from a file ({@code FileDocument}) is opened in partial mode on
+ * a memory-mapped file: only the objects which are needed are loaded. Any other stream is loaded in memory.
+ */
+final class ITextPdfUtils {
+
+   private ITextPdfUtils() {
+   }
+
+   /**
+    * Returns the file read by the given stream, or null if the stream does not read a file.
+    * 
+    * @param input
+    * @return
+    */
+   static File getFile(final InputStream input) {
+
+      if (input instanceof FileInputStream_) {
+
+         return ((FileInputStream_) input).getFile();
+      }
+      return null;
+   }
+
+   /**
+    * Creates a reader for the given PDF data. When the data come from a file, the stream is closed and the file is
+    * read in partial mode. The reader must be closed to release the file.
+    * 
+    * @param input
+    * @return
+    * @throws IOException
+    */
+   static PdfReader newReader(final InputStream input) throws IOException {
+
+      final File file = getFile(input);
+      if (file == null) {
+
+         return new PdfReader(input);
+      }
+      input.close();
+      return new PdfReader(new RandomAccessFileOrArray(file.getPath()), null);
+   }
+
+   /**
+    * Returns the directory where the stamper writes the new revision of a PDF read from a file, so that the revision
+    * is not kept in memory, or null for a PDF loaded in memory.
+    * 
+    * @param input
+    * @return
+    */
+   static File getTempDirectory(final InputStream input) {
+
+      if (getFile(input) == null) {
+
+         return null;
+      }
+      return new File(System.getProperty("java.io.tmpdir"));
+   }
+}
@@ -0,0 +1,374 @@
+package eu.europa.ec.markt.dss.signature.pdf.pdfbox;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.apache.commons.io.input.TeeInputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.io.RandomAccess;
+import org.apache.pdfbox.io.RandomAccessFile;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.interactive.digitalsignature.PDSignature;
+import org.apache.pdfbox.pdmodel.interactive.digitalsignature.SignatureInterface;
+import org.apache.pdfbox.pdmodel.interactive.form.PDAcroForm;
+import org.apache.pdfbox.pdmodel.interactive.form.PDField;
+
+import eu.europa.ec.markt.dss.DSSUtils;
+import eu.europa.ec.markt.dss.signature.FileInputStream_;
+import eu.europa.ec.markt.dss.signature.SignatureParameters;
+import eu.europa.ec.markt.dss.signature.pdf.PDFSignatureService;
+import eu.europa.ec.markt.dss.signature.pdf.PdfDict;
+import eu.europa.ec.markt.dss.signature.pdf.SignatureValidationCallback;
+
+/**
+ * Common part of the PDFBox implementations of PDFSignatureService. The services keep no state: each call copies the
+ * document once to its own temporary file, to which the new revision is appended, and the signed ranges are digested
+ * while they are read back from that file.
+ */
+abstract class AbstractPdfBoxSignatureService implements PDFSignatureService {
+
+	private static final Logger LOG = Logger.getLogger(AbstractPdfBoxSignatureService.class.getName());
+
+	private static final COSName SIG = COSName.getPDFName("Sig");
+
+	/**
+	 * Sets the filter, the sub-filter and the type of the new signature dictionary.
+	 * 
+	 * @param signature
+	 */
+	protected abstract void prepareSignature(PDSignature signature);
+
+	@Override
+	public byte[] digest(InputStream pdfData, SignatureParameters parameters) throws IOException {
+
+		final MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance(parameters.getDigestAlgorithm().getName());
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException("No " + parameters.getDigestAlgorithm().getName() + " on this JRE!");
+		}
+		final File file = write(pdfData, parameters, new SignatureInterface() {
+
+			@Override
+			public byte[] sign(InputStream content) throws org.apache.pdfbox.exceptions.SignatureException, IOException {
+
+				final byte[] buffer = new byte[8192];
+				int count;
+				while ((count = content.read(buffer)) != -1) {
+					digest.update(buffer, 0, count);
+				}
+				return new byte[0];
+			}
+		});
+		file.delete();
+		return digest.digest();
+	}
+
+	@Override
+	public void sign(InputStream pdfData, final byte[] signatureValue, OutputStream signedStream, SignatureParameters parameters)
+			throws IOException {
+
+		final File file = write(pdfData, parameters, new SignatureInterface() {
+
+			@Override
+			public byte[] sign(InputStream content) throws org.apache.pdfbox.exceptions.SignatureException, IOException {
+
+				return signatureValue;
+			}
+		});
+		InputStream input = null;
+		try {
+			input = new FileInputStream(file);
+			IOUtils.copy(input, signedStream);
+		} finally {
+			DSSUtils.closeQuietly(input);
+			file.delete();
+		}
+	}
+
+	/**
+	 * Writes the document followed by a new revision holding the signature to a temporary file. The document is copied
+	 * to the file while it is parsed.
+	 * 
+	 * @param pdfData
+	 * @param parameters
+	 * @param signatureInterface called with the signed ranges of the new revision
+	 * @return the temporary file, to be deleted by the caller
+	 * @throws IOException
+	 */
+	private File write(InputStream pdfData, SignatureParameters parameters, SignatureInterface signatureInterface) throws IOException {
+
+		final File file = File.createTempFile("dss-pdfbox", ".pdf");
+		FileOutputStream output = null;
+		FileInputStream input = null;
+		PDDocument document = null;
+		boolean written = false;
+		try {
+			output = new FileOutputStream(file);
+			final InputStream tee = new TeeInputStream(pdfData, output);
+			document = PDDocument.load(new CloseShieldInputStream(tee));
+			// the parser may stop before the end of the document
+			IOUtils.copy(tee, new NullOutputStream());
+
+			final PDSignature signature = new PDSignature();
+			prepareSignature(signature);
+			final Calendar cal = Calendar.getInstance();
+			cal.setTime(parameters.getSigningDate());
+			signature.setSignDate(cal);
+			document.addSignature(signature, signatureInterface);
+
+			// the writer seeks in the output to fill the /ByteRange and the /Contents, and reads the signed ranges back
+			input = new FileInputStream(file);
+			PdfBoxCOSWriterDSS.saveIncremental(document, input, output, DigestUtils.md5Hex(parameters.getSigningDate().toString().getBytes()));
+			written = true;
+			return file;
+		} catch (IOException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException(e);
+		} finally {
+			DSSUtils.closeQuietly(input);
+			DSSUtils.closeQuietly(output);
+			if (document != null) {
+				document.close();
+			}
+			if (!written) {
+				file.delete();
+			}
+		}
+	}
+
+	/**
+	 * Calls the callback for each signature of the document, from the oldest to the newest. As with iText, the catalog
+	 * is the one of the revision covered by the signature, and the outer catalog is the one of the whole document
+	 * unless the signature covers the whole document.<br>
+	 * Only the whole document is loaded in memory: the validated signatures read the streams of its DSS dictionary after
+	 * this method returns. Each older revision is loaded with a scratch file and closed (its scratch file deleted) right
+	 * after its callback: its dictionaries can still be read, but not its streams. The signed ranges are checked before
+	 * the temporary copy of the document is deleted.
+	 */
+	@Override
+	public void validateSignatures(InputStream input, SignatureValidationCallback callback) throws IOException {
+
+		final boolean temporary = !(input instanceof FileInputStream_);
+		final File file = toFile(input);
+		PDDocument document = null;
+		try {
+			final long length = file.length();
+			document = load(file, length);
+			final PdfDict outerCatalog = new PdfBoxDict(document.getDocumentCatalog().getCOSDictionary(), document);
+
+			final List<PDSignature> signatures = getSignatures(document);
+			LOG.fine(signatures.size() + " signature(s)");
+			for (final PDSignature signature : signatures) {
+
+				final long revisionLength = getRevisionLength(signature);
+				final boolean coversWholeDocument = revisionLength == length;
+				LOG.fine("Signature covers whole document: " + coversWholeDocument);
+
+				final PdfBoxSignatureInfo info = new PdfBoxSignatureInfo(document, signature, file);
+				final PdfDict signatureDictionary = new PdfBoxDict(signature.getDictionary(), document);
+				if (coversWholeDocument) {
+					final PdfDict catalog = new PdfBoxDict(document.getDocumentCatalog().getCOSDictionary(), document);
+					callback.validate(catalog, null, info.getSigningCertificate(), info.getSigningDate(), info.getCertificateChain(), signatureDictionary,
+							info);
+					continue;
+				}
+				final File scratchFile = File.createTempFile("dss-pdfbox", ".scratch");
+				final RandomAccessFile scratch = new RandomAccessFile(scratchFile, "rw");
+				PDDocument revision = null;
+				try {
+					revision = load(file, revisionLength, scratch);
+					final PdfDict catalog = new PdfBoxDict(revision.getDocumentCatalog().getCOSDictionary(), revision);
+					callback.validate(catalog, outerCatalog, info.getSigningCertificate(), info.getSigningDate(), info.getCertificateChain(),
+							signatureDictionary, info);
+				} finally {
+					if (revision != null) {
+						close(revision);
+					}
+					scratch.close();
+					if (!scratchFile.delete()) {
+						LOG.warning("Cannot delete the scratch file " + scratchFile.getAbsolutePath());
+					}
+				}
+			}
+		} finally {
+			if (document != null) {
+				close(document);
+			}
+			if (temporary && !file.delete()) {
+				LOG.warning("Cannot delete the temporary file " + file.getAbsolutePath());
+			}
+		}
+	}
+
+	/**
+	 * Returns the file read by the stream. A stream which does not read a file is copied to a temporary file, which the
+	 * caller deletes once the signatures are validated.
+	 */
+	private static File toFile(InputStream input) throws IOException {
+
+		if (input instanceof FileInputStream_) {
+			input.close();
+			return ((FileInputStream_) input).getFile();
+		}
+		final File file = File.createTempFile("dss-pdfbox", ".pdf");
+		boolean copied = false;
+		final OutputStream output = new FileOutputStream(file);
+		try {
+			IOUtils.copy(input, output);
+			copied = true;
+		} finally {
+			DSSUtils.closeQuietly(output);
+			if (!copied) {
+				file.delete();
+			}
+		}
+		return file;
+	}
+
+	/**
+	 * Loads the first bytes of the file in memory: the whole document or one of its revisions.
+	 */
+	private static PDDocument load(File file, long length) throws IOException {
+
+		return load(file, length, null);
+	}
+
+	/**
+	 * Loads the first bytes of the file: the whole document or one of its revisions. The content of the streams is kept
+	 * in the scratch file, or in memory if the scratch file is null.
+	 */
+	private static PDDocument load(File file, long length, RandomAccess scratchFile) throws IOException {
+
+		final InputStream input = new BoundedInputStream(new BufferedInputStream(new FileInputStream(file)), length);
+		try {
+			return PDDocument.load(input, scratchFile);
+		} finally {
+			DSSUtils.closeQuietly(input);
+		}
+	}
+
+	private static void close(PDDocument document) {
+
+		try {
+			document.close();
+		} catch (IOException e) {
+			LOG.warning("Cannot close the document: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * @return the signatures of the signature fields, sorted by the length of the revision they cover
+	 */
+	private static List<PDSignature> getSignatures(PDDocument document) throws IOException {
+
+		final List<PDSignature> signatures = new ArrayList<PDSignature>();
+		final PDAcroForm acroForm = document.getDocumentCatalog().getAcroForm();
+		if (acroForm == null) {
+			return signatures;
+		}
+		for (final Object field : acroForm.getFields()) {
+			final COSDictionary dictionary = ((PDField) field).getDictionary();
+			if (SIG.equals(dictionary.getDictionaryObject(COSName.getPDFName("FT")))) {
+				final COSBase value = dictionary.getDictionaryObject(COSName.getPDFName("V"));
+				if (value instanceof COSDictionary) {
+					signatures.add(new PDSignature((COSDictionary) value));
+				}
+			}
+		}
+		Collections.sort(signatures, new Comparator<PDSignature>() {
+
+			@Override
+			public int compare(PDSignature signature1, PDSignature signature2) {
+				final long length1 = getRevisionLength(signature1);
+				final long length2 = getRevisionLength(signature2);
+				return length1 < length2 ? -1 : (length1 == length2 ? 0 : 1);
+			}
+		});
+		return signatures;
+	}
+
+	/**
+	 * @return the end of the last signed range
+	 */
+	private static long getRevisionLength(PDSignature signature) {
+
+		final int[] byteRange = signature.getByteRange();
+		return (long) byteRange[byteRange.length - 2] + byteRange[byteRange.length - 1];
+	}
+
+	/**
+	 * Reads the first bytes of a stream. Unlike COSFilterInputStream, the limit is not bound to an int.
+	 */
+	private static final class BoundedInputStream extends FilterInputStream {
+
+		private long remaining;
+
+		BoundedInputStream(InputStream input, long limit) {
+			super(input);
+			this.remaining = limit;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (remaining <= 0) {
+				return -1;
+			}
+			final int b = super.read();
+			if (b >= 0) {
+				remaining--;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (remaining <= 0) {
+				return -1;
+			}
+			final int read = super.read(b, off, (int) Math.min(len, remaining));
+			if (read > 0) {
+				remaining -= read;
+			}
+			return read;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			final long skipped = super.skip(Math.min(n, remaining));
+			remaining -= skipped;
+			return skipped;
+		}
+
+		@Override
+		public int available() throws IOException {
+			return (int) Math.min(super.available(), remaining);
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+	}
+}
@@ -1,7 +1,6 @@
 package eu.europa.ec.markt.dss.signature.pdf.pdfbox;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedInputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -649,29 +648,18 @@ public class PdfBoxCOSWriterDSS implements ICOSVisitor {
 			}
 
 			getStandardOutput().setPos(0);
-			// Begin - extracting document
-			InputStream filterInputStream = new COSFilterInputStream(in,
-					new int[] { 0, signaturePosition[0], signaturePosition[1],
-							left });
-			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			// the signed ranges are streamed to the signature interface
+			InputStream filterInputStream = new COSFilterInputStream(
+					new BufferedInputStream(in), new int[] { 0,
+							signaturePosition[0], signaturePosition[1], left });
+			byte[] sign;
 			try {
-				byte[] buffer = new byte[1024];
-				int c;
-				while ((c = filterInputStream.read(buffer)) != -1) {
-					bytes.write(buffer, 0, c);
-				}
+				SignatureInterface signatureInterface = doc
+						.getSignatureInterface();
+				sign = signatureInterface.sign(filterInputStream);
 			} finally {
-				if (filterInputStream != null) {
-					filterInputStream.close();
-				}
+				filterInputStream.close();
 			}
-
-			byte[] pdfContent = bytes.toByteArray();
-			// End - extracting document
-
-			SignatureInterface signatureInterface = doc.getSignatureInterface();
-			byte[] sign = signatureInterface.sign(new ByteArrayInputStream(
-					pdfContent));
 			String signature = new COSString(sign).getHexString();
 			int leftSignaturerange = signaturePosition[1]
 					- signaturePosition[0] - signature.length();
@@ -1,20 +1,25 @@
 package eu.europa.ec.markt.dss.signature.pdf.pdfbox;
 
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.security.SignatureException;
+import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
 import java.util.Date;
 
-import org.apache.pdfbox.cos.COSArray;
+import org.apache.commons.io.IOUtils;
 import org.apache.pdfbox.pdfwriter.COSFilterInputStream;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.interactive.digitalsignature.PDSignature;
 import org.bouncycastle.cms.CMSException;
-import org.bouncycastle.crypto.tls.Certificate;
 
 import eu.europa.ec.markt.dss.DSSUtils;
-import eu.europa.ec.markt.dss.signature.InMemoryDocument;
+import eu.europa.ec.markt.dss.exception.DSSException;
+import eu.europa.ec.markt.dss.signature.DSSDocument;
+import eu.europa.ec.markt.dss.signature.MimeType;
 import eu.europa.ec.markt.dss.signature.pdf.PdfSignatureInfo;
 import eu.europa.ec.markt.dss.validation.cades.CAdESSignature;
 
@@ -22,31 +27,30 @@ public class PdfBoxSignatureInfo implements PdfSignatureInfo {
 
    private PDSignature signature;
 
-   @SuppressWarnings("unused")
-   private PDDocument document;
-
-   private InputStream inputStream;
+   private File file;
 
    private CAdESSignature cades;
 
-   @SuppressWarnings("unused")
-   private boolean verified;
+   private boolean integrity;
+
+   private Exception integrityFailure;
 
-   public PdfBoxSignatureInfo(PDDocument document, PDSignature signature, InputStream inputStream) throws IOException {
+   /**
+    * @param document the document holding the signature dictionary
+    * @param signature
+    * @param file the file of the signed document, the signed ranges are read from it and checked before the constructor
+    *           returns: the file may be a temporary copy deleted once the signatures of the document are processed
+    * @throws IOException
+    */
+   public PdfBoxSignatureInfo(PDDocument document, PDSignature signature, File file) throws IOException {
 
       try {
          this.signature = signature;
-         this.inputStream = inputStream;
+         this.file = file;
 
          PdfBoxDict sign = new PdfBoxDict(signature.getDictionary(), document);
-
-         final COSArray array = (COSArray) signature.getDictionary().getDictionaryObject("ByteRange");
-
-         final byte[] cms = sign.get("Contents");
-         System.out.println(cms.length);
-         System.out.println(array);
-
-         cades = new CAdESSignature(cms);
+         cades = new CAdESSignature(sign.get("Contents"));
+         checkIntegrity();
 
       } catch (CMSException e) {
          throw new IOException(e);
@@ -54,24 +58,32 @@ public class PdfBoxSignatureInfo implements PdfSignatureInfo {
 
    }
 
-   @Override
-   public boolean verify() throws SignatureException {
+   private void checkIntegrity() {
 
-      COSFilterInputStream stream = null;
+      InputStream stream = null;
       try {
 
-         stream = new COSFilterInputStream(inputStream, signature.getByteRange());
+         stream = new COSFilterInputStream(new BufferedInputStream(new FileInputStream(file)), signature.getByteRange());
 
-         return cades.checkIntegrity(new InMemoryDocument(stream.toByteArray()));
+         integrity = cades.checkIntegrity(new SignedRanges(stream));
 
       } catch (Exception e) {
-         throw new RuntimeException(e);
+         integrityFailure = e;
       } finally {
 
          DSSUtils.closeQuietly(stream);
       }
    }
 
+   @Override
+   public boolean verify() throws SignatureException {
+
+      if (integrityFailure != null) {
+         throw new RuntimeException(integrityFailure);
+      }
+      return integrity;
+   }
+
    public X509Certificate getSigningCertificate() {
       return cades.getSigningCertificate();
    }
@@ -90,4 +102,50 @@ public class PdfBoxSignatureInfo implements PdfSignatureInfo {
       return signature.getSignDate() != null ? signature.getSignDate().getTime() : null;
    }
 
+   /**
+    * The signed ranges of the document, given to the CMS verification as a stream which is read once.
+    */
+   private class SignedRanges implements DSSDocument {
+
+      private final InputStream stream;
+
+      SignedRanges(InputStream stream) {
+         this.stream = stream;
+      }
+
+      @Override
+      public InputStream openStream() throws IOException {
+         return stream;
+      }
+
+      @Override
+      public byte[] getBytes() throws DSSException {
+         try {
+            return IOUtils.toByteArray(stream);
+         } catch (IOException e) {
+            throw new DSSException(e);
+         }
+      }
+
+      @Override
+      public String getName() {
+         return file.getName();
+      }
+
+      @Override
+      public String getAbsolutePath() {
+         return file.getAbsolutePath();
+      }
+
+      @Override
+      public MimeType getMimeType() {
+         return MimeType.BINARY;
+      }
+
+      @Override
+      public void save(String filePath) {
+         throw new DSSException("The signed ranges of " + file.getAbsolutePath() + " cannot be saved");
+      }
+   }
+
 }
@@ -3,14 +3,14 @@ package eu.europa.ec.markt.dss.signature.xades;
 import eu.europa.ec.markt.dss.exception.DSSException;
 import eu.europa.ec.markt.dss.signature.DSSDocument;
 import eu.europa.ec.markt.dss.signature.DSSSignatureUtils;
-import eu.europa.ec.markt.dss.signature.InMemoryDocument;
 import eu.europa.ec.markt.dss.signature.SignatureParameters;
 import eu.europa.ec.markt.tsl.jaxb.xades.QualifyingPropertiesType;
 import eu.europa.ec.markt.tsl.jaxb.xmldsig.DigestMethodType;
 import eu.europa.ec.markt.tsl.jaxb.xmldsig.ReferenceType;
 
 import javax.xml.crypto.dsig.CanonicalizationMethod;
-import javax.xml.transform.TransformerFactoryConfigurationError;
+
+import org.w3c.dom.Document;
 
 import java.io.IOException;
 import java.security.NoSuchAlgorithmException;
@@ -83,31 +83,25 @@ class DetachedSignatureBuilder extends SignatureBuilder {
       referenceT1.setURI(fileName != null ? fileName : "detached-file");
       referenceT1.setId("detached-ref-id");
 
-      referenceT1.setDigestValue(createDigest(origDoc.getBytes()));
+      referenceT1.setDigestValue(getDocumentDigest(origDoc));
       return referenceT1;
    }
 
    /**
-    * Adds signature value to the signature and returns XML signature (InMemoryDocument)
+    * Adds signature value to the signature and returns the XML signature as a DOM document
     * 
     * @param signatureValue
     * @return
     * @throws DSSException
     */
    @Override
-   public DSSDocument signDocument(final byte[] signatureValue) throws DSSException {
+   public Document buildSignedDocument(final byte[] signatureValue) throws DSSException {
 
       if (!built) {
 
          build();
       }
       signatureT.getSignatureValue().setValue(DSSSignatureUtils.convertToXmlDSig(params.getEncryptionAlgorithm(), signatureValue));
-      try {
-
-         byte[] signatureBytes = normaliseSignatureNS(signature);
-         return new InMemoryDocument(signatureBytes);
-      } catch (TransformerFactoryConfigurationError e) {
-         throw new DSSException(e);
-      }
+      return toDOM(signature);
    }
 }
\ No newline at end of file
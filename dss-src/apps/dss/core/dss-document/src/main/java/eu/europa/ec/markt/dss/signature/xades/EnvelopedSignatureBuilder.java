@@ -1,6 +1,5 @@
 package eu.europa.ec.markt.dss.signature.xades;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.List;
 import java.util.logging.Level;
@@ -8,12 +7,6 @@ import java.util.logging.Level;
 import javax.xml.crypto.dsig.CanonicalizationMethod;
 import javax.xml.crypto.dsig.XMLSignature;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.Result;
-import javax.xml.transform.Source;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
 
 import org.apache.xml.security.c14n.CanonicalizationException;
 import org.apache.xml.security.c14n.Canonicalizer;
@@ -28,7 +21,6 @@ import eu.europa.ec.markt.dss.DSSXMLUtils;
 import eu.europa.ec.markt.dss.exception.DSSException;
 import eu.europa.ec.markt.dss.signature.DSSDocument;
 import eu.europa.ec.markt.dss.signature.DSSSignatureUtils;
-import eu.europa.ec.markt.dss.signature.InMemoryDocument;
 import eu.europa.ec.markt.dss.signature.SignatureParameters;
 import eu.europa.ec.markt.tsl.jaxb.xades.QualifyingPropertiesType;
 import eu.europa.ec.markt.tsl.jaxb.xmldsig.DigestMethodType;
@@ -48,6 +40,12 @@ import eu.europa.ec.markt.tsl.jaxb.xmldsig.TransformsType;
  */
 class EnvelopedSignatureBuilder extends SignatureBuilder {
 
+   /*
+    * The DOM of the original document, parsed once and shared by the computation of the reference and the signed
+    * document.
+    */
+   private Document documentDom;
+
    /**
     * The default constructor for EnvelopedSignatureBuilder. The enveloped signature uses by default the exclusive
     * method of canonicalisation.
@@ -103,7 +101,7 @@ class EnvelopedSignatureBuilder extends SignatureBuilder {
          Canonicalizer c14n = Canonicalizer.getInstance(signedInfoCanonicalizationMethod);
          // We remove existing signatures
          // LOG.info("====> XYZ: " + origDoc.getName());
-         final Document domDoc = DSSXMLUtils.buildDOM(origDoc);
+         final Document domDoc = (Document) getDocumentDom().cloneNode(true);
          final NodeList signatureNodeList = domDoc.getElementsByTagNameNS(XMLSignature.XMLNS, "Signature");
          for (int ii = 0; ii < signatureNodeList.getLength(); ii++) {
 
@@ -119,53 +117,57 @@ class EnvelopedSignatureBuilder extends SignatureBuilder {
          throw new DSSException(e);
       } catch (CanonicalizationException e) {
          throw new DSSException(e);
-      } catch (IOException e) {
-         throw new DSSException(e);
-      } catch (SAXException e) {
-         throw new DSSException(e);
-      } catch (ParserConfigurationException e) {
-         throw new DSSException(e);
       }
    }
 
    /**
-    * Adds signature value to the signature and returns XML signature (InMemoryDocument)
+    * Adds signature value to the signature and returns the signed original document as a DOM document
     * 
     * @param signatureValue
     * @return
     * @throws DSSException
     */
    @Override
-   public DSSDocument signDocument(final byte[] signatureValue) throws DSSException {
+   public Document buildSignedDocument(final byte[] signatureValue) throws DSSException {
 
       if (!built) {
 
          build();
       }
       signatureT.getSignatureValue().setValue(DSSSignatureUtils.convertToXmlDSig(params.getEncryptionAlgorithm(), signatureValue));
-      try {
 
-         Document origDocDom = DSSXMLUtils.buildDOM(origDoc);
+      final Document origDocDom = getDocumentDom();
+      // The DOM is handed over to the caller, a new signature will parse the original document again.
+      documentDom = null;
 
-         byte[] signatureBytes = normaliseSignatureNS(signature);
-         Document signatureDom = DSSXMLUtils.buildDOM(signatureBytes);
+      final Document signatureDom = toDOM(signature);
+      final Node signatureElement = signatureDom.getDocumentElement();
+      final Node copiedNode = origDocDom.adoptNode(signatureElement);
+      origDocDom.getDocumentElement().appendChild(copiedNode);
+      return origDocDom;
+   }
 
-         Node signatureElement = signatureDom.getFirstChild();
-         Node copiedNode = origDocDom.importNode(signatureElement, true);
-         origDocDom.getDocumentElement().appendChild(copiedNode);
+   /**
+    * Returns the DOM of the original document, the document is parsed on the first call.
+    * 
+    * @return
+    * @throws DSSException
+    */
+   private Document getDocumentDom() throws DSSException {
 
-         ByteArrayOutputStream outputDoc = new ByteArrayOutputStream();
-         Result output = new StreamResult(outputDoc);
-         Transformer xformer = TransformerFactory.newInstance().newTransformer();
-         Source source = new DOMSource(origDocDom);
-         xformer.transform(source, output);
-         // IOUtils.write(outputDoc.toByteArray(), System.out);
-         return new InMemoryDocument(outputDoc.toByteArray());
-      } catch (Exception e) {
+      if (documentDom == null) {
 
-         throw new DSSException(e);
-      } finally {
+         try {
 
+            documentDom = DSSXMLUtils.buildDOM(origDoc);
+         } catch (ParserConfigurationException e) {
+            throw new DSSException(e);
+         } catch (IOException e) {
+            throw new DSSException(e);
+         } catch (SAXException e) {
+            throw new DSSException(e);
+         }
       }
+      return documentDom;
    }
 }
\ No newline at end of file
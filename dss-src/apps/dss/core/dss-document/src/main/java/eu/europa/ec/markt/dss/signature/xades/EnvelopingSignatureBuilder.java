@@ -4,7 +4,6 @@ import eu.europa.ec.markt.dss.exception.DSSException;
 import eu.europa.ec.markt.dss.DSSUtils;
 import eu.europa.ec.markt.dss.signature.DSSDocument;
 import eu.europa.ec.markt.dss.signature.DSSSignatureUtils;
-import eu.europa.ec.markt.dss.signature.InMemoryDocument;
 import eu.europa.ec.markt.dss.signature.SignatureParameters;
 import eu.europa.ec.markt.tsl.jaxb.xades.QualifyingPropertiesType;
 import eu.europa.ec.markt.tsl.jaxb.xmldsig.DigestMethodType;
@@ -14,7 +13,8 @@ import eu.europa.ec.markt.tsl.jaxb.xmldsig.TransformType;
 import eu.europa.ec.markt.tsl.jaxb.xmldsig.TransformsType;
 
 import javax.xml.crypto.dsig.CanonicalizationMethod;
-import javax.xml.transform.TransformerFactoryConfigurationError;
+
+import org.w3c.dom.Document;
 
 import java.io.IOException;
 import java.security.NoSuchAlgorithmException;
@@ -88,34 +88,27 @@ class EnvelopingSignatureBuilder extends SignatureBuilder {
    }
 
    /**
-    * Adds signature value to the signature and returns XML signature (InMemoryDocument)
+    * Adds signature value to the signature and returns the XML signature as a DOM document
     * 
     * @param signatureValue
     * @return
     * @throws DSSException
     */
    @Override
-   public DSSDocument signDocument(final byte[] signatureValue) throws DSSException {
+   public Document buildSignedDocument(final byte[] signatureValue) throws DSSException {
 
       if (!built) {
 
          build();
       }
-      try {
-
-         signatureT.getSignatureValue().setValue(DSSSignatureUtils.convertToXmlDSig(params.getEncryptionAlgorithm(), signatureValue));
+      signatureT.getSignatureValue().setValue(DSSSignatureUtils.convertToXmlDSig(params.getEncryptionAlgorithm(), signatureValue));
 
-         ObjectType objectT = xmlDSigFactory.createObjectType();
-         objectT.setId("signed-data-" + params.getDeterministicId());
-         String encodedData = DSSUtils.base64Encode(origDoc.getBytes());
-         objectT.getContent().add(encodedData);
+      ObjectType objectT = xmlDSigFactory.createObjectType();
+      objectT.setId("signed-data-" + params.getDeterministicId());
+      String encodedData = DSSUtils.base64Encode(origDoc.getBytes());
+      objectT.getContent().add(encodedData);
 
-         signatureT.getObject().add(objectT);
-
-         byte[] signatureBytes = normaliseSignatureNS(signature);
-         return new InMemoryDocument(signatureBytes);
-      } catch (TransformerFactoryConfigurationError e) {
-         throw new DSSException(e);
-      }
+      signatureT.getObject().add(objectT);
+      return toDOM(signature);
    }
 }
\ No newline at end of file
@@ -1,7 +1,7 @@
 package eu.europa.ec.markt.dss.signature.xades;
 
 import java.io.IOException;
-import java.io.StringWriter;
+import java.io.InputStream;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -12,6 +12,7 @@ import java.util.List;
 import java.util.TimeZone;
 import java.util.logging.Level;
 
+import javax.xml.XMLConstants;
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
 import javax.xml.crypto.dsig.XMLSignature;
@@ -22,15 +23,20 @@ import javax.xml.parsers.ParserConfigurationException;
 import org.apache.xml.security.c14n.CanonicalizationException;
 import org.apache.xml.security.c14n.Canonicalizer;
 import org.apache.xml.security.c14n.InvalidCanonicalizerException;
+import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 import org.xml.sax.SAXException;
 
+import eu.europa.ec.markt.dss.DSSUtils;
 import eu.europa.ec.markt.dss.DSSXMLUtils;
 import eu.europa.ec.markt.dss.DigestAlgorithm;
 import eu.europa.ec.markt.dss.SignatureAlgorithm;
 import eu.europa.ec.markt.dss.exception.DSSException;
 import eu.europa.ec.markt.dss.signature.DSSDocument;
+import eu.europa.ec.markt.dss.signature.DigestDocument;
+import eu.europa.ec.markt.dss.signature.InMemoryDocument;
 import eu.europa.ec.markt.dss.signature.SignatureParameters;
 import eu.europa.ec.markt.dss.signature.SignatureParameters.Policy;
 import eu.europa.ec.markt.dss.validation.xades.XAdESSignature;
@@ -176,8 +182,7 @@ public abstract class SignatureBuilder extends XAdESBuilder {
         // Preparation of SignedInfo
         try {
 
-            byte[] string = normaliseSignatureNS(signature);
-            Document domDocument = DSSXMLUtils.buildDOM(string);
+            final Document domDocument = toDOM(signature);
 
             final Element signatureDOM = (Element) domDocument.getElementsByTagNameNS(XMLSignature.XMLNS, "Signature").item(0);
             final XAdESSignature xadesSignature = new XAdESSignature(signatureDOM);
@@ -193,6 +198,28 @@ public abstract class SignatureBuilder extends XAdESBuilder {
             throw new DSSException(e);
         } catch (CanonicalizationException e) {
             throw new DSSException(e);
+        }
+    }
+
+    /**
+     * Marshals the JAXB element directly into a new DOM document and normalises the prefix of the XMLDSIG namespace.
+     *
+     * @param jaxbElement
+     * @return the DOM document holding the element
+     * @throws DSSException
+     */
+    protected Document toDOM(final JAXBElement<?> jaxbElement) throws DSSException {
+
+        try {
+
+            final Document document = DSSXMLUtils.buildDOM();
+            marshal(jaxbElement, document);
+            normaliseSignatureNS(document.getDocumentElement());
+            if (LOG.isLoggable(Level.FINE)) {
+
+                LOG.log(Level.FINE, "Normalised NS                     -->" + DSSXMLUtils.serializeNode(document));
+            }
+            return document;
         } catch (ParserConfigurationException e) {
             throw new DSSException(e);
         } catch (IOException e) {
@@ -203,30 +230,29 @@ public abstract class SignatureBuilder extends XAdESBuilder {
     }
 
     /**
-     * @param jexbElement
-     * @return
+     * The JAXB marshaller uses the "ns2" prefix for the XMLDSIG namespace, it is replaced by "ds".
+     *
+     * @param element
      */
-    protected byte[] normaliseSignatureNS(JAXBElement<?> jexbElement) {
+    private static void normaliseSignatureNS(final Element element) {
 
-        StringWriter stringWriter = new StringWriter();
-        try {
+        if ("ns2".equals(element.getPrefix())) {
 
-            marshaller.marshal(jexbElement, stringWriter);
-        } catch (JAXBException e) {
+            element.setPrefix("ds");
+        }
+        final Attr declaration = element.getAttributeNodeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, "ns2");
+        if (declaration != null) {
 
-            throw new DSSException(e);
+            element.removeAttributeNode(declaration);
+            element.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, "xmlns:ds", declaration.getValue());
         }
-        String string = stringWriter.toString();
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
 
-        // string = string.replace("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>", "");
-        string = string.replace("xmlns:ns2", "xmlns:ds");
-        string = string.replace("<ns2:", "<ds:");
-        string = string.replace("</ns2:", "</ds:");
-        if (LOG.isLoggable(Level.FINE)) {
+            if (child.getNodeType() == Node.ELEMENT_NODE) {
 
-            LOG.log(Level.FINE, "Normalised NS                     -->" + string);
+                normaliseSignatureNS((Element) child);
+            }
         }
-        return string.getBytes();
     }
 
     /**
@@ -260,6 +286,45 @@ public abstract class SignatureBuilder extends XAdESBuilder {
         }
     }
 
+    /**
+     * Returns the digest of the original document. When the document is a {@link DigestDocument} the pre-computed
+     * digest is used and the content is never accessed, otherwise the content is streamed through the digest.
+     *
+     * @param document the document to digest
+     * @return byte representation of the digest of the document to sign.
+     * @throws DSSException
+     */
+    protected byte[] getDocumentDigest(final DSSDocument document) throws DSSException {
+
+        final DigestAlgorithm digestAlgorithm = params.getDigestAlgorithm();
+        if (document instanceof DigestDocument) {
+
+            return ((DigestDocument) document).getDigest(digestAlgorithm);
+        }
+        InputStream inputStream = null;
+        try {
+
+            final MessageDigest digest = MessageDigest.getInstance(digestAlgorithm.getName());
+            inputStream = document.openStream();
+            final byte[] buffer = new byte[8192];
+            int count;
+            while ((count = inputStream.read(buffer)) != -1) {
+
+                digest.update(buffer, 0, count);
+            }
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+
+            throw new DSSException(e);
+        } catch (IOException e) {
+
+            throw new DSSException(e);
+        } finally {
+
+            DSSUtils.closeQuietly(inputStream);
+        }
+    }
+
     /**
      * Creates KeyInfoType JAXB object
      *
@@ -470,7 +535,7 @@ public abstract class SignatureBuilder extends XAdESBuilder {
         GregorianCalendar signingTime = new GregorianCalendar(TimeZone.getTimeZone("Z"));
         signingTime.setTime(params.getSigningDate());
 
-        XMLGregorianCalendar xmlGregorianCalendar = _dataFactory.newXMLGregorianCalendar(signingTime);
+        XMLGregorianCalendar xmlGregorianCalendar = getDataFactory().newXMLGregorianCalendar(signingTime);
         xmlGregorianCalendar.setMillisecond(DatatypeConstants.FIELD_UNDEFINED);
         signedSignatureProperties.setSigningTime(xmlGregorianCalendar);
 
@@ -581,5 +646,19 @@ public abstract class SignatureBuilder extends XAdESBuilder {
      * @return
      * @throws DSSException
      */
-    public abstract DSSDocument signDocument(final byte[] signatureValue) throws DSSException;
+    public DSSDocument signDocument(final byte[] signatureValue) throws DSSException {
+
+        final Document signedDocument = buildSignedDocument(signatureValue);
+        return new InMemoryDocument(DSSXMLUtils.serialize(signedDocument));
+    }
+
+    /**
+     * Adds signature value to the signature and returns the signed DOM document. The document is not serialized so
+     * that it can be extended in place.
+     *
+     * @param signatureValue - Encoded value of the signature
+     * @return the DOM document holding the signature
+     * @throws DSSException
+     */
+    public abstract Document buildSignedDocument(final byte[] signatureValue) throws DSSException;
 }
\ No newline at end of file
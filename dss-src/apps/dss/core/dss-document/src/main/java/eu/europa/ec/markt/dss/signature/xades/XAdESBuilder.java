@@ -40,14 +40,20 @@ public class XAdESBuilder {
    protected static final Logger LOG = Logger.getLogger(XAdESBuilder.class.getName());
 
    /*
-    * A reference to the JAXB marshaller that will convert the JAXB object model to the XML string.
+    * The JAXB context is thread-safe and shared, the marshallers and unmarshallers created from it are not.
     */
-   protected static Marshaller marshaller;
+   private static final JAXBContext jaxbContext;
 
    /*
-    * A reference to the JAXB unmarshaller that deserialising XML data into Java content trees (JAXB).
+    * The JAXB marshaller that will convert the JAXB object model to the XML string. Each thread gets its own instance.
     */
-   protected static Unmarshaller unmarshaller;
+   private static final ThreadLocal<Marshaller> marshaller = new ThreadLocal<Marshaller>();
+
+   /*
+    * The JAXB unmarshaller that deserialising XML data into Java content trees (JAXB). Each thread gets its own
+    * instance.
+    */
+   private static final ThreadLocal<Unmarshaller> unmarshaller = new ThreadLocal<Unmarshaller>();
 
    /*
     * This variable is a reference to the set of parameters relating to the structure and process of the creation or
@@ -73,15 +79,20 @@ public class XAdESBuilder {
    protected static final eu.europa.ec.markt.jaxb.xades141.ObjectFactory xades141Factory = new eu.europa.ec.markt.jaxb.xades141.ObjectFactory();
 
    /**
-    * A reference to the factory that creates new javax.xml.datatype Objects that map XML to/from Java Objects.<br>
-    * Used to manage XMLGregorianCalendar
+    * The factory that creates new javax.xml.datatype Objects that map XML to/from Java Objects.<br>
+    * Used to manage XMLGregorianCalendar. Each thread gets its own instance.
+    */
+   private static final ThreadLocal<DatatypeFactory> dataFactory = new ThreadLocal<DatatypeFactory>();
+
+   /*
+    * This factory is used to create the DOM document builders
     */
-   protected static DatatypeFactory _dataFactory;
+   private static final DocumentBuilderFactory documentBuilderFactory;
 
    /*
-    * This object is used to create a new DOM document
+    * This object is used to create a new DOM document. Each thread gets its own instance.
     */
-   protected static DocumentBuilder documentBuilder;
+   private static final ThreadLocal<DocumentBuilder> documentBuilder = new ThreadLocal<DocumentBuilder>();
 
    /*
     * This static block of code initialises the static variables with JAXB objects. The NamespacePrefixMapperImpl class
@@ -97,26 +108,18 @@ public class XAdESBuilder {
          /*
           * A reference to the JAXB factory that can build different objects constituting the XAdES specific signature.
           */
-         final JAXBContext jaxbContext = JAXBContext.newInstance(ObjectFactory.class);
-         marshaller = jaxbContext.createMarshaller();
-         unmarshaller = jaxbContext.createUnmarshaller();
+         jaxbContext = JAXBContext.newInstance(ObjectFactory.class);
          // marshaller.setProperty("com.sun.xml.bind.namespacePrefixMapper", new NamespacePrefixMapperImpl());
          // The line below allows to format the generated XML.
          // marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
          // marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
 
-         _dataFactory = DatatypeFactory.newInstance();
-
          // Initialisation of DOM static objects
-         DocumentBuilderFactory dfactory = DocumentBuilderFactory.newInstance();
+         final DocumentBuilderFactory dfactory = DocumentBuilderFactory.newInstance();
          dfactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, Boolean.TRUE);
          dfactory.setNamespaceAware(true);
          // dfactory.setValidating(true);
-         documentBuilder = dfactory.newDocumentBuilder();
-      } catch (DatatypeConfigurationException e) {
-
-         // TODO: We must define the common way to manage the exceptions
-         throw new DSSException(e);
+         documentBuilderFactory = dfactory;
       } catch (JAXBException e) {
 
          // TODO: We must define the common way to manage the exceptions
@@ -128,6 +131,101 @@ public class XAdESBuilder {
       }
    }
 
+   /**
+    * Returns the JAXB marshaller confined to the current thread.
+    * 
+    * @return
+    * @throws DSSException
+    */
+   protected static Marshaller getMarshaller() throws DSSException {
+
+      Marshaller threadMarshaller = marshaller.get();
+      if (threadMarshaller == null) {
+
+         try {
+
+            threadMarshaller = jaxbContext.createMarshaller();
+         } catch (JAXBException e) {
+
+            throw new DSSException(e);
+         }
+         marshaller.set(threadMarshaller);
+      }
+      return threadMarshaller;
+   }
+
+   /**
+    * Returns the JAXB unmarshaller confined to the current thread.
+    * 
+    * @return
+    * @throws DSSException
+    */
+   protected static Unmarshaller getUnmarshaller() throws DSSException {
+
+      Unmarshaller threadUnmarshaller = unmarshaller.get();
+      if (threadUnmarshaller == null) {
+
+         try {
+
+            threadUnmarshaller = jaxbContext.createUnmarshaller();
+         } catch (JAXBException e) {
+
+            throw new DSSException(e);
+         }
+         unmarshaller.set(threadUnmarshaller);
+      }
+      return threadUnmarshaller;
+   }
+
+   /**
+    * Returns the {@code DatatypeFactory} confined to the current thread.
+    * 
+    * @return
+    * @throws DSSException
+    */
+   protected static DatatypeFactory getDataFactory() throws DSSException {
+
+      DatatypeFactory threadDataFactory = dataFactory.get();
+      if (threadDataFactory == null) {
+
+         try {
+
+            threadDataFactory = DatatypeFactory.newInstance();
+         } catch (DatatypeConfigurationException e) {
+
+            throw new DSSException(e);
+         }
+         dataFactory.set(threadDataFactory);
+      }
+      return threadDataFactory;
+   }
+
+   /**
+    * Returns the {@code DocumentBuilder} (namespace aware, secure processing) confined to the current thread.
+    * 
+    * @return
+    * @throws DSSException
+    */
+   protected static DocumentBuilder getDocumentBuilder() throws DSSException {
+
+      DocumentBuilder threadDocumentBuilder = documentBuilder.get();
+      if (threadDocumentBuilder == null) {
+
+         try {
+
+            synchronized (documentBuilderFactory) {
+
+               threadDocumentBuilder = documentBuilderFactory.newDocumentBuilder();
+            }
+         } catch (ParserConfigurationException e) {
+
+            throw new DSSException(e);
+         }
+         documentBuilder.set(threadDocumentBuilder);
+      }
+      return threadDocumentBuilder;
+   }
+
    /**
     * The reference to the signature JAXB Object. Is initialised when unmarshal
     */
@@ -215,7 +313,7 @@ public class XAdESBuilder {
    protected SignatureType unmarsal(final InputStream input) throws JAXBException {
 
       @SuppressWarnings("unchecked")
-      JAXBElement<SignatureType> jaxbElement = (JAXBElement<SignatureType>) unmarshaller.unmarshal(input);
+      JAXBElement<SignatureType> jaxbElement = (JAXBElement<SignatureType>) getUnmarshaller().unmarshal(input);
       return jaxbElement.getValue();
    }
 
@@ -229,7 +327,7 @@ public class XAdESBuilder {
    @SuppressWarnings("unchecked")
    protected SignatureType unmarsal(final Element element) throws JAXBException {
 
-      signatureT = ((JAXBElement<SignatureType>) unmarshaller.unmarshal(element)).getValue();
+      signatureT = ((JAXBElement<SignatureType>) getUnmarshaller().unmarshal(element)).getValue();
       return signatureT;
    }
 
@@ -244,7 +342,7 @@ public class XAdESBuilder {
 
       try {
 
-         marshaller.marshal(jaxbObject, domNode);
+         getMarshaller().marshal(jaxbObject, domNode);
       } catch (JAXBException e) {
 
          throw new DSSException(e);
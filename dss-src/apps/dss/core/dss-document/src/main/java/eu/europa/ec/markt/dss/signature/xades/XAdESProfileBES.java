@@ -24,9 +24,12 @@ import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 
 import org.apache.xml.security.Init;
+import org.w3c.dom.Document;
 
+import eu.europa.ec.markt.dss.DSSXMLUtils;
 import eu.europa.ec.markt.dss.exception.DSSException;
 import eu.europa.ec.markt.dss.signature.DSSDocument;
+import eu.europa.ec.markt.dss.signature.InMemoryDocument;
 import eu.europa.ec.markt.dss.signature.SignatureParameters;
 import eu.europa.ec.markt.dss.signature.SignatureProfile;
 
@@ -78,6 +81,23 @@ public class XAdESProfileBES extends SignatureProfile {
 	@Override
 	public DSSDocument signDocument(DSSDocument document, SignatureParameters parameters, byte[] signatureValue) throws DSSException {
 
+		final Document signedDocument = buildSignedDocument(document, parameters, signatureValue);
+		return new InMemoryDocument(DSSXMLUtils.serialize(signedDocument));
+	}
+
+	/**
+	 * Adds the signature value to the signature and returns the signed DOM document without serializing it, so that the
+	 * extension profiles can work on the same DOM.
+	 * 
+	 * @param document The original document to sign.
+	 * @param parameters The set of parameters relating to the structure and process of the creation or extension of the
+	 *           electronic signature.
+	 * @param signatureValue The value of the signature.
+	 * @return the signed DOM document
+	 * @throws DSSException
+	 */
+	public Document buildSignedDocument(DSSDocument document, SignatureParameters parameters, byte[] signatureValue) throws DSSException {
+
 		SignatureBuilder builder;
 		if (parameters.getContext().getBuilder() != null) {
 
@@ -86,8 +106,8 @@ public class XAdESProfileBES extends SignatureProfile {
 
 			builder = SignatureBuilder.getSignatureBuilder(parameters, document);
 		}
-		DSSDocument document_ = builder.signDocument(signatureValue);
+		final Document signedDocument = builder.buildSignedDocument(signatureValue);
 		parameters.getContext().setBuilder(builder);
-		return document_;
+		return signedDocument;
 	}
 }
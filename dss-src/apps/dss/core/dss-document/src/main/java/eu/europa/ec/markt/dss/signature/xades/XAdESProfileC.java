@@ -115,7 +115,7 @@ public class XAdESProfileC extends XAdESProfileT {
 
                final GregorianCalendar cal = (GregorianCalendar) GregorianCalendar.getInstance();
                cal.setTime(crl.getThisUpdate());
-               crlIdentifier.setIssueTime(_dataFactory.newXMLGregorianCalendar(cal));
+               crlIdentifier.setIssueTime(getDataFactory().newXMLGregorianCalendar(cal));
 
                final DigestAlgAndValueType digestAlgAndValue = getDigestAlgAndValue(crl.getEncoded(), DigestAlgorithm.SHA1);
                crlRef.setDigestAlgAndValue(digestAlgAndValue);
@@ -153,7 +153,7 @@ public class XAdESProfileC extends XAdESProfileT {
                final GregorianCalendar cal = (GregorianCalendar) GregorianCalendar.getInstance();
                cal.setTime(producedAt);
 
-               ocspIdentifier.setProducedAt(_dataFactory.newXMLGregorianCalendar(cal));
+               ocspIdentifier.setProducedAt(getDataFactory().newXMLGregorianCalendar(cal));
 
                final ResponderIDType responderId = xadesFactory.createResponderIDType();
                ocspIdentifier.setResponderID(responderId);
@@ -20,7 +20,6 @@
 
 package eu.europa.ec.markt.dss.signature.xades;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.security.MessageDigest;
@@ -39,10 +38,6 @@ import org.bouncycastle.tsp.TimeStampResponse;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
-import org.w3c.dom.bootstrap.DOMImplementationRegistry;
-import org.w3c.dom.ls.DOMImplementationLS;
-import org.w3c.dom.ls.LSOutput;
-import org.w3c.dom.ls.LSSerializer;
 import org.xml.sax.SAXException;
 
 import eu.europa.ec.markt.dss.exception.CannotFetchDataException;
@@ -50,6 +45,7 @@ import eu.europa.ec.markt.dss.exception.ConfigurationException;
 import eu.europa.ec.markt.dss.exception.ConfigurationException.MSG;
 import eu.europa.ec.markt.dss.exception.DSSException;
 import eu.europa.ec.markt.dss.DSSUtils;
+import eu.europa.ec.markt.dss.DSSXMLUtils;
 import eu.europa.ec.markt.dss.DigestAlgorithm;
 import eu.europa.ec.markt.dss.signature.DSSDocument;
 import eu.europa.ec.markt.dss.signature.InMemoryDocument;
@@ -68,6 +64,9 @@ import eu.europa.ec.markt.tsl.jaxb.xmldsig.CanonicalizationMethodType;
 /**
  * -T profile of XAdES signature
  * 
+ * <p>
+ * An instance holds the state of a single extension (the parameters and the signature being extended): the
+ * {@link XAdESService} creates a new one for each invocation and an instance must not be shared between threads.
  * 
  * @version $Revision: 2823 $ - $Date: 2013-10-29 20:39:42 +0100 (mar., 29 oct. 2013) $
  */
@@ -162,62 +161,61 @@ public class XAdESProfileT extends ExtensionBuilder implements SignatureExtensio
 
          throw new ConfigurationException(MSG.CONFIGURE_TSP_SERVER);
       }
-      this.params = params;
-      final ProfileParameters context = params.getContext();
       InputStream input = null;
       try {
 
          if (LOG.isLoggable(Level.INFO)) LOG.info("====> Extending: " + (document.getName() == null ? "IN MEMORY DOCUMENT" : document.getName()));
          input = document.openStream();
-         final Document domDoc = ExtensionBuilder.documentBuilder.parse(input);
+         final Document domDoc = getDocumentBuilder().parse(input);
+         extendSignatures(domDoc, params);
+         return new InMemoryDocument(DSSXMLUtils.serialize(domDoc));
+      } catch (IOException e) {
+         throw new DSSException(e);
+      } catch (SAXException e) {
+         throw new DSSException(e);
+      } finally {
+         DSSUtils.closeQuietly(input);
+      }
+   }
 
-         final NodeList signatureNodeList = domDoc.getElementsByTagNameNS(XMLSignature.XMLNS, "Signature");
-         if (signatureNodeList.getLength() == 0) {
+   /**
+    * Extends in place the signatures of the DOM document. The document is neither parsed nor serialized: this allows
+    * the signature to be created and extended on the same DOM.
+    * 
+    * @param domDoc the DOM document holding the signatures
+    * @param params
+    * @throws DSSException
+    */
+   public void extendSignatures(final Document domDoc, final SignatureParameters params) throws DSSException {
 
-            throw new RuntimeException("Impossible to perform the extension of the signature, the document is not signed.");
-         }
+      if (this.tspSource == null) {
 
-         // In the case of the enveloped signature we have a specific treatment:<br>
-         // we will just extend the signature that is being created (during creation process)
-         String signatureId = null;
-         if (Operation.SIGNING.equals(context.getOperationKind()) && SignaturePackaging.ENVELOPED.equals(params.getSignaturePackaging())) {
+         throw new ConfigurationException(MSG.CONFIGURE_TSP_SERVER);
+      }
+      this.params = params;
+      final ProfileParameters context = params.getContext();
+      final NodeList signatureNodeList = domDoc.getElementsByTagNameNS(XMLSignature.XMLNS, "Signature");
+      if (signatureNodeList.getLength() == 0) {
 
-            signatureId = "sigId-" + params.getDeterministicId();
-         }
-         for (int ii = 0; ii < signatureNodeList.getLength(); ii++) {
+         throw new RuntimeException("Impossible to perform the extension of the signature, the document is not signed.");
+      }
 
-            final Element signatureDOM = (Element) signatureNodeList.item(ii);
-            if (signatureId != null && !signatureId.equals(signatureDOM.getAttribute("Id"))) {
+      // In the case of the enveloped signature we have a specific treatment:<br>
+      // we will just extend the signature that is being created (during creation process)
+      String signatureId = null;
+      if (Operation.SIGNING.equals(context.getOperationKind()) && SignaturePackaging.ENVELOPED.equals(params.getSignaturePackaging())) {
 
-               continue;
-            }
-            xadesSignature = new XAdESSignature(signatureDOM);
-            extendSignatureTag();
-         }
-         DOMImplementationRegistry registry = DOMImplementationRegistry.newInstance();
-         DOMImplementationLS impl = (DOMImplementationLS) registry.getDOMImplementation("LS");
-         LSSerializer writer = impl.createLSSerializer();
+         signatureId = "sigId-" + params.getDeterministicId();
+      }
+      for (int ii = 0; ii < signatureNodeList.getLength(); ii++) {
 
-         ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-         LSOutput output = impl.createLSOutput();
-         output.setByteStream(buffer);
-         writer.write(domDoc, output);
+         final Element signatureDOM = (Element) signatureNodeList.item(ii);
+         if (signatureId != null && !signatureId.equals(signatureDOM.getAttribute("Id"))) {
 
-         return new InMemoryDocument(buffer.toByteArray());
-      } catch (ClassCastException e) {
-         throw new DSSException(e);
-      } catch (ClassNotFoundException e) {
-         throw new DSSException(e);
-      } catch (InstantiationException e) {
-         throw new DSSException(e);
-      } catch (IllegalAccessException e) {
-         throw new DSSException(e);
-      } catch (IOException e) {
-         throw new DSSException(e);
-      } catch (SAXException e) {
-         throw new DSSException(e);
-      } finally {
-         DSSUtils.closeQuietly(input);
+            continue;
+         }
+         xadesSignature = new XAdESSignature(signatureDOM);
+         extendSignatureTag();
       }
    }
 
@@ -20,9 +20,11 @@
 
 package eu.europa.ec.markt.dss.signature.xades;
 
+import eu.europa.ec.markt.dss.DSSXMLUtils;
 import eu.europa.ec.markt.dss.exception.DSSException;
 import eu.europa.ec.markt.dss.signature.DSSDocument;
 import eu.europa.ec.markt.dss.signature.DocumentSignatureService;
+import eu.europa.ec.markt.dss.signature.InMemoryDocument;
 import eu.europa.ec.markt.dss.signature.ProfileParameters;
 import eu.europa.ec.markt.dss.signature.ProfileParameters.Operation;
 import eu.europa.ec.markt.dss.signature.SignatureExtension;
@@ -35,6 +37,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.security.NoSuchAlgorithmException;
 
+import org.w3c.dom.Document;
+
 /**
  * XAdES implementation of DocumentSignatureService
  * 
@@ -87,7 +91,7 @@ public class XAdESService implements DocumentSignatureService {
     * @param parameters
     * @return
     */
-   private SignatureExtension getExtensionProfile(final SignatureParameters parameters) {
+   private XAdESProfileT getExtensionProfile(final SignatureParameters parameters) {
 
       switch (parameters.getSignatureFormat()) {
       case XAdES_BES:
@@ -161,8 +165,15 @@ public class XAdESService implements DocumentSignatureService {
 
          profile = getSigningProfile(parameters);
       }
+      final XAdESProfileT extension = getExtensionProfile(parameters);
+      if (extension != null && profile instanceof XAdESProfileBES) {
+
+         // The signature is extended on the DOM built by the signing profile: it is serialized only once.
+         final Document signedDom = ((XAdESProfileBES) profile).buildSignedDocument(document, parameters, signatureValue);
+         extension.extendSignatures(signedDom, parameters);
+         return new InMemoryDocument(DSSXMLUtils.serialize(signedDom));
+      }
       DSSDocument signedDoc = profile.signDocument(document, parameters, signatureValue);
-      SignatureExtension extension = getExtensionProfile(parameters);
       if (extension != null) {
 
          return extension.extendSignatures(signedDoc, parameters);
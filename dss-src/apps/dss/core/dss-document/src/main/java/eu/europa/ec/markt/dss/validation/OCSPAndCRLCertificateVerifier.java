@@ -118,7 +118,7 @@ public class OCSPAndCRLCertificateVerifier implements CertificateStatusVerifier
 
       } else {
 
-         if (LOG.isLoggable(Level.INFO)) LOG.info("No OCSP check performed, looking for a CRL for " + CertificateIdentifier.getId(toCheckCertificate));
+         if (LOG.isLoggable(Level.INFO)) LOG.info("No OCSP check performed, looking for a CRL for " + CertificateIdentifier.getIdAsString(toCheckCertificate));
 
          CRLCertificateVerifier crlVerifier = new CRLCertificateVerifier(crlSource);
          result = crlVerifier.check(toCheckCertificate, potentialIssuerCertificate, validationDate);
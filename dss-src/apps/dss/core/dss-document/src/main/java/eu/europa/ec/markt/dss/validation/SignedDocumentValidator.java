@@ -22,11 +22,8 @@ package eu.europa.ec.markt.dss.validation;
 
 import eu.europa.ec.markt.dss.CertificateIdentifier;
 import eu.europa.ec.markt.dss.exception.DSSException;
-import eu.europa.ec.markt.dss.exception.NotETSICompliantException;
-import eu.europa.ec.markt.dss.exception.NotETSICompliantException.MSG;
 import eu.europa.ec.markt.dss.signature.DSSDocument;
-import eu.europa.ec.markt.dss.signature.InMemoryDocument;
-import eu.europa.ec.markt.dss.signature.ProfileException;
+import eu.europa.ec.markt.dss.signature.asic.ASiCContainer;
 import eu.europa.ec.markt.dss.validation.asic.ASiCXMLDocumentValidator;
 import eu.europa.ec.markt.dss.validation.cades.CMSDocumentValidator;
 import eu.europa.ec.markt.dss.validation.certificate.CertificateAndContext;
@@ -57,7 +54,6 @@ import eu.europa.ec.markt.dss.validation.tsl.QcStatementCondition;
 import eu.europa.ec.markt.dss.validation.x509.TimestampToken;
 import eu.europa.ec.markt.dss.validation.xades.XMLDocumentValidator;
 
-import org.apache.commons.io.IOUtils;
 import org.bouncycastle.asn1.x509.qualified.ETSIQCObjectIdentifiers;
 import org.bouncycastle.cms.CMSException;
 import org.bouncycastle.ocsp.BasicOCSPResp;
@@ -66,7 +62,6 @@ import org.xml.sax.SAXException;
 import javax.xml.parsers.ParserConfigurationException;
 
 import java.io.BufferedInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.security.MessageDigest;
@@ -81,8 +76,6 @@ import java.util.Date;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 
 /**
  * Validate the signed document
@@ -109,6 +102,11 @@ public abstract class SignedDocumentValidator {
 
    protected DSSDocument externalContent;
 
+   /**
+    * The ASiC container from which the signatures and the signed data are read (ASiC only), closed by {@link #close()}.
+    */
+   private ASiCContainer asicContainer;
+
    private CertificateVerifier certificateVerifier;
 
    private final Condition qcp = new PolicyIdCondition("0.4.0.1456.1.2");
@@ -119,13 +117,6 @@ public abstract class SignedDocumentValidator {
 
    private final Condition qcsscd = new QcStatementCondition(ETSIQCObjectIdentifiers.id_etsi_qcs_QcSSCD);
 
-   private static final String MIMETYPE = "mimetype";
-
-   // private static final String MIMETYPE_ASIC_S = "application/vnd.etsi.asic-s+zip";
-   private static final String PATTERN_SIGNATURES_XML = "META-INF/(.*)(?i)signature(.*).xml";
-
-   private static final String PATTERN_SIGNATURES_P7S = "META-INF/(.*)(?i)signature(.*).p7s";
-
    /**
     * Guess the document format and return an appropriate document
     * 
@@ -213,74 +204,31 @@ public abstract class SignedDocumentValidator {
     */
    private static SignedDocumentValidator getInstanceForAsics(DSSDocument document) throws IOException {
 
-      ZipInputStream asics = new ZipInputStream(document.openStream());
-
       try {
 
-         String dataFileName = "";
-         ByteArrayOutputStream dataFile = null;
-         ByteArrayOutputStream signatures = null;
-         ZipEntry entry;
-
-         boolean cadesSigned = false;
-         boolean xadesSigned = false;
+         // Only the central directory is read, the entries are opened lazily by the validator.
+         final ASiCContainer asics = ASiCContainer.open(document);
+         try {
 
-         while ((entry = asics.getNextEntry()) != null) {
-            if (entry.getName().matches(PATTERN_SIGNATURES_P7S)) {
-               if (xadesSigned) {
-                  throw new NotETSICompliantException(MSG.MORE_THAN_ONE_SIGNATURE);
-               }
-               signatures = new ByteArrayOutputStream();
-               IOUtils.copy(asics, signatures);
-               signatures.close();
-               cadesSigned = true;
-            } else if (entry.getName().matches(PATTERN_SIGNATURES_XML)) {
-               if (cadesSigned) {
-                  throw new NotETSICompliantException(MSG.MORE_THAN_ONE_SIGNATURE);
-               }
-               signatures = new ByteArrayOutputStream();
-               IOUtils.copy(asics, signatures);
-               signatures.close();
-               xadesSigned = true;
-            } else if (entry.getName().equalsIgnoreCase(MIMETYPE)) {
-               ByteArrayOutputStream mimetype = new ByteArrayOutputStream();
-               IOUtils.copy(asics, mimetype);
-               mimetype.close();
-               // Mime type implementers MAY use "application/vnd.etsi.asic-s+zip" to identify this format or MAY
-               // maintain the original mimetype of the signed data object.
-            } else if (entry.getName().indexOf("/") == -1) {
-               if (dataFile == null) {
-
-                  dataFile = new ByteArrayOutputStream();
-                  IOUtils.copy(asics, dataFile);
-                  dataFile.close();
-                  dataFileName = entry.getName();
-               } else {
-                  throw new ProfileException("ASiC-S profile support only one data file");
-               }
+            final SignedDocumentValidator validator;
+            if (asics.isXAdESSigned()) {
+               validator = new ASiCXMLDocumentValidator(asics.getSignatures(), asics.getDataFile());
+            } else if (asics.isCAdESSigned()) {
+               validator = new CMSDocumentValidator(asics.getSignatures());
+               validator.setExternalContent(asics.getDataFile());
+            } else {
+               throw new RuntimeException("Is not xades nor cades signed");
             }
-         }
+            validator.asicContainer = asics;
+            return validator;
+         } catch (RuntimeException e) {
 
-         if (xadesSigned) {
-            ASiCXMLDocumentValidator xmlValidator = new ASiCXMLDocumentValidator(new InMemoryDocument(signatures.toByteArray()), dataFile.toByteArray(), dataFileName);
-            return xmlValidator;
-         } else if (cadesSigned) {
-            CMSDocumentValidator pdfValidator = new CMSDocumentValidator(new InMemoryDocument(signatures.toByteArray()));
-            pdfValidator.setExternalContent(new InMemoryDocument(dataFile.toByteArray()));
-            return pdfValidator;
-         } else {
-            throw new RuntimeException("Is not xades nor cades signed");
+            asics.close();
+            throw e;
          }
-
       } catch (Exception ex) {
          throw new RuntimeException(ex);
-      } finally {
-         try {
-            asics.close();
-         } catch (IOException e) {
-         }
       }
-
    }
 
    private void checkTimeStampCertPath(TimestampToken t, TimestampVerificationResult result, ValidationContext ctx, AdvancedSignature signature) {
@@ -372,7 +320,7 @@ public abstract class SignedDocumentValidator {
          boolean found = false;
          for (X509Certificate referencedCert : certificates) {
 
-            if (LOG.isLoggable(Level.FINE)) LOG.fine("Compare to " + CertificateIdentifier.getId(referencedCert));
+            if (LOG.isLoggable(Level.FINE)) LOG.fine("Compare to " + CertificateIdentifier.getIdAsString(referencedCert));
             if (referencedCert.equals(neededCert.getCertificate())) {
                found = true;
                break;
@@ -401,7 +349,7 @@ public abstract class SignedDocumentValidator {
 
          // TODO: Bob
          // if (LOG.isLoggable(Level.INFO))
-         // LOG.info("Looking for CRL ref issued by " + CertificateIdentifier.getId(crl.getIssuerX500Principal()));
+         // LOG.info("Looking for CRL ref issued by " + CertificateIdentifier.getIdAsString(crl.getIssuerX500Principal()));
          boolean found = false;
          for (Object valueOrRef : crlValuesOrRef) {
 
@@ -477,6 +425,19 @@ public abstract class SignedDocumentValidator {
       return true;
    }
 
+   /**
+    * Releases the temporary resources of the validator: the temporary copy of an ASiC container which is neither a
+    * {@code FileDocument} nor an {@code InMemoryDocument}. The validator can no longer be used once closed.
+    */
+   public void close() {
+
+      if (asicContainer != null) {
+
+         asicContainer.close();
+         asicContainer = null;
+      }
+   }
+
    /**
     * @return the externalContent
     */
@@ -109,7 +109,7 @@ public class ValidationContext {
 
             if (LOG.isLoggable(Level.INFO)) {
 
-                LOG.info("+ New ValidationContext created for '" + CertificateIdentifier.getId(certificate) + "' at " + validationDate.toString());
+                LOG.info("+ New ValidationContext created for '" + CertificateIdentifier.getIdAsString(certificate) + "' at " + validationDate.toString());
             }
             CertificateAndContext certificateAndContext = new CertificateAndContext(certificate);
             certificateAndContext.setCertificateSource(CertificateSourceType.OTHER);
@@ -9,6 +9,7 @@
  */
 package eu.europa.ec.markt.dss.validation.asic;
 
+import eu.europa.ec.markt.dss.DSSUtils;
 import eu.europa.ec.markt.dss.signature.DSSDocument;
 import eu.europa.ec.markt.dss.signature.InMemoryDocument;
 import eu.europa.ec.markt.dss.validation.AdvancedSignature;
@@ -45,14 +46,32 @@ public class ASiCXMLDocumentValidator extends SignedDocumentValidator {
     */
    public ASiCXMLDocumentValidator(DSSDocument doc, byte[] signedContent, String dataFileName) throws Exception {
 
+      this(doc, new InMemoryDocument(signedContent, dataFileName));
+   }
+
+   /**
+    * Creates the validator of the signatures of an ASiC container. The signed content is not read by the constructor: it
+    * can be a lazily-opened entry of the container.
+    *
+    * @param doc the signatures file of the container
+    * @param signedContent the data object of the container
+    * @throws Exception
+    */
+   public ASiCXMLDocumentValidator(final DSSDocument doc, final DSSDocument signedContent) throws Exception {
+
       this.document = doc;
       DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
       dbf.setNamespaceAware(true);
       DocumentBuilder db = dbf.newDocumentBuilder();
       InputStream input = this.document.openStream();
-      this.rootElement = db.parse(input);
+      try {
+
+         this.rootElement = db.parse(input);
+      } finally {
 
-      setExternalContent(new InMemoryDocument(signedContent, dataFileName));
+         DSSUtils.closeQuietly(input);
+      }
+      setExternalContent(signedContent);
    }
 
    @Override
@@ -98,7 +98,7 @@ public class CAdESCertificateSource extends SignatureCertificateSource {
                if (!list.contains(c)) {
 
                   list.add(c);
-                  if (LOG.isLoggable(Level.INFO)) info_ += CertificateIdentifier.getId(c) + ", ";
+                  if (LOG.isLoggable(Level.INFO)) info_ += CertificateIdentifier.getIdAsString(c) + ", ";
                }
             }
          }
@@ -114,7 +114,7 @@ public class CAdESCertificateSource extends SignatureCertificateSource {
                if (!list.contains(c)) {
 
                   list.add(c);
-                  if (LOG.isLoggable(Level.INFO)) info_ += CertificateIdentifier.getId(c) + " xl, ";
+                  if (LOG.isLoggable(Level.INFO)) info_ += CertificateIdentifier.getIdAsString(c) + " xl, ";
                }
             }
          }
@@ -181,7 +181,7 @@ public class CAdESSignature implements AdvancedSignature {
 
          if (signerInformation.getSID().match(cert)) {
 
-            if (LOG.isLoggable(Level.INFO)) LOG.info("Signing certificate found: " + CertificateIdentifier.getId(cert));
+            if (LOG.isLoggable(Level.INFO)) LOG.info("Signing certificate found: " + CertificateIdentifier.getIdAsString(cert));
             return cert;
          }
       }
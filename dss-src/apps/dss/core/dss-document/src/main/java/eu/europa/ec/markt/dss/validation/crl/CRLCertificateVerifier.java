@@ -84,7 +84,7 @@ public class CRLCertificateVerifier implements CertificateStatusVerifier {
 			if (x509crl == null) {
 
 				if (LOG.isLoggable(Level.INFO))
-					LOG.info("No CRL found for " + CertificateIdentifier.getId(childCertificate));
+					LOG.info("No CRL found for " + CertificateIdentifier.getIdAsString(childCertificate));
 				return null;
 			}
 			if (!isCRLValid(x509crl, certificate, validationDate)) {
@@ -102,7 +102,7 @@ public class CRLCertificateVerifier implements CertificateStatusVerifier {
 			if (null == crlEntry) {
 
 				if (LOG.isLoggable(Level.FINE))
-					LOG.fine("CRL OK for: " + CertificateIdentifier.getId(childCertificate));
+					LOG.fine("CRL OK for: " + CertificateIdentifier.getIdAsString(childCertificate));
 				/*
 				 * If there is no entry in the CRL, the certificate is more likely to be valid
 				 */
@@ -110,7 +110,7 @@ public class CRLCertificateVerifier implements CertificateStatusVerifier {
 			} else if (crlEntry.getRevocationDate().after(validationDate)) {
 
 				if (LOG.isLoggable(Level.FINE))
-					LOG.fine("CRL OK for: " + CertificateIdentifier.getId(childCertificate) + " at " + validationDate);
+					LOG.fine("CRL OK for: " + CertificateIdentifier.getIdAsString(childCertificate) + " at " + validationDate);
 				/*
 				 * Even if there is an entry, the certificate can be valid at the time of the validation
 				 */
@@ -119,7 +119,7 @@ public class CRLCertificateVerifier implements CertificateStatusVerifier {
 			} else {
 
 				if (LOG.isLoggable(Level.FINE))
-					LOG.fine("CRL reports certificate: " + CertificateIdentifier.getId(childCertificate) + " as revoked since "
+					LOG.fine("CRL reports certificate: " + CertificateIdentifier.getIdAsString(childCertificate) + " as revoked since "
 							+ crlEntry.getRevocationDate());
 				report.setValidity(CertificateValidity.REVOKED);
 				report.setRevocationObjectIssuingTime(x509crl.getThisUpdate());
@@ -128,7 +128,7 @@ public class CRLCertificateVerifier implements CertificateStatusVerifier {
 			return report;
 		} catch (IOException e) {
 
-			LOG.log(Level.SEVERE, "IOException when accessing CRL for " + CertificateIdentifier.getId(childCertificate), e);
+			LOG.log(Level.SEVERE, "IOException when accessing CRL for " + CertificateIdentifier.getIdAsString(childCertificate), e);
 			return null;
 		}
 	}
@@ -158,7 +158,7 @@ public class CRLCertificateVerifier implements CertificateStatusVerifier {
 		final X500Principal x509Principal = x509crl.getIssuerX500Principal();
 		final X500Principal issuerPrincipal = issuerCertificate.getSubjectX500Principal();
 		if (!X500PrincipalMatcher.viaAny(x509Principal, issuerPrincipal)) {
-			LOG.warning("The CRL must be signed by the issuer (" + CertificateIdentifier.getId(issuerCertificate) + " ) but instead is signed by "
+			LOG.warning("The CRL must be signed by the issuer (" + CertificateIdentifier.getIdAsString(issuerCertificate) + " ) but instead is signed by "
 					+ x509Principal);
 			return false;
 		}
@@ -183,8 +183,8 @@ public class CertificateVerification {
         if (certificate != null) {
             boolean aliases = true;
             if (aliases) {
-                res.append(indentStr).append("Certificate: ").append(CertificateIdentifier.getId(getCertificate())).append("\n");
-                res.append(indentStr).append("\tIssuer: ").append(CertificateIdentifier.getId(getCertificate())).append("\n");
+                res.append(indentStr).append("Certificate: ").append(CertificateIdentifier.getIdAsString(getCertificate())).append("\n");
+                res.append(indentStr).append("\tIssuer: ").append(CertificateIdentifier.getIdAsString(getCertificate())).append("\n");
             } else {
                 if ( getCertificate() != null ) {
                     res.append(indentStr).append("Certificate: ").append(getCertificate().getSubjectDN().getName()).append("\n");
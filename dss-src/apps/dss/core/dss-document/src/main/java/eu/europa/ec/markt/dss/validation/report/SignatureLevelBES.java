@@ -182,12 +182,12 @@ public class SignatureLevelBES extends SignatureLevel {
 		indentStr += "\t";
 
         res.append(indentStr).append("LevelReached: ").append((getLevelReached() == null) ? null : getLevelReached().isValid()).append("\n");
-		res.append(indentStr).append("SigningCertificate SubjectDN: ").append(CertificateIdentifier.getId(getSigningCertificate())).append("\n");
+		res.append(indentStr).append("SigningCertificate SubjectDN: ").append(CertificateIdentifier.getIdAsString(getSigningCertificate())).append("\n");
 		res.append(indentStr).append("[Certificate chain\n");
         if ( getCertificates() != null ) {
             indentStr += "\t";
             for (X509Certificate c : getCertificates()) {
-                res.append(indentStr).append("Certificate SubjectDN: ").append(CertificateIdentifier.getId(c)).append("\n");
+                res.append(indentStr).append("Certificate SubjectDN: ").append(CertificateIdentifier.getIdAsString(c)).append("\n");
             }
             indentStr = indentStr.substring(1);
         }
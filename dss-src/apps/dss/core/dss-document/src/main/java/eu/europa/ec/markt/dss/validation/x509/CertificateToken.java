@@ -191,7 +191,7 @@ public class CertificateToken implements SignedToken {
       StringBuffer res = new StringBuffer();
       X509Certificate certificate = getCertificate();
       boolean selfSigned = X500PrincipalMatcher.viaAny(certificate.getSubjectX500Principal(), certificate.getIssuerX500Principal());
-      res.append(indentStr).append("CertificateToken[").append(CertificateIdentifier.getId(certificate)).append("<--");
+      res.append(indentStr).append("CertificateToken[").append(CertificateIdentifier.getIdAsString(certificate)).append("<--");
       if (selfSigned) {
 
          res.append("SELF-SIGNED]");
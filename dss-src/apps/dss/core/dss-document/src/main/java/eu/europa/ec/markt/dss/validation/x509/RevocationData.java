@@ -112,7 +112,7 @@ public class RevocationData {
          res.append("OCSP[from=" + (BasicOCSPResp) revocationData + "]");
       } else if (revocationData instanceof X509Certificate) {
 
-         res.append("Certificate[" + CertificateIdentifier.getId((X509Certificate) revocationData) + "]");
+         res.append("Certificate[" + CertificateIdentifier.getIdAsString((X509Certificate) revocationData) + "]");
       } else {
 
          if (revocationData != null) {
@@ -33,6 +33,7 @@ import org.bouncycastle.asn1.x509.X509Extension;
 
 import eu.europa.ec.markt.dss.DSSUtils;
 import eu.europa.ec.markt.dss.exception.DSSNullException;
+import eu.europa.ec.markt.dss.validation.DelegatingSource;
 import eu.europa.ec.markt.dss.validation.crl.CRLSource;
 import eu.europa.ec.markt.dss.validation.crl.OnlineCRLSource;
 
@@ -48,6 +49,11 @@ public class CRLCertificateVerifier implements CertificateStatusVerifier {
 
     private final CRLSource crlSource;
 
+    /**
+     * The online source behind the {@code crlSource} (if any), used to retrieve the URI of the CRL.
+     */
+    private final OnlineCRLSource onlineCRLSource;
+
     /**
      * Main constructor.
      *
@@ -56,6 +62,12 @@ public class CRLCertificateVerifier implements CertificateStatusVerifier {
     public CRLCertificateVerifier(final CRLSource crlSource) {
 
         this.crlSource = crlSource;
+        Object source = crlSource;
+        while (source instanceof DelegatingSource) {
+
+            source = ((DelegatingSource<?>) source).getDelegate();
+        }
+        onlineCRLSource = source instanceof OnlineCRLSource ? (OnlineCRLSource) source : null;
     }
 
     @Override
@@ -72,23 +84,23 @@ public class CRLCertificateVerifier implements CertificateStatusVerifier {
             final X509Certificate toCheckCert = toCheckToken.getCertificate();
             final X509Certificate issuerCert = toCheckToken.getIssuerToken().getCertificate();
             final X509CRL x509crl = crlSource.findCrl(toCheckCert, issuerCert);
-            if (crlSource instanceof OnlineCRLSource) {
+            if (onlineCRLSource != null) {
 
-                crlUri = ((OnlineCRLSource) crlSource).getCrlUri(toCheckCert);
+                crlUri = onlineCRLSource.getCrlUri(toCheckCert);
             }
             if (x509crl == null) {
 
                 if (LOG.isLoggable(Level.INFO)) {
                     LOG.info("No CRL found for " + toCheckToken.getDSSIdAsString());
                 }
-                if (crlSource instanceof OnlineCRLSource) {
+                if (onlineCRLSource != null) {
 
                     toCheckToken.extraInfo().infoNoCRLInfoFound(crlUri);
                 }
                 return null;
             }
             final CRLToken crlToken = new CRLToken(x509crl);
-            if (crlSource instanceof OnlineCRLSource) {
+            if (onlineCRLSource != null) {
 
                 crlToken.setSourceURI(crlUri);
             }
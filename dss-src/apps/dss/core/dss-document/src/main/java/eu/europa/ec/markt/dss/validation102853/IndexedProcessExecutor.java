@@ -0,0 +1,73 @@
+/*
+ * DSS - Digital Signature Services
+ *
+ * Copyright (C) 2013 European Commission, Directorate-General Internal Market and Services (DG MARKT), B-1049 Bruxelles/Brussel
+ *
+ * Developed by: 2013 ARHS Developments S.A. (rue Nicolas Bové 2B, L-1253 Luxembourg) http://www.arhs-developments.com
+ *
+ * This file is part of the "DSS - Digital Signature Services" project.
+ *
+ * "DSS - Digital Signature Services" is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU Lesser General Public License as published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * DSS is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * "DSS - Digital Signature Services".  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.europa.ec.markt.dss.validation102853;
+
+import org.w3c.dom.Document;
+
+import eu.europa.ec.markt.dss.validation102853.engine.rules.DiagnosticDataIndex;
+import eu.europa.ec.markt.dss.validation102853.engine.rules.ProcessParameters;
+import eu.europa.ec.markt.dss.validation102853.engine.rules.wrapper.VConstraint;
+
+/**
+ * This {@link ProcessExecutor} executes the same validation processes but resolves the certificates and the signatures of
+ * the diagnostic data through a {@link DiagnosticDataIndex} (hash lookups by identifier) instead of XPath queries. The
+ * produced {@code ValidationReport} and {@code SimpleReport} are identical to the ones of the {@code ProcessExecutor}
+ * which remains the reference implementation.
+ */
+public class IndexedProcessExecutor extends ProcessExecutor {
+
+    /**
+     * This constructor instantiates the validation process with the given diagnostic data file and the policy file.
+     *
+     * @param diagnosticData
+     * @param policyData
+     */
+    public IndexedProcessExecutor(final Document diagnosticData, final Document policyData) {
+
+        super(diagnosticData, policyData);
+    }
+
+    /**
+     * This constructor instantiates the validation process with the given diagnostic data and the compiled validation
+     * policy.
+     *
+     * @param diagnosticData
+     * @param constraintData
+     */
+    public IndexedProcessExecutor(final Document diagnosticData, final VConstraint constraintData) {
+
+        super(diagnosticData, constraintData);
+    }
+
+    /**
+     * The constructor with only diagnostic data.
+     */
+    public IndexedProcessExecutor(final Document diagnosticData) {
+
+        super(diagnosticData);
+    }
+
+    @Override
+    protected void prepareProcessParameters(final ProcessParameters params) {
+
+        params.setDiagnosticDataIndex(new DiagnosticDataIndex(params.getDiagnosticData()));
+    }
+}
@@ -33,6 +33,7 @@ import org.bouncycastle.ocsp.RevokedStatus;
 import org.bouncycastle.ocsp.SingleResp;
 import org.bouncycastle.ocsp.UnknownStatus;
 
+import eu.europa.ec.markt.dss.validation.DelegatingSource;
 import eu.europa.ec.markt.dss.validation.ocsp.OCSPSource;
 import eu.europa.ec.markt.dss.validation.ocsp.OnlineOCSPSource;
 
@@ -48,6 +49,11 @@ public class OCSPCertificateVerifier implements CertificateStatusVerifier {
 
     private final OCSPSource ocspSource;
 
+    /**
+     * The online source behind the {@code ocspSource} (if any), used to retrieve the URI of the OCSP responder.
+     */
+    private final OnlineOCSPSource onlineOCSPSource;
+
     private final CertificatePool validationCertPool;
 
     /**
@@ -61,6 +67,12 @@ public class OCSPCertificateVerifier implements CertificateStatusVerifier {
 
         this.ocspSource = ocspSource;
         this.validationCertPool = validationCertPool;
+        Object source = ocspSource;
+        while (source instanceof DelegatingSource) {
+
+            source = ((DelegatingSource<?>) source).getDelegate();
+        }
+        onlineOCSPSource = source instanceof OnlineOCSPSource ? (OnlineOCSPSource) source : null;
     }
 
     @Override
@@ -82,9 +94,9 @@ public class OCSPCertificateVerifier implements CertificateStatusVerifier {
                 if (LOG.isLoggable(Level.INFO)) {
                     LOG.info("OCSP response not found for " + toCheckToken.getDSSIdAsString());
                 }
-                if (ocspSource instanceof OnlineOCSPSource) {
+                if (onlineOCSPSource != null) {
 
-                    final String uri = ((OnlineOCSPSource) ocspSource).getOCSPUri(toCheckCert);
+                    final String uri = onlineOCSPSource.getOCSPUri(toCheckCert);
                     toCheckToken.extraInfo().infoNoOCSPResponse(uri);
                 }
                 return null;
@@ -104,9 +116,9 @@ public class OCSPCertificateVerifier implements CertificateStatusVerifier {
                     LOG.fine("OCSP nextUpdate: " + singleResp.getNextUpdate());
                 }
                 final OCSPToken ocspToken = new OCSPToken(basicOCSPResp, validationCertPool);
-                if (ocspSource instanceof OnlineOCSPSource) {
+                if (onlineOCSPSource != null) {
 
-                    ocspToken.setSourceURI(((OnlineOCSPSource) ocspSource).getOCSPUri(toCheckCert));
+                    ocspToken.setSourceURI(onlineOCSPSource.getOCSPUri(toCheckCert));
                 }
 
                 ocspToken.setIssuingTime(basicOCSPResp.getProducedAt());
@@ -92,7 +92,7 @@ public class OCSPToken extends RevocationToken {
     }
 
     @Override
-    public boolean isSignedBy(final CertificateToken issuerToken) {
+    public synchronized boolean isSignedBy(final CertificateToken issuerToken) {
 
         if (this.issuerToken != null) {
 
@@ -100,12 +100,41 @@ public class ProcessExecutor {
         this.policyData = policyData; // Policy data can be null (no policy)
     }
 
+    /**
+     * This constructor instantiates the validation process with the given diagnostic data and the compiled validation
+     * policy (see {@link ValidationResourceManager#loadPolicy(java.io.InputStream)}). The policy can be shared between
+     * several executors.
+     *
+     * @param diagnosticData
+     * @param constraintData
+     */
+    public ProcessExecutor(final Document diagnosticData, final VConstraint constraintData) {
+
+        this(diagnosticData, constraintData == null ? null : constraintData.getRootElement().getOwnerDocument());
+        this.constraintData = constraintData;
+    }
+
     /**
      * The constructor with only diagnostic data.
      */
     public ProcessExecutor(final Document diagnosticData) {
 
-        this(diagnosticData, null);
+        this(diagnosticData, (Document) null);
+    }
+
+    /**
+     * Returns the wrapper of the validation policy constraints. It is created from the policy data if no compiled policy
+     * was given.
+     *
+     * @return
+     */
+    protected VConstraint getConstraintData() {
+
+        if (constraintData == null) {
+
+            constraintData = new VConstraint(policyData);
+        }
+        return constraintData;
     }
 
     /**
@@ -114,9 +143,12 @@ public class ProcessExecutor {
     public XmlDom executeAdEST() {
 
         final ProcessParameters params = new ProcessParameters();
-        params.setDiagnosticData(new XmlDom(diagnosticData));
-        params.setConstraintData(new VConstraint(policyData));
+        final XmlDom diagnosticDataXmlDom = new XmlDom(diagnosticData);
+        params.setDiagnosticData(diagnosticDataXmlDom);
+        params.setConstraintData(getConstraintData());
         params.setCurrentTime(currentTime);
+        params.setCertPool(diagnosticDataXmlDom.getElement("/DiagnosticData/UsedCertificates"));
+        prepareProcessParameters(params);
 
         /**
          * This executes the AdES-T Validation process. It creates the AdES-T validation data.
@@ -137,11 +169,11 @@ public class ProcessExecutor {
         processParams = new ProcessParameters();
         diagnosticDataXmlDom = new XmlDom(diagnosticData);
         processParams.setDiagnosticData(diagnosticDataXmlDom);
-        constraintData = new VConstraint(policyData);
-        processParams.setConstraintData(constraintData);
+        processParams.setConstraintData(getConstraintData());
         processParams.setCurrentTime(currentTime);
         final XmlDom usedCertificates = diagnosticDataXmlDom.getElement("/DiagnosticData/UsedCertificates");
         processParams.setCertPool(usedCertificates);
+        prepareProcessParameters(processParams);
 
         final XmlNode mainNode = new XmlNode(NodeName.VALIDATION_DATA);
         mainNode.setNameSpace(ValidationResourceManager.DIAGNOSTIC_DATA_NAMESPACE);
@@ -157,6 +189,17 @@ public class ProcessExecutor {
         return fullReport;
     }
 
+    /**
+     * This method is called once the process parameters are set and before the execution of the validation processes.
+     * It allows the subclasses to complete the parameters. The default implementation does nothing: the diagnostic data
+     * is queried with XPath.
+     *
+     * @param params the parameters of the validation processes
+     */
+    protected void prepareProcessParameters(final ProcessParameters params) {
+
+    }
+
     /**
      * Returns the diagnostic data associated to the process.
      *
@@ -167,12 +210,13 @@ public class ProcessExecutor {
     }
 
     /**
-     * Returns the constraints associated to the process.
+     * Returns a copy of the constraints associated to the process: the policy data of a compiled policy is shared
+     * between the executors and must not be modified.
      *
      * @return
      */
     public Document getPolicyData() {
-        return policyData;
+        return policyData == null ? null : (Document) policyData.cloneNode(true);
     }
 
     /**
@@ -21,14 +21,18 @@
 package eu.europa.ec.markt.dss.validation102853;
 
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -37,6 +41,7 @@ import javax.security.auth.x500.X500Principal;
 import eu.europa.ec.markt.dss.DSSUtils;
 import eu.europa.ec.markt.dss.RemoteCertificateSource;
 import eu.europa.ec.markt.dss.exception.DSSException;
+import eu.europa.ec.markt.dss.validation.RevocationPrefetcher;
 import eu.europa.ec.markt.dss.validation.certificate.CertificateSourceType;
 import eu.europa.ec.markt.dss.validation.crl.CRLSource;
 import eu.europa.ec.markt.dss.validation.https.CommonsHttpDataLoader;
@@ -71,7 +76,21 @@ public class SignatureValidationContext implements ValidationContext {
      */
     protected CertificateToken certToValidate;
 
-    private final Map<Token, Boolean> tokensToProcess = new HashMap<Token, Boolean>();
+    /**
+     * All tokens added to this context, processed or not. It is used to add each token only once.
+     */
+    private final Set<Token> tokensToProcess = new HashSet<Token>();
+
+    /**
+     * The tokens which are not yet processed, in the order in which they were added.
+     */
+    private final Queue<Token> notYetVerifiedTokens = new LinkedList<Token>();
+
+    /**
+     * The executor used to resolve the issuer and the revocation data of independent tokens concurrently. If null
+     * (default) the tokens are processed one after the other.
+     */
+    private ExecutorService executorService;
 
     // External OCSP source.
     private OCSPSource ocspSource;
@@ -94,29 +113,22 @@ public class SignatureValidationContext implements ValidationContext {
     // Enclosed signature timestamps.
     private List<TimestampToken> sigTimestamps;
 
-    // Timestamped data for sigTimestamp.
-    private byte[] timestampData;
-
     // Enclosed SignAndRefs timestamps.
     private List<TimestampToken> sigAndRefsTimestamps;
 
-    // Timestamped data for sigAndRefs timestamp.
-    private byte[] sigAndRefsTimestampData;
-
     // The digest value of the certification path references and the revocation status references.
     private List<TimestampReference> timestampedReferences;
 
     // Enclosed RefsOnly timestamps.
     private List<TimestampToken> refsOnlyTimestamps;
 
-    // Timestamped data for refsOnly timestamp.
-    byte[] refsOnlyTimestampData;
-
     // Enclosed Archive timestamps.
     private List<TimestampToken> archiveTimestamps;
 
-    // Timestamped data for archive timestamp.
-    private byte[] archiveTimestampData;
+    /**
+     * The lock which guards the access to the content of the signed document. By default the context is its own lock.
+     */
+    private Object signatureDataLock = this;
 
     /**
      * This constructor is used when the whole signature need to be validated.
@@ -151,14 +163,10 @@ public class SignatureValidationContext implements ValidationContext {
         this.signCRLSource = signature.getCRLSource();
         this.signOCSPSource = signature.getOCSPSource();
 
+        // The timestamped data are digested in validate(), while they are written: see MessageImprintOutputStream.
         this.sigTimestamps = signature.getSignatureTimestamps();
-        this.timestampData = signature.getSignatureTimestampData();
-
         this.sigAndRefsTimestamps = signature.getTimestampsX1();
-        this.sigAndRefsTimestampData = signature.getTimestampX1Data();
-
         this.refsOnlyTimestamps = signature.getTimestampsX2();
-        this.refsOnlyTimestampData = signature.getTimestampX2Data();
 
         this.timestampedReferences = signature.getTimestampedReferences();
 
@@ -203,6 +211,18 @@ public class SignatureValidationContext implements ValidationContext {
         }
     }
 
+    /**
+     * This method sets the lock which must be held to access the content of the signed document (for example the
+     * computation of the data covered by each kind of timestamp). It is used when several signatures of the same document
+     * are validated in parallel and share the underlying structure (DOM, CMS...).
+     *
+     * @param signatureDataLock the lock object
+     */
+    void setSignatureDataLock(final Object signatureDataLock) {
+
+        this.signatureDataLock = signatureDataLock;
+    }
+
     /**
      * This function sets the signing certificate to be validated.
      *
@@ -216,19 +236,28 @@ public class SignatureValidationContext implements ValidationContext {
     }
 
     /**
-     * @return
+     * This method sets the executor used to resolve concurrently the issuer certificates and the revocation data of the
+     * tokens which are independent from each other (all tokens waiting to be processed at a given moment). The executor
+     * is not shut down by the context. It must not be the executor running this context: the context waits for the
+     * completion of the submitted tasks.
+     *
+     * @param executorService the executor or null to process the tokens one after the other
      */
-    private Token getNotYetVerifiedToken() {
+    public void setExecutorService(final ExecutorService executorService) {
 
-        for (final Entry<Token, Boolean> entry : tokensToProcess.entrySet()) {
+        this.executorService = executorService;
+    }
 
-            if (entry.getValue() == null) {
+    /**
+     * This method removes from the work queue all tokens which are not yet processed.
+     *
+     * @return the list of tokens to process, in the order in which they were added (can be empty)
+     */
+    private List<Token> getNotYetVerifiedTokens() {
 
-                entry.setValue(true);
-                return entry.getKey();
-            }
-        }
-        return null;
+        final List<Token> tokens = new ArrayList<Token>(notYetVerifiedTokens);
+        notYetVerifiedTokens.clear();
+        return tokens;
     }
 
     /**
@@ -371,14 +400,15 @@ public class SignatureValidationContext implements ValidationContext {
 
             return false;
         }
-        if (tokensToProcess.containsKey(token)) {
+        if (tokensToProcess.contains(token)) {
 
             if (LOG.isLoggable(Level.INFO)) {
                 LOG.info("Token was already in the list " + token.getClass().getSimpleName() + ":" + token.getAbbreviation());
             }
             return false;
         }
-        tokensToProcess.put(token, null);
+        tokensToProcess.add(token);
+        notYetVerifiedTokens.add(token);
         if (LOG.isLoggable(Level.INFO)) {
             LOG.info("+ New " + token.getClass().getSimpleName() + " to check: " + token.getAbbreviation());
         }
@@ -436,50 +466,69 @@ public class SignatureValidationContext implements ValidationContext {
             return;
         }
       /*
-       * This validates the signature timestamp tokensToProcess present in the signature.
+       * This validates the signature timestamp tokensToProcess present in the signature. The imprints of all the
+       * timestamps of a kind are computed in one pass over their data.
        */
-        for (final Token token : sigTimestamps) {
+        if (!sigTimestamps.isEmpty()) {
 
-            final TimestampToken timestampToken = (TimestampToken) token;
-            // System.out.println(timestampToken);
-            timestampToken.matchData(timestampData);
+            final MessageImprintOutputStream imprints = new MessageImprintOutputStream(sigTimestamps);
+            synchronized (signatureDataLock) {
 
-            addNotYetVerifiedTimestampToken(timestampToken);
-            runValidation();
+                imprints.write(signature.getSignatureTimestampData());
+            }
+            imprints.match();
+            validateTimestamps(sigTimestamps);
         }
 
       /*
        * This validates the SigAndRefs timestamp tokensToProcess present in the signature.
        */
-        for (final Token token : sigAndRefsTimestamps) {
+        if (!sigAndRefsTimestamps.isEmpty()) {
 
-            final TimestampToken timestampToken = (TimestampToken) token;
-            timestampToken.matchData(sigAndRefsTimestampData);
+            final MessageImprintOutputStream imprints = new MessageImprintOutputStream(sigAndRefsTimestamps);
+            synchronized (signatureDataLock) {
 
-            addNotYetVerifiedTimestampToken(timestampToken);
-            runValidation();
+                signature.writeTimestampX1Data(imprints);
+            }
+            imprints.match();
+            validateTimestamps(sigAndRefsTimestamps);
         }
 
       /*
        * This validates the RefsOnly timestamp tokensToProcess present in the signature.
        */
-        for (final Token token : refsOnlyTimestamps) {
+        if (!refsOnlyTimestamps.isEmpty()) {
 
-            final TimestampToken timestampToken = (TimestampToken) token;
-            timestampToken.matchData(refsOnlyTimestampData);
+            final MessageImprintOutputStream imprints = new MessageImprintOutputStream(refsOnlyTimestamps);
+            synchronized (signatureDataLock) {
 
-            addNotYetVerifiedTimestampToken(timestampToken);
-            runValidation();
+                signature.writeTimestampX2Data(imprints);
+            }
+            imprints.match();
+            validateTimestamps(refsOnlyTimestamps);
         }
 
       /*
-       * This validates the archive timestamp tokensToProcess present in the signature.
+       * This validates the archive timestamp tokensToProcess present in the signature. The data sealed by an archive
+       * timestamp depend on the timestamp.
        */
         for (final TimestampToken timestampToken : archiveTimestamps) {
 
-            archiveTimestampData = signature.getArchiveTimestampData(timestampToken);
+            final MessageImprintOutputStream imprints = new MessageImprintOutputStream(Collections.singletonList(timestampToken));
+            synchronized (signatureDataLock) {
+
+                signature.writeArchiveTimestampData(timestampToken, imprints);
+            }
+            imprints.match();
+
+            addNotYetVerifiedTimestampToken(timestampToken);
+            runValidation();
+        }
+    }
+
+    private void validateTimestamps(final List<TimestampToken> timestamps) throws DSSException {
 
-            timestampToken.matchData(archiveTimestampData);
+        for (final TimestampToken timestampToken : timestamps) {
 
             addNotYetVerifiedTimestampToken(timestampToken);
             runValidation();
@@ -487,30 +536,158 @@ public class SignatureValidationContext implements ValidationContext {
     }
 
     /*
-     * Executes validation process for not yet validated tokensToProcess.
+     * Executes validation process for not yet validated tokensToProcess. The work queue is processed by rounds: the tokens
+     * of a round do not depend on each other and can be processed concurrently, the new tokens they lead to (issuer
+     * certificates, revocation data) are added in the order of the round and processed in the next round.
      */
     private void runValidation() throws DSSException {
 
-        final Token token = getNotYetVerifiedToken();
-        if (token == null) {
+        List<Token> tokens;
+        while (!(tokens = getNotYetVerifiedTokens()).isEmpty()) {
 
-            return;
+            final List<TokenValidationResult> results;
+            if (executorService == null || tokens.size() == 1) {
+
+                results = new ArrayList<TokenValidationResult>(tokens.size());
+                for (final Token token : tokens) {
+
+                    results.add(new TokenValidationTask(token).call());
+                }
+            } else {
+
+                results = invokeAll(tokens);
+            }
+            for (final TokenValidationResult result : results) {
+
+                addNotYetVerifiedCertificateToken(result.issuerCertToken);
+                addNotYetVerifiedRevocationToken(result.revocationToken);
+            }
         }
-      /*
-       * Gets the issuer certificate (the issuer of the CertificateToken or the signing certificate of other tokensToProcess) and
-       * checks the signature of the token
-       */
-        final CertificateToken issuerCertToken = getIssuerCertificate(token);
-        if (issuerCertToken != null && !token.isSelfSigned() && !token.isTrusted()) {
+    }
+
+    /**
+     * This method processes the given tokens with the {@link #executorService} and waits for their completion.
+     *
+     * @param tokens the tokens to process
+     * @return the results in the order of the given tokens
+     * @throws DSSException if the processing of a token fails or if the current thread is interrupted
+     */
+    private List<TokenValidationResult> invokeAll(final List<Token> tokens) throws DSSException {
 
-            addNotYetVerifiedCertificateToken(issuerCertToken);
+        final List<TokenValidationTask> tasks = new ArrayList<TokenValidationTask>(tokens.size());
+        for (final Token token : tokens) {
+
+            tasks.add(new TokenValidationTask(token));
         }
-        if (token instanceof CertificateToken) {
+        try {
 
-            final RevocationToken revocationToken = getRevocationData((CertificateToken) token);
-            addNotYetVerifiedRevocationToken(revocationToken);
+            final List<TokenValidationResult> results = new ArrayList<TokenValidationResult>(tokens.size());
+            for (final Future<TokenValidationResult> future : executorService.invokeAll(tasks)) {
+
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+            throw new DSSException("The validation of the tokens was interrupted.", e);
+        } catch (ExecutionException e) {
+
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+
+                throw (RuntimeException) cause;
+            }
+            throw new DSSException(cause);
+        }
+    }
+
+    /**
+     * The tokens discovered when processing a token.
+     */
+    private static class TokenValidationResult {
+
+        private CertificateToken issuerCertToken;
+
+        private RevocationToken revocationToken;
+    }
+
+    /**
+     * Gets the issuer certificate (the issuer of the CertificateToken or the signing certificate of other tokens) and
+     * checks the signature of the token. In the case of a certificate its revocation data is retrieved. This task does
+     * not modify the state of the context: the discovered tokens are returned.
+     */
+    private class TokenValidationTask implements Callable<TokenValidationResult> {
+
+        private final Token token;
+
+        TokenValidationTask(final Token token) {
+
+            this.token = token;
+        }
+
+        @Override
+        public TokenValidationResult call() throws DSSException {
+
+            final TokenValidationResult result = new TokenValidationResult();
+            /*
+             * The same token can be shared with the validation context of another signature running in parallel. No lock
+             * is held here while the pool and the online sources are called: the state of the tokens is only changed by
+             * their own synchronized methods (isSignedBy, setRevocationToken), which are leaf locks (see CertificatePool).
+             */
+            final CertificateToken issuerCertToken = getIssuerCertificate(token);
+            if (issuerCertToken != null && !token.isSelfSigned() && !token.isTrusted()) {
+
+                result.issuerCertToken = issuerCertToken;
+            }
+            if (token instanceof CertificateToken) {
+
+                prefetchRevocationData((CertificateToken) token);
+                result.revocationToken = getRevocationData((CertificateToken) token);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * When the online sources are able to retrieve the revocation data in advance (see {@link RevocationPrefetcher}), this
+     * method asks them to do so for the whole certificate chain of the given certificate. The chain is known at this point
+     * and the requests to the different responders are then sent in parallel instead of one after the other.
+     *
+     * @param certToken
+     */
+    private void prefetchRevocationData(final CertificateToken certToken) {
+
+        final RevocationPrefetcher ocspPrefetcher = ocspSource instanceof RevocationPrefetcher ? (RevocationPrefetcher) ocspSource : null;
+        final RevocationPrefetcher crlPrefetcher = crlSource instanceof RevocationPrefetcher ? (RevocationPrefetcher) crlSource : null;
+        if (ocspPrefetcher == null && crlPrefetcher == null) {
+
+            return;
+        }
+        CertificateToken currentToken = certToken;
+        final Set<CertificateToken> chain = new HashSet<CertificateToken>();
+        while (currentToken != null && !currentToken.isSelfSigned() && !currentToken.isTrusted() && chain.add(currentToken)) {
+
+            final CertificateToken issuerToken = currentToken.getIssuerToken();
+            if (issuerToken == null) {
+
+                break;
+            }
+            if (!(currentToken.isOCSPSigning() && currentToken.hasIdPkixOcspNoCheckExtension())) {
+
+                final X509Certificate certificate = currentToken.getCertificate();
+                final X509Certificate issuerCertificate = issuerToken.getCertificate();
+                if (ocspPrefetcher != null) {
+
+                    ocspPrefetcher.prefetch(certificate, issuerCertificate);
+                }
+                if (crlPrefetcher != null) {
+
+                    crlPrefetcher.prefetch(certificate, issuerCertificate);
+                }
+            }
+            currentToken = issuerToken;
         }
-        runValidation();
     }
 
     /**
@@ -21,26 +21,29 @@
 package eu.europa.ec.markt.dss.validation102853;
 
 import java.io.BufferedInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.security.PublicKey;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 
 import javax.security.auth.x500.X500Principal;
 import javax.xml.datatype.XMLGregorianCalendar;
 import javax.xml.parsers.ParserConfigurationException;
 
-import org.apache.commons.io.IOUtils;
 import org.bouncycastle.asn1.x509.qualified.ETSIQCObjectIdentifiers;
 import org.bouncycastle.cms.CMSException;
 import org.w3c.dom.Document;
@@ -51,11 +54,8 @@ import eu.europa.ec.markt.dss.DigestAlgorithm;
 import eu.europa.ec.markt.dss.OID;
 import eu.europa.ec.markt.dss.SignatureAlgorithm;
 import eu.europa.ec.markt.dss.exception.DSSException;
-import eu.europa.ec.markt.dss.exception.NotETSICompliantException;
-import eu.europa.ec.markt.dss.exception.NotETSICompliantException.MSG;
 import eu.europa.ec.markt.dss.signature.DSSDocument;
-import eu.europa.ec.markt.dss.signature.InMemoryDocument;
-import eu.europa.ec.markt.dss.signature.ProfileException;
+import eu.europa.ec.markt.dss.signature.asic.ASiCContainer;
 import eu.europa.ec.markt.dss.validation.PolicyValue;
 import eu.europa.ec.markt.dss.validation.certificate.CertificateSourceType;
 import eu.europa.ec.markt.dss.validation102853.asic.ASiCXMLDocumentValidator;
@@ -95,6 +95,7 @@ import eu.europa.ec.markt.dss.validation102853.data.diagnostic.XmlTimestampType;
 import eu.europa.ec.markt.dss.validation102853.data.diagnostic.XmlTimestamps;
 import eu.europa.ec.markt.dss.validation102853.data.diagnostic.XmlTrustedServiceProviderType;
 import eu.europa.ec.markt.dss.validation102853.data.diagnostic.XmlUsedCertificates;
+import eu.europa.ec.markt.dss.validation102853.engine.rules.wrapper.VConstraint;
 import eu.europa.ec.markt.dss.validation102853.pades.PDFDocumentValidator;
 import eu.europa.ec.markt.dss.validation102853.report.SimpleReport;
 import eu.europa.ec.markt.dss.validation102853.report.ValidationReport;
@@ -102,7 +103,12 @@ import eu.europa.ec.markt.dss.validation102853.toolbox.PublicKeyUtils;
 import eu.europa.ec.markt.dss.validation102853.xades.XMLDocumentValidator;
 
 /**
- * Validate the signed document
+ * Validate the signed document<br>
+ * <br>
+ * Threading contract: an instance of this class holds the state of the validation of one document (diagnostic data,
+ * reports) and must not be shared between threads. Different instances can be validated concurrently: the XML resources
+ * used by the validation process are confined to the calling thread (see {@link ValidationResourceManager}) and the
+ * {@link CertificateVerifier} and its sources can be shared.
  *
  * @version $Revision: 889 $ - $Date: 2011-05-31 17:29:35 +0200 (Tue, 31 May 2011) $
  */
@@ -136,6 +142,11 @@ public abstract class SignedDocumentValidator {
      */
     protected DSSDocument externalContent;
 
+    /**
+     * The ASiC container from which the signatures and the signed data are read (ASiC only), closed by {@link #close()}.
+     */
+    private ASiCContainer asicContainer;
+
     /**
      * The reference to the certificate verifier. The current DSS implementation proposes
      * {@link CommonCertificateVerifier}. This verifier encapsulates the references to different sources used in the signature validation
@@ -143,6 +154,29 @@ public abstract class SignedDocumentValidator {
      */
     private CertificateVerifier certVerifier;
 
+    /**
+     * The executor used to validate the signatures of the document in parallel. If null (default) the signatures are
+     * validated one after the other.
+     */
+    private ExecutorService executorService;
+
+    /**
+     * The executor used by the validation context of each signature to process independent tokens in parallel. If null
+     * (default) the tokens are processed one after the other.
+     */
+    private ExecutorService tokenExecutorService;
+
+    /**
+     * Indicates if the validation processes query the diagnostic data through an index ({@link IndexedProcessExecutor})
+     * rather than with XPath ({@link ProcessExecutor}, default).
+     */
+    private boolean indexedProcessExecutor;
+
+    /**
+     * This lock guards the access to the content of the document when the signatures are validated in parallel.
+     */
+    private final Object signatureDataLock = new Object();
+
     /**
      * This variable contains the reference to the diagnostic data.
      */
@@ -166,13 +200,6 @@ public abstract class SignedDocumentValidator {
 
     private final Condition qcsscd = new QcStatementCondition(ETSIQCObjectIdentifiers.id_etsi_qcs_QcSSCD);
 
-    private static final String MIMETYPE = "mimetype";
-
-    // private static final String MIMETYPE_ASIC_S = "application/vnd.etsi.asic-s+zip";
-    private static final String PATTERN_SIGNATURES_XML = "META-INF/(.*)(?i)signature(.*).xml";
-
-    private static final String PATTERN_SIGNATURES_P7S = "META-INF/(.*)(?i)signature(.*).p7s";
-
     /**
      * Guess the document format and return an appropriate document
      *
@@ -258,77 +285,31 @@ public abstract class SignedDocumentValidator {
      */
     private static SignedDocumentValidator getInstanceForAsics(DSSDocument document) throws IOException {
 
-        ZipInputStream asics = new ZipInputStream(document.openStream());
-
         try {
 
-            String dataFileName = "";
-            ByteArrayOutputStream dataFile = null;
-            ByteArrayOutputStream signatures = null;
-            ZipEntry entry;
-
-            boolean cadesSigned = false;
-            boolean xadesSigned = false;
+            // Only the central directory is read, the entries are opened lazily by the validator.
+            final ASiCContainer asics = ASiCContainer.open(document);
+            try {
 
-            while ((entry = asics.getNextEntry()) != null) {
-                if (entry.getName().matches(PATTERN_SIGNATURES_P7S)) {
-                    if (xadesSigned) {
-                        throw new NotETSICompliantException(MSG.MORE_THAN_ONE_SIGNATURE);
-                    }
-                    signatures = new ByteArrayOutputStream();
-                    IOUtils.copy(asics, signatures);
-                    signatures.close();
-                    cadesSigned = true;
-                } else if (entry.getName().matches(PATTERN_SIGNATURES_XML)) {
-                    if (cadesSigned) {
-                        throw new NotETSICompliantException(MSG.MORE_THAN_ONE_SIGNATURE);
-                    }
-                    signatures = new ByteArrayOutputStream();
-                    IOUtils.copy(asics, signatures);
-                    signatures.close();
-                    xadesSigned = true;
-                } else if (entry.getName().equalsIgnoreCase(MIMETYPE)) {
-                    ByteArrayOutputStream mimetype = new ByteArrayOutputStream();
-                    IOUtils.copy(asics, mimetype);
-                    mimetype.close();
-                    // Mime type implementers MAY use
-                    // "application/vnd.etsi.asic-s+zip" to identify this format
-                    // or MAY
-                    // maintain the original mimetype of the signed data object.
-                } else if (entry.getName().indexOf("/") == -1) {
-                    if (dataFile == null) {
-
-                        dataFile = new ByteArrayOutputStream();
-                        IOUtils.copy(asics, dataFile);
-                        dataFile.close();
-                        dataFileName = entry.getName();
-                    } else {
-                        throw new ProfileException("ASiC-S profile support only one data file");
-                    }
+                final SignedDocumentValidator validator;
+                if (asics.isXAdESSigned()) {
+                    validator = new ASiCXMLDocumentValidator(asics.getSignatures(), asics.getDataFile());
+                } else if (asics.isCAdESSigned()) {
+                    validator = new CMSDocumentValidator(asics.getSignatures());
+                    validator.setExternalContent(asics.getDataFile());
+                } else {
+                    throw new RuntimeException("Is not xades nor cades signed");
                 }
-            }
+                validator.asicContainer = asics;
+                return validator;
+            } catch (RuntimeException e) {
 
-            if (xadesSigned) {
-                ASiCXMLDocumentValidator xmlValidator = new ASiCXMLDocumentValidator(new InMemoryDocument(signatures.toByteArray()),
-                      dataFile.toByteArray(), dataFileName);
-                return xmlValidator;
-            } else if (cadesSigned) {
-                CMSDocumentValidator pdfValidator = new CMSDocumentValidator(new InMemoryDocument(signatures.toByteArray()));
-                pdfValidator.setExternalContent(new InMemoryDocument(dataFile.toByteArray()));
-                return pdfValidator;
-            } else {
-                throw new RuntimeException("Is not xades nor cades signed");
+                asics.close();
+                throw e;
             }
-
         } catch (Exception ex) {
             throw new RuntimeException(ex);
-        } finally {
-            try {
-                asics.close();
-            } catch (IOException e) {
-            }
         }
-
     }
 
     /*
@@ -377,6 +358,73 @@ public abstract class SignedDocumentValidator {
         }
     }
 
+    /**
+     * This method enables the parallel validation of the signatures of the document. Each signature (certificate chain,
+     * revocation data and timestamps) is validated as a separate task submitted to the given executor, the
+     * {@link CertificatePool} is shared between the tasks and the results are merged in the order of
+     * {@link #getSignatures()}. The executor is not shut down by the validator. If null the signatures are validated one
+     * after the other (default).
+     *
+     * @param executorService the executor used to validate the signatures or null
+     */
+    public void setExecutorService(final ExecutorService executorService) {
+
+        this.executorService = executorService;
+    }
+
+    /**
+     * @return the executor used to validate the signatures or null if the signatures are validated one after the other
+     */
+    public ExecutorService getExecutorService() {
+
+        return executorService;
+    }
+
+    /**
+     * This method enables the parallel processing of the tokens (certificates, revocation data, timestamps) within the
+     * validation of a signature: the issuers and the revocation data of independent tokens are retrieved concurrently.
+     * The executor must be different from the one given to {@link #setExecutorService(ExecutorService)}: the validation of
+     * a signature waits for the completion of the tokens it submits. The executor is not shut down by the validator.
+     *
+     * @param tokenExecutorService the executor used to process the tokens or null
+     */
+    public void setTokenExecutorService(final ExecutorService tokenExecutorService) {
+
+        this.tokenExecutorService = tokenExecutorService;
+    }
+
+    /**
+     * @return the executor used to process the tokens or null if the tokens are processed one after the other
+     */
+    public ExecutorService getTokenExecutorService() {
+
+        return tokenExecutorService;
+    }
+
+    /**
+     * Sets whether the validation processes query the diagnostic data through an index of the certificates, signatures
+     * and timestamps instead of XPath. The validation reports are the same in both cases.
+     *
+     * @param indexedProcessExecutor true to use the {@link IndexedProcessExecutor}
+     */
+    public void setIndexedProcessExecutor(final boolean indexedProcessExecutor) {
+
+        this.indexedProcessExecutor = indexedProcessExecutor;
+    }
+
+    /**
+     * Releases the temporary resources of the validator: the temporary copy of an ASiC container which is neither a
+     * {@code FileDocument} nor an {@code InMemoryDocument}. The validator can no longer be used once closed.
+     */
+    public void close() {
+
+        if (asicContainer != null) {
+
+            asicContainer.close();
+            asicContainer = null;
+        }
+    }
+
     /**
      * Sets the Document containing the original content to sign, for detached signature scenarios.
      *
@@ -396,11 +444,18 @@ public abstract class SignedDocumentValidator {
     }
 
     /**
-     * Validates the document and all its signatures. The default constraint file is used.
+     * Validates the document and all its signatures. The default constraint file is used if the URL is null. A policy
+     * file from the file system is compiled again only when it changes.
      */
     public ValidationReport validateDocument(URL validationPolicyURL) {
         if (validationPolicyURL == null) {
             return validateDocument((InputStream) null);
+        } else if ("file".equals(validationPolicyURL.getProtocol())) {
+            try {
+                return validateDocument(ValidationResourceManager.loadPolicy(new File(validationPolicyURL.toURI())));
+            } catch (URISyntaxException e) {
+                throw new DSSException(e);
+            }
         } else {
             try {
                 return validateDocument(validationPolicyURL.openStream());
@@ -434,6 +489,17 @@ public abstract class SignedDocumentValidator {
      */
     public ValidationReport validateDocument(final InputStream policyDataStream) {
 
+        return validateDocument(ValidationResourceManager.loadPolicy(policyDataStream));
+    }
+
+    /**
+     * Validates the document and all its signatures against the given compiled validation policy (see {@link
+     * ValidationResourceManager#loadPolicy(InputStream)}).
+     *
+     * @param validationPolicy
+     */
+    public ValidationReport validateDocument(final VConstraint validationPolicy) {
+
         LOG.info("Document validation...");
 
         final DiagnosticData diagnosticDataJB = generateDiagnosticData();
@@ -447,16 +513,33 @@ public abstract class SignedDocumentValidator {
 
         final Document diagnosticData = ValidationResourceManager.convert(diagnosticDataJB);
 
-        final Document policyData = ValidationResourceManager.loadPolicyData(policyDataStream);
         // TODO 130619 by meyerfr: create an interface for process executor and derive a BSCProcessExecutor from that
-        final ProcessExecutor executor = getProcessExecutor(diagnosticData, policyData);
+        final ProcessExecutor executor = getProcessExecutor(diagnosticData, validationPolicy);
         detailedReport = executor.execute();
         simpleReport = executor.getSimpleReport();
         return detailedReport;
     }
 
+    /**
+     * @param diagnosticData
+     * @param policyData     the validation policy, compiled on each call
+     * @return the process executor
+     * @deprecated {@link #validateDocument(VConstraint)} calls {@link #getProcessExecutor(Document, VConstraint)}: override
+     * this one instead.
+     */
+    @Deprecated
     protected ProcessExecutor getProcessExecutor(Document diagnosticData, Document policyData) {
-        return new ProcessExecutor(diagnosticData, policyData);
+
+        return getProcessExecutor(diagnosticData, policyData == null ? null : new VConstraint(policyData));
+    }
+
+    protected ProcessExecutor getProcessExecutor(Document diagnosticData, VConstraint validationPolicy) {
+
+        if (indexedProcessExecutor) {
+
+            return new IndexedProcessExecutor(diagnosticData, validationPolicy);
+        }
+        return new ProcessExecutor(diagnosticData, validationPolicy);
     }
 
     /**
@@ -488,39 +571,139 @@ public abstract class SignedDocumentValidator {
       /*
        * For each signature present in the file to be validated the extraction of diagnostic data is launched.
        */
+        final List<SignatureValidationTask> tasks = new ArrayList<SignatureValidationTask>();
         for (final AdvancedSignature signature : getSignatures()) {
 
-            final ValidationContext valContext = new SignatureValidationContext(signature, certVerifier, validationCertPool);
-            final XmlSignature xmlSignature = validateSignature(signature, valContext);
-            final Set<CertificateToken> signatureCertPool = valContext.getProcessedCertificates();
+            tasks.add(new SignatureValidationTask(signature));
+        }
+        if (executorService == null) {
+
+            for (final SignatureValidationTask task : tasks) {
+
+                task.call();
+            }
+        } else {
+
+            invokeAll(tasks);
+        }
+        // The results are merged in the order of the signatures: the timestamp ids are assigned here.
+        for (final SignatureValidationTask task : tasks) {
+
+            final XmlSignature xmlSignature = validateSignature(task);
+            final Set<CertificateToken> signatureCertPool = task.valContext.getProcessedCertificates();
             usedCertPool.addAll(signatureCertPool);
-            usedCertificatesDigestAlgorithms.addAll(signature.getUsedCertificatesDigestAlgorithms());
+            usedCertificatesDigestAlgorithms.addAll(task.signature.getUsedCertificatesDigestAlgorithms());
             dData.getSignature().add(xmlSignature);
         }
         dealUsedCertificates(usedCertificatesDigestAlgorithms, usedCertPool);
         return dData;
     }
 
+    /**
+     * This method executes the given tasks with the {@link #executorService} and waits for their completion.
+     *
+     * @param tasks the list of tasks to execute
+     * @throws DSSException if a task fails or if the current thread is interrupted
+     */
+    private void invokeAll(final List<SignatureValidationTask> tasks) throws DSSException {
+
+        try {
+
+            final List<Future<XmlSignature>> futures = executorService.invokeAll(tasks);
+            for (final Future<XmlSignature> future : futures) {
+
+                future.get();
+            }
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+            throw new DSSException("The validation of the signatures was interrupted.", e);
+        } catch (ExecutionException e) {
+
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+
+                throw (RuntimeException) cause;
+            }
+            throw new DSSException(cause);
+        }
+    }
+
+    /**
+     * This class carries out the part of the validation of one signature which does not depend on the other signatures:
+     * the verification of its cryptographic integrity and the validation of its certificates, revocation data and
+     * timestamps. The diagnostic data is completed afterwards by {@link #validateSignature(SignatureValidationTask)}.
+     */
+    private class SignatureValidationTask implements Callable<XmlSignature> {
+
+        private final AdvancedSignature signature;
+
+        private final XmlSignature xmlSignature = DIAGNOSTIC_DATA_OBJECT_FACTORY.createXmlSignature();
+
+        private ValidationContext valContext;
+
+        private CertificateToken signingToken;
+
+        /**
+         * The exception which interrupted the validation of the signature, if any.
+         */
+        private Exception exception;
+
+        SignatureValidationTask(final AdvancedSignature signature) {
+
+            this.signature = signature;
+        }
+
+        @Override
+        public XmlSignature call() {
+
+            final SignatureValidationContext signatureValidationContext;
+            synchronized (signatureDataLock) {
+
+                signatureValidationContext = new SignatureValidationContext(signature, certVerifier, validationCertPool);
+            }
+            signatureValidationContext.setSignatureDataLock(signatureDataLock);
+            signatureValidationContext.setExecutorService(tokenExecutorService);
+            valContext = signatureValidationContext;
+            try {
+
+                synchronized (signatureDataLock) {
+
+                    signingToken = dealSignature(signature, xmlSignature);
+                }
+                valContext.setCertificateToValidate(signingToken);
+
+                valContext.validate();
+            } catch (Exception e) {
+
+                exception = e;
+            }
+            return xmlSignature;
+        }
+    }
+
     /**
      * Main method for validating a signature. The diagnostic data is extracted.
      *
-     * @param signature Signature to be validated (can be XAdES, CAdES, PAdES.
+     * @param task the task which validated the signature (can be XAdES, CAdES, PAdES).
      * @return The JAXB object containing all diagnostic data pertaining to the signature
      */
-    private XmlSignature validateSignature(final AdvancedSignature signature, final ValidationContext valContext) throws DSSException {
+    private XmlSignature validateSignature(final SignatureValidationTask task) throws DSSException {
 
       /*
        * TODO: (Bob 20130424) The the certToValidate parameter must be added.
        */
-        final XmlSignature xmlSignature = DIAGNOSTIC_DATA_OBJECT_FACTORY.createXmlSignature();
+        final AdvancedSignature signature = task.signature;
+        final ValidationContext valContext = task.valContext;
+        final XmlSignature xmlSignature = task.xmlSignature;
+        final CertificateToken signingToken = task.signingToken;
 
         try {
 
-            final CertificateToken signingToken = dealSignature(signature, xmlSignature);
+            if (task.exception != null) {
 
-            valContext.setCertificateToValidate(signingToken);
-
-            valContext.validate();
+                throw task.exception;
+            }
 
             dealPolicy(signature, xmlSignature);
 
@@ -21,10 +21,18 @@ package eu.europa.ec.markt.dss.validation102853;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Logger;
 
 import javax.xml.bind.JAXBContext;
@@ -36,23 +44,96 @@ import javax.xml.parsers.ParserConfigurationException;
 
 import org.apache.commons.io.IOUtils;
 import org.w3c.dom.Document;
-import org.xml.sax.SAXException;
 
 import eu.europa.ec.markt.dss.DSSUtils;
+import eu.europa.ec.markt.dss.DigestAlgorithm;
 import eu.europa.ec.markt.dss.exception.DSSException;
 import eu.europa.ec.markt.dss.validation102853.data.diagnostic.DiagnosticData;
 import eu.europa.ec.markt.dss.validation102853.data.diagnostic.ObjectFactory;
 import eu.europa.ec.markt.dss.validation102853.engine.function.XmlNode;
-
+import eu.europa.ec.markt.dss.validation102853.engine.rules.wrapper.VConstraint;
+
+/**
+ * This class provides the XML resources used by the 102853 validation process.<br>
+ * <br>
+ * Threading contract: all methods of this class can be called concurrently. {@link JAXBContext} and
+ * {@link DocumentBuilderFactory} are only used to create the objects, the {@link Marshaller} and {@link DocumentBuilder}
+ * instances, which are not thread-safe, are confined to the calling thread. The default policy is read only once and kept
+ * as an immutable array of bytes, each call to {@link #loadPolicyData(InputStream)} returns a new {@link Document} that
+ * belongs to the caller.
+ */
 public class ValidationResourceManager {
 
     private static final Logger LOG = Logger.getLogger(ValidationResourceManager.class.getName());
 
     public static final String DIAGNOSTIC_DATA_NAMESPACE = "http://dss.markt.ec.europa.eu/validation/diagnostic";
 
-    private static Marshaller marshaller;
+    private static final JAXBContext jaxbContext;
+
+    private static final DocumentBuilderFactory documentBuilderFactory;
+
+    private static final ThreadLocal<Marshaller> marshaller = new ThreadLocal<Marshaller>() {
+
+        @Override
+        protected Marshaller initialValue() {
+
+            try {
+
+                final Marshaller marshaller = jaxbContext.createMarshaller();
+                marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
+                return marshaller;
+            } catch (JAXBException e) {
+                throw new DSSException(e);
+            }
+        }
+    };
+
+    private static final ThreadLocal<DocumentBuilder> documentBuilder = new ThreadLocal<DocumentBuilder>() {
+
+        @Override
+        protected DocumentBuilder initialValue() {
 
-    private static DocumentBuilder documentBuilder;
+            try {
+
+                return documentBuilderFactory.newDocumentBuilder();
+            } catch (ParserConfigurationException e) {
+                throw new DSSException(e);
+            }
+        }
+    };
+
+    /**
+     * The content of the default policy file, read once.
+     */
+    private static volatile byte[] defaultPolicyData;
+
+    /**
+     * The location from which {@link #defaultPolicyData} was read.
+     */
+    private static volatile String defaultPolicyDataLocation;
+
+    /**
+     * The maximum number of compiled validation policies kept in {@link #compiledPolicies}.
+     */
+    private static final int MAX_COMPILED_POLICIES = 16;
+
+    /**
+     * The compiled validation policies keyed by the SHA-256 digest of their content. The least recently used policy is
+     * removed when the cache is full.
+     */
+    private static final Map<String, VConstraint> compiledPolicies = new LinkedHashMap<String, VConstraint>(MAX_COMPILED_POLICIES, 0.75f, true) {
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, VConstraint> eldest) {
+
+            return size() > MAX_COMPILED_POLICIES;
+        }
+    };
+
+    /**
+     * The last loaded state of the policy files keyed by their canonical path.
+     */
+    private static final ConcurrentMap<String, PolicyFile> policyFiles = new ConcurrentHashMap<String, PolicyFile>();
 
     /**
      * flag to configure on VM level if the diagnostic data from 102853 validation process should be stored.<br/>
@@ -80,19 +161,12 @@ public class ValidationResourceManager {
 
         try {
 
-            JAXBContext jaxbContext = JAXBContext.newInstance(ObjectFactory.class);
-            marshaller = jaxbContext.createMarshaller();
-            marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
-            // unmarshaller = jaxbContext.createUnmarshaller();
-
-            DocumentBuilderFactory dfactory = DocumentBuilderFactory.newInstance();
-            dfactory.setNamespaceAware(true);
-            documentBuilder = dfactory.newDocumentBuilder();
+            jaxbContext = JAXBContext.newInstance(ObjectFactory.class);
         } catch (JAXBException e) {
             throw new DSSException(e);
-        } catch (ParserConfigurationException e) {
-            throw new DSSException(e);
         }
+        documentBuilderFactory = DocumentBuilderFactory.newInstance();
+        documentBuilderFactory.setNamespaceAware(true);
     }
 
     /**
@@ -140,13 +214,177 @@ public class ValidationResourceManager {
 
             return load(policyDataStream);
         }
-        if (defaultPolicyConstraintsLocation != null && !defaultPolicyConstraintsLocation.isEmpty()) {
+        final byte[] policyData = getDefaultPolicyData();
+        if (policyData != null) {
 
-            return load(defaultPolicyConstraintsLocation);
+            return load(new ByteArrayInputStream(policyData));
         }
         return null;
     }
 
+    /**
+     * This method returns the content of the default policy file. The file is read only once for a given value of
+     * {@link #defaultPolicyConstraintsLocation}.
+     *
+     * @return the content of the default policy file or null if no default policy is defined
+     */
+    private static byte[] getDefaultPolicyData() {
+
+        final String location = defaultPolicyConstraintsLocation;
+        if (location == null || location.isEmpty()) {
+
+            return null;
+        }
+        synchronized (ValidationResourceManager.class) {
+
+            if (defaultPolicyData == null || !location.equals(defaultPolicyDataLocation)) {
+
+                final InputStream inputStream = getResourceInputStream(location);
+                if (inputStream == null) {
+
+                    throw new DSSException("The default policy file cannot be found: " + location);
+                }
+                try {
+
+                    defaultPolicyData = IOUtils.toByteArray(inputStream);
+                    defaultPolicyDataLocation = location;
+                } catch (IOException e) {
+                    throw new DSSException(e);
+                } finally {
+                    DSSUtils.closeQuietly(inputStream);
+                }
+            }
+            return defaultPolicyData;
+        }
+    }
+
+    /**
+     * This method returns the compiled validation policy read from the given stream. If the stream is null then the
+     * default policy is used. The policies are compiled only once for a given content and the returned
+     * {@link VConstraint} is shared: it can be used concurrently by several validations.
+     *
+     * @param policyDataStream the stream of the policy constraint file or null
+     * @return the compiled policy or null if no default policy is defined
+     */
+    public static VConstraint loadPolicy(final InputStream policyDataStream) {
+
+        final byte[] policyData;
+        if (policyDataStream != null) {
+
+            try {
+
+                policyData = IOUtils.toByteArray(policyDataStream);
+            } catch (IOException e) {
+                throw new DSSException(e);
+            } finally {
+                DSSUtils.closeQuietly(policyDataStream);
+            }
+        } else {
+
+            policyData = getDefaultPolicyData();
+            if (policyData == null) {
+
+                return null;
+            }
+        }
+        return compilePolicy(policyData);
+    }
+
+    /**
+     * This method returns the compiled validation policy of the given file. The file is read again only when its size
+     * or its last modification date changes, and compiled again only when its content changes: an updated policy is
+     * taken into account without restarting the application.
+     *
+     * @param policyFile the policy constraint file
+     * @return the compiled policy
+     */
+    public static VConstraint loadPolicy(final File policyFile) {
+
+        final String path;
+        try {
+
+            path = policyFile.getCanonicalPath();
+        } catch (IOException e) {
+            throw new DSSException(e);
+        }
+        final long lastModified = policyFile.lastModified();
+        final long length = policyFile.length();
+        final PolicyFile loaded = policyFiles.get(path);
+        if (loaded != null && loaded.lastModified == lastModified && loaded.length == length) {
+
+            return loaded.policy;
+        }
+        final VConstraint policy;
+        try {
+
+            policy = loadPolicy(new FileInputStream(policyFile));
+        } catch (IOException e) {
+            throw new DSSException(e);
+        }
+        if (loaded != null && loaded.policy != policy) {
+
+            LOG.info("The validation policy has been reloaded: " + path);
+        }
+        policyFiles.put(path, new PolicyFile(lastModified, length, policy));
+        return policy;
+    }
+
+    /**
+     * This method compiles the policy or returns the already compiled policy with the same content.
+     *
+     * @param policyData the content of the policy file
+     * @return the compiled policy
+     */
+    private static VConstraint compilePolicy(final byte[] policyData) {
+
+        final String key;
+        try {
+
+            final MessageDigest messageDigest = MessageDigest.getInstance(DigestAlgorithm.SHA256.getName());
+            key = DSSUtils.toHex(messageDigest.digest(policyData));
+        } catch (NoSuchAlgorithmException e) {
+            throw new DSSException(e);
+        }
+        synchronized (compiledPolicies) {
+
+            final VConstraint policy = compiledPolicies.get(key);
+            if (policy != null) {
+
+                return policy;
+            }
+        }
+        final VConstraint policy = new VConstraint(load(new ByteArrayInputStream(policyData)));
+        synchronized (compiledPolicies) {
+
+            final VConstraint concurrentPolicy = compiledPolicies.get(key);
+            if (concurrentPolicy != null) {
+
+                return concurrentPolicy;
+            }
+            compiledPolicies.put(key, policy);
+        }
+        return policy;
+    }
+
+    /**
+     * The state of a policy file when it was loaded.
+     */
+    private static class PolicyFile {
+
+        private final long lastModified;
+
+        private final long length;
+
+        private final VConstraint policy;
+
+        private PolicyFile(final long lastModified, final long length, final VConstraint policy) {
+
+            this.lastModified = lastModified;
+            this.length = length;
+            this.policy = policy;
+        }
+    }
+
     /**
      * This method returns the unique number used in a file name of diagnostic data.
      *
@@ -232,24 +470,16 @@ public class ValidationResourceManager {
     }
 
     /**
-     * This method loads the data from the {@link XmlNode} into a {@link Document}</code>.
+     * This method loads the data from the {@link XmlNode} into a {@link Document}</code>. The DOM is built directly from
+     * the node tree: the data is not serialized and parsed again.
      *
      * @param data
      * @return
      */
     public static Document xmlNodeIntoDom(final XmlNode data) {
 
-        final InputStream inputStream = data.getInputStream();
-        Document document;
-        try {
-            document = documentBuilder.parse(inputStream);
-        } catch (SAXException e) {
-
-            throw new DSSException(e);
-        } catch (IOException e) {
-            throw new DSSException(e);
-        }
-        return document;
+        final Document document = documentBuilder.get().newDocument();
+        return data.toDocument(document);
     }
 
     /**
@@ -283,7 +513,7 @@ public class ValidationResourceManager {
         Document document = null;
         try {
 
-            document = documentBuilder.parse(inputStream);
+            document = documentBuilder.get().parse(inputStream);
             // DSSXMLUtils.printDocument(document, System.out);
         } catch (Exception e) {
             throw new DSSException(e);
@@ -303,8 +533,8 @@ public class ValidationResourceManager {
 
         try {
 
-            Document diagnosticData = documentBuilder.newDocument();
-            marshaller.marshal(diagnosticDataJB, diagnosticData);
+            Document diagnosticData = documentBuilder.get().newDocument();
+            marshaller.get().marshal(diagnosticDataJB, diagnosticData);
             return diagnosticData;
         } catch (JAXBException e) {
             throw new DSSException(e);
@@ -322,7 +552,7 @@ public class ValidationResourceManager {
         try {
 
             final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            marshaller.marshal(diagnosticData, baos);
+            marshaller.get().marshal(diagnosticData, baos);
             return baos;
         } catch (JAXBException e) {
             throw new DSSException(e);
@@ -22,9 +22,12 @@ package eu.europa.ec.markt.dss.validation102853.cades;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
 import java.security.cert.CRLException;
 import java.security.cert.X509CRL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashSet;
@@ -38,6 +41,7 @@ import org.apache.commons.io.output.ByteArrayOutputStream;
 import org.bouncycastle.asn1.ASN1Encodable;
 import org.bouncycastle.asn1.ASN1EncodableVector;
 import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.ASN1OutputStream;
 import org.bouncycastle.asn1.ASN1Sequence;
 import org.bouncycastle.asn1.ASN1Set;
 import org.bouncycastle.asn1.ASN1UTCTime;
@@ -142,12 +146,6 @@ public class CAdESSignature implements AdvancedSignature {
     public static final ASN1ObjectIdentifier id_etsi_electronicSignatureStandard_attributes_atsHashIndex = id_etsi_electronicSignatureStandard_attributes
           .branch("5");
 
-    /**
-     * This field stores the DSS internal identifier of the signature. It is used to distinguish the different signatures inside the same document.
-     * Its value is auto incremental.
-     */
-    private static int autoSignatureId = 1;
-
     private final CMSSignedData cmsSignedData;
 
     private final SignerInformation signerInformation;
@@ -825,11 +823,17 @@ public class CAdESSignature implements AdvancedSignature {
     @Override
     public byte[] getTimestampX1Data() {
 
+        final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        writeTimestampX1Data(data);
+        return data.toByteArray();
+    }
+
+    @Override
+    public void writeTimestampX1Data(final OutputStream output) {
+
         try {
-            @SuppressWarnings("resource")
-            final ByteArrayOutputStream data = new ByteArrayOutputStream();
 
-            data.write(signerInformation.getSignature());
+            output.write(signerInformation.getSignature());
 
          /*
           * We don't include the outer SEQUENCE, only the attrType and attrValues as stated by the TS Â§6.3.5, NOTE 2
@@ -840,15 +844,13 @@ public class CAdESSignature implements AdvancedSignature {
                 final Attribute attribute = attributes.get(PKCSObjectIdentifiers.id_aa_signatureTimeStampToken);
                 if (attribute != null) {
 
-                    data.write(attribute.getAttrType().getDEREncoded());
-                    data.write(attribute.getAttrValues().getDEREncoded());
+                    output.write(attribute.getAttrType().getDEREncoded());
+                    output.write(attribute.getAttrValues().getDEREncoded());
                 }
             }
 
          /* Those are common to Type 1 and Type 2 */
-            data.write(getTimestampX2Data());
-
-            return data.toByteArray();
+            writeTimestampX2Data(output);
         } catch (IOException ex) {
             throw new RuntimeException(ex);
         }
@@ -857,9 +859,15 @@ public class CAdESSignature implements AdvancedSignature {
     @Override
     public byte[] getTimestampX2Data() {
 
+        final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        writeTimestampX2Data(data);
+        return data.toByteArray();
+    }
+
+    @Override
+    public void writeTimestampX2Data(final OutputStream output) {
+
         try {
-            @SuppressWarnings("resource")
-            final ByteArrayOutputStream data = new ByteArrayOutputStream();
 
          /* Those are common to Type 1 and Type 2 */
             final AttributeTable attributes = signerInformation.getUnsignedAttributes();
@@ -869,18 +877,17 @@ public class CAdESSignature implements AdvancedSignature {
                 final Attribute certAttribute = attributes.get(PKCSObjectIdentifiers.id_aa_ets_certificateRefs);
                 if (certAttribute != null) {
 
-                    data.write(certAttribute.getAttrType().getDEREncoded());
-                    data.write(certAttribute.getAttrValues().getDEREncoded());
+                    output.write(certAttribute.getAttrType().getDEREncoded());
+                    output.write(certAttribute.getAttrValues().getDEREncoded());
                 }
 
                 final Attribute revAttribute = attributes.get(PKCSObjectIdentifiers.id_aa_ets_revocationRefs);
                 if (revAttribute != null) {
 
-                    data.write(revAttribute.getAttrType().getDEREncoded());
-                    data.write(revAttribute.getAttrValues().getDEREncoded());
+                    output.write(revAttribute.getAttrType().getDEREncoded());
+                    output.write(revAttribute.getAttrValues().getDEREncoded());
                 }
             }
-            return data.toByteArray();
         } catch (IOException ex) {
             throw new RuntimeException(ex);
         }
@@ -890,9 +897,21 @@ public class CAdESSignature implements AdvancedSignature {
     @Override
     public byte[] getArchiveTimestampData(TimestampToken timestampToken) {
 
+        final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        writeArchiveTimestampData(timestampToken, data);
+        return data.toByteArray();
+    }
+
+    /**
+     * The data are encoded straight into the stream, as {@code getEncoded()} would encode them: the encapsulated content,
+     * the certificates and the CRLs are not copied.
+     */
+    @Override
+    public void writeArchiveTimestampData(final TimestampToken timestampToken, final OutputStream output) {
+
         InputStream input = null;
         try {
-            final ByteArrayOutputStream data = new ByteArrayOutputStream();
+            final ASN1OutputStream data = new ASN1OutputStream(output);
 
             ContentInfo contentInfo = cmsSignedData.getContentInfo();
             SignedData signedData = SignedData.getInstance(contentInfo.getContent());
@@ -919,17 +938,15 @@ public class CAdESSignature implements AdvancedSignature {
                 DEROctetString octet = (DEROctetString) content.getContent();
 
                 ContentInfo info2 = new ContentInfo(PKCSObjectIdentifiers.data, new BERConstructedOctetString(octet.getOctets()));
-                data.write(info2.getEncoded());
+                data.writeObject(info2);
             }
 
             if (signedData.getCertificates() != null) {
-                DEROutputStream output = new DEROutputStream(data);
-                output.writeObject(signedData.getCertificates());
-                output.close();
+                new DEROutputStream(output).writeObject(signedData.getCertificates());
             }
 
             if (signedData.getCRLs() != null) {
-                data.write(signedData.getCRLs().getEncoded());
+                data.writeObject(signedData.getCRLs());
             }
 
             final AttributeTable unsignedAttributes = signerInformation.getUnsignedAttributes();
@@ -952,11 +969,8 @@ public class CAdESSignature implements AdvancedSignature {
                 }
                 SignerInformation filteredInfo = SignerInformation.replaceUnsignedAttributes(signerInformation, new AttributeTable(filtered));
 
-                data.write(filteredInfo.toASN1Structure().getEncoded());
+                data.writeObject(filteredInfo.toASN1Structure());
             }
-
-            return data.toByteArray();
-
         } catch (IOException e) {
             throw new DSSException(e);
         } finally {
@@ -1011,6 +1025,13 @@ public class CAdESSignature implements AdvancedSignature {
     // }
     // }
 
+    /**
+     * The DSS internal identifier of the signature is used to distinguish the different signatures inside the same
+     * document. It is derived from the signature itself (the first bytes of the SHA-256 digest of the SignerInfo), so the
+     * same document always gets the same identifiers, whatever the order in which its signatures are processed.
+     *
+     * @return the identifier of the signature
+     */
     @Override
     public String getId() {
 
@@ -1018,7 +1039,9 @@ public class CAdESSignature implements AdvancedSignature {
 
             if (signatureId == null) {
 
-                signatureId = "id-" + String.format("%05d", autoSignatureId++);;
+                final MessageDigest digest = MessageDigest.getInstance(DigestAlgorithm.SHA256.getName());
+                final byte[] signerInfoDigest = digest.digest(signerInformation.toASN1Structure().getEncoded());
+                signatureId = "id-" + DSSUtils.toHex(Arrays.copyOf(signerInfoDigest, 8));
             }
             return signatureId;
         } catch (Exception e) {
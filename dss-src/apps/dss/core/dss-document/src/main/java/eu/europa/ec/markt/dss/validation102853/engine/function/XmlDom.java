@@ -24,16 +24,21 @@ import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
+import javax.xml.xpath.XPathVariableResolver;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -54,8 +59,6 @@ import eu.europa.ec.markt.dss.validation102853.engine.rules.RuleUtils;
  */
 public class XmlDom {
 
-    private static final XPathFactory factory = XPathFactory.newInstance();
-
     private static final NamespaceContext nsContext;
 
     private static final Map<String, String> namespaces;
@@ -67,6 +70,220 @@ public class XmlDom {
         nsContext = new NamespaceContextMap(namespaces);
     }
 
+    /**
+     * The maximum number of compiled expressions kept by each thread.
+     */
+    private static final int MAX_CACHED_EXPRESSIONS = 1024;
+
+    /**
+     * The parsed XPath templates (thread-safe, shared by all threads).
+     */
+    private static final ConcurrentMap<String, XPathTemplate> templates = new ConcurrentHashMap<String, XPathTemplate>();
+
+    /**
+     * Neither {@link XPathFactory}, {@link XPath} nor {@link XPathExpression} are thread-safe: each thread gets its own
+     * {@link XPath} instance and its own cache of compiled expressions.
+     */
+    private static final ThreadLocal<XPathEvaluator> xPathEvaluator = new ThreadLocal<XPathEvaluator>() {
+
+        @Override
+        protected XPathEvaluator initialValue() {
+
+            return new XPathEvaluator();
+        }
+    };
+
+    /**
+     * The per-thread XPath instance with its cache of compiled expressions. The parameters of the expression being
+     * evaluated are bound through the variables $p0, $p1...
+     */
+    private static class XPathEvaluator implements XPathVariableResolver {
+
+        private final XPath xpath;
+
+        private final Map<String, XPathExpression> expressions = new LinkedHashMap<String, XPathExpression>(64, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, XPathExpression> eldest) {
+
+                return size() > MAX_CACHED_EXPRESSIONS;
+            }
+        };
+
+        private XPathTemplate template;
+
+        private Object[] params;
+
+        XPathEvaluator() {
+
+            xpath = XPathFactory.newInstance().newXPath();
+            xpath.setNamespaceContext(nsContext);
+            xpath.setXPathVariableResolver(this);
+        }
+
+        XPathExpression getExpression(final String xpathString) {
+
+            XPathExpression expr = expressions.get(xpathString);
+            if (expr == null) {
+
+                try {
+
+                    expr = xpath.compile(addNamespacePrefix(xpathString));
+                } catch (XPathExpressionException ex) {
+
+                    throw new RuntimeException(ex);
+                }
+                expressions.put(xpathString, expr);
+            }
+            return expr;
+        }
+
+        Object evaluate(final Node node, final String xPath, final Object[] params, final QName returnType) throws XPathExpressionException {
+
+            final XPathTemplate template = getTemplate(xPath, params);
+            final XPathExpression expr = getExpression(template.expand(params));
+            this.template = template;
+            this.params = params;
+            try {
+
+                return expr.evaluate(node, returnType);
+            } finally {
+
+                this.template = null;
+                this.params = null;
+            }
+        }
+
+        @Override
+        public Object resolveVariable(final QName variableName) {
+
+            final int index = Integer.parseInt(variableName.getLocalPart().substring(1));
+            return template.format(index, params[index]);
+        }
+    }
+
+    /**
+     * This class represents an XPath query with String.format-like placeholders (%s, %d). The placeholders between quotes
+     * (string literals) are replaced by variables: the compiled expression does not depend on their value. The other
+     * placeholders (element names, positions) are still replaced by their value.
+     */
+    private static class XPathTemplate {
+
+        private final String template;
+
+        /**
+         * The text between the placeholders, null if the template is not supported and must be formatted as a whole.
+         */
+        private final String[] fragments;
+
+        private final char[] conversions;
+
+        private final boolean[] bound;
+
+        /**
+         * The expression text when all the placeholders are bound to variables, null otherwise.
+         */
+        private final String boundExpression;
+
+        XPathTemplate(final String template, final int paramCount) {
+
+            this.template = template;
+            final List<String> fragmentList = new ArrayList<String>();
+            final StringBuilder conversionList = new StringBuilder();
+            int start = 0;
+            int index = template.indexOf('%');
+            boolean supported = true;
+            while (index >= 0) {
+
+                final char conversion = index + 1 < template.length() ? template.charAt(index + 1) : 0;
+                if (conversion != 's' && conversion != 'd') {
+
+                    supported = false;
+                    break;
+                }
+                fragmentList.add(template.substring(start, index));
+                conversionList.append(conversion);
+                start = index + 2;
+                index = template.indexOf('%', start);
+            }
+            fragmentList.add(template.substring(start));
+            if (!supported || conversionList.length() != paramCount) {
+
+                fragments = null;
+                conversions = null;
+                bound = null;
+                boundExpression = null;
+                return;
+            }
+            fragments = fragmentList.toArray(new String[fragmentList.size()]);
+            conversions = conversionList.toString().toCharArray();
+            bound = new boolean[conversions.length];
+            boolean allBound = true;
+            for (int ii = 0; ii < conversions.length; ii++) {
+
+                final String before = fragments[ii];
+                final String after = fragments[ii + 1];
+                final char quote = before.isEmpty() ? 0 : before.charAt(before.length() - 1);
+                if ((quote == '\'' || quote == '"') && !after.isEmpty() && after.charAt(0) == quote) {
+
+                    bound[ii] = true;
+                    fragments[ii] = before.substring(0, before.length() - 1);
+                    fragments[ii + 1] = after.substring(1);
+                } else {
+
+                    allBound = false;
+                }
+            }
+            boundExpression = allBound ? expand(null) : null;
+        }
+
+        /**
+         * @param params
+         * @return the text of the expression for the given parameters
+         */
+        String expand(final Object[] params) {
+
+            if (fragments == null) {
+
+                return params.length > 0 ? String.format(template, params) : template;
+            }
+            if (boundExpression != null) {
+
+                return boundExpression;
+            }
+            final StringBuilder expression = new StringBuilder(fragments[0]);
+            for (int ii = 0; ii < conversions.length; ii++) {
+
+                if (bound[ii]) {
+
+                    expression.append("$p").append(ii);
+                } else {
+
+                    expression.append(format(ii, params[ii]));
+                }
+                expression.append(fragments[ii + 1]);
+            }
+            return expression.toString();
+        }
+
+        String format(final int index, final Object param) {
+
+            return conversions[index] == 's' ? String.valueOf(param) : String.format("%d", param);
+        }
+    }
+
+    private static XPathTemplate getTemplate(final String xPath, final Object[] params) {
+
+        final String key = params.length == 0 ? xPath : params.length + "|" + xPath;
+        XPathTemplate template = templates.get(key);
+        if (template == null) {
+
+            template = new XPathTemplate(xPath, params.length);
+            templates.putIfAbsent(key, template);
+        }
+        return template;
+    }
+
     Element rootElement;
 
     String nameSpace;
@@ -82,26 +299,11 @@ public class XmlDom {
         this.rootElement = element;
     }
 
-    private static XPathExpression createXPathExpression(String xpathString) {
+    private NodeList getNodeList(final String xPath, final Object... params) {
 
-        XPath xpath = factory.newXPath();
-        xpath.setNamespaceContext(nsContext);
         try {
 
-            XPathExpression expr = xpath.compile(xpathString);
-            return expr;
-        } catch (XPathExpressionException ex) {
-
-            throw new RuntimeException(ex);
-        }
-    }
-
-    private static NodeList getNodeList(Node xmlNode, String xpathString) {
-
-        try {
-
-            XPathExpression expr = createXPathExpression(xpathString);
-            return (NodeList) expr.evaluate(xmlNode, XPathConstants.NODESET);
+            return (NodeList) xPathEvaluator.get().evaluate(rootElement, xPath, params, XPathConstants.NODESET);
         } catch (XPathExpressionException e) {
 
             throw new RuntimeException(e);
@@ -119,9 +321,7 @@ public class XmlDom {
 
         try {
 
-            String xPath_ = format(xPath, params);
-
-            NodeList nodeList = getNodeList(rootElement, xPath_);
+            NodeList nodeList = getNodeList(xPath, params);
             List<XmlDom> list = new ArrayList<XmlDom>();
             for (int ii = 0; ii < nodeList.getLength(); ii++) {
 
@@ -143,9 +343,7 @@ public class XmlDom {
 
         try {
 
-            String xPath_ = format(xPath, params);
-
-            NodeList nodeList = getNodeList(rootElement, xPath_);
+            NodeList nodeList = getNodeList(xPath, params);
             for (int ii = 0; ii < nodeList.getLength(); ii++) {
 
                 Node node = nodeList.item(ii);
@@ -162,25 +360,6 @@ public class XmlDom {
         }
     }
 
-    /**
-     * @param xPath
-     * @param params
-     * @return
-     */
-    private static String format(final String xPath, final Object... params) {
-
-        String formattedXPath = null;
-        if (params.length > 0) {
-
-            formattedXPath = String.format(xPath, params);
-        } else {
-
-            formattedXPath = xPath;
-        }
-        formattedXPath = addNamespacePrefix(formattedXPath);
-        return formattedXPath;
-    }
-
     private static String addNamespacePrefix(String formatedXPath) {
 
         if (formatedXPath.startsWith("/dss:") || formatedXPath.startsWith("./dss:")) {
@@ -214,9 +393,7 @@ public class XmlDom {
 
     public String getValue(final String xPath, final Object... params) {
 
-        String xPath_ = format(xPath, params);
-
-        NodeList nodeList = getNodeList(rootElement, xPath_);
+        NodeList nodeList = getNodeList(xPath, params);
         if (nodeList.getLength() == 1) {
 
             Node node = nodeList.item(0);
@@ -267,11 +444,9 @@ public class XmlDom {
 
     public long getCountValue(final String xPath, final Object... params) {
 
-        String xpathString = format(xPath, params);
         try {
 
-            XPathExpression xPathExpression = createXPathExpression(xpathString);
-            Double number = (Double) xPathExpression.evaluate(rootElement, XPathConstants.NUMBER);
+            Double number = (Double) xPathEvaluator.get().evaluate(rootElement, xPath, params, XPathConstants.NUMBER);
             return number.intValue();
         } catch (XPathExpressionException e) {
 
@@ -28,6 +28,9 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
+import javax.xml.XMLConstants;
+
+import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
@@ -263,6 +266,64 @@ public class XmlNode {
         return in;
     }
 
+    /**
+     * This method builds the DOM representation of this node directly into the given empty {@link Document}. The
+     * resulting tree is the same as the one obtained by parsing {@link #getInputStream()} (including the indentation
+     * text nodes and the namespace declarations) but avoids the serialization and the re-parsing of the data between
+     * the rules-engine stages.
+     *
+     * @param document the empty {@code Document} to fill
+     * @return the given {@code Document}
+     */
+    public Document toDocument(final Document document) {
+
+        if (parentNode != null) {
+
+            setNameSpace(parentNode.getNameSpace());
+        }
+        final Element element = createElement(document, this, nameSpace, "", 0);
+        document.appendChild(element);
+        return document;
+    }
+
+    /**
+     * Mirrors {@link #writeNodes(XmlNode, StringBuilder, StringBuilder, String)}: an element without its own namespace
+     * inherits the default namespace of its parent.
+     */
+    private static Element createElement(final Document document, final XmlNode node, final String nodeNameSpace, final String parentNameSpace,
+                                         final int depth) {
+
+        final String nameSpace = nodeNameSpace.isEmpty() ? parentNameSpace : nodeNameSpace;
+        final Element element = document.createElementNS(nameSpace.isEmpty() ? null : nameSpace, node.name);
+        for (final Entry<String, String> entry : node.attributes.entrySet()) {
+
+            element.setAttributeNS(null, entry.getKey(), entry.getValue());
+        }
+        if (!nameSpace.equals(parentNameSpace)) {
+
+            element.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, XMLConstants.XMLNS_ATTRIBUTE, nameSpace);
+        }
+        if (node.children.size() > 0) {
+
+            final StringBuilder indent = new StringBuilder("\n");
+            for (int ii = 0; ii <= depth; ii++) {
+
+                indent.append('\t');
+            }
+            final String childIndent = indent.toString();
+            for (final XmlNode child : node.children) {
+
+                element.appendChild(document.createTextNode(childIndent));
+                element.appendChild(createElement(document, child, child.nameSpace, nameSpace, depth + 1));
+            }
+            element.appendChild(document.createTextNode(childIndent.substring(0, childIndent.length() - 1)));
+        } else if (node.value != null && !node.value.isEmpty()) {
+
+            element.appendChild(document.createTextNode(node.value));
+        }
+        return element;
+    }
+
     @Override
     public String toString() {
 
@@ -0,0 +1,118 @@
+/*
+ * DSS - Digital Signature Services
+ *
+ * Copyright (C) 2013 European Commission, Directorate-General Internal Market and Services (DG MARKT), B-1049 Bruxelles/Brussel
+ *
+ * Developed by: 2013 ARHS Developments S.A. (rue Nicolas Bové 2B, L-1253 Luxembourg) http://www.arhs-developments.com
+ *
+ * This file is part of the "DSS - Digital Signature Services" project.
+ *
+ * "DSS - Digital Signature Services" is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU Lesser General Public License as published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * DSS is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * "DSS - Digital Signature Services".  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.europa.ec.markt.dss.validation102853.engine.rules;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import eu.europa.ec.markt.dss.validation102853.engine.function.XmlDom;
+
+/**
+ * This class indexes the diagnostic data: the certificates of the pool are found by identifier with a hash lookup instead
+ * of an XPath predicate such as {@code ./Certificate[@Id='%s']}, and the list of the signatures is kept. The index is
+ * built with a single walk over the DOM and returns the same elements as the corresponding XPath queries (when several
+ * certificates share the same identifier the first one in document order is kept).
+ * <p/>
+ * The index is immutable once built and can be shared between threads.
+ */
+public class DiagnosticDataIndex {
+
+    private static final String ID = "Id";
+
+    private final List<XmlDom> signatures;
+
+    private final Map<String, XmlDom> certificatesById;
+
+    /**
+     * The default constructor for DiagnosticDataIndex.
+     *
+     * @param diagnosticData the diagnostic data to index
+     */
+    public DiagnosticDataIndex(final XmlDom diagnosticData) {
+
+        final List<XmlDom> signatures = new ArrayList<XmlDom>();
+        final Map<String, XmlDom> certificatesById = new HashMap<String, XmlDom>();
+        boolean usedCertificatesFound = false;
+
+        final Element root = diagnosticData.getRootElement();
+        for (Node node = root.getFirstChild(); node != null; node = node.getNextSibling()) {
+
+            if (isElement(node, NodeName.SIGNATURE)) {
+
+                signatures.add(new XmlDom((Element) node));
+            } else if (!usedCertificatesFound && isElement(node, NodeName.USED_CERTIFICATES)) {
+
+                usedCertificatesFound = true;
+                indexChildren((Element) node, NodeName.CERTIFICATE, certificatesById);
+            }
+        }
+        this.signatures = Collections.unmodifiableList(signatures);
+        this.certificatesById = certificatesById;
+    }
+
+    private static boolean isElement(final Node node, final String name) {
+
+        return node.getNodeType() == Node.ELEMENT_NODE && name.equals(node.getLocalName());
+    }
+
+    private static void indexChildren(final Element parent, final String name, final Map<String, XmlDom> index) {
+
+        for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+
+            if (isElement(node, name)) {
+
+                final String key = ((Element) node).getAttribute(ID);
+                putIfAbsent(index, key, new XmlDom((Element) node));
+            }
+        }
+    }
+
+    private static void putIfAbsent(final Map<String, XmlDom> index, final String key, final XmlDom element) {
+
+        if (!index.containsKey(key)) {
+
+            index.put(key, element);
+        }
+    }
+
+    /**
+     * @return the list of all signatures in the document order ({@code /DiagnosticData/Signature})
+     */
+    public List<XmlDom> getSignatures() {
+
+        return signatures;
+    }
+
+    /**
+     * @param id the identifier of the certificate
+     * @return the {@code XmlDom} representing the certificate or null
+     */
+    public XmlDom getCertificate(final String id) {
+
+        return certificatesById.get(id);
+    }
+}
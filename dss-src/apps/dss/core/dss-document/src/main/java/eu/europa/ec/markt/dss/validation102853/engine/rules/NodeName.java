@@ -69,4 +69,8 @@ public interface NodeName {
    public static final String SIGNATURE_FORMAT = "SignatureForm";
    public static final String SIGNATURE_LEVEL = "SignatureLevel";
    public static final String SIGNED_BY = "SignedBy";
+
+   // Diagnostic data
+   public static final String USED_CERTIFICATES = "UsedCertificates";
+   public static final String CERTIFICATE = "Certificate";
 }
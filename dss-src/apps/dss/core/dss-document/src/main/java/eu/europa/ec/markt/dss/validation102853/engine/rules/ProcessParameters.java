@@ -21,6 +21,7 @@
 package eu.europa.ec.markt.dss.validation102853.engine.rules;
 
 import java.util.Date;
+import java.util.List;
 
 import eu.europa.ec.markt.dss.exception.DSSException;
 import eu.europa.ec.markt.dss.validation102853.engine.function.XmlDom;
@@ -119,6 +120,13 @@ public class ProcessParameters {
 
     private XmlDom certPool;
 
+    /**
+     * This index allows to find the certificates of the diagnostic data by their identifier and keeps the list of the
+     * signatures.
+     * When null the XPath queries are used.
+     */
+    private DiagnosticDataIndex diagnosticDataIndex;
+
     private POEExtraction poe;
 
     public static boolean isLoggingEnabled() {
@@ -403,7 +411,47 @@ public class ProcessParameters {
 
     public XmlDom getCertificate(String id) {
 
-        return certPool == null ? certPool : certPool.getElement("./Certificate[@Id='%s']", id);
+        if (certPool == null) {
+
+            return null;
+        }
+        if (diagnosticDataIndex != null) {
+
+            return diagnosticDataIndex.getCertificate(id);
+        }
+        return certPool.getElement("./Certificate[@Id='%s']", id);
+    }
+
+    /**
+     * Returns the list of the signatures of the diagnostic data.
+     *
+     * @return
+     */
+    public List<XmlDom> getSignatures() {
+
+        if (diagnosticDataIndex != null) {
+
+            return diagnosticDataIndex.getSignatures();
+        }
+        return diagnosticData.getElements("/DiagnosticData/Signature");
+    }
+
+    /**
+     * See {@link #diagnosticDataIndex}
+     *
+     * @return
+     */
+    public DiagnosticDataIndex getDiagnosticDataIndex() {
+        return diagnosticDataIndex;
+    }
+
+    /**
+     * See {@link #diagnosticDataIndex}
+     *
+     * @param diagnosticDataIndex
+     */
+    public void setDiagnosticDataIndex(final DiagnosticDataIndex diagnosticDataIndex) {
+        this.diagnosticDataIndex = diagnosticDataIndex;
     }
 
     public POEExtraction getPOE() {
@@ -36,14 +36,45 @@ public final class RuleUtils {
     }
 
     /**
-     * The default date-time format: "yyyy-MM-dd'T'HH:mm:ss'Z'"
+     * The default date-time format: "yyyy-MM-dd'T'HH:mm:ss'Z'". {@link SimpleDateFormat} is not thread-safe: each thread
+     * gets its own instance.
      */
-    public static final SimpleDateFormat SDF = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+    private static final ThreadLocal<SimpleDateFormat> SDF = new ThreadLocal<SimpleDateFormat>() {
+
+        @Override
+        protected SimpleDateFormat initialValue() {
+
+            return new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+        }
+    };
+
+    /**
+     * The default date pattern: "yyyy-MM-dd". Each thread gets its own instance.
+     */
+    private static final ThreadLocal<SimpleDateFormat> SDF_DATE = new ThreadLocal<SimpleDateFormat>() {
+
+        @Override
+        protected SimpleDateFormat initialValue() {
+
+            return new SimpleDateFormat("yyyy-MM-dd");
+        }
+    };
+
+    /**
+     * @return the default date-time format of the calling thread: "yyyy-MM-dd'T'HH:mm:ss'Z'"
+     */
+    public static SimpleDateFormat getDateTimeFormat() {
+
+        return SDF.get();
+    }
 
     /**
-     * The default date pattern: "yyyy-MM-dd"
+     * @return the default date format of the calling thread: "yyyy-MM-dd"
      */
-    public static final SimpleDateFormat SDF_DATE = new SimpleDateFormat("yyyy-MM-dd");
+    public static SimpleDateFormat getDateFormat() {
+
+        return SDF_DATE.get();
+    }
 
     /**
      * Converts the given time duration (value) in the given unit (fromUnit) to given unit (toUnit).
@@ -111,19 +142,20 @@ public final class RuleUtils {
     }
 
     /**
-     * Formats the given date-time using the default pattern: {@link #SDF}
+     * Formats the given date-time using the default pattern: {@link #getDateTimeFormat()}
      *
      * @param date
      * @return
      */
     public static String formatDate(final Date date) {
 
-        final String stringDate = SDF.format(date);
+        final String stringDate = SDF.get().format(date);
         return stringDate;
     }
 
     /**
-     * Parses the given string date-time. The date-time must be defined using the default pattern: {@link #SDF}
+     * Parses the given string date-time. The date-time must be defined using the default pattern:
+     * {@link #getDateTimeFormat()}
      *
      * @param dateString
      * @return
@@ -132,7 +164,7 @@ public final class RuleUtils {
 
         try {
 
-            final Date date = SDF.parse(dateString);
+            final Date date = SDF.get().parse(dateString);
             return date;
         } catch (ParseException e) {
             throw new DSSException(e);
@@ -188,7 +188,7 @@ public class AdESTValidation implements Indication, SubIndication, NodeName, Nod
         // current time
         bestSignatureTime = currentTime;
 
-        final List<XmlDom> signatures = diagnosticData.getElements("/DiagnosticData/Signature");
+        final List<XmlDom> signatures = params.getSignatures();
 
         for (final XmlDom signature : signatures) {
 
@@ -485,7 +485,7 @@ public class AdESTValidation implements Indication, SubIndication, NodeName, Nod
                     final String expirationDateString = info.getValue("./text()");
                     if (!ALGORITHM_NOT_FOUND.equals(expirationDateString)) {
 
-                        final Date expirationDate = RuleUtils.parseDate(RuleUtils.SDF_DATE, expirationDateString);
+                        final Date expirationDate = RuleUtils.parseDate(RuleUtils.getDateFormat(), expirationDateString);
                         if (expirationDate.before(bestSignatureTime)) {
 
                             ok = false;
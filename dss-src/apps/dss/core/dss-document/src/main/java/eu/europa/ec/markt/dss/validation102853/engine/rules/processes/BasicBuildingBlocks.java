@@ -88,7 +88,7 @@ public class BasicBuildingBlocks implements NodeName, NodeValue, AttributeName,
 
         final XmlNode basicBuildingBlocksNode = mainNode.addChild(BASIC_BUILDING_BLOCKS);
 
-        final List<XmlDom> signatures = diagnosticData.getElements("/DiagnosticData/Signature");
+        final List<XmlDom> signatures = params.getSignatures();
 
         for (final XmlDom signature : signatures) {
 
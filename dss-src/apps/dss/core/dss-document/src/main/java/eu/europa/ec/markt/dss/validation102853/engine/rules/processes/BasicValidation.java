@@ -275,7 +275,7 @@ public class BasicValidation implements Indication, SubIndication, NodeName, Nod
                         // TODO: to be adapted to "./Info[@Field='TimestampProductionTime']/text()"
                         final Date bestSignatureTime = adestConclusion.getTimeValue("./Info[@Field='BestSignatureTime']/text()");
 
-                        final Date expirationDate = RuleUtils.parseDate(RuleUtils.SDF_DATE, expirationDateString);
+                        final Date expirationDate = RuleUtils.parseDate(RuleUtils.getDateFormat(), expirationDateString);
                         if (expirationDate.before(bestSignatureTime)) {
 
                             ok = false;
@@ -173,7 +173,7 @@ public class LongTermValidation implements Indication, SubIndication, NodeName,
 
         XmlNode longTermValidationData = mainNode.addChild(LONG_TERM_VALIDATION_DATA);
 
-        final List<XmlDom> signatures = diagnosticData.getElements("/DiagnosticData/Signature");
+        final List<XmlDom> signatures = params.getSignatures();
 
         for (final XmlDom signature : signatures) {
 
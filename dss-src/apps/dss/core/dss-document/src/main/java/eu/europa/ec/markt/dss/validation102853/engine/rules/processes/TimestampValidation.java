@@ -100,7 +100,7 @@ public class TimestampValidation implements Indication, SubIndication, NodeName,
         prepareParameters(params);
         LOG.fine(this.getClass().getSimpleName() + ": start.");
 
-        final List<XmlDom> signatures = diagnosticData.getElements("/DiagnosticData/Signature");
+        final List<XmlDom> signatures = params.getSignatures();
 
         final XmlNode timestampValidationDataNode = mainNode.addChild(TIMESTAMP_VALIDATION_DATA);
 
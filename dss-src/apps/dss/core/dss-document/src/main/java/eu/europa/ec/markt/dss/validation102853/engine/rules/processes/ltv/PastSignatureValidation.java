@@ -255,7 +255,7 @@ public class PastSignatureValidation implements Indication, SubIndication, NodeN
                         poeExists = false;
                         continue;
                     }
-                    final Date expirationDate = RuleUtils.parseDate(RuleUtils.SDF_DATE, expirationDateString);
+                    final Date expirationDate = RuleUtils.parseDate(RuleUtils.getDateFormat(), expirationDateString);
                     final String context = info.getValue("./@Context");
                     if (SIGNATURE.equals(context)) {
 
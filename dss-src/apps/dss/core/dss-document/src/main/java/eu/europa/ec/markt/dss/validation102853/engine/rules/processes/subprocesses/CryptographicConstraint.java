@@ -104,7 +104,7 @@ abstract class CryptographicConstraint implements Indication, SubIndication, Nod
             if (algoExpirationDate != null && algoExpirationDate.before(currentTime)) {
 
                 final String attribute = String.format("/ConstraintsParameters/Cryptographic/AlgoExpirationDate/Algo[@Name=\"%s\"]", algorithm);
-                final String expirationDateString = RuleUtils.formatDate(RuleUtils.SDF_DATE, algoExpirationDate);
+                final String expirationDateString = RuleUtils.formatDate(RuleUtils.getDateFormat(), algoExpirationDate);
                 final XmlNode infoNode = infoContainerNode.addChild(INFO, expirationDateString);
                 infoNode.setAttribute(CONTEXT, contextName);
                 infoNode.setAttribute(FIELD, attribute);
@@ -20,10 +20,13 @@
 
 package eu.europa.ec.markt.dss.validation102853.engine.rules.wrapper;
 
+import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.w3c.dom.Document;
 
@@ -35,26 +38,189 @@ import eu.europa.ec.markt.dss.validation102853.engine.rules.RuleUtils;
 /**
  * This class encapsulates the constraint file that controls the policy to be used during the validation process. It
  * adds the functions to direct access to the file data.
+ * <p/>
+ * The policy is compiled when the object is created: the scalar values (revocation freshness, timestamp delay,
+ * mandated properties, acceptable policies...), the algorithm expiration dates and the cryptographic tables of each
+ * context are resolved once. The values that are not known in advance (for instance an algorithm which does not
+ * appear in the policy) are resolved on first use and cached in concurrent maps: these caches are the only state which
+ * changes after the construction. The policy DOM itself is never modified and is only read under a lock: a single
+ * instance can be shared by all validation threads. The inherited
+ * {@link XmlDom} methods are not guarded and must not be used concurrently.
  *
  * @author bielecro
  */
 public class VConstraint extends XmlDom implements RuleConstant {
 
-    private long maxRevocationFreshnessString;
+    private final Object lock = new Object();
 
-    private String maxRevocationFreshnessUnit;
+    private final boolean revocationFreshnessToBeChecked;
 
-    private Long maxRevocationFreshness;
+    private final long maxRevocationFreshnessString;
 
-    private Long timestampDelayTime;
+    private final String maxRevocationFreshnessUnit;
 
-    private Map<String, Date> algoExpirationDate = new HashMap<String, Date>();
+    private final Long maxRevocationFreshness;
 
-    private List<String> knownPolicies;
+    private final Long timestampDelayTime;
+
+    private final XmlDom algoExpirationDateDom;
+
+    private final String expirationDateFormat;
+
+    private final ConcurrentMap<String, Date> algoExpirationDate = new ConcurrentHashMap<String, Date>();
+
+    private final ConcurrentMap<String, Boolean> acceptableEncryptionAlgo = new ConcurrentHashMap<String, Boolean>();
+
+    private final ConcurrentMap<String, Boolean> acceptableDigestAlgo = new ConcurrentHashMap<String, Boolean>();
+
+    private final ConcurrentMap<String, Long> miniPublicKeySize = new ConcurrentHashMap<String, Long>();
+
+    private final ConcurrentMap<String, Boolean> certificateConstraints = new ConcurrentHashMap<String, Boolean>();
+
+    private final List<String> knownPolicies;
+
+    private final boolean checkIfSigningTimeIsPresent;
+
+    private final boolean checkIfCommitmentTypeIndicationIsPresent;
+
+    private final boolean checkIfSignerLocationIsPresent;
+
+    private final boolean checkIfSignerRoleIsPresent;
+
+    private final String requestedSignerRole;
+
+    private final String policyName;
+
+    private final String policyDescription;
 
     public VConstraint(Document document) {
 
         super(document);
+
+        final XmlDom revocationFreshness = getElement("/ConstraintsParameters/RevocationFreshness");
+        revocationFreshnessToBeChecked = revocationFreshness != null;
+        if (revocationFreshnessToBeChecked) {
+
+            maxRevocationFreshnessString = getLongValue("/ConstraintsParameters/RevocationFreshness/text()");
+            maxRevocationFreshnessUnit = getValue("/ConstraintsParameters/RevocationFreshness/@Unit");
+            final long maxRevocationFreshness = RuleUtils.convertDuration(maxRevocationFreshnessUnit, "MILLISECONDS", maxRevocationFreshnessString);
+            this.maxRevocationFreshness = maxRevocationFreshness == 0 ? Long.MAX_VALUE : maxRevocationFreshness;
+        } else {
+
+            maxRevocationFreshnessString = 0;
+            maxRevocationFreshnessUnit = null;
+            maxRevocationFreshness = Long.MAX_VALUE;
+        }
+
+        if (getElement("/ConstraintsParameters/TimestampDelay") != null) {
+
+            final long timestampDelay = getLongValue("/ConstraintsParameters/TimestampDelay/text()");
+            final String timestampUnit = getValue("/ConstraintsParameters/TimestampDelay/@Unit");
+            timestampDelayTime = RuleUtils.convertDuration(timestampUnit, "MILLISECONDS", timestampDelay);
+        } else {
+
+            timestampDelayTime = null;
+        }
+
+        algoExpirationDateDom = getElement("/ConstraintsParameters/Cryptographic/AlgoExpirationDate");
+        if (algoExpirationDateDom != null) {
+
+            final String format = algoExpirationDateDom.getValue("./@Format");
+            expirationDateFormat = format.isEmpty() ? "yyyy-MM-dd" : format;
+            for (final XmlDom algo : algoExpirationDateDom.getElements("./Algo")) {
+
+                final String algoName = algo.getAttribute("Name");
+                try {
+
+                    algoExpirationDate.put(algoName, resolveAlgorithmExpirationDate(algoName));
+                } catch (DSSException e) {
+                    // The error is reported when the algorithm is used
+                }
+            }
+        } else {
+
+            expirationDateFormat = null;
+        }
+
+        compileCryptographicConstraints();
+
+        knownPolicies = Collections.unmodifiableList(convertToStringList(getElements("/ConstraintsParameters/AcceptablePolicies/Id")));
+        checkIfSigningTimeIsPresent = getBoolValue("/ConstraintsParameters/MandatedSignedQProperties/SigningTime/text()");
+        checkIfCommitmentTypeIndicationIsPresent = getBoolValue("/ConstraintsParameters/MandatedSignedQProperties/CommitmentTypeIndication/text()");
+        checkIfSignerLocationIsPresent = getBoolValue("/ConstraintsParameters/MandatedSignedQProperties/SignerLocation/text()");
+        checkIfSignerRoleIsPresent = getBoolValue("/ConstraintsParameters/OnRoles/RoleMandated/text()");
+        requestedSignerRole = getValue("/ConstraintsParameters/OnRoles/RoleValue/text()");
+        policyName = getValue("/ConstraintsParameters/@Name");
+        policyDescription = getValue("/ConstraintsParameters/Description/text()");
+    }
+
+    /**
+     * This method resolves the acceptable algorithms and the minimum public key sizes of each context defined in the
+     * cryptographic constraints for all algorithms named in these constraints.
+     */
+    private void compileCryptographicConstraints() {
+
+        final List<XmlDom> contexts = getElements("/ConstraintsParameters/Cryptographic/*");
+        for (final XmlDom context : contexts) {
+
+            final String contextName = context.getRootElement().getLocalName();
+            final Set<String> algos = new HashSet<String>();
+            algos.addAll(convertToStringList(context.getElements("./AcceptableEncryptionAlgo/Algo")));
+            algos.addAll(convertToStringList(context.getElements("./AcceptableDigestAlgo/Algo")));
+            for (final XmlDom size : context.getElements("./MiniPublicKeySize/Size")) {
+
+                algos.add(size.getAttribute("Algo"));
+            }
+            for (final String algo : algos) {
+
+                final String key = getKey(contextName, algo);
+                acceptableEncryptionAlgo.put(key, resolveAcceptableEncryptionAlgo(contextName, algo));
+                acceptableDigestAlgo.put(key, resolveAcceptableDigestAlgo(contextName, algo));
+                miniPublicKeySize.put(key, resolveMiniPublicKeySize(contextName, algo));
+            }
+        }
+    }
+
+    private static String getKey(final String... parts) {
+
+        final StringBuilder key = new StringBuilder();
+        for (final String part : parts) {
+
+            key.append(part).append('|');
+        }
+        return key.toString();
+    }
+
+    private Date resolveAlgorithmExpirationDate(final String algo) {
+
+        final String expirationDateString = algoExpirationDateDom.getValue("./Algo[@Name='%s']/text()", algo);
+        if (expirationDateString.isEmpty()) {
+
+            throw new DSSException(String.format("The the expiration date is not defined for '%s' algorithm!", algo));
+        }
+        return RuleUtils.parseDate(expirationDateFormat, expirationDateString);
+    }
+
+    private boolean resolveAcceptableEncryptionAlgo(final String contextName, final String algo) {
+
+        return exists("/ConstraintsParameters/Cryptographic/%s/AcceptableEncryptionAlgo[dss:Algo='%s']/Algo", contextName, algo);
+    }
+
+    private boolean resolveAcceptableDigestAlgo(final String contextName, final String algo) {
+
+        return exists("/ConstraintsParameters/Cryptographic/%s/AcceptableDigestAlgo[dss:Algo='%s']/Algo", contextName, algo);
+    }
+
+    private long resolveMiniPublicKeySize(final String contextName, final String algo) {
+
+        long pkSize = -1;
+        try {
+
+            pkSize = getLongValue("/ConstraintsParameters/Cryptographic/%s/MiniPublicKeySize/Size[@Algo='%s']/text()", contextName, algo);
+        } catch (Exception e) {
+            // pkSize set to -1
+        }
+        return pkSize;
     }
 
     /**
@@ -62,15 +228,11 @@ public class VConstraint extends XmlDom implements RuleConstant {
      */
     public boolean isRevocationFreshnessToBeChecked() {
 
-        return null != getElement("/ConstraintsParameters/RevocationFreshness/");
+        return revocationFreshnessToBeChecked;
     }
 
     public String getFormatedMaxRevocationFreshness() {
 
-        if (maxRevocationFreshness == null) {
-
-            getMaxRevocationFreshness();
-        }
         return maxRevocationFreshnessString + " " + maxRevocationFreshnessUnit;
     }
 
@@ -81,22 +243,6 @@ public class VConstraint extends XmlDom implements RuleConstant {
      */
     public Long getMaxRevocationFreshness() {
 
-        if (maxRevocationFreshness == null) {
-
-            maxRevocationFreshness = Long.MAX_VALUE;
-
-            final XmlDom revocationFreshness = getElement("/ConstraintsParameters/RevocationFreshness");
-            if (revocationFreshness != null) {
-
-                maxRevocationFreshnessString = getLongValue("/ConstraintsParameters/RevocationFreshness/text()");
-                maxRevocationFreshnessUnit = getValue("/ConstraintsParameters/RevocationFreshness/@Unit");
-                maxRevocationFreshness = RuleUtils.convertDuration(maxRevocationFreshnessUnit, "MILLISECONDS", maxRevocationFreshnessString);
-                if (maxRevocationFreshness == 0) {
-
-                    maxRevocationFreshness = Long.MAX_VALUE;
-                }
-            }
-        }
         return maxRevocationFreshness;
     }
 
@@ -109,26 +255,17 @@ public class VConstraint extends XmlDom implements RuleConstant {
      */
     public Date getAlgorithmExpirationDate(final String algo) {
 
+        if (algoExpirationDateDom == null) {
+
+            return null;
+        }
         Date date = algoExpirationDate.get(algo);
         if (date == null) {
 
-            final XmlDom algoExpirationDateDom = getElement("/ConstraintsParameters/Cryptographic/AlgoExpirationDate");
-            if (algoExpirationDateDom == null) {
-
-                return null;
-            }
-            String expirationDateFormat = algoExpirationDateDom.getValue("./@Format");
-            if (expirationDateFormat.isEmpty()) {
-
-                expirationDateFormat = "yyyy-MM-dd";
-            }
-
-            final String expirationDateString = algoExpirationDateDom.getValue("./Algo[@Name='%s']/text()", algo);
-            if (expirationDateString.isEmpty()) {
+            synchronized (lock) {
 
-                throw new DSSException(String.format("The the expiration date is not defined for '%s' algorithm!", algo));
+                date = resolveAlgorithmExpirationDate(algo);
             }
-            date = RuleUtils.parseDate(expirationDateFormat, expirationDateString);
             algoExpirationDate.put(algo, date);
         }
         return date;
@@ -143,7 +280,16 @@ public class VConstraint extends XmlDom implements RuleConstant {
      */
     public boolean isAcceptableEncryptionAlgo(final String contextName, final String algo) {
 
-        final boolean found = exists("/ConstraintsParameters/Cryptographic/%s/AcceptableEncryptionAlgo[dss:Algo='%s']/Algo", contextName, algo);
+        final String key = getKey(contextName, algo);
+        Boolean found = acceptableEncryptionAlgo.get(key);
+        if (found == null) {
+
+            synchronized (lock) {
+
+                found = resolveAcceptableEncryptionAlgo(contextName, algo);
+            }
+            acceptableEncryptionAlgo.put(key, found);
+        }
         return found;
     }
 
@@ -156,7 +302,16 @@ public class VConstraint extends XmlDom implements RuleConstant {
      */
     public boolean isAcceptableDigestAlgo(final String contextName, final String algo) {
 
-        final boolean found = exists("/ConstraintsParameters/Cryptographic/%s/AcceptableDigestAlgo[dss:Algo='%s']/Algo", contextName, algo);
+        final String key = getKey(contextName, algo);
+        Boolean found = acceptableDigestAlgo.get(key);
+        if (found == null) {
+
+            synchronized (lock) {
+
+                found = resolveAcceptableDigestAlgo(contextName, algo);
+            }
+            acceptableDigestAlgo.put(key, found);
+        }
         return found;
     }
 
@@ -169,12 +324,15 @@ public class VConstraint extends XmlDom implements RuleConstant {
      */
     public long getMiniPublicKeySize(final String contextName, final String algo) {
 
-        long pkSize = -1;
-        try {
+        final String key = getKey(contextName, algo);
+        Long pkSize = miniPublicKeySize.get(key);
+        if (pkSize == null) {
 
-            pkSize = getLongValue("/ConstraintsParameters/Cryptographic/%s/MiniPublicKeySize/Size[@Algo='%s']/text()", contextName, algo);
-        } catch (Exception e) {
-            // pkSize set to -1
+            synchronized (lock) {
+
+                pkSize = resolveMiniPublicKeySize(contextName, algo);
+            }
+            miniPublicKeySize.put(key, pkSize);
         }
         return pkSize;
     }
@@ -186,7 +344,6 @@ public class VConstraint extends XmlDom implements RuleConstant {
      */
     public boolean shouldCheckIfSigningTimeIsPresent() {
 
-        final boolean checkIfSigningTimeIsPresent = getBoolValue("/ConstraintsParameters/MandatedSignedQProperties/SigningTime/text()");
         return checkIfSigningTimeIsPresent;
     }
 
@@ -197,8 +354,6 @@ public class VConstraint extends XmlDom implements RuleConstant {
      */
     public boolean shouldCheckIfCommitmentTypeIndicationIsPresent() {
 
-        final boolean checkIfCommitmentTypeIndicationIsPresent = getBoolValue(
-              "/ConstraintsParameters/MandatedSignedQProperties/CommitmentTypeIndication/text()");
         return checkIfCommitmentTypeIndicationIsPresent;
     }
 
@@ -209,7 +364,6 @@ public class VConstraint extends XmlDom implements RuleConstant {
      */
     public boolean shouldCheckIfSignerLocationIsPresent() {
 
-        final boolean checkIfSignerLocationIsPresent = getBoolValue("/ConstraintsParameters/MandatedSignedQProperties/SignerLocation/text()");
         return checkIfSignerLocationIsPresent;
     }
 
@@ -220,7 +374,6 @@ public class VConstraint extends XmlDom implements RuleConstant {
      */
     public boolean shouldCheckIfSignerRoleIsPresent() {
 
-        final boolean checkIfSignerRoleIsPresent = getBoolValue("/ConstraintsParameters/OnRoles/RoleMandated/text()");
         return checkIfSignerRoleIsPresent;
     }
 
@@ -231,10 +384,31 @@ public class VConstraint extends XmlDom implements RuleConstant {
      */
     public String getRequestedSignerRole() {
 
-        final String requestedSignerRole = getValue("/ConstraintsParameters/OnRoles/RoleValue/text()");
         return requestedSignerRole;
     }
 
+    /**
+     * Returns the value of the given boolean constraint of the certificate for the given context.
+     *
+     * @param context
+     * @param constraint
+     * @return
+     */
+    private boolean getCertificateConstraint(final String context, final String constraint) {
+
+        final String key = getKey(context, constraint);
+        Boolean mustBe = certificateConstraints.get(key);
+        if (mustBe == null) {
+
+            synchronized (lock) {
+
+                mustBe = getBoolValue("/ConstraintsParameters/%s/" + constraint + "/text()", context);
+            }
+            certificateConstraints.put(key, mustBe);
+        }
+        return mustBe;
+    }
+
     /**
      * Indicates if the signing certificate must be qualified.
      *
@@ -243,8 +417,7 @@ public class VConstraint extends XmlDom implements RuleConstant {
      */
     public boolean mustBeQualifiedCertificate(final String context) {
 
-        final boolean mustBe = getBoolValue("/ConstraintsParameters/%s/QualifiedCertificate/text()", context);
-        return mustBe;
+        return getCertificateConstraint(context, "QualifiedCertificate");
     }
 
     /**
@@ -256,8 +429,7 @@ public class VConstraint extends XmlDom implements RuleConstant {
      */
     public boolean mustBeSSCDCertificate(final String context) {
 
-        final boolean mustBe = getBoolValue("/ConstraintsParameters/%s/SSCD/text()", context);
-        return mustBe;
+        return getCertificateConstraint(context, "SSCD");
     }
 
     /**
@@ -269,8 +441,7 @@ public class VConstraint extends XmlDom implements RuleConstant {
      */
     public boolean mustBeForLegalPersonCertificate(final String context) {
 
-        final boolean mustBe = getBoolValue("/ConstraintsParameters/%s/ForLegalPerson/text()", context);
-        return mustBe;
+        return getCertificateConstraint(context, "ForLegalPerson");
     }
 
     /**
@@ -280,8 +451,7 @@ public class VConstraint extends XmlDom implements RuleConstant {
      */
     public String getPolicyName() {
 
-        final String policy = getValue("/ConstraintsParameters/@Name");
-        return policy;
+        return policyName;
     }
 
     /**
@@ -291,8 +461,7 @@ public class VConstraint extends XmlDom implements RuleConstant {
      */
     public String getPolicyDescription() {
 
-        final String description = getValue("/ConstraintsParameters/Description/text()");
-        return description;
+        return policyDescription;
     }
 
     /**
@@ -313,11 +482,6 @@ public class VConstraint extends XmlDom implements RuleConstant {
      */
     public boolean isPolicyAcceptable(final String policyId) {
 
-        if (knownPolicies == null) {
-
-            List<XmlDom> domList = getElements("/ConstraintsParameters/AcceptablePolicies/Id");
-            knownPolicies = convertToStringList(domList);
-        }
         final boolean found = knownPolicies.contains(policyId);
         return found;
     }
@@ -329,17 +493,6 @@ public class VConstraint extends XmlDom implements RuleConstant {
      */
     public Long getTimestampDelayTime() {
 
-        if (timestampDelayTime == null) {
-
-            final XmlDom timestampDelayPresent = getElement("/ConstraintsParameters/TimestampDelay");
-            if (timestampDelayPresent == null) {
-
-                return null;
-            }
-            final long timestampDelay = getLongValue("/ConstraintsParameters/TimestampDelay/text()");
-            final String timestampUnit = getValue("/ConstraintsParameters/TimestampDelay/@Unit");
-            timestampDelayTime = RuleUtils.convertDuration(timestampUnit, "MILLISECONDS", timestampDelay);
-        }
         return timestampDelayTime;
     }
 }
@@ -22,6 +22,7 @@ package eu.europa.ec.markt.dss.validation102853.pades;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.security.MessageDigest;
 import java.security.SignatureException;
 import java.security.cert.CRLException;
@@ -410,6 +411,12 @@ public class PAdESSignature implements AdvancedSignature {
         return null;
     }
 
+    @Override
+    public void writeTimestampX1Data(final OutputStream output) {
+
+      /* Not applicable for PAdES */
+    }
+
     @Override
     public byte[] getTimestampX2Data() {
 
@@ -417,6 +424,12 @@ public class PAdESSignature implements AdvancedSignature {
         return null;
     }
 
+    @Override
+    public void writeTimestampX2Data(final OutputStream output) {
+
+      /* Not applicable for PAdES */
+    }
+
     /**
      * @return the pdfReader catalogue corresponding to the revision of the document covered by the signature
      */
@@ -456,6 +469,12 @@ public class PAdESSignature implements AdvancedSignature {
         return null;
     }
 
+    @Override
+    public void writeArchiveTimestampData(final TimestampToken timestampToken, final OutputStream output) {
+
+      /* Not applicable for PAdES */
+    }
+
     @Override
     public String getId() {
 
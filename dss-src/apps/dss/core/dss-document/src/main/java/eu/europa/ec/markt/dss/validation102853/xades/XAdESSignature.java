@@ -20,10 +20,10 @@
 
 package eu.europa.ec.markt.dss.validation102853.xades;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.math.BigInteger;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -43,6 +43,7 @@ import javax.xml.crypto.Data;
 import javax.xml.crypto.KeySelector;
 import javax.xml.crypto.MarshalException;
 import javax.xml.crypto.URIDereferencer;
+import javax.xml.crypto.URIReferenceException;
 import javax.xml.crypto.dom.DOMStructure;
 import javax.xml.crypto.dsig.CanonicalizationMethod;
 import javax.xml.crypto.dsig.Reference;
@@ -228,9 +229,10 @@ public class XAdESSignature implements AdvancedSignature {
     private CertificatePool certPool;
 
     /**
-     * This attribute is used when validate the ArchiveTimeStamp (XAdES-A).
+     * The detached document given to {@link #checkIntegrity(DSSDocument)}. This attribute is used when validate the
+     * ArchiveTimeStamp (XAdES-A): the references are processed again from it rather than kept in memory.
      */
-    private ByteArrayOutputStream referencesDigestOutputStream = new ByteArrayOutputStream();
+    private DSSDocument detachedDocument;
 
     /**
      * This list represents all digest algorithms used to calculate the digest values of certificates.
@@ -874,17 +876,17 @@ public class XAdESSignature implements AdvancedSignature {
              * two parameters, a KeyValueKeySelector object and a reference to the Signature element to be validated (which
              * is the first entry of the NodeList we generated earlier):
              */
+            this.detachedDocument = detachedDocument;
             final DOMValidateContext valContext = new DOMValidateContext(keySelector, signatureElement);
             try {
 
                 URIDereferencer dereferencer = new ExternalFileURIDereferencer(detachedDocument);
                 valContext.setURIDereferencer(dereferencer);
                 /**
-                 * This property controls whether or not the digested Reference objects will cache the dereferenced content
-                 * and pre-digested input for subsequent retrieval via the Reference.getDereferencedData and
-                 * Reference.getDigestInputStream methods. The default value if not specified is Boolean.FALSE.
+                 * The dereferenced content and the pre-digested input of the references are not cached
+                 * (javax.xml.crypto.dsig.cacheReference): a detached document can be much larger than the heap. The data
+                 * needed by the ArchiveTimeStamp are computed again when required, see {@link #writeReferencesData}.
                  */
-                valContext.setProperty("javax.xml.crypto.dsig.cacheReference", Boolean.TRUE);
 
                 /**
                  * Unmarshalling the XML Signature<br>
@@ -932,14 +934,7 @@ public class XAdESSignature implements AdvancedSignature {
                  *
                  * Solution: the following lines where added:
                  */
-                final Document document = signatureElement.getOwnerDocument();
-                final Element rootElement = document.getDocumentElement();
-                if (rootElement.hasAttribute(DSSXMLUtils.ID_ATTRIBUTE_NAME)) {
-
-                    valContext.setIdAttributeNS(rootElement, null, DSSXMLUtils.ID_ATTRIBUTE_NAME);
-                }
-
-                DSSXMLUtils.recursiveIdBrowse(valContext, rootElement);
+                registerIdAttributes(valContext);
 
                 /**
                  * Validating the XML Signature<br>
@@ -986,24 +981,16 @@ public class XAdESSignature implements AdvancedSignature {
                     } catch (XMLSignatureException e) {
 
                         scv.setErrorMessage(reference.getURI() + ": " + e.getMessage());
+                        // The dereferenced data are not cached: a failure of the dereferencing means that the data were not found.
+                        if (e.getCause() instanceof URIReferenceException) {
+
+                            dataFound = false;
+                        }
                     }
                     dataHashValid = dataHashValid && refHashValidity;
                     if (LOG.isLoggable(Level.INFO)) {
                         LOG.info("Reference hash validity checked: " + reference.getURI() + "=" + refHashValidity);
                     }
-                    final Data data = reference.getDereferencedData();
-                    dataFound = dataFound && (data != null);
-
-                    final InputStream digestInputStream = reference.getDigestInputStream();
-                    if (data != null && digestInputStream != null) {
-
-                        // The references are saved for later treatment in -A level.
-                        try {
-
-                            IOUtils.copy(digestInputStream, referencesDigestOutputStream);
-                        } catch (IOException e) {
-                        }
-                    }
                 }
                 scv.setReferenceDataFound(dataFound);
                 scv.setReferenceDataIntact(dataHashValid);
@@ -1243,21 +1230,27 @@ public class XAdESSignature implements AdvancedSignature {
     @Override
     public byte[] getTimestampX1Data() {
 
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        writeTimestampX1Data(buffer);
+        return buffer.toByteArray();
+    }
+
+    @Override
+    public void writeTimestampX1Data(final OutputStream output) {
+
         String canonicalizationMethod = XMLDSIG_DEFAULT_CANONICALIZATION_METHOD;
         Element canonicalizationMethodEl = DSSXMLUtils.getElement(signatureElement, XPATH_SIG_AND_REFS_TIMESTAMP + XPATH__CANONICALIZATION_METHOD);
         if (canonicalizationMethodEl != null) {
 
             canonicalizationMethod = canonicalizationMethodEl.getTextContent();
         }
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-
         try {
 
             byte[] canonicalizedValue = null;
 
             Element signatureValue = DSSXMLUtils.getElement(signatureElement, XPATH_SIGNATURE_VALUE);
             canonicalizedValue = getC14nValue(signatureValue, canonicalizationMethod);
-            buffer.write(canonicalizedValue);
+            output.write(canonicalizedValue);
 
             NodeList signatureTimeStampNode = DSSXMLUtils.getNodeList(signatureElement, XPATH_SIGNATURE_TIMESTAMP);
             if (signatureTimeStampNode != null) {
@@ -1265,7 +1258,7 @@ public class XAdESSignature implements AdvancedSignature {
                 for (int i = 0; i < signatureTimeStampNode.getLength(); i++) {
 
                     canonicalizedValue = getC14nValue(signatureTimeStampNode.item(i), canonicalizationMethod);
-                    buffer.write(canonicalizedValue);
+                    output.write(canonicalizedValue);
                 }
             }
 
@@ -1273,19 +1266,18 @@ public class XAdESSignature implements AdvancedSignature {
             if (completeCertificateRefsNode != null) {
 
                 canonicalizedValue = getC14nValue(completeCertificateRefsNode, canonicalizationMethod);
-                buffer.write(canonicalizedValue);
+                output.write(canonicalizedValue);
             }
             Node completeRevocationRefsNode = DSSXMLUtils.getElement(signatureElement, XPATH_COMPLETE_REVOCATION_REFS);
             if (completeRevocationRefsNode != null) {
 
                 canonicalizedValue = getC14nValue(completeRevocationRefsNode, canonicalizationMethod);
-                buffer.write(canonicalizedValue);
+                output.write(canonicalizedValue);
             }
         } catch (IOException e) {
 
             throw new DSSException("Error when computing the SigAndRefsTimeStamp", e);
         }
-        return buffer.toByteArray();
     }
 
     @Override
@@ -1309,6 +1301,18 @@ public class XAdESSignature implements AdvancedSignature {
         return getC14nValue(timeStampNodesXadesX2, XMLDSIG_DEFAULT_CANONICALIZATION_METHOD);
     }
 
+    @Override
+    public void writeTimestampX2Data(final OutputStream output) {
+
+        try {
+
+            output.write(getTimestampX2Data());
+        } catch (IOException e) {
+
+            throw new DSSException("Error when computing the RefsOnlyTimeStamp", e);
+        }
+    }
+
     /**
      * Creates the hash sent to the TSA (messageImprint) computed on the XAdES-X-L form of the electronic signature and
      * the signed data objects, i.e. on the sequence formed as explained below:<br>
@@ -1339,6 +1343,14 @@ public class XAdESSignature implements AdvancedSignature {
     @Override
     public byte[] getArchiveTimestampData(TimestampToken timestampToken) {
 
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        writeArchiveTimestampData(timestampToken, buffer);
+        return buffer.toByteArray();
+    }
+
+    @Override
+    public void writeArchiveTimestampData(final TimestampToken timestampToken, final OutputStream output) {
+
         String canonicalizationMethod = timestampToken == null ? XMLDSIG_DEFAULT_CANONICALIZATION_METHOD : timestampToken.getCanonicalizationMethod();
 
         byte[] canonicalizedValue = null;
@@ -1355,7 +1367,6 @@ public class XAdESSignature implements AdvancedSignature {
             /**
              * 1) Initialize the final octet stream as an empty octet stream.
              */
-            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
 
             /**
              * 2) Take all the ds:Reference elements in their order of appearance within ds:SignedInfo referencing whatever
@@ -1367,13 +1378,7 @@ public class XAdESSignature implements AdvancedSignature {
              * - Concatenate the resulting octets to the final octet stream.
              */
 
-            /**
-             * The references are already calculated {@see #checkIntegrity()}
-             */
-
-            InputStream decodedInput = new ByteArrayInputStream((referencesDigestOutputStream).toByteArray());
-
-            IOUtils.copy(decodedInput, buffer);
+            writeReferencesData(output);
             /**
              * 3) Take the following XMLDSIG elements in the order they are listed below, canonicalize each one and
              * concatenate each resulting octet stream to the final octet stream:<br>
@@ -1384,15 +1389,15 @@ public class XAdESSignature implements AdvancedSignature {
 
             Element signedInfo = DSSXMLUtils.getElement(signatureElement, XPATH_SIGNED_INFO);
             canonicalizedValue = getC14nValue(signedInfo, canonicalizationMethod);
-            buffer.write(canonicalizedValue);
+            output.write(canonicalizedValue);
 
             Element signatureValue = DSSXMLUtils.getElement(signatureElement, XPATH_SIGNATURE_VALUE);
             canonicalizedValue = getC14nValue(signatureValue, canonicalizationMethod);
-            buffer.write(canonicalizedValue);
+            output.write(canonicalizedValue);
 
             Element keyInfo = DSSXMLUtils.getElement(signatureElement, XPATH_KEY_INFO);
             canonicalizedValue = getC14nValue(keyInfo, canonicalizationMethod);
-            buffer.write(canonicalizedValue);
+            output.write(canonicalizedValue);
 
             /**
              * 4) Take the unsigned signature properties that appear before the current xadesv141:ArchiveTimeStamp in the
@@ -1450,7 +1455,7 @@ public class XAdESSignature implements AdvancedSignature {
                     archiveTimeStampCount++;
                 }
                 canonicalizedValue = getC14nValue(node, canonicalizationMethod);
-                buffer.write(canonicalizedValue);
+                output.write(canonicalizedValue);
             }
             /**
              * 5) Take all the ds:Object elements except the one containing xades:QualifyingProperties element.
@@ -1475,19 +1480,119 @@ public class XAdESSignature implements AdvancedSignature {
                         continue;
                     }
                     canonicalizedValue = getC14nValue(node, canonicalizationMethod);
-                    buffer.write(canonicalizedValue);
+                    output.write(canonicalizedValue);
                 }
             }
 
             // *** Log ArchiveTimestamp canonicalised string
             // if (LOG.isLoggable(Level.INFO)) LOG.info("ArchiveTimestamp canonicalised string:\n" + buffer.toString());
-            return buffer.toByteArray();
         } catch (IOException e) {
 
             throw new DSSException("Error when computing the archive data", e);
         }
     }
 
+    /**
+     * Writes the result of the reference processing of each ds:Reference, in their order of appearance within
+     * ds:SignedInfo. A reference to the detached document without transforms is digested as is: the content of the
+     * document is streamed to the output. The other references (same-document references, transformed data) are processed
+     * again with the reference processing model of XMLDSIG, their pre-digested input is only kept while it is copied.
+     *
+     * @param output the stream receiving the data
+     * @throws IOException
+     */
+    private void writeReferencesData(final OutputStream output) throws IOException {
+
+        final CertificateToken certToken = getSigningCertificate().getCertToken();
+        if (certToken == null) {
+
+            // The integrity of the signature could not be checked, no reference was processed.
+            return;
+        }
+        final KeySelector keySelector = KeySelector.singletonKeySelector(certToken.getCertificate().getPublicKey());
+        final DOMValidateContext valContext = new DOMValidateContext(keySelector, signatureElement);
+        valContext.setURIDereferencer(new ExternalFileURIDereferencer(detachedDocument));
+        valContext.setProperty("javax.xml.crypto.dsig.cacheReference", Boolean.TRUE);
+        registerIdAttributes(valContext);
+        try {
+
+            final XMLSignatureFactory factory = XMLSignatureFactory.getInstance("DOM", xmlProvider);
+            final XMLSignature signature = factory.unmarshalXMLSignature(valContext);
+            @SuppressWarnings("unchecked")
+            final List<Reference> references = signature.getSignedInfo().getReferences();
+            for (final Reference reference : references) {
+
+                if (isDetachedDocumentReference(reference)) {
+
+                    final InputStream content = detachedDocument.openStream();
+                    try {
+
+                        IOUtils.copyLarge(content, output);
+                    } finally {
+
+                        DSSUtils.closeQuietly(content);
+                    }
+                    continue;
+                }
+                try {
+
+                    reference.validate(valContext);
+                } catch (XMLSignatureException e) {
+
+                    LOG.warning("Reference " + reference.getURI() + " cannot be processed: " + e.getMessage());
+                }
+                final InputStream digestInputStream = reference.getDigestInputStream();
+                if (reference.getDereferencedData() != null && digestInputStream != null) {
+
+                    IOUtils.copy(digestInputStream, output);
+                }
+            }
+        } catch (MarshalException e) {
+
+            throw new DSSException(e);
+        }
+    }
+
+    /**
+     * @param reference the reference to check
+     * @return true if the reference points to the detached document and has no transform: its digest input is the
+     * content of the document
+     */
+    private boolean isDetachedDocumentReference(final Reference reference) {
+
+        if (detachedDocument == null || !reference.getTransforms().isEmpty()) {
+
+            return false;
+        }
+        String uri = reference.getURI();
+        if (uri == null) {
+
+            return false;
+        }
+        if (uri.startsWith("./")) {
+
+            uri = uri.substring(2);
+        }
+        return uri.equals(detachedDocument.getName());
+    }
+
+    /**
+     * In case of org.apache.jcp.xml.dsig.internal.dom.XMLDSigRI() provider, the ID attributes need to be set manually.
+     * The whole document is browsed: the references can point outside of the Signature element.
+     *
+     * @param valContext the context in which the ID attributes are registered
+     */
+    private void registerIdAttributes(final DOMValidateContext valContext) {
+
+        final Document document = signatureElement.getOwnerDocument();
+        final Element rootElement = document.getDocumentElement();
+        if (rootElement.hasAttribute(DSSXMLUtils.ID_ATTRIBUTE_NAME)) {
+
+            valContext.setIdAttributeNS(rootElement, null, DSSXMLUtils.ID_ATTRIBUTE_NAME);
+        }
+        DSSXMLUtils.recursiveIdBrowse(valContext, rootElement);
+    }
+
     private Element getUnsignedSignatureProperties(Element signatureEl) {
 
         Element unsignedSignaturePropertiesNode = DSSXMLUtils.getElement(signatureEl, XPATH_UNSIGNED_SIGNATURE_PROPERTIES);
@@ -42,6 +42,7 @@ import org.apache.commons.codec.binary.Hex;
 import eu.europa.ec.markt.dss.DSSUtils;
 import eu.europa.ec.markt.dss.DigestAlgorithm;
 import eu.europa.ec.markt.dss.exception.DSSException;
+import eu.europa.ec.markt.dss.validation.DelegatingSource;
 
 /**
  * CRLSource that retrieve information from a JDBC datasource
@@ -49,7 +50,7 @@ import eu.europa.ec.markt.dss.exception.DSSException;
  * @version $Revision: 2922 $ - $Date: 2013-11-11 13:57:58 +0100 (lun., 11 nov. 2013) $
  */
 
-public class JdbcCacheCRLSource implements CRLSource {
+public class JdbcCacheCRLSource implements CRLSource, DelegatingSource<CRLSource> {
 
     private static final Logger LOG = Logger.getLogger(JdbcCacheCRLSource.class.getName());
 
@@ -113,6 +114,20 @@ public class JdbcCacheCRLSource implements CRLSource {
 
     }
 
+    /**
+     * @return the cachedSource
+     */
+    public OnlineCRLSource getCachedSource() {
+
+        return cachedSource;
+    }
+
+    @Override
+    public CRLSource getDelegate() {
+
+        return cachedSource;
+    }
+
     /**
      * @param cachedSource the cachedSource to set
      */
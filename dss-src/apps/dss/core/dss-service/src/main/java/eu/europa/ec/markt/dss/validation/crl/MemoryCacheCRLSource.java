@@ -0,0 +1,284 @@
+/*
+ * DSS - Digital Signature Services
+ *
+ * Copyright (C) 2013 European Commission, Directorate-General Internal Market and Services (DG MARKT), B-1049 Bruxelles/Brussel
+ *
+ * Developed by: 2013 ARHS Developments S.A. (rue Nicolas Bové 2B, L-1253 Luxembourg) http://www.arhs-developments.com
+ *
+ * This file is part of the "DSS - Digital Signature Services" project.
+ *
+ * "DSS - Digital Signature Services" is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU Lesser General Public License as published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * DSS is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * "DSS - Digital Signature Services".  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.europa.ec.markt.dss.validation.crl;
+
+import java.io.IOException;
+import java.security.cert.CRLException;
+import java.security.cert.X509CRL;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import eu.europa.ec.markt.dss.validation.DelegatingSource;
+
+/**
+ * This CRLSource keeps in memory the parsed CRLs retrieved from another source (typically {@link JdbcCacheCRLSource}).
+ * The CRLs are identified by the URL of their distribution point and are kept until their nextUpdate date. The cache is
+ * bounded by the total size of the encoded CRLs: the least recently used CRLs are evicted first.<br>
+ * The returned CRLs are {@link IndexedX509CRL}: the revoked serial numbers are indexed and the result of the
+ * verification of the signature is kept for each issuer.<br>
+ * The number of hits, misses and evictions can be read to monitor the cache.
+ */
+
+public class MemoryCacheCRLSource implements CRLSource, DelegatingSource<CRLSource> {
+
+    private static final Logger LOG = Logger.getLogger(MemoryCacheCRLSource.class.getName());
+
+    /**
+     * The default maximum total size of the cached CRLs (in bytes of encoded CRLs): 100 MB.
+     */
+    public static final long DEFAULT_MAX_SIZE = 100L * 1024 * 1024;
+
+    private CRLSource cachedSource;
+
+    private OnlineCRLSource onlineCRLSource;
+
+    private long maxSize = DEFAULT_MAX_SIZE;
+
+    /**
+     * The cached CRLs in access order (the least recently used first).
+     */
+    private final LinkedHashMap<String, IndexedX509CRL> crls = new LinkedHashMap<String, IndexedX509CRL>(16, 0.75f, true);
+
+    private long size;
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * The default constructor for MemoryCacheCRLSource.
+     */
+    public MemoryCacheCRLSource() {
+
+    }
+
+    /**
+     * @param cachedSource the source used when the CRL is not in memory
+     */
+    public void setCachedSource(final CRLSource cachedSource) {
+
+        this.cachedSource = cachedSource;
+    }
+
+    /**
+     * @return the source used when the CRL is not in memory
+     */
+    @Override
+    public CRLSource getDelegate() {
+
+        return cachedSource;
+    }
+
+    /**
+     * Sets the source used to determine the distribution point URL of the certificates. If not set, the
+     * {@code OnlineCRLSource} behind the cached source is used (see {@link DelegatingSource}).
+     *
+     * @param onlineCRLSource
+     */
+    public void setOnlineCRLSource(final OnlineCRLSource onlineCRLSource) {
+
+        this.onlineCRLSource = onlineCRLSource;
+    }
+
+    /**
+     * @param maxSize the maximum total size of the cached CRLs, in bytes of encoded CRLs
+     */
+    public void setMaxSize(final long maxSize) {
+
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public X509CRL findCrl(final X509Certificate cert, final X509Certificate issuerCertificate) throws IOException {
+
+        final OnlineCRLSource uriSource = getOnlineCRLSource();
+        final String crlUri = uriSource == null ? null : uriSource.getCrlUri(cert);
+        if (crlUri == null) {
+
+            return cachedSource.findCrl(cert, issuerCertificate);
+        }
+        final IndexedX509CRL cachedCrl = get(crlUri);
+        if (cachedCrl != null) {
+
+            hitCount.incrementAndGet();
+            return cachedCrl;
+        }
+        missCount.incrementAndGet();
+        final X509CRL x509Crl = cachedSource.findCrl(cert, issuerCertificate);
+        if (x509Crl == null) {
+
+            return null;
+        }
+        try {
+
+            final IndexedX509CRL indexedCrl = x509Crl instanceof IndexedX509CRL ? (IndexedX509CRL) x509Crl : new IndexedX509CRL(x509Crl);
+            put(crlUri, indexedCrl);
+            return indexedCrl;
+        } catch (CRLException e) {
+
+            LOG.warning("The CRL cannot be encoded for the memory cache, it is returned without being cached: " + crlUri + ": " + e.getMessage());
+            return x509Crl;
+        }
+    }
+
+    private OnlineCRLSource getOnlineCRLSource() {
+
+        if (onlineCRLSource != null) {
+
+            return onlineCRLSource;
+        }
+        Object source = cachedSource;
+        while (source instanceof DelegatingSource) {
+
+            source = ((DelegatingSource<?>) source).getDelegate();
+        }
+        return source instanceof OnlineCRLSource ? (OnlineCRLSource) source : null;
+    }
+
+    /**
+     * This method returns the cached CRL for the given distribution point URL if it is still fresh.
+     *
+     * @param crlUri
+     * @return the cached CRL or null
+     */
+    private synchronized IndexedX509CRL get(final String crlUri) {
+
+        final IndexedX509CRL cachedCrl = crls.get(crlUri);
+        if (cachedCrl == null) {
+
+            return null;
+        }
+        if (isExpired(cachedCrl, new Date())) {
+
+            LOG.info("CRL expired in the memory cache: " + crlUri);
+            remove(crlUri);
+            evictionCount.incrementAndGet();
+            return null;
+        }
+        return cachedCrl;
+    }
+
+    /**
+     * This method adds the CRL to the cache and evicts the least recently used CRLs if the maximum size is reached. A CRL
+     * without nextUpdate date or larger than the maximum size is not cached.
+     *
+     * @param crlUri
+     * @param indexedCrl
+     */
+    private synchronized void put(final String crlUri, final IndexedX509CRL indexedCrl) {
+
+        if (isExpired(indexedCrl, new Date()) || indexedCrl.getEncodedLength() > maxSize) {
+
+            return;
+        }
+        remove(crlUri);
+        crls.put(crlUri, indexedCrl);
+        size += indexedCrl.getEncodedLength();
+        final Date now = new Date();
+        final Iterator<Map.Entry<String, IndexedX509CRL>> iterator = crls.entrySet().iterator();
+        while (iterator.hasNext()) {
+
+            final Map.Entry<String, IndexedX509CRL> entry = iterator.next();
+            if (size <= maxSize && !isExpired(entry.getValue(), now)) {
+
+                continue;
+            }
+            if (LOG.isLoggable(Level.FINE)) {
+                LOG.fine("CRL evicted from the memory cache: " + entry.getKey());
+            }
+            size -= entry.getValue().getEncodedLength();
+            iterator.remove();
+            evictionCount.incrementAndGet();
+        }
+    }
+
+    private void remove(final String crlUri) {
+
+        final IndexedX509CRL removed = crls.remove(crlUri);
+        if (removed != null) {
+
+            size -= removed.getEncodedLength();
+        }
+    }
+
+    private static boolean isExpired(final X509CRL x509Crl, final Date now) {
+
+        final Date nextUpdate = x509Crl.getNextUpdate();
+        return nextUpdate == null || !nextUpdate.after(now);
+    }
+
+    /**
+     * Removes all the CRLs from the memory cache.
+     */
+    public synchronized void clear() {
+
+        crls.clear();
+        size = 0;
+    }
+
+    /**
+     * @return the number of CRLs found in the memory cache
+     */
+    public long getHitCount() {
+
+        return hitCount.get();
+    }
+
+    /**
+     * @return the number of CRLs not found in the memory cache
+     */
+    public long getMissCount() {
+
+        return missCount.get();
+    }
+
+    /**
+     * @return the number of CRLs evicted from the memory cache because of its size or of their nextUpdate date
+     */
+    public long getEvictionCount() {
+
+        return evictionCount.get();
+    }
+
+    /**
+     * @return the number of CRLs currently in the memory cache
+     */
+    public synchronized int getCachedCount() {
+
+        return crls.size();
+    }
+
+    /**
+     * @return the total size of the encoded CRLs currently in the memory cache
+     */
+    public synchronized long getCachedSize() {
+
+        return size;
+    }
+}
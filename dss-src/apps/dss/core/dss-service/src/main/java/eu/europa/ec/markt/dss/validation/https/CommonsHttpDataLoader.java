@@ -100,7 +100,7 @@ public class CommonsHttpDataLoader implements HTTPDataLoader {
       setContentType(contentType);
    }
 
-   private ClientConnectionManager getConnectionManager() throws IOException {
+   private synchronized ClientConnectionManager getConnectionManager() throws IOException {
 
       if (connectionManager != null) {
          return connectionManager;
@@ -0,0 +1,555 @@
+/*
+ * DSS - Digital Signature Services
+ *
+ * Copyright (C) 2013 European Commission, Directorate-General Internal Market and Services (DG MARKT), B-1049 Bruxelles/Brussel
+ *
+ * Developed by: 2013 ARHS Developments S.A. (rue Nicolas Bové 2B, L-1253 Luxembourg) http://www.arhs-developments.com
+ *
+ * This file is part of the "DSS - Digital Signature Services" project.
+ *
+ * "DSS - Digital Signature Services" is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU Lesser General Public License as published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * DSS is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * "DSS - Digital Signature Services".  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.europa.ec.markt.dss.validation.ocsp;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.X509Certificate;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import org.bouncycastle.ocsp.BasicOCSPResp;
+import org.bouncycastle.ocsp.CertificateID;
+import org.bouncycastle.ocsp.OCSPException;
+import org.bouncycastle.ocsp.OCSPResp;
+import org.bouncycastle.ocsp.SingleResp;
+
+import eu.europa.ec.markt.dss.DSSUtils;
+import eu.europa.ec.markt.dss.DigestAlgorithm;
+import eu.europa.ec.markt.dss.exception.DSSException;
+import eu.europa.ec.markt.dss.validation.DelegatingSource;
+
+/**
+ * OCSPSource which keeps the OCSP responses retrieved from another source (typically {@link OnlineOCSPSource}). The
+ * responses are identified by the CertID of the request: issuer name hash, issuer key hash and serial number.<br>
+ * A response is reused while it is fresh:<br>
+ * - the current time is before its nextUpdate date,<br>
+ * - its thisUpdate date is not older than the maximum age (if defined),<br>
+ * - when the response has no nextUpdate date, its thisUpdate date is not older than the validity without nextUpdate
+ * (by default such a response is not reused).<br>
+ * The responses are kept in memory (the least recently used are evicted when the maximum number of responses is reached)
+ * and, if a datasource is set, in the database.
+ */
+
+public class CachingOCSPSource implements OCSPSource, DelegatingSource<OCSPSource> {
+
+    private static final Logger LOG = Logger.getLogger(CachingOCSPSource.class.getName());
+
+    /**
+     * The default maximum number of responses kept in memory.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    /**
+     * used in the init method to check if the table exists
+     */
+    public static final String SQL_INIT_CHECK_EXISTENCE = "SELECT COUNT(*) FROM CACHED_OCSP";
+
+    /**
+     * used in the init method to create the table, if not existing: ID (char40) and DATA (blob)
+     */
+    public static final String SQL_INIT_CREATE_TABLE = "CREATE TABLE CACHED_OCSP (ID CHAR(40), DATA LONGVARBINARY)";
+
+    /**
+     * used in the find method to select the OCSP response via the id
+     */
+    public static final String SQL_FIND_QUERY = "SELECT DATA FROM CACHED_OCSP WHERE ID = ?";
+
+    /**
+     * used via the find method to insert a new record
+     */
+    public static final String SQL_FIND_INSERT = "INSERT INTO CACHED_OCSP (ID, DATA) VALUES (?, ?)";
+
+    /**
+     * used via the find method to update an existing record via the id
+     */
+    public static final String SQL_FIND_UPDATE = "UPDATE CACHED_OCSP SET DATA = ? WHERE ID = ?";
+
+    private OCSPSource cachedSource;
+
+    private DataSource dataSource;
+
+    private int maxEntries = DEFAULT_MAX_ENTRIES;
+
+    private long maxAge = -1;
+
+    private long validityWithoutNextUpdate = 0;
+
+    private String sqlInitCheckExistence = SQL_INIT_CHECK_EXISTENCE;
+
+    private String sqlInitCreateTable = SQL_INIT_CREATE_TABLE;
+
+    private String sqlFindQuery = SQL_FIND_QUERY;
+
+    private String sqlFindInsert = SQL_FIND_INSERT;
+
+    private String sqlFindUpdate = SQL_FIND_UPDATE;
+
+    /**
+     * Indicates if the table has been checked (and created if needed) in the current datasource.
+     */
+    private volatile boolean daoInitialized;
+
+    /**
+     * The responses kept in memory in access order (the least recently used first).
+     */
+    private final Map<String, BasicOCSPResp> responses = new LinkedHashMap<String, BasicOCSPResp>(16, 0.75f, true) {
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, BasicOCSPResp> eldest) {
+
+            return size() > maxEntries;
+        }
+    };
+
+    /**
+     * The default constructor for CachingOCSPSource.
+     */
+    public CachingOCSPSource() {
+
+    }
+
+    /**
+     * @param cachedSource the source used when no fresh response is cached
+     */
+    public void setCachedSource(final OCSPSource cachedSource) {
+
+        this.cachedSource = cachedSource;
+    }
+
+    /**
+     * @return the source used when no fresh response is cached
+     */
+    public OCSPSource getCachedSource() {
+
+        return cachedSource;
+    }
+
+    @Override
+    public OCSPSource getDelegate() {
+
+        return cachedSource;
+    }
+
+    /**
+     * @param maxEntries the maximum number of responses kept in memory
+     */
+    public void setMaxEntries(final int maxEntries) {
+
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Sets the maximum age (in milliseconds) of the thisUpdate date of a reused response. A negative value (default) means
+     * that only the nextUpdate date is taken into account.
+     *
+     * @param maxAge
+     */
+    public void setMaxAge(final long maxAge) {
+
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * Sets the time (in milliseconds) after the thisUpdate date during which a response without nextUpdate date is reused.
+     * The default value 0 means that such a response is never reused.
+     *
+     * @param validityWithoutNextUpdate
+     */
+    public void setValidityWithoutNextUpdate(final long validityWithoutNextUpdate) {
+
+        this.validityWithoutNextUpdate = validityWithoutNextUpdate;
+    }
+
+    @Override
+    public BasicOCSPResp getOCSPResponse(final X509Certificate certificate, final X509Certificate issuerCertificate) throws IOException {
+
+        final CertificateID certId;
+        try {
+
+            certId = new CertificateID(CertificateID.HASH_SHA1, issuerCertificate, certificate.getSerialNumber());
+        } catch (OCSPException e) {
+            throw new DSSException(e);
+        }
+        final String key = getKey(certId);
+        final Date now = new Date();
+        BasicOCSPResp cachedResp;
+        synchronized (responses) {
+
+            cachedResp = responses.get(key);
+        }
+        if (cachedResp != null && isFresh(cachedResp, certId, now)) {
+
+            LOG.fine("OCSP response in memory cache");
+            return cachedResp;
+        }
+        if (cachedResp == null && dataSource != null) {
+
+            try {
+
+                initDao();
+                cachedResp = findResponseInDB(key);
+                if (cachedResp != null && isFresh(cachedResp, certId, now)) {
+
+                    LOG.fine("OCSP response in cache");
+                    putInMemory(key, cachedResp);
+                    return cachedResp;
+                }
+            } catch (SQLException e) {
+                LOG.info("Error with the cache data store");
+            }
+        }
+        if (LOG.isLoggable(Level.INFO)) {
+            LOG.info(cachedResp == null ? "OCSP response not in cache" : "OCSP response expired");
+        }
+        final BasicOCSPResp ocspResp = cachedSource.getOCSPResponse(certificate, issuerCertificate);
+        if (ocspResp != null && isFresh(ocspResp, certId, now)) {
+
+            putInMemory(key, ocspResp);
+            if (dataSource != null) {
+
+                try {
+
+                    initDao();
+                    final byte[] encoded = OCSPUtils.fromBasicToResp(ocspResp).getEncoded();
+                    // The response found in memory is not necessarily in the database: insert it when no row is updated.
+                    if (cachedResp != null && updateResponseInDb(key, encoded)) {
+
+                        return ocspResp;
+                    }
+                    if (findResponseInDB(key) == null) {
+
+                        insertResponseInDb(key, encoded);
+                    } else {
+
+                        updateResponseInDb(key, encoded);
+                    }
+                } catch (SQLException e) {
+                    LOG.info("Error with the cache data store");
+                }
+            }
+        }
+        return ocspResp;
+    }
+
+    private void putInMemory(final String key, final BasicOCSPResp ocspResp) {
+
+        synchronized (responses) {
+
+            responses.put(key, ocspResp);
+        }
+    }
+
+    /**
+     * This method indicates if the given response can be reused for the given CertID at the given time.
+     *
+     * @param ocspResp
+     * @param certId
+     * @param now
+     * @return true if the response is fresh
+     */
+    private boolean isFresh(final BasicOCSPResp ocspResp, final CertificateID certId, final Date now) {
+
+        for (final SingleResp singleResp : ocspResp.getResponses()) {
+
+            if (!certId.equals(singleResp.getCertID())) {
+
+                continue;
+            }
+            final Date thisUpdate = singleResp.getThisUpdate();
+            final Date nextUpdate = singleResp.getNextUpdate();
+            if (thisUpdate == null || thisUpdate.after(now)) {
+
+                return false;
+            }
+            final long age = now.getTime() - thisUpdate.getTime();
+            if (maxAge >= 0 && age > maxAge) {
+
+                return false;
+            }
+            if (nextUpdate == null) {
+
+                return age < validityWithoutNextUpdate;
+            }
+            return nextUpdate.after(now);
+        }
+        return false;
+    }
+
+    /**
+     * This method returns the key identifying the CertID: the issuer name hash, the issuer key hash and the serial number.
+     *
+     * @param certId
+     * @return
+     */
+    private static String getKey(final CertificateID certId) {
+
+        final BigInteger serialNumber = certId.getSerialNumber();
+        return DSSUtils.toHex(certId.getIssuerNameHash()) + DSSUtils.toHex(certId.getIssuerKeyHash()) + serialNumber.toString(16);
+    }
+
+    /**
+     * This method returns the identifier of the response in the database (the key can be longer than the ID column).
+     *
+     * @param key
+     * @return
+     */
+    private static String getDbId(final String key) {
+
+        try {
+
+            final MessageDigest digest = MessageDigest.getInstance(DigestAlgorithm.SHA1.getName());
+            return DSSUtils.toHex(digest.digest(key.getBytes()));
+        } catch (NoSuchAlgorithmException e) {
+            throw new DSSException(e);
+        }
+    }
+
+    /**
+     * Initialise the DAO by creating the table if it does not exist. This is done on the first access to the datasource,
+     * once all the properties (queries included) are set.
+     *
+     * @throws SQLException
+     */
+    private void initDao() throws SQLException {
+
+        if (daoInitialized) {
+
+            return;
+        }
+        synchronized (this) {
+
+            if (!daoInitialized) {
+
+                /* Create the table iff it doesn't exist. */
+                if (!tableExists()) {
+                    createTable();
+                }
+                daoInitialized = true;
+            }
+        }
+    }
+
+    /**
+     * Create the cache OCSP table if it does not exist
+     *
+     * @throws SQLException
+     */
+    private void createTable() throws SQLException {
+
+        Connection c = null;
+        Statement s = null;
+        try {
+            c = dataSource.getConnection();
+            s = c.createStatement();
+            s.executeQuery(sqlInitCreateTable);
+            c.commit();
+        } finally {
+            closeQuietly(c, s, null);
+        }
+    }
+
+    /**
+     * Check if the cache table exists
+     *
+     * @return true if the table exists.
+     */
+    private boolean tableExists() {
+
+        Connection c = null;
+        Statement s = null;
+        boolean tableExists;
+        try {
+            c = dataSource.getConnection();
+            s = c.createStatement();
+            s.executeQuery(sqlInitCheckExistence);
+            tableExists = true;
+        } catch (SQLException e) {
+            tableExists = false;
+        } finally {
+            closeQuietly(c, s, null);
+        }
+        return tableExists;
+    }
+
+    /**
+     * Close the statement and connection and resultset without throwing the exception
+     *
+     * @param c  the connection
+     * @param s  the statement
+     * @param rs the ResultSet
+     */
+    private void closeQuietly(Connection c, Statement s, ResultSet rs) {
+
+        try {
+            if (rs != null) {
+                rs.close();
+            }
+            if (s != null) {
+                s.close();
+            }
+            if (c != null) {
+                c.close();
+            }
+        } catch (SQLException e) {
+            // purposely empty
+        }
+    }
+
+    /**
+     * Get the cached OCSP response from the datasource
+     *
+     * @param key the key of the response
+     * @return the cached response or null
+     * @throws SQLException
+     */
+    private BasicOCSPResp findResponseInDB(final String key) throws SQLException {
+
+        Connection c = null;
+        PreparedStatement s = null;
+        ResultSet rs = null;
+        try {
+            c = dataSource.getConnection();
+            s = c.prepareStatement(sqlFindQuery);
+            s.setString(1, getDbId(key));
+            rs = s.executeQuery();
+            if (rs.next()) {
+                return OCSPUtils.fromRespToBasic(new OCSPResp(rs.getBytes(1)));
+            }
+        } catch (IOException e) {
+            LOG.info("Cannot load the cached OCSP response");
+        } catch (RuntimeException e) {
+            LOG.info("Cannot load the cached OCSP response");
+        } finally {
+            closeQuietly(c, s, rs);
+        }
+        return null;
+    }
+
+    /**
+     * Insert a new OCSP response into the cache
+     *
+     * @param key     the key
+     * @param encoded the encoded OCSP response
+     * @throws SQLException
+     */
+    private void insertResponseInDb(final String key, final byte[] encoded) throws SQLException {
+
+        Connection c = null;
+        PreparedStatement s = null;
+        try {
+            c = dataSource.getConnection();
+            s = c.prepareStatement(sqlFindInsert);
+            s.setString(1, getDbId(key));
+            s.setBytes(2, encoded);
+            s.executeUpdate();
+        } finally {
+            closeQuietly(c, s, null);
+        }
+    }
+
+    /**
+     * Update the cache with the OCSP response
+     *
+     * @param key     the key
+     * @param encoded the encoded OCSP response
+     * @return true if a record was updated
+     * @throws SQLException
+     */
+    private boolean updateResponseInDb(final String key, final byte[] encoded) throws SQLException {
+
+        Connection c = null;
+        PreparedStatement s = null;
+        try {
+            c = dataSource.getConnection();
+            s = c.prepareStatement(sqlFindUpdate);
+            s.setBytes(1, encoded);
+            s.setString(2, getDbId(key));
+            return s.executeUpdate() > 0;
+        } finally {
+            closeQuietly(c, s, null);
+        }
+    }
+
+    /**
+     * Sets the datasource used to persist the responses. If not set (default) the responses are only kept in memory. The
+     * table is created if needed on the first access to the datasource.
+     *
+     * @param dataSource the dataSource to set
+     */
+    public void setDataSource(final DataSource dataSource) {
+
+        this.dataSource = dataSource;
+        daoInitialized = false;
+    }
+
+    /**
+     * @param sqlInitCheckExistence the query used in the init method to check if the table exists
+     */
+    public void setSqlInitCheckExistence(final String sqlInitCheckExistence) {
+
+        this.sqlInitCheckExistence = sqlInitCheckExistence;
+    }
+
+    /**
+     * @param sqlInitCreateTable the query used in the init method to create the table
+     */
+    public void setSqlInitCreateTable(final String sqlInitCreateTable) {
+
+        this.sqlInitCreateTable = sqlInitCreateTable;
+    }
+
+    /**
+     * @param sqlFindQuery the query used to select the response via the id (the DATA column must be the first one)
+     */
+    public void setSqlFindQuery(final String sqlFindQuery) {
+
+        this.sqlFindQuery = sqlFindQuery;
+    }
+
+    /**
+     * @param sqlFindInsert the query used to insert a new record
+     */
+    public void setSqlFindInsert(final String sqlFindInsert) {
+
+        this.sqlFindInsert = sqlFindInsert;
+    }
+
+    /**
+     * @param sqlFindUpdate the query used to update an existing record via the id
+     */
+    public void setSqlFindUpdate(final String sqlFindUpdate) {
+
+        this.sqlFindUpdate = sqlFindUpdate;
+    }
+}
@@ -144,7 +144,7 @@ public class TrustedListsCertificateSource implements CertificateSource {
 
       if (LOG.isLoggable(Level.INFO)) {
 
-         LOG.info("Certificate added from TL: " + CertificateIdentifier.getId(cert));
+         LOG.info("Certificate added from TL: " + CertificateIdentifier.getIdAsString(cert));
       }
 
       CertificateAndContext certAndCtx = new CertificateAndContext(cert);
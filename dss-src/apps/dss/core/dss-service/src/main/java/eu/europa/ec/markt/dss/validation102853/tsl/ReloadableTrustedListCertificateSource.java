@@ -21,16 +21,23 @@
 package eu.europa.ec.markt.dss.validation102853.tsl;
 
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import eu.europa.ec.markt.dss.exception.EncodingException;
+import eu.europa.ec.markt.dss.exception.DSSException;
 import eu.europa.ec.markt.dss.validation102853.CertificatePool;
 
 /**
  * This CertificateSource keep a list of trusted certificates extracted from the trusted list. To populate this list {@link
  * eu.europa.ec.markt.dss.validation102853.tsl.TrustedListsCertificateSource} class is used. This list is refreshed when the method refresh
- * is called.
+ * is called, or periodically between the calls to {@link #start()} and {@link #stop()}.<br>
+ * The reload is copy-on-write: the new list is fully built aside, checked and then published at once. The validations
+ * running during the reload keep using the previous list and never wait.
  *
  * @version $Revision: 2912 $ - $Date: 2013-11-10 22:48:01 +0100 (Sun, 10 Nov 2013) $
  */
@@ -39,55 +46,261 @@ public class ReloadableTrustedListCertificateSource extends TrustedListsCertific
 
     private static final Logger LOG = Logger.getLogger(ReloadableTrustedListCertificateSource.class.getName());
 
-    private TrustedListsCertificateSource currentSource = new TrustedListsCertificateSource();
+    private volatile TrustedListsCertificateSource currentSource = new TrustedListsCertificateSource();
 
-    public ReloadableTrustedListCertificateSource() {
+    /**
+     * The minimum number of trusted lists (the LOTL excluded) which must be loaded to publish a reloaded source.
+     */
+    private int minimumTrustedListCount = 1;
 
-        super();
-    }
+    /**
+     * The period (in milliseconds) of the automatic reload. The default value 0 means no automatic reload.
+     */
+    private long refreshPeriod = 0;
 
-    static class Reloader implements Runnable {
+    /**
+     * The maximum random delay (in milliseconds) added to each period, so that several nodes do not reload at the same time.
+     */
+    private long refreshJitter = 0;
 
-        TrustedListsCertificateSource underlyingSource;
+    private final Random random = new Random();
 
-        Reloader(TrustedListsCertificateSource underlyingSource) {
+    private ScheduledExecutorService scheduler;
 
-            this.underlyingSource = underlyingSource;
-        }
+    private boolean reloadScheduled;
+
+    /**
+     * Indicates if the periodic reload was requested with {@link #start()}.
+     */
+    private boolean started;
+
+    private volatile long lastReloadDuration = -1;
+
+    private volatile long reloadCount;
+
+    private volatile long rejectedReloadCount;
+
+    public ReloadableTrustedListCertificateSource() {
+
+        super();
+    }
+
+    /**
+     * Loads and publishes a new source when it is complete.
+     */
+    private class Reloader implements Runnable {
 
         @Override
         public void run() {
 
             try {
 
-                LOG.info("Reload Trusted List");
-                // Asynchronous loading of all the data in the TSLs
-                System.out.println("--> START LOADING");
-                underlyingSource.init();
-                System.out.println("--> END LOADING");
+                loadSnapshotIfEmpty();
+                reload();
+            } finally {
 
-            } catch (EncodingException e) {
-                makATrace(e);
+                synchronized (ReloadableTrustedListCertificateSource.this) {
+
+                    reloadScheduled = false;
+                    if (started && refreshPeriod > 0 && scheduler != null) {
+
+                        scheduleReload(refreshPeriod + getJitter());
+                    }
+                }
             }
         }
+    }
 
-        private static void makATrace(Exception e) {
+    /**
+     * Publishes the persisted snapshot of the trusted lists (if any) when no list is loaded yet, so that the trusted
+     * certificates are available while the lists are downloaded. The snapshot is verified when it is loaded: this is done
+     * on the scheduler thread, not in the thread which requested the reload.
+     */
+    private void loadSnapshotIfEmpty() {
 
-            e.printStackTrace();
-            LOG.log(Level.SEVERE, "", e);
+        if (!currentSource.getSnapshot().getTrustedLists().isEmpty()) {
+
+            return;
+        }
+        final TrustedListsCertificateSource snapshotSource = new TrustedListsCertificateSource(this);
+        if (snapshotSource.loadSnapshot()) {
+
+            currentSource = snapshotSource;
         }
     }
 
+    private void reload() {
+
+        final long startTime = System.currentTimeMillis();
+        try {
+
+            LOG.info("Reload Trusted List");
+            final TrustedListsCertificateSource newSource = new TrustedListsCertificateSource(this);
+            newSource.init();
+            final int trustedListCount = newSource.getSnapshot().getTrustedLists().size() - 1;
+            if (trustedListCount < minimumTrustedListCount || newSource.getCertificatePool().getCertificateTokens().isEmpty()) {
+
+                rejectedReloadCount++;
+                LOG.warning("The reloaded trusted lists are not complete (" + trustedListCount + " lists loaded): the current ones are kept.");
+                return;
+            }
+            currentSource = newSource;
+            reloadCount++;
+        } catch (DSSException e) {
+
+            rejectedReloadCount++;
+            LOG.log(Level.SEVERE, "The trusted lists cannot be reloaded: the current ones are kept.", e);
+        } catch (RuntimeException e) {
+
+            rejectedReloadCount++;
+            LOG.log(Level.SEVERE, "The trusted lists cannot be reloaded: the current ones are kept.", e);
+        } finally {
+
+            lastReloadDuration = System.currentTimeMillis() - startTime;
+            if (LOG.isLoggable(Level.INFO)) {
+
+                LOG.info("Trusted lists reload duration: " + lastReloadDuration + " ms");
+            }
+        }
+    }
+
+    /**
+     * Reloads the trusted lists once, in the background: this method returns immediately. Before the first reload the
+     * persisted snapshot of the trusted lists (if any) is published, so that the trusted certificates are available while
+     * the lists are downloaded. Only the lists which changed since the last loading are parsed and verified again. If a
+     * reload is already pending, this call has no effect. The reload is periodic only after {@link #start()}.
+     */
     public synchronized void refresh() {
 
-        TrustedListsCertificateSource newSource = new TrustedListsCertificateSource(this);
+        if (scheduler == null) {
 
-        Thread reloader = new Thread(new Reloader(newSource));
-        System.out.println("--> START");
-        reloader.start();
-        System.out.println("--> END");
+            scheduler = createScheduler();
+        }
+        scheduleReload(0);
+    }
+
+    /**
+     * Starts the automatic reload of the trusted lists: a first reload is started immediately in the background (see
+     * {@link #refresh()}), then every {@code refreshPeriod} milliseconds plus a random jitter.
+     */
+    public synchronized void start() {
+
+        if (refreshPeriod <= 0) {
+
+            throw new DSSException("The refresh period must be defined to start the automatic reload.");
+        }
+        started = true;
+        refresh();
+    }
+
+    /**
+     * Stops the automatic reload of the trusted lists. A running reload is interrupted.
+     */
+    public synchronized void stop() {
+
+        started = false;
+        if (scheduler != null) {
 
-        currentSource = newSource;
+            scheduler.shutdownNow();
+            scheduler = null;
+            reloadScheduled = false;
+        }
+    }
+
+    private void scheduleReload(final long delay) {
+
+        if (reloadScheduled) {
+
+            return;
+        }
+        reloadScheduled = true;
+        scheduler.schedule(new Reloader(), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private long getJitter() {
+
+        if (refreshJitter <= 0) {
+
+            return 0;
+        }
+        return (long) (random.nextDouble() * refreshJitter);
+    }
+
+    private static ScheduledExecutorService createScheduler() {
+
+        final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+
+            @Override
+            public Thread newThread(final Runnable runnable) {
+
+                final Thread thread = new Thread(runnable, "TrustedListsReloader");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        return scheduler;
+    }
+
+    /**
+     * @param minimumTrustedListCount the minimum number of trusted lists (the LOTL excluded) which must be loaded to publish
+     *                                a reloaded source. The default value is 1.
+     */
+    public void setMinimumTrustedListCount(final int minimumTrustedListCount) {
+
+        this.minimumTrustedListCount = minimumTrustedListCount;
+    }
+
+    /**
+     * @param refreshPeriod the period (in milliseconds) of the automatic reload
+     */
+    public void setRefreshPeriod(final long refreshPeriod) {
+
+        this.refreshPeriod = refreshPeriod;
+    }
+
+    /**
+     * @param refreshJitter the maximum random delay (in milliseconds) added to each period
+     */
+    public void setRefreshJitter(final long refreshJitter) {
+
+        this.refreshJitter = refreshJitter;
+    }
+
+    /**
+     * @return the duration (in milliseconds) of the last reload, -1 if no reload was done
+     */
+    public long getLastReloadDuration() {
+
+        return lastReloadDuration;
+    }
+
+    /**
+     * @return the number of published reloads
+     */
+    public long getReloadCount() {
+
+        return reloadCount;
+    }
+
+    /**
+     * @return the number of reloads which were not published because they failed or were not complete
+     */
+    public long getRejectedReloadCount() {
+
+        return rejectedReloadCount;
+    }
+
+    /**
+     * @return the age (in milliseconds) of the trusted lists currently used, -1 if no list is loaded
+     */
+    public long getSnapshotAge() {
+
+        final TrustedListsSnapshot snapshot = currentSource.getSnapshot();
+        if (snapshot.getTrustedLists().isEmpty()) {
+
+            return -1;
+        }
+        return System.currentTimeMillis() - snapshot.getCreationDate().getTime();
     }
 
     public Map<String, String> getDiagnosticInfo() {
@@ -95,10 +308,15 @@ public class ReloadableTrustedListCertificateSource extends TrustedListsCertific
         return currentSource.getDiagnosticInfo();
     }
 
+    @Override
+    public TrustedListsSnapshot getSnapshot() {
+
+        return currentSource.getSnapshot();
+    }
+
     @Override
     public CertificatePool getCertificatePool() {
 
-        System.out.println("--> ReloadableTrustedListCertificateSource ->getCertPool()");
         return currentSource.getCertificatePool();
     }
 }
@@ -43,6 +43,11 @@ import eu.europa.ec.markt.tsl.jaxb.tsl.TrustStatusListType;
 
 abstract class TrustServiceListFactory {
 
+    /**
+     * The JAXB context is thread-safe and expensive to create: it is shared. The unmarshallers are not thread-safe.
+     */
+    private static JAXBContext jaxbContext;
+
     /**
      * @param input
      * @return
@@ -88,9 +93,16 @@ abstract class TrustServiceListFactory {
 
     private static Unmarshaller getUnmarshaller() throws JAXBException {
 
-        JAXBContext jaxbContext = JAXBContext
-              .newInstance(ObjectFactory.class, ObjectFactory.class, eu.europa.ec.markt.tsl.jaxb.ecc.ObjectFactory.class);
-        final Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
+        final Unmarshaller unmarshaller = getJAXBContext().createUnmarshaller();
         return unmarshaller;
     }
+
+    private static synchronized JAXBContext getJAXBContext() throws JAXBException {
+
+        if (jaxbContext == null) {
+
+            jaxbContext = JAXBContext.newInstance(ObjectFactory.class, ObjectFactory.class, eu.europa.ec.markt.tsl.jaxb.ecc.ObjectFactory.class);
+        }
+        return jaxbContext;
+    }
 }
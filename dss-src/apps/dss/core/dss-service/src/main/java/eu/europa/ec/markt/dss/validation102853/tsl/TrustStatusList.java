@@ -20,10 +20,12 @@
 
 package eu.europa.ec.markt.dss.validation102853.tsl;
 
+import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
+import eu.europa.ec.markt.tsl.jaxb.tsl.NextUpdateType;
 import eu.europa.ec.markt.tsl.jaxb.tsl.OtherTSLPointerType;
 import eu.europa.ec.markt.tsl.jaxb.tsl.OtherTSLPointersType;
 import eu.europa.ec.markt.tsl.jaxb.tsl.TSLSchemeInformationType;
@@ -132,6 +134,22 @@ class TrustStatusList {
      */
     public Date getNextUpdate() {
 
-        return trustStatusListType.getSchemeInformation().getNextUpdate().getDateTime().toGregorianCalendar().getTime();
+        final NextUpdateType nextUpdate = trustStatusListType.getSchemeInformation().getNextUpdate();
+        if (nextUpdate == null || nextUpdate.getDateTime() == null) {
+
+            return null;
+        }
+        return nextUpdate.getDateTime().toGregorianCalendar().getTime();
+    }
+
+    /**
+     * Returns the sequence number of the trusted list.
+     *
+     * @return
+     */
+    public String getSequenceNumber() {
+
+        final BigInteger sequenceNumber = trustStatusListType.getSchemeInformation().getTSLSequenceNumber();
+        return sequenceNumber == null ? null : sequenceNumber.toString();
     }
 }
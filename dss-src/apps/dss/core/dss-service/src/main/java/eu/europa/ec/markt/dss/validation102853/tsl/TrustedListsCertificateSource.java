@@ -27,12 +27,25 @@ import java.io.InputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.net.URL;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.Security;
+import java.security.cert.CertificateEncodingException;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.ZipEntry;
@@ -51,6 +64,7 @@ import org.w3c.dom.NodeList;
 
 import eu.europa.ec.markt.dss.DSSUtils;
 import eu.europa.ec.markt.dss.DSSXMLUtils;
+import eu.europa.ec.markt.dss.DigestAlgorithm;
 import eu.europa.ec.markt.dss.exception.DSSException;
 import eu.europa.ec.markt.dss.exception.DSSNullReturnedException;
 import eu.europa.ec.markt.dss.exception.EncodingException;
@@ -79,7 +93,7 @@ public class TrustedListsCertificateSource extends CommonTrustedCertificateSourc
 
     protected transient HTTPDataLoader dataLoader;
 
-    private Map<String, String> diagnosticInfo = new HashMap<String, String>();
+    private Map<String, String> diagnosticInfo = new ConcurrentHashMap<String, String>();
 
     /**
      * Defines if the TL signature must be checked. The default value is true.
@@ -88,6 +102,38 @@ public class TrustedListsCertificateSource extends CommonTrustedCertificateSourc
 
     protected String lotlCertificate;
 
+    /**
+     * The path of the file where the snapshot of the trusted lists is persisted. If null, no snapshot is persisted.
+     */
+    protected String snapshotFile;
+
+    /**
+     * The secret key of the seal of the snapshot file. If null, the seal only detects a corrupted file.
+     */
+    protected String snapshotKey;
+
+    /**
+     * The number of threads used to load the trusted lists pointed by the LOTL. The default value 1 means that the lists
+     * are loaded one after the other.
+     */
+    protected int loadingThreadCount = 1;
+
+    /**
+     * The maximum time (in milliseconds) to load one trusted list when the lists are loaded in parallel. The default value
+     * 0 means no timeout.
+     */
+    protected long loadingTimeout = 0;
+
+    /**
+     * The snapshot of the trusted lists loaded in this source.
+     */
+    private TrustedListsSnapshot snapshot = new TrustedListsSnapshot();
+
+    /**
+     * The snapshot of the previous loading, used during {@link #init()} to reuse the unchanged lists.
+     */
+    private TrustedListsSnapshot previousSnapshot;
+
     static {
 
         Security.addProvider(new BouncyCastleProvider());
@@ -111,7 +157,11 @@ public class TrustedListsCertificateSource extends CommonTrustedCertificateSourc
         this.setCheckSignature(trustedListsCertificateSource.checkSignature);
         this.setLotlCertificate(trustedListsCertificateSource.lotlCertificate);
         this.setLotlUrl(trustedListsCertificateSource.lotlUrl);
-
+        this.setSnapshotFile(trustedListsCertificateSource.snapshotFile);
+        this.setSnapshotKey(trustedListsCertificateSource.snapshotKey);
+        this.setLoadingThreadCount(trustedListsCertificateSource.loadingThreadCount);
+        this.setLoadingTimeout(trustedListsCertificateSource.loadingTimeout);
+        this.previousSnapshot = trustedListsCertificateSource.getSnapshot();
     }
 
     @Override
@@ -149,20 +199,24 @@ public class TrustedListsCertificateSource extends CommonTrustedCertificateSourc
     }
 
     /**
-     * Adds a service entry (current or history) to the list of certificate tokens.
+     * Adds a service entry (current or history) to the given trusted list snapshot.
      *
+     * @param trustedList    the snapshot of the trusted list
      * @param cert           the certificate which identifies the trusted service
      * @param trustedService Object defining the trusted service
      * @param tsProvider     Object defining the trusted service provider, must be the parent of the trusted service
      * @param tlWellSigned   Indicates if the signature of trusted list is valid
      */
-    private void addCertificate(final X509Certificate cert, final AbstractTrustService trustedService, final TrustServiceProvider tsProvider,
-                                final boolean tlWellSigned) {
+    private void addCertificate(final TrustedListsSnapshot.TrustedList trustedList, final X509Certificate cert,
+                                final AbstractTrustService trustedService, final TrustServiceProvider tsProvider, final boolean tlWellSigned) {
 
         try {
 
             final ServiceInfo serviceInfo = getServiceInfo(trustedService, tsProvider, tlWellSigned);
-            super.addCertificate(cert, serviceInfo);
+            trustedList.addCertificate(cert.getEncoded(), serviceInfo);
+        } catch (CertificateEncodingException e) {
+
+            throw new EncodingException(EncodingException.MSG.CERTIFICATE_CANNOT_BE_READ, e);
         } catch (NotETSICompliantException ex) {
 
             LOG.log(Level.SEVERE,
@@ -242,14 +296,13 @@ public class TrustedListsCertificateSource extends CommonTrustedCertificateSourc
     }
 
     /**
-     * Load a trusted list for the specified URL
+     * Downloads the data of a trusted list for the specified URL. By convention a zipped trusted list has a URL with the
+     * .zip suffix: the xml content is then extracted.
      *
      * @param url
-     * @param signerCert
      * @return
-     * @throws IOException
      */
-    private TrustStatusList getTrustStatusList(String url, X509Certificate signerCert) {
+    private byte[] getTrustedListData(final String url) {
 
         InputStream input = null;
         try {
@@ -263,8 +316,31 @@ public class TrustedListsCertificateSource extends CommonTrustedCertificateSourc
 
                 input = getZippedData(input);
             }
+            return IOUtils.toByteArray(input);
+        } catch (DSSException e) {
+
+            throw e;
+        } catch (Exception e) {
 
-            Document doc = DSSXMLUtils.buildDOM(input);
+            throw new DSSException(e);
+        } finally {
+
+            DSSUtils.closeQuietly(input);
+        }
+    }
+
+    /**
+     * Parses a trusted list and checks its signature
+     *
+     * @param data
+     * @param signerCert
+     * @return
+     */
+    private TrustStatusList getTrustStatusList(final byte[] data, final X509Certificate signerCert) {
+
+        try {
+
+            Document doc = DSSXMLUtils.buildDOM(new ByteArrayInputStream(data));
 
             boolean coreValidity = true;
             if (checkSignature) {
@@ -302,9 +378,156 @@ public class TrustedListsCertificateSource extends CommonTrustedCertificateSourc
         } catch (Exception e) {
 
             throw new DSSException(e);
-        } finally {
+        }
+    }
 
-            DSSUtils.closeQuietly(input);
+    /**
+     * Parses a trusted list whose signature was already checked
+     *
+     * @param data
+     * @param wellSigned the result of the previous signature check
+     * @return
+     */
+    private TrustStatusList getTrustStatusList(final byte[] data, final boolean wellSigned) {
+
+        try {
+
+            final Document doc = DSSXMLUtils.buildDOM(new ByteArrayInputStream(data));
+            final TrustStatusList tsl = TrustServiceListFactory.newInstance(doc);
+            tsl.setWellSigned(wellSigned);
+            return tsl;
+        } catch (DSSException e) {
+
+            throw e;
+        } catch (Exception e) {
+
+            throw new DSSException(e);
+        }
+    }
+
+    /**
+     * Loads a trusted list for the specified URL. If the downloaded data (and the signing certificate) did not change since
+     * the previous loading, the previous content is reused: the list is neither parsed nor verified again.
+     *
+     * @param url
+     * @param territory
+     * @param signerCert
+     * @param lotl       true if the list is the LOTL: the pointers are kept instead of the certificates
+     * @return the content of the trusted list
+     */
+    private TrustedListsSnapshot.TrustedList getTrustedList(final String url, final String territory, final X509Certificate signerCert,
+                                                            final boolean lotl) {
+
+        final byte[] data = getTrustedListData(url);
+        final String digest = getDigest(data, signerCert);
+        final TrustedListsSnapshot.TrustedList previousTrustedList = previousSnapshot == null ? null : previousSnapshot.get(url);
+        if (previousTrustedList != null && digest.equals(previousTrustedList.getDigest())) {
+
+            if (LOG.isLoggable(Level.INFO)) {
+
+                LOG.info("The trusted list did not change since " + previousTrustedList.getLoadingDate() + ": " + url);
+            }
+            return previousTrustedList;
+        }
+        return createTrustedList(url, territory, lotl, data, digest, new Date(), getTrustStatusList(data, signerCert));
+    }
+
+    /**
+     * Reads a trusted list of the persisted snapshot. The stored signature status is reused only if the stored digest
+     * matches the data and the current signing certificate: otherwise the list is verified again.
+     *
+     * @param url
+     * @param territory
+     * @param signerCert
+     * @param lotl        true if the list is the LOTL: the pointers are kept instead of the certificates
+     * @param storedTrustedList the list read from the snapshot file
+     * @return the content of the trusted list
+     */
+    private TrustedListsSnapshot.TrustedList readTrustedList(final String url, final String territory, final X509Certificate signerCert,
+                                                             final boolean lotl, final TrustedListsSnapshot.TrustedList storedTrustedList) {
+
+        final byte[] data = storedTrustedList.getData();
+        final String digest = getDigest(data, signerCert);
+        final TrustStatusList trustStatusList;
+        if (digest.equals(storedTrustedList.getDigest())) {
+
+            trustStatusList = getTrustStatusList(data, storedTrustedList.isWellSigned());
+        } else {
+
+            LOG.info("The trusted list of the snapshot is verified again: " + url);
+            trustStatusList = getTrustStatusList(data, signerCert);
+        }
+        return createTrustedList(url, territory, lotl, data, digest, storedTrustedList.getLoadingDate(), trustStatusList);
+    }
+
+    /**
+     * Creates the content of a trusted list from its parsed data.
+     *
+     * @param url
+     * @param territory
+     * @param lotl            true if the list is the LOTL: the pointers are kept instead of the certificates
+     * @param data            the downloaded data of the list
+     * @param digest          the digest identifying the content of the list (see {@link #getDigest(byte[], X509Certificate)})
+     * @param loadingDate     the date when the data was downloaded
+     * @param trustStatusList the parsed list
+     * @return the content of the trusted list
+     */
+    private TrustedListsSnapshot.TrustedList createTrustedList(final String url, final String territory, final boolean lotl, final byte[] data,
+                                                               final String digest, final Date loadingDate, final TrustStatusList trustStatusList) {
+
+        final TrustedListsSnapshot.TrustedList trustedList = new TrustedListsSnapshot.TrustedList(url, territory, digest, data);
+        trustedList.setWellSigned(trustStatusList.isWellSigned());
+        trustedList.setSequenceNumber(trustStatusList.getSequenceNumber());
+        trustedList.setNextUpdate(trustStatusList.getNextUpdate());
+        trustedList.setLoadingDate(loadingDate);
+        if (lotl) {
+
+            for (final PointerToOtherTSL pointerToTSL : trustStatusList.getOtherTSLPointers()) {
+
+                final X509Certificate signingCert = pointerToTSL.getDigitalIdentity();
+                final byte[] encodedSigningCert = signingCert == null ? null : getEncoded(signingCert);
+                trustedList.addPointer(new TrustedListsSnapshot.Pointer(pointerToTSL.getTslLocation(), pointerToTSL.getTerritory(), encodedSigningCert));
+            }
+        } else {
+
+            loadAllCertificatesFromOneTSL(trustedList, trustStatusList);
+        }
+        return trustedList;
+    }
+
+    /**
+     * This method returns the digest identifying the content of a trusted list: the downloaded data and, when the signature
+     * is checked, the certificate used to check it.
+     *
+     * @param data
+     * @param signerCert
+     * @return
+     */
+    private String getDigest(final byte[] data, final X509Certificate signerCert) {
+
+        try {
+
+            final MessageDigest messageDigest = MessageDigest.getInstance(DigestAlgorithm.SHA256.getName());
+            messageDigest.update(data);
+            if (checkSignature && signerCert != null) {
+
+                messageDigest.update(getEncoded(signerCert));
+            }
+            return (checkSignature ? "checked:" : "") + DSSUtils.toHex(messageDigest.digest());
+        } catch (NoSuchAlgorithmException e) {
+
+            throw new DSSException(e);
+        }
+    }
+
+    private static byte[] getEncoded(final X509Certificate certificate) {
+
+        try {
+
+            return certificate.getEncoded();
+        } catch (CertificateEncodingException e) {
+
+            throw new EncodingException(EncodingException.MSG.CERTIFICATE_CANNOT_BE_READ, e);
         }
     }
 
@@ -357,48 +580,202 @@ public class TrustedListsCertificateSource extends CommonTrustedCertificateSourc
     }
 
     /**
-     * Load the certificates contained in all the TSL referenced by the LOTL
+     * Load the certificates contained in all the TSL referenced by the LOTL. The lists which did not change since the
+     * previous loading (or since the persisted snapshot) are not parsed again. When a list cannot be downloaded, its
+     * previous content is used as long as it is not expired. At the end the snapshot file is updated (if defined).
      *
      * @throws IOException
      */
     public void init() {
 
         diagnosticInfo.clear();
+        if (previousSnapshot == null || previousSnapshot.getTrustedLists().isEmpty()) {
+
+            previousSnapshot = snapshot.getTrustedLists().isEmpty() ? readSnapshot() : snapshot;
+        }
+        snapshot = new TrustedListsSnapshot();
 
         X509Certificate lotlCert = null;
         if (checkSignature) {
 
             lotlCert = readLOTLCertificate();
         }
-        TrustStatusList lotl;
+        TrustedListsSnapshot.TrustedList lotl;
         try {
 
             if (LOG.isLoggable(Level.INFO)) {
 
                 LOG.info("Downloading LOTL from url= " + lotlUrl);
             }
-            lotl = getTrustStatusList(lotlUrl, lotlCert);
+            lotl = getTrustedList(lotlUrl, null, lotlCert, true);
+            diagnosticInfo.put(lotlUrl, "Loaded " + new Date().toString());
         } catch (DSSException e) {
 
-            LOG.log(Level.SEVERE, "The LOTL cannot be loaded: " + e.getMessage(), e);
-            throw e;
+            lotl = getPreviousTrustedList(lotlUrl);
+            if (lotl == null) {
+
+                LOG.log(Level.SEVERE, "The LOTL cannot be loaded: " + e.getMessage(), e);
+                throw e;
+            }
+            LOG.log(Level.WARNING, "The LOTL cannot be loaded, the previous one is used: " + e.getMessage(), e);
+            diagnosticInfo.put(lotlUrl, "Loaded from the previous snapshot " + lotl.getLoadingDate() + " (" + e.getMessage() + ")");
         }
-        diagnosticInfo.put(lotlUrl, "Loaded " + new Date().toString());
-        for (PointerToOtherTSL pointerToTSL : lotl.getOtherTSLPointers()) {
+        snapshot.put(lotl);
+        final List<TrustedListsSnapshot.Pointer> pointers = lotl.getPointers();
+        if (loadingThreadCount > 1 && pointers.size() > 1) {
 
-            try {
+            loadTSLs(pointers);
+        } else {
 
-                final String url = pointerToTSL.getTslLocation();
-                final String territory = pointerToTSL.getTerritory();
-                final X509Certificate signingCert = pointerToTSL.getDigitalIdentity();
+            for (final TrustedListsSnapshot.Pointer pointer : pointers) {
 
-                loadTSL(url, territory, signingCert);
-            } catch (DSSException e) {
+                try {
 
-                // do nothing continue with the next trusted list.
+                    final byte[] encodedSigningCert = pointer.getSigningCertificate();
+                    final X509Certificate signingCert = encodedSigningCert == null ? null : DSSUtils.loadCertificate(encodedSigningCert);
+                    loadTSL(pointer.getUrl(), pointer.getTerritory(), signingCert);
+                } catch (DSSException e) {
+
+                    // do nothing continue with the next trusted list.
+                }
             }
         }
         loadAdditionalLists();
+        previousSnapshot = null;
+        writeSnapshot();
+    }
+
+    /**
+     * This method loads the trusted certificates from the persisted snapshot file, without any download. The lists which
+     * are expired are not loaded. A following call to {@link #init()} only parses the lists which changed.
+     *
+     * @return true if the snapshot was loaded
+     */
+    public boolean loadSnapshot() {
+
+        final TrustedListsSnapshot persistedSnapshot = readSnapshot();
+        if (persistedSnapshot == null) {
+
+            return false;
+        }
+        diagnosticInfo.clear();
+        final Date now = new Date();
+        for (final TrustedListsSnapshot.TrustedList trustedList : persistedSnapshot.getTrustedLists()) {
+
+            if (!trustedList.isValid(now)) {
+
+                diagnosticInfo.put(trustedList.getUrl(), "Expired in the snapshot since " + trustedList.getNextUpdate());
+                continue;
+            }
+            addCertificates(trustedList);
+            diagnosticInfo.put(trustedList.getUrl(), "Loaded from the snapshot " + trustedList.getLoadingDate());
+        }
+        snapshot = persistedSnapshot;
+        return true;
+    }
+
+    /**
+     * This method reads the persisted snapshot. The seal of the file is checked once, then the LOTL and each trusted list
+     * pointed by the LOTL are parsed again. Their signatures are not verified again as long as the stored digests match the
+     * data and the current signing certificates (the LOTL certificate, then the one of the pointer): a list whose signing
+     * certificate changed is verified again. The lists which are not pointed by the LOTL are ignored.<br>
+     * Without {@link #setSnapshotKey(String) secret key}, anyone who can write the snapshot file can forge its content.
+     *
+     * @return the snapshot or null if there is no (readable) snapshot
+     */
+    private TrustedListsSnapshot readSnapshot() {
+
+        if (snapshotFile == null) {
+
+            return null;
+        }
+        final File file = new File(snapshotFile);
+        if (!file.exists()) {
+
+            return null;
+        }
+        try {
+
+            final TrustedListsSnapshot storedSnapshot = TrustedListsSnapshot.load(file, getSnapshotKeyBytes());
+            final TrustedListsSnapshot.TrustedList storedLotl = storedSnapshot.get(lotlUrl);
+            if (storedLotl == null) {
+
+                LOG.warning("The trusted lists snapshot does not contain the LOTL: " + file.getAbsolutePath());
+                return null;
+            }
+            final TrustedListsSnapshot persistedSnapshot = new TrustedListsSnapshot(storedSnapshot.getCreationDate());
+            final X509Certificate lotlCert = checkSignature ? readLOTLCertificate() : null;
+            final TrustedListsSnapshot.TrustedList lotl = readTrustedList(lotlUrl, null, lotlCert, true, storedLotl);
+            persistedSnapshot.put(lotl);
+            for (final TrustedListsSnapshot.Pointer pointer : lotl.getPointers()) {
+
+                final TrustedListsSnapshot.TrustedList storedTrustedList = storedSnapshot.get(pointer.getUrl());
+                if (storedTrustedList == null) {
+
+                    continue;
+                }
+                try {
+
+                    final byte[] encodedSigningCert = pointer.getSigningCertificate();
+                    final X509Certificate signingCert = encodedSigningCert == null ? null : DSSUtils.loadCertificate(encodedSigningCert);
+                    persistedSnapshot.put(readTrustedList(pointer.getUrl(), pointer.getTerritory(), signingCert, false, storedTrustedList));
+                } catch (DSSException e) {
+
+                    LOG.log(Level.WARNING, "The trusted list of the snapshot cannot be read: " + pointer.getUrl(), e);
+                }
+            }
+            if (LOG.isLoggable(Level.INFO)) {
+
+                LOG.info("Trusted lists snapshot of " + persistedSnapshot.getCreationDate() + " read from " + file.getAbsolutePath());
+            }
+            return persistedSnapshot;
+        } catch (DSSException e) {
+
+            LOG.log(Level.WARNING, "The trusted lists snapshot cannot be read: " + e.getMessage(), e);
+            return null;
+        }
+    }
+
+    private void writeSnapshot() {
+
+        if (snapshotFile == null) {
+
+            return;
+        }
+        try {
+
+            snapshot.save(new File(snapshotFile), getSnapshotKeyBytes());
+        } catch (DSSException e) {
+
+            LOG.log(Level.WARNING, "The trusted lists snapshot cannot be written: " + e.getMessage(), e);
+        }
+    }
+
+    private byte[] getSnapshotKeyBytes() {
+
+        return snapshotKey == null ? null : snapshotKey.getBytes(Charset.forName("UTF-8"));
+    }
+
+    /**
+     * @param url
+     * @return the content of the list in the previous snapshot if it is not expired, null otherwise
+     */
+    private TrustedListsSnapshot.TrustedList getPreviousTrustedList(final String url) {
+
+        final TrustedListsSnapshot.TrustedList previousTrustedList = previousSnapshot == null ? null : previousSnapshot.get(url);
+        if (previousTrustedList != null && previousTrustedList.isValid(new Date())) {
+
+            return previousTrustedList;
+        }
+        return null;
+    }
+
+    /**
+     * @return the snapshot of the trusted lists loaded in this source
+     */
+    public TrustedListsSnapshot getSnapshot() {
+
+        return snapshot;
     }
 
     private X509Certificate readLOTLCertificate() throws DSSException {
@@ -441,6 +818,24 @@ public class TrustedListsCertificateSource extends CommonTrustedCertificateSourc
      */
     protected void loadTSL(final String url, final String territory, final X509Certificate signingCert) {
 
+        final TrustedListsSnapshot.TrustedList trustedList = fetchTSL(url, territory, signingCert);
+        if (trustedList != null) {
+
+            mergeTSL(trustedList);
+        }
+    }
+
+    /**
+     * Downloads, parses and verifies (if needed) the trusted list. This method does not modify the certificate pool and can
+     * be called concurrently for different lists.
+     *
+     * @param url
+     * @param territory
+     * @param signingCert
+     * @return the content of the trusted list, null if the download was skipped or failed with an unexpected problem
+     */
+    private TrustedListsSnapshot.TrustedList fetchTSL(final String url, final String territory, final X509Certificate signingCert) {
+
         try {
 
             diagnosticInfo.put(url, "Loading");
@@ -448,9 +843,26 @@ public class TrustedListsCertificateSource extends CommonTrustedCertificateSourc
 
                 LOG.info("Downloading TrustStatusList for '" + territory + "' from url= " + url);
             }
-            final TrustStatusList countryTSL = getTrustStatusList(url, signingCert);
-            loadAllCertificatesFromOneTSL(countryTSL);
-            diagnosticInfo.put(url, "Loaded " + new Date().toString());
+            final long startTime = System.currentTimeMillis();
+            TrustedListsSnapshot.TrustedList trustedList;
+            try {
+
+                trustedList = getTrustedList(url, territory, signingCert, false);
+                diagnosticInfo.put(url, "Loaded " + new Date().toString() + " (" + (System.currentTimeMillis() - startTime) + " ms)");
+            } catch (final DSSNullReturnedException e) {
+
+                throw e;
+            } catch (final RuntimeException e) {
+
+                trustedList = getPreviousTrustedList(url);
+                if (trustedList == null) {
+
+                    throw e;
+                }
+                LOG.log(Level.WARNING, "The trusted list cannot be loaded, the previous one is used: " + url, e);
+                diagnosticInfo.put(url, "Loaded from the previous snapshot " + trustedList.getLoadingDate() + " (" + e.getMessage() + ")");
+            }
+            return trustedList;
         } catch (final DSSNullReturnedException e) {
 
             LOG.info("Download skipped.");
@@ -462,6 +874,131 @@ public class TrustedListsCertificateSource extends CommonTrustedCertificateSourc
 
             makeATrace(url, "Other problem: " + e.toString(), e);
         }
+        return null;
+    }
+
+    /**
+     * Adds the certificates of the trusted list to the certificate pool and the list to the snapshot.
+     *
+     * @param trustedList
+     */
+    private void mergeTSL(final TrustedListsSnapshot.TrustedList trustedList) {
+
+        addCertificates(trustedList);
+        snapshot.put(trustedList);
+    }
+
+    /**
+     * Loads the trusted lists in parallel with a pool of {@code loadingThreadCount} threads. The results are merged into
+     * the certificate pool in the order of the pointers, whatever the order in which the lists are loaded. A list which
+     * is not loaded within the timeout is skipped (or replaced by its previous content when not expired).
+     *
+     * @param pointers
+     */
+    private void loadTSLs(final List<TrustedListsSnapshot.Pointer> pointers) {
+
+        final ExecutorService executorService = Executors.newFixedThreadPool(Math.min(loadingThreadCount, pointers.size()));
+        try {
+
+            final List<TSLLoadingTask> tasks = new ArrayList<TSLLoadingTask>();
+            for (final TrustedListsSnapshot.Pointer pointer : pointers) {
+
+                final TSLLoadingTask task = new TSLLoadingTask(pointer);
+                task.future = executorService.submit(task);
+                tasks.add(task);
+            }
+            for (final TSLLoadingTask task : tasks) {
+
+                final TrustedListsSnapshot.TrustedList trustedList = waitFor(task);
+                if (trustedList != null) {
+
+                    mergeTSL(trustedList);
+                }
+            }
+        } finally {
+
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * This method waits for the result of the given task. The timeout is counted from the start of the task, not from its
+     * submission.
+     *
+     * @param task
+     * @return the content of the trusted list or null
+     */
+    private TrustedListsSnapshot.TrustedList waitFor(final TSLLoadingTask task) {
+
+        final String url = task.pointer.getUrl();
+        while (true) {
+
+            try {
+
+                if (loadingTimeout <= 0) {
+
+                    return task.future.get();
+                }
+                final long startTime = task.startTime;
+                final long remaining = startTime == 0 ? loadingTimeout : startTime + loadingTimeout - System.currentTimeMillis();
+                if (remaining > 0) {
+
+                    return task.future.get(remaining, TimeUnit.MILLISECONDS);
+                }
+                task.future.cancel(true);
+                final TrustedListsSnapshot.TrustedList previousTrustedList = getPreviousTrustedList(url);
+                final String message = "Not loaded within " + loadingTimeout + " ms";
+                LOG.warning(message + ": " + url);
+                if (previousTrustedList == null) {
+
+                    diagnosticInfo.put(url, message);
+                } else {
+
+                    diagnosticInfo.put(url, "Loaded from the previous snapshot " + previousTrustedList.getLoadingDate() + " (" + message + ")");
+                }
+                return previousTrustedList;
+            } catch (TimeoutException e) {
+
+                // The task may have started after the beginning of the wait: the remaining time is computed again.
+            } catch (InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+                throw new DSSException("The loading of the trusted lists was interrupted.", e);
+            } catch (ExecutionException e) {
+
+                // do nothing continue with the next trusted list.
+                final Throwable cause = e.getCause();
+                LOG.log(Level.WARNING, "The trusted list cannot be loaded: " + url, cause);
+                diagnosticInfo.put(url, "Not loaded: " + cause);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Downloads, parses and verifies one trusted list.
+     */
+    private class TSLLoadingTask implements Callable<TrustedListsSnapshot.TrustedList> {
+
+        private final TrustedListsSnapshot.Pointer pointer;
+
+        private Future<TrustedListsSnapshot.TrustedList> future;
+
+        private volatile long startTime;
+
+        TSLLoadingTask(final TrustedListsSnapshot.Pointer pointer) {
+
+            this.pointer = pointer;
+        }
+
+        @Override
+        public TrustedListsSnapshot.TrustedList call() throws DSSException {
+
+            startTime = System.currentTimeMillis();
+            final byte[] encodedSigningCert = pointer.getSigningCertificate();
+            final X509Certificate signingCert = encodedSigningCert == null ? null : DSSUtils.loadCertificate(encodedSigningCert);
+            return fetchTSL(pointer.getUrl(), pointer.getTerritory(), signingCert);
+        }
     }
 
     private void makeATrace(final String url, final String message, final Exception e) {
@@ -473,24 +1010,36 @@ public class TrustedListsCertificateSource extends CommonTrustedCertificateSourc
     }
 
     /**
-     * Adds all the service entries (current and history) of all the providers of the trusted list to the list of
-     * CertificateSource
+     * Adds all the certificates of the given trusted list content to the list of CertificateSource
      *
+     * @param trustedList
+     */
+    private void addCertificates(final TrustedListsSnapshot.TrustedList trustedList) {
+
+        for (int ii = 0; ii < trustedList.getCertificateCount(); ii++) {
+
+            final X509Certificate x509Certificate = DSSUtils.loadCertificate(trustedList.getCertificate(ii));
+            super.addCertificate(x509Certificate, trustedList.getServiceInfo(ii));
+        }
+    }
+
+    /**
+     * Adds all the service entries (current and history) of all the providers of the trusted list to the given trusted
+     * list content
+     *
+     * @param trustedList
      * @param trustStatusList
      */
-    private void loadAllCertificatesFromOneTSL(final TrustStatusList trustStatusList) {
+    private void loadAllCertificatesFromOneTSL(final TrustedListsSnapshot.TrustedList trustedList, final TrustStatusList trustStatusList) {
 
         for (final TrustServiceProvider trustServiceProvider : trustStatusList.getTrustServicesProvider()) {
 
             for (final AbstractTrustService trustService : trustServiceProvider.getTrustServiceList()) {
 
-                // System.out.println(trustService.getServiceName());
-                // System.out.println(trustService.getType());
-                // System.out.println(trustService.getStatus());
                 try {
                     for (final X509Certificate x509Certificate : trustService.getDigitalIdentity()) {
 
-                        addCertificate(x509Certificate, trustService, trustServiceProvider, trustStatusList.isWellSigned());
+                        addCertificate(trustedList, x509Certificate, trustService, trustServiceProvider, trustStatusList.isWellSigned());
                     }
                 } catch (EncodingException e) {
 
@@ -529,6 +1078,50 @@ public class TrustedListsCertificateSource extends CommonTrustedCertificateSourc
         this.lotlUrl = lotlUrl;
     }
 
+    /**
+     * Defines the path of the file where the snapshot of the trusted lists is persisted. The snapshot is written at the end
+     * of {@link #init()} and can be read at startup with {@link #loadSnapshot()}.
+     *
+     * @param snapshotFile the snapshotFile to set
+     */
+    public void setSnapshotFile(String snapshotFile) {
+
+        this.snapshotFile = snapshotFile;
+    }
+
+    /**
+     * Defines the secret key of the HMAC sealing the snapshot file. The trusted lists of a sealed snapshot are not verified
+     * again when it is read: without key, the seal only detects a corrupted file and the snapshot is as trusted as the
+     * directory where it is stored.
+     *
+     * @param snapshotKey the snapshotKey to set
+     */
+    public void setSnapshotKey(String snapshotKey) {
+
+        this.snapshotKey = snapshotKey;
+    }
+
+    /**
+     * Defines the number of threads used to load the trusted lists pointed by the LOTL. The data loader must be thread-safe
+     * when this number is greater than 1.
+     *
+     * @param loadingThreadCount the loadingThreadCount to set
+     */
+    public void setLoadingThreadCount(int loadingThreadCount) {
+
+        this.loadingThreadCount = loadingThreadCount;
+    }
+
+    /**
+     * Defines the maximum time (in milliseconds) to load one trusted list when the lists are loaded in parallel.
+     *
+     * @param loadingTimeout the loadingTimeout to set
+     */
+    public void setLoadingTimeout(long loadingTimeout) {
+
+        this.loadingTimeout = loadingTimeout;
+    }
+
     /**
      * @param dataLoader the dataLoader to set
      */
@@ -0,0 +1,550 @@
+/*
+ * DSS - Digital Signature Services
+ *
+ * Copyright (C) 2013 European Commission, Directorate-General Internal Market and Services (DG MARKT), B-1049 Bruxelles/Brussel
+ *
+ * Developed by: 2013 ARHS Developments S.A. (rue Nicolas Bové 2B, L-1253 Luxembourg) http://www.arhs-developments.com
+ *
+ * This file is part of the "DSS - Digital Signature Services" project.
+ *
+ * "DSS - Digital Signature Services" is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU Lesser General Public License as published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * DSS is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * "DSS - Digital Signature Services".  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.europa.ec.markt.dss.validation102853.tsl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import eu.europa.ec.markt.dss.DSSUtils;
+import eu.europa.ec.markt.dss.exception.DSSException;
+import eu.europa.ec.markt.dss.validation102853.condition.ServiceInfo;
+
+/**
+ * This class represents the parsed content of the LOTL and of the trusted lists it points to: the service information and
+ * the DER encoded certificates of each list. It can be saved to and loaded from a file, so that the trusted lists are
+ * available at startup without downloading them.<br>
+ * Only the downloaded data of each list is saved, with the digest and the signature status computed when the list was
+ * verified. The file is sealed with an HMAC-SHA256 checked once when it is read: the lists of a sealed snapshot are
+ * parsed again but their signature is not verified again (see {@link TrustedListsCertificateSource}). Without a secret
+ * key the seal only detects a corrupted file: the snapshot is then as trusted as the directory it is stored in.<br>
+ * Each list is identified by its URL and keeps the digest of the downloaded data: a list whose data did not change does
+ * not need to be parsed and verified again.
+ */
+public class TrustedListsSnapshot {
+
+    /**
+     * The version of the format of the snapshot file.
+     */
+    private static final int FORMAT_VERSION = 3;
+
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+
+    /**
+     * The key of the seal when no secret key is configured: the seal is then a checksum.
+     */
+    private static final byte[] DEFAULT_KEY = "DSS trusted lists snapshot".getBytes();
+
+    /**
+     * The content of one trusted list.
+     */
+    public static class TrustedList {
+
+        private final String url;
+
+        private final String territory;
+
+        private final String digest;
+
+        private final byte[] data;
+
+        private boolean wellSigned;
+
+        private String sequenceNumber;
+
+        private Date nextUpdate;
+
+        private Date loadingDate;
+
+        private final List<byte[]> certificates = new ArrayList<byte[]>();
+
+        private final List<ServiceInfo> serviceInfos = new ArrayList<ServiceInfo>();
+
+        private final List<Pointer> pointers = new ArrayList<Pointer>();
+
+        /**
+         * The default constructor for TrustedList.
+         *
+         * @param url       the URL of the list
+         * @param territory the territory of the list (can be null)
+         * @param digest    the digest of the downloaded data (null if the list is read from a file and not yet verified)
+         * @param data      the downloaded data
+         */
+        public TrustedList(final String url, final String territory, final String digest, final byte[] data) {
+
+            this.url = url;
+            this.territory = territory;
+            this.digest = digest;
+            this.data = data;
+        }
+
+        public String getUrl() {
+
+            return url;
+        }
+
+        public String getTerritory() {
+
+            return territory;
+        }
+
+        public String getDigest() {
+
+            return digest;
+        }
+
+        /**
+         * @return the downloaded data of the list (xml content)
+         */
+        public byte[] getData() {
+
+            return data;
+        }
+
+        /**
+         * @return true if the signature of the list was verified and valid when the list was loaded
+         */
+        public boolean isWellSigned() {
+
+            return wellSigned;
+        }
+
+        public void setWellSigned(final boolean wellSigned) {
+
+            this.wellSigned = wellSigned;
+        }
+
+        public String getSequenceNumber() {
+
+            return sequenceNumber;
+        }
+
+        public void setSequenceNumber(final String sequenceNumber) {
+
+            this.sequenceNumber = sequenceNumber;
+        }
+
+        /**
+         * @return the next update of the list, null if unknown
+         */
+        public Date getNextUpdate() {
+
+            return nextUpdate;
+        }
+
+        public void setNextUpdate(final Date nextUpdate) {
+
+            this.nextUpdate = nextUpdate;
+        }
+
+        /**
+         * @return the date when the list was downloaded and parsed
+         */
+        public Date getLoadingDate() {
+
+            return loadingDate;
+        }
+
+        public void setLoadingDate(final Date loadingDate) {
+
+            this.loadingDate = loadingDate;
+        }
+
+        /**
+         * This method indicates if the list can still be used at the given date, when it cannot be downloaded again. A list
+         * without next update is considered as valid.
+         *
+         * @param date
+         * @return
+         */
+        public boolean isValid(final Date date) {
+
+            return nextUpdate == null || nextUpdate.after(date);
+        }
+
+        /**
+         * Adds a trusted certificate with its service information.
+         *
+         * @param certificate the DER encoded certificate
+         * @param serviceInfo the service information
+         */
+        public void addCertificate(final byte[] certificate, final ServiceInfo serviceInfo) {
+
+            certificates.add(certificate);
+            serviceInfos.add(serviceInfo);
+        }
+
+        /**
+         * @return the number of trusted certificates
+         */
+        public int getCertificateCount() {
+
+            return certificates.size();
+        }
+
+        /**
+         * @param index
+         * @return the DER encoded certificate at the given index
+         */
+        public byte[] getCertificate(final int index) {
+
+            return certificates.get(index);
+        }
+
+        /**
+         * @param index
+         * @return the service information of the certificate at the given index
+         */
+        public ServiceInfo getServiceInfo(final int index) {
+
+            return serviceInfos.get(index);
+        }
+
+        /**
+         * Adds a pointer to another list (LOTL only).
+         *
+         * @param pointer
+         */
+        public void addPointer(final Pointer pointer) {
+
+            pointers.add(pointer);
+        }
+
+        /**
+         * @return the pointers to the other lists (LOTL only)
+         */
+        public List<Pointer> getPointers() {
+
+            return Collections.unmodifiableList(pointers);
+        }
+    }
+
+    /**
+     * A pointer from the LOTL to a trusted list.
+     */
+    public static class Pointer {
+
+        private final String url;
+
+        private final String territory;
+
+        private final byte[] signingCertificate;
+
+        /**
+         * The default constructor for Pointer.
+         *
+         * @param url                the URL of the trusted list
+         * @param territory          the territory of the trusted list
+         * @param signingCertificate the DER encoded certificate used to sign the trusted list (can be null)
+         */
+        public Pointer(final String url, final String territory, final byte[] signingCertificate) {
+
+            this.url = url;
+            this.territory = territory;
+            this.signingCertificate = signingCertificate;
+        }
+
+        public String getUrl() {
+
+            return url;
+        }
+
+        public String getTerritory() {
+
+            return territory;
+        }
+
+        public byte[] getSigningCertificate() {
+
+            return signingCertificate;
+        }
+    }
+
+    private final Map<String, TrustedList> trustedLists = new LinkedHashMap<String, TrustedList>();
+
+    private final Date creationDate;
+
+    /**
+     * The default constructor for TrustedListsSnapshot.
+     */
+    public TrustedListsSnapshot() {
+
+        this(new Date());
+    }
+
+    /**
+     * @param creationDate the date when the lists of the snapshot were loaded
+     */
+    public TrustedListsSnapshot(final Date creationDate) {
+
+        this.creationDate = creationDate;
+    }
+
+    /**
+     * @return the date when this snapshot was created
+     */
+    public Date getCreationDate() {
+
+        return creationDate;
+    }
+
+    /**
+     * Adds (or replaces) a trusted list.
+     *
+     * @param trustedList
+     */
+    public synchronized void put(final TrustedList trustedList) {
+
+        trustedLists.put(trustedList.getUrl(), trustedList);
+    }
+
+    /**
+     * @param url
+     * @return the trusted list with the given URL, null if not present
+     */
+    public synchronized TrustedList get(final String url) {
+
+        return trustedLists.get(url);
+    }
+
+    /**
+     * @return the trusted lists in the order they were added
+     */
+    public synchronized List<TrustedList> getTrustedLists() {
+
+        return new ArrayList<TrustedList>(trustedLists.values());
+    }
+
+    /**
+     * This method saves the downloaded data of the lists to the given file. The data is first written in a temporary file
+     * of the same directory which is then renamed to the given file. The replacement is atomic where the renaming replaces
+     * an existing file (POSIX file systems); elsewhere the previous file is deleted before the renaming. The content is
+     * followed by its HMAC-SHA256 computed with the given key.
+     *
+     * @param file
+     * @param key  the secret key of the seal, null to only detect a corrupted file
+     * @throws DSSException
+     */
+    public synchronized void save(final File file, final byte[] key) throws DSSException {
+
+        File tempFile = null;
+        DataOutputStream outputStream = null;
+        try {
+
+            final Mac mac = newMac(key);
+            tempFile = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+            outputStream = new DataOutputStream(new MacOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)), mac));
+            outputStream.writeInt(FORMAT_VERSION);
+            outputStream.writeLong(creationDate.getTime());
+            outputStream.writeInt(trustedLists.size());
+            for (final TrustedList trustedList : trustedLists.values()) {
+
+                final Date loadingDate = trustedList.getLoadingDate();
+                final byte[] data = trustedList.getData();
+                final String digest = trustedList.getDigest();
+                outputStream.writeUTF(trustedList.getUrl());
+                outputStream.writeLong(loadingDate == null ? -1 : loadingDate.getTime());
+                outputStream.writeUTF(digest == null ? "" : digest);
+                outputStream.writeBoolean(trustedList.isWellSigned());
+                outputStream.writeInt(data.length);
+                outputStream.write(data);
+            }
+            outputStream.write(mac.doFinal());
+            outputStream.close();
+            outputStream = null;
+            if (!tempFile.renameTo(file) && !(file.delete() && tempFile.renameTo(file))) {
+
+                throw new DSSException("Cannot replace the snapshot file: " + file.getAbsolutePath());
+            }
+            tempFile = null;
+        } catch (IOException e) {
+
+            throw new DSSException(e);
+        } finally {
+
+            DSSUtils.closeQuietly(outputStream);
+            if (tempFile != null && !tempFile.delete()) {
+
+                tempFile.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * This method reads a snapshot from the given file and checks its seal. The returned lists contain their URL, loading
+     * date, digest, signature status and downloaded data: they must be parsed again before use.
+     *
+     * @param file
+     * @param key  the secret key of the seal, null if the snapshot was saved without key
+     * @return the read snapshot
+     * @throws DSSException if the file cannot be read, does not contain a snapshot or was modified
+     */
+    public static TrustedListsSnapshot load(final File file, final byte[] key) throws DSSException {
+
+        DataInputStream inputStream = null;
+        try {
+
+            final Mac mac = newMac(key);
+            inputStream = new DataInputStream(new MacInputStream(new BufferedInputStream(new FileInputStream(file)), mac));
+            if (inputStream.readInt() != FORMAT_VERSION) {
+
+                throw new DSSException("Unsupported format of the snapshot file: " + file.getAbsolutePath());
+            }
+            final TrustedListsSnapshot snapshot = new TrustedListsSnapshot(new Date(inputStream.readLong()));
+            final int count = inputStream.readInt();
+            for (int ii = 0; ii < count; ii++) {
+
+                final String url = inputStream.readUTF();
+                final long loadingTime = inputStream.readLong();
+                final String digest = inputStream.readUTF();
+                final boolean wellSigned = inputStream.readBoolean();
+                final int length = inputStream.readInt();
+                if (length < 0 || length > file.length()) {
+
+                    throw new DSSException("Corrupted snapshot file: " + file.getAbsolutePath());
+                }
+                final byte[] data = new byte[length];
+                inputStream.readFully(data);
+                final TrustedList trustedList = new TrustedList(url, null, digest.isEmpty() ? null : digest, data);
+                trustedList.setLoadingDate(loadingTime < 0 ? null : new Date(loadingTime));
+                trustedList.setWellSigned(wellSigned);
+                snapshot.put(trustedList);
+            }
+            final byte[] expectedSeal = mac.doFinal();
+            final byte[] seal = new byte[expectedSeal.length];
+            inputStream.readFully(seal);
+            if (!MessageDigest.isEqual(expectedSeal, seal)) {
+
+                throw new DSSException("The seal of the snapshot file does not match its content: " + file.getAbsolutePath());
+            }
+            return snapshot;
+        } catch (IOException e) {
+
+            throw new DSSException(e);
+        } finally {
+
+            DSSUtils.closeQuietly(inputStream);
+        }
+    }
+
+    private static Mac newMac(final byte[] key) {
+
+        try {
+
+            final Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(new SecretKeySpec(key == null || key.length == 0 ? DEFAULT_KEY : key, MAC_ALGORITHM));
+            return mac;
+        } catch (GeneralSecurityException e) {
+
+            throw new DSSException(e);
+        }
+    }
+
+    /**
+     * Computes the seal of the bytes written through it.
+     */
+    private static final class MacOutputStream extends FilterOutputStream {
+
+        private final Mac mac;
+
+        MacOutputStream(final OutputStream output, final Mac mac) {
+
+            super(output);
+            this.mac = mac;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+
+            out.write(b);
+            mac.update((byte) b);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+
+            out.write(b, off, len);
+            mac.update(b, off, len);
+        }
+    }
+
+    /**
+     * Computes the seal of the bytes read through it.
+     */
+    private static final class MacInputStream extends FilterInputStream {
+
+        private final Mac mac;
+
+        MacInputStream(final InputStream input, final Mac mac) {
+
+            super(input);
+            this.mac = mac;
+        }
+
+        @Override
+        public int read() throws IOException {
+
+            final int b = in.read();
+            if (b >= 0) {
+
+                mac.update((byte) b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+
+            final int read = in.read(b, off, len);
+            if (read > 0) {
+
+                mac.update(b, off, read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+
+            throw new IOException("The snapshot is read sequentially");
+        }
+    }
+}
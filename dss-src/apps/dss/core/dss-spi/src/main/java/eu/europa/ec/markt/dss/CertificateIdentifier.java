@@ -1,8 +1,9 @@
 package eu.europa.ec.markt.dss;
 
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.cert.X509Certificate;
-import java.util.LinkedHashMap;
-import java.util.Map.Entry;
 
 import javax.security.auth.x500.X500Principal;
 
@@ -12,7 +13,9 @@ import eu.europa.ec.markt.dss.validation102853.CertificateToken;
 
 /**
  * This class is used to obtain a unique DSS certificate's id. It is very helpful to follow the relationships between
- * certificates, CRLs, OCSPs and signatures. This DSS unique id is a simple integer number.
+ * certificates, CRLs, OCSPs and signatures. This DSS unique id is a simple positive integer number derived from the
+ * certificate's issuer distinguished name and serial number: the same certificate always gets the same id, whatever
+ * the thread or the order in which certificates are met, and no registry of the certificates is kept.
  * 
  * <p>
  * DISCLAIMER: Project owner DG-MARKT.
@@ -23,34 +26,14 @@ import eu.europa.ec.markt.dss.validation102853.CertificateToken;
 public final class CertificateIdentifier {
 
    /**
-    * This is the id which is given to a new certificate.
+    * The digest algorithm used to derive the DSS certificate's id from the certificate's key.
     */
-   private static int nextCertificateIdentifier = 1;
+   private static final String ID_DIGEST_ALGORITHM = "SHA-256";
 
    /**
-    * This {@link LinkedHashMap} represents the association between the certificate unique identifier (certificate's
-    * issuer distinguished name + "|" + certificate's serial number) and the DSS certificate's id.
+    * The number of hexadecimal digits of the digest kept in the id.
     */
-   private static LinkedHashMap<String, Integer> ids = new LinkedHashMap<String, Integer>();
-
-   /**
-    * This method returns the DSS certificate's id based on the certificate's key: ( issuer distinguished name + "|" +
-    * serial number). If the certificate is not yet stored it is added to the <code>ids</code>.
-    * 
-    * @param key
-    * @return
-    */
-   private static int add(String key) {
-
-      Integer id = ids.get(key);
-      if (id == null) {
-
-         id = nextCertificateIdentifier;
-         ids.put(key, id);
-         nextCertificateIdentifier++;
-      }
-      return id;
-   }
+   private static final int ID_HEX_LENGTH = 6;
 
    @Deprecated
    public static int getId(CertificateAndContext certiticateAndContext) {
@@ -75,28 +58,23 @@ public final class CertificateIdentifier {
    }
 
    /**
-    * Return the DSS certificate's unique id for a given {@link X509Certificate}. If the <code>cert</code> parameter is
-    * null 0 is returned.
+    * Return the DSS certificate's id for a given {@link X509Certificate}: the first {@value #ID_HEX_LENGTH} hexadecimal
+    * digits of the SHA-256 digest of the certificate's key (issuer distinguished name + "|" + serial number) as a
+    * number, never 0. Two different certificates can, exceptionally, share the same id: the validation uses the ids
+    * given by its {@code CertificatePool}, which are unique within the pool.
     * 
     * @param cert
     * @return
     */
    public static int getId(X509Certificate cert) {
-      if (cert == null) {
-            throw new DSSException("The certificate cannot be null!");
-      }
-      String certKey = getKey(cert);
-      Integer id = ids.get(certKey);
-      if (id == null) {
 
-         id = add(certKey);
-      }
-      return id;
+      final int id = Integer.parseInt(getDigestPrefix(cert), 16);
+      return id == 0 ? 1 : id;
    }
 
    /**
-    * Return the DSS certificate's unique id based on issuerDN and serial number. If the <code>cert</code> parameter is
-    * null null is returned.
+    * Return the DSS certificate's id as a short hexadecimal string (see {@link #getId(X509Certificate)}), for example
+    * "[3fa1c2]". If the <code>cert</code> parameter is null null is returned.
     * 
     * @param cert
     * @return
@@ -105,8 +83,29 @@ public final class CertificateIdentifier {
       if (cert == null) {
          return null;
       }
-      Integer id = getId(cert);
-      return "[" + id + "]";
+      return "[" + getDigestPrefix(cert) + "]";
+   }
+
+   private static String getDigestPrefix(X509Certificate cert) {
+      if (cert == null) {
+            throw new DSSException("The certificate cannot be null!");
+      }
+      final String certKey = getKey(cert);
+      try {
+
+         final MessageDigest digest = MessageDigest.getInstance(ID_DIGEST_ALGORITHM);
+         final byte[] digestValue = digest.digest(certKey.getBytes("UTF-8"));
+         final StringBuilder prefix = new StringBuilder(ID_HEX_LENGTH);
+         for (int ii = 0; prefix.length() < ID_HEX_LENGTH; ii++) {
+
+            prefix.append(Character.forDigit((digestValue[ii] >> 4) & 0xf, 16)).append(Character.forDigit(digestValue[ii] & 0xf, 16));
+         }
+         return prefix.toString();
+      } catch (NoSuchAlgorithmException e) {
+         throw new DSSException(e);
+      } catch (UnsupportedEncodingException e) {
+         throw new DSSException(e);
+      }
    }
 
    /**
@@ -116,46 +115,40 @@ public final class CertificateIdentifier {
     * @param cert
     * @return
     */
-   private static String getKey(X509Certificate cert) {
+   public static String getKey(X509Certificate cert) {
 
       return cert.getIssuerX500Principal().getName(X500Principal.CANONICAL) + "|" + cert.getSerialNumber().toString();
    }
 
    /**
-    * This method reset the list of certificates.
+    * The ids are not registered anymore: there is nothing to reset.
     * 
+    * @deprecated the ids are derived from the certificates and are not stored.
     */
+   @Deprecated
    public static void clear() {
-      ids.clear();
-      nextCertificateIdentifier = 1;
    }
 
    /**
-    * Returns the text representation of all certificates and their internal DSS number. The text is indented with the
-    * given <code>indentStr</code> string.
+    * The ids are not registered anymore: only the header of the list is returned.
     * 
     * @param indentStr
     * @return
+    * @deprecated the ids are derived from the certificates and are not stored, use {@code CertificatePool} to list the
+    *             certificates of a validation.
     */
+   @Deprecated
    public static String toString(String indentStr) {
 
-      StringBuilder sb = new StringBuilder();
-
-      sb.append(indentStr).append("List of certificates:\n");
-      for (Entry<String, Integer> entry : ids.entrySet()) {
-
-         Integer id = entry.getValue();
-         String key = entry.getKey();
-         sb.append(indentStr).append(String.format("[%s] : %s\n", id, key));
-      }
-      return sb.toString();
+      return indentStr + "List of certificates:\n";
    }
 
    /**
-    * Returns the text representation of all certificates and their internal DSS number.
-    * 
     * @return
+    * @deprecated the ids are derived from the certificates and are not stored, use {@code CertificatePool} to list the
+    *             certificates of a validation.
     */
+   @Deprecated
    public static String print() {
       return toString("");
    }
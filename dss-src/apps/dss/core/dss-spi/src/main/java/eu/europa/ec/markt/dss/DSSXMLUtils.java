@@ -56,6 +56,7 @@ import org.w3c.dom.ls.LSOutput;
 import org.w3c.dom.ls.LSSerializer;
 import org.xml.sax.SAXException;
 
+import eu.europa.ec.markt.dss.exception.DSSException;
 import eu.europa.ec.markt.dss.signature.DSSDocument;
 
 /**
@@ -69,9 +70,23 @@ public final class DSSXMLUtils {
     public static final String ID_ATTRIBUTE_NAME = "Id";
 
     private static DocumentBuilderFactory dbFactory;
-    private static DocumentBuilder documentBuilder;
 
-    private static final XPathFactory factory = XPathFactory.newInstance();
+    /**
+     * {@link DocumentBuilder} is not thread-safe: each thread gets its own instance.
+     */
+    private static final ThreadLocal<DocumentBuilder> documentBuilder = new ThreadLocal<DocumentBuilder>();
+
+    /**
+     * {@link XPathFactory} is not thread-safe: each thread gets its own instance.
+     */
+    private static final ThreadLocal<XPathFactory> factory = new ThreadLocal<XPathFactory>() {
+
+        @Override
+        protected XPathFactory initialValue() {
+
+            return XPathFactory.newInstance();
+        }
+    };
 
     private static final NamespaceContext namespacePrefixMapper;
 
@@ -103,7 +118,7 @@ public final class DSSXMLUtils {
     private static XPathExpression createXPathExpression(final String xpathString) {
 
       /* XPath */
-        final XPath xpath = factory.newXPath();
+        final XPath xpath = factory.get().newXPath();
         xpath.setNamespaceContext(namespacePrefixMapper);
 
         try {
@@ -196,6 +211,35 @@ public final class DSSXMLUtils {
         }
     }
 
+    /**
+     * Serializes the DOM document with the LS serializer.
+     *
+     * @param document the document to serialize
+     * @return the serialized document
+     * @throws DSSException
+     */
+    public static byte[] serialize(final Document document) throws DSSException {
+
+        try {
+
+            final DOMImplementationRegistry registry = DOMImplementationRegistry.newInstance();
+            final DOMImplementationLS impl = (DOMImplementationLS) registry.getDOMImplementation("LS");
+            final LSSerializer writer = impl.createLSSerializer();
+
+            final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            final LSOutput output = impl.createLSOutput();
+            output.setByteStream(buffer);
+            writer.write(document, output);
+            return buffer.toByteArray();
+        } catch (ClassNotFoundException e) {
+            throw new DSSException(e);
+        } catch (InstantiationException e) {
+            throw new DSSException(e);
+        } catch (IllegalAccessException e) {
+            throw new DSSException(e);
+        }
+    }
+
     /**
      * An ID attribute can only be dereferenced if it is declared in the validation context. This behaviour is caused by
      * the fact that the attribute does not have attached type of information. Another solution is to parse the XML
@@ -222,18 +266,29 @@ public final class DSSXMLUtils {
     }
 
     /**
-     * Guarantees that the xmlString builder has been created.
+     * Guarantees that the xmlString builder has been created for the current thread and returns it.
      *
+     * @return the {@link DocumentBuilder} confined to the current thread
      * @throws ParserConfigurationException
      */
-    private static void ensureDocumentBuilder() throws ParserConfigurationException {
+    private static DocumentBuilder ensureDocumentBuilder() throws ParserConfigurationException {
 
-        if (dbFactory != null) {
-            return;
+        DocumentBuilder builder = documentBuilder.get();
+        if (builder != null) {
+            return builder;
         }
-        dbFactory = DocumentBuilderFactory.newInstance();
-        dbFactory.setNamespaceAware(true);
-        documentBuilder = dbFactory.newDocumentBuilder();
+        synchronized (DSSXMLUtils.class) {
+
+            if (dbFactory == null) {
+
+                final DocumentBuilderFactory newFactory = DocumentBuilderFactory.newInstance();
+                newFactory.setNamespaceAware(true);
+                dbFactory = newFactory;
+            }
+            builder = dbFactory.newDocumentBuilder();
+        }
+        documentBuilder.set(builder);
+        return builder;
     }
 
     /**
@@ -246,9 +301,7 @@ public final class DSSXMLUtils {
      */
     public static Document buildDOM() throws ParserConfigurationException, IOException, SAXException {
 
-        ensureDocumentBuilder();
-
-        return documentBuilder.newDocument();
+        return ensureDocumentBuilder().newDocument();
     }
 
     /**
@@ -290,9 +343,7 @@ public final class DSSXMLUtils {
      * @throws IOException
      */
     public static Document buildDOM(InputStream input) throws SAXException, IOException, ParserConfigurationException {
-        ensureDocumentBuilder();
-
-        final Document rootElement = documentBuilder.parse(input);
+        final Document rootElement = ensureDocumentBuilder().parse(input);
         return rootElement;
     }
 
@@ -0,0 +1,40 @@
+/*
+ * DSS - Digital Signature Services
+ *
+ * Copyright (C) 2013 European Commission, Directorate-General Internal Market and Services (DG MARKT), B-1049 Bruxelles/Brussel
+ *
+ * Developed by: 2013 ARHS Developments S.A. (rue Nicolas Bové 2B, L-1253 Luxembourg) http://www.arhs-developments.com
+ *
+ * This file is part of the "DSS - Digital Signature Services" project.
+ *
+ * "DSS - Digital Signature Services" is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU Lesser General Public License as published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * DSS is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * "DSS - Digital Signature Services".  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.europa.ec.markt.dss.validation;
+
+import java.security.cert.X509Certificate;
+
+/**
+ * A source of revocation data which is able to start the retrieval of the revocation data of a certificate in advance.
+ * The validation process plans the retrieval for the whole certificate chain as soon as it is known, then asks the
+ * source for each certificate as usual.
+ */
+public interface RevocationPrefetcher {
+
+    /**
+     * Starts in the background the retrieval of the revocation data for the given certificate / issuer's certificate
+     * couple. This method does not wait for the result.
+     *
+     * @param certificate       The certificate for which the revocation data is needed
+     * @param issuerCertificate The issuer's certificate of the certificate
+     */
+    void prefetch(X509Certificate certificate, X509Certificate issuerCertificate);
+}
@@ -0,0 +1,232 @@
+/*
+ * DSS - Digital Signature Services
+ *
+ * Copyright (C) 2013 European Commission, Directorate-General Internal Market and Services (DG MARKT), B-1049 Bruxelles/Brussel
+ *
+ * Developed by: 2013 ARHS Developments S.A. (rue Nicolas Bové 2B, L-1253 Luxembourg) http://www.arhs-developments.com
+ *
+ * This file is part of the "DSS - Digital Signature Services" project.
+ *
+ * "DSS - Digital Signature Services" is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU Lesser General Public License as published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * DSS is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * "DSS - Digital Signature Services".  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.europa.ec.markt.dss.validation;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import eu.europa.ec.markt.dss.exception.DSSException;
+
+/**
+ * This class shares the network requests used to retrieve the revocation data (CRL, OCSP response) between the threads.
+ * A request is identified by a key: when a request with the same key is already running the caller waits for its result
+ * instead of sending the same request again.<br>
+ * The requests can also be started in advance with {@link #prefetch(String, Callable)}: they are then executed by the
+ * {@link ExecutorService} and their result is kept during the retention time, so that the later call to
+ * {@link #get(String, Callable)} returns it without waiting for the network.
+ *
+ * @param <V> the type of the revocation data
+ */
+public class RevocationRequestCoalescer<V> {
+
+    private static final Logger LOG = Logger.getLogger(RevocationRequestCoalescer.class.getName());
+
+    /**
+     * The default time (in milliseconds) during which the result of a prefetched request is kept: 60 seconds.
+     */
+    public static final long DEFAULT_RETENTION_TIME = 60000;
+
+    private final ConcurrentMap<String, Request<V>> requests = new ConcurrentHashMap<String, Request<V>>();
+
+    private ExecutorService executorService;
+
+    private long retentionTime = DEFAULT_RETENTION_TIME;
+
+    /**
+     * A running or completed request.
+     */
+    private static class Request<V> extends FutureTask<V> {
+
+        /**
+         * Indicates if the request was started in advance. Only the result of such requests is kept after the completion.
+         */
+        private final boolean prefetched;
+
+        private volatile long completionTime;
+
+        private volatile boolean failed;
+
+        Request(final Callable<V> loader, final boolean prefetched) {
+
+            super(loader);
+            this.prefetched = prefetched;
+        }
+
+        @Override
+        protected void setException(final Throwable throwable) {
+
+            failed = true;
+            super.setException(throwable);
+        }
+
+        @Override
+        protected void done() {
+
+            completionTime = System.currentTimeMillis();
+        }
+
+        boolean isExpired(final long now, final long retentionTime) {
+
+            return isDone() && (!prefetched || failed || now - completionTime > retentionTime);
+        }
+    }
+
+    /**
+     * Sets the executor used to run the prefetched requests. If null (default) {@link #prefetch(String, Callable)} does
+     * nothing.
+     *
+     * @param executorService
+     */
+    public void setExecutorService(final ExecutorService executorService) {
+
+        this.executorService = executorService;
+    }
+
+    /**
+     * Sets the time (in milliseconds) during which the result of a prefetched request is kept.
+     *
+     * @param retentionTime
+     */
+    public void setRetentionTime(final long retentionTime) {
+
+        this.retentionTime = retentionTime;
+    }
+
+    /**
+     * This method returns the result of the request identified by the given key. If the same request is running or was
+     * prefetched recently its result is returned, otherwise the loader is executed in the current thread.
+     *
+     * @param key    the identifier of the request
+     * @param loader the code sending the request
+     * @return the result of the request
+     * @throws IOException if the loader throws an {@code IOException}
+     */
+    public V get(final String key, final Callable<V> loader) throws IOException {
+
+        while (true) {
+
+            final Request<V> request = requests.get(key);
+            if (request != null && !request.isExpired(System.currentTimeMillis(), retentionTime)) {
+
+                return getResult(request);
+            }
+            final Request<V> newRequest = new Request<V>(loader, false);
+            final boolean added = request == null ? requests.putIfAbsent(key, newRequest) == null : requests.replace(key, request, newRequest);
+            if (added) {
+
+                try {
+
+                    newRequest.run();
+                } finally {
+
+                    requests.remove(key, newRequest);
+                }
+                return getResult(newRequest);
+            }
+            // Another thread has just started the same request: its result is used.
+        }
+    }
+
+    /**
+     * This method starts the request identified by the given key in the background, if it is not already running.
+     *
+     * @param key    the identifier of the request
+     * @param loader the code sending the request
+     */
+    public void prefetch(final String key, final Callable<V> loader) {
+
+        final ExecutorService executorService = this.executorService;
+        if (executorService == null) {
+
+            return;
+        }
+        purge();
+        final Request<V> newRequest = new Request<V>(loader, true);
+        if (requests.putIfAbsent(key, newRequest) != null) {
+
+            return;
+        }
+        try {
+
+            executorService.execute(newRequest);
+        } catch (RejectedExecutionException e) {
+
+            LOG.warning("The prefetch of the revocation data is rejected: " + key);
+            requests.remove(key, newRequest);
+        }
+    }
+
+    /**
+     * This method removes the expired requests.
+     */
+    private void purge() {
+
+        final long now = System.currentTimeMillis();
+        final Iterator<Request<V>> iterator = requests.values().iterator();
+        while (iterator.hasNext()) {
+
+            if (iterator.next().isExpired(now, retentionTime)) {
+
+                iterator.remove();
+            }
+        }
+    }
+
+    private V getResult(final Request<V> request) throws IOException {
+
+        try {
+
+            return request.get();
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+            throw new DSSException("The retrieval of the revocation data was interrupted.", e);
+        } catch (ExecutionException e) {
+
+            final Throwable cause = e.getCause();
+            if (LOG.isLoggable(Level.FINE)) {
+                LOG.fine("The retrieval of the revocation data failed: " + cause);
+            }
+            if (cause instanceof IOException) {
+
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+
+                throw (Error) cause;
+            }
+            throw new DSSException(cause);
+        }
+    }
+}
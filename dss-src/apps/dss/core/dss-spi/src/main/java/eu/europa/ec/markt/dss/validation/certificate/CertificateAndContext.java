@@ -269,7 +269,7 @@ public class CertificateAndContext {
    public String toString() {
 
       StringBuffer out = new StringBuffer();
-      out.append("CertificateAndContext[").append(CertificateIdentifier.getId(certificate)).append("<--").append(certificate.getIssuerX500Principal()).append(", source=").append(certificateSource)
+      out.append("CertificateAndContext[").append(CertificateIdentifier.getIdAsString(certificate)).append("<--").append(certificate.getIssuerX500Principal()).append(", source=").append(certificateSource)
                .append(", serial=" + certificate.getSerialNumber()).append("]");
       return out.toString();
    }
@@ -0,0 +1,144 @@
+/*
+ * DSS - Digital Signature Services
+ *
+ * Copyright (C) 2013 European Commission, Directorate-General Internal Market and Services (DG MARKT), B-1049 Bruxelles/Brussel
+ *
+ * Developed by: 2013 ARHS Developments S.A. (rue Nicolas Bové 2B, L-1253 Luxembourg) http://www.arhs-developments.com
+ *
+ * This file is part of the "DSS - Digital Signature Services" project.
+ *
+ * "DSS - Digital Signature Services" is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU Lesser General Public License as published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * DSS is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * "DSS - Digital Signature Services".  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.europa.ec.markt.dss.validation.crl;
+
+import java.io.IOException;
+import java.security.cert.X509CRL;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import javax.security.auth.x500.X500Principal;
+
+import org.bouncycastle.asn1.x509.X509Extension;
+
+import eu.europa.ec.markt.dss.DSSUtils;
+import eu.europa.ec.markt.dss.exception.DSSException;
+import eu.europa.ec.markt.dss.validation.DelegatingSource;
+import eu.europa.ec.markt.dss.validation.RevocationPrefetcher;
+import eu.europa.ec.markt.dss.validation.RevocationRequestCoalescer;
+
+/**
+ * This {@link CRLSource} shares the CRL downloads of the underlying source between the threads: concurrent requests for
+ * the same CRL distribution point of the same issuer result in one call to the underlying source. When an executor is
+ * defined the CRLs for a certificate chain can be downloaded in parallel in advance (see {@link RevocationPrefetcher}).<br>
+ * The underlying source must be thread-safe.
+ */
+public class CoalescingCRLSource implements CRLSource, RevocationPrefetcher, DelegatingSource<CRLSource> {
+
+    private final CRLSource crlSource;
+
+    private final RevocationRequestCoalescer<X509CRL> coalescer = new RevocationRequestCoalescer<X509CRL>();
+
+    /**
+     * The default constructor for CoalescingCRLSource.
+     *
+     * @param crlSource the underlying source
+     */
+    public CoalescingCRLSource(final CRLSource crlSource) {
+
+        if (crlSource == null) {
+
+            throw new DSSException("The CRL source cannot be null.");
+        }
+        this.crlSource = crlSource;
+    }
+
+    /**
+     * @return the underlying source
+     */
+    public CRLSource getCrlSource() {
+
+        return crlSource;
+    }
+
+    @Override
+    public CRLSource getDelegate() {
+
+        return crlSource;
+    }
+
+    /**
+     * Sets the executor used to download the CRLs in advance. If null (default) no CRL is downloaded in advance.
+     *
+     * @param executorService
+     */
+    public void setExecutorService(final ExecutorService executorService) {
+
+        coalescer.setExecutorService(executorService);
+    }
+
+    /**
+     * Sets the time (in milliseconds) during which a CRL downloaded in advance is kept.
+     *
+     * @param retentionTime
+     */
+    public void setRetentionTime(final long retentionTime) {
+
+        coalescer.setRetentionTime(retentionTime);
+    }
+
+    @Override
+    public X509CRL findCrl(final X509Certificate certificate, final X509Certificate issuerCertificate) throws IOException {
+
+        return coalescer.get(getKey(certificate, issuerCertificate), newLoader(certificate, issuerCertificate));
+    }
+
+    @Override
+    public void prefetch(final X509Certificate certificate, final X509Certificate issuerCertificate) {
+
+        coalescer.prefetch(getKey(certificate, issuerCertificate), newLoader(certificate, issuerCertificate));
+    }
+
+    private Callable<X509CRL> newLoader(final X509Certificate certificate, final X509Certificate issuerCertificate) {
+
+        return new Callable<X509CRL>() {
+
+            @Override
+            public X509CRL call() throws IOException {
+
+                return crlSource.findCrl(certificate, issuerCertificate);
+            }
+        };
+    }
+
+    /**
+     * This method returns the key identifying the CRL: the issuer certificate and the content of the CRL distribution
+     * points extension of the certificate. The certificates of the same issuer with the same distribution points share the
+     * same CRL.
+     *
+     * @param certificate
+     * @param issuerCertificate
+     * @return
+     */
+    private static String getKey(final X509Certificate certificate, final X509Certificate issuerCertificate) {
+
+        final byte[] crlDistributionPointsValue = certificate.getExtensionValue(X509Extension.cRLDistributionPoints.getId());
+        final String issuerKey = issuerCertificate.getSubjectX500Principal().getName(X500Principal.CANONICAL) + "|" + issuerCertificate
+              .getSerialNumber();
+        if (crlDistributionPointsValue == null) {
+
+            // The underlying source can find the CRL by another mean: the requests are not shared between certificates.
+            return issuerKey + "|" + certificate.getSerialNumber();
+        }
+        return issuerKey + "|" + DSSUtils.toHex(crlDistributionPointsValue);
+    }
+}
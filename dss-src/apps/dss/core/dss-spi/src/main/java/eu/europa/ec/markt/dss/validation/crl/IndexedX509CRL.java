@@ -0,0 +1,329 @@
+/*
+ * DSS - Digital Signature Services
+ *
+ * Copyright (C) 2013 European Commission, Directorate-General Internal Market and Services (DG MARKT), B-1049 Bruxelles/Brussel
+ *
+ * Developed by: 2013 ARHS Developments S.A. (rue Nicolas Bové 2B, L-1253 Luxembourg) http://www.arhs-developments.com
+ *
+ * This file is part of the "DSS - Digital Signature Services" project.
+ *
+ * "DSS - Digital Signature Services" is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU Lesser General Public License as published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * DSS is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * "DSS - Digital Signature Services".  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.europa.ec.markt.dss.validation.crl;
+
+import java.math.BigInteger;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
+import java.security.Principal;
+import java.security.PublicKey;
+import java.security.SignatureException;
+import java.security.cert.CRLException;
+import java.security.cert.Certificate;
+import java.security.cert.X509CRL;
+import java.security.cert.X509CRLEntry;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.security.auth.x500.X500Principal;
+
+import eu.europa.ec.markt.dss.DSSUtils;
+import eu.europa.ec.markt.dss.exception.DSSNullException;
+
+/**
+ * This class wraps a parsed {@link X509CRL} which is kept in memory to be used many times:<br>
+ * - the serial numbers of the revoked certificates are indexed in a sorted array: checking that a certificate is not
+ * revoked does not scan the entries of the CRL,<br>
+ * - the result of the verification of the signature is kept for each public key: the signature of a large CRL is
+ * verified only once per issuer.<br>
+ * All other methods are delegated to the wrapped CRL. This class is thread-safe as long as the wrapped CRL is.
+ */
+public class IndexedX509CRL extends X509CRL {
+
+    private final X509CRL x509CRL;
+
+    /**
+     * The sorted serial numbers of the revoked certificates.
+     */
+    private final BigInteger[] revokedSerialNumbers;
+
+    private final int encodedLength;
+
+    /**
+     * The result of the verification of the signature for each public key (hexadecimal encoding): null when the signature
+     * is valid, the exception otherwise.
+     */
+    private final Map<String, Exception> verifications = new HashMap<String, Exception>();
+
+    /**
+     * The default constructor for IndexedX509CRL.
+     *
+     * @param x509CRL the CRL to wrap
+     * @throws CRLException if the CRL cannot be encoded
+     */
+    public IndexedX509CRL(final X509CRL x509CRL) throws CRLException {
+
+        if (x509CRL == null) {
+
+            throw new DSSNullException(X509CRL.class);
+        }
+        this.x509CRL = x509CRL;
+        final Set<? extends X509CRLEntry> revokedCertificates = x509CRL.getRevokedCertificates();
+        if (revokedCertificates == null) {
+
+            revokedSerialNumbers = new BigInteger[0];
+        } else {
+
+            revokedSerialNumbers = new BigInteger[revokedCertificates.size()];
+            int index = 0;
+            for (final X509CRLEntry entry : revokedCertificates) {
+
+                revokedSerialNumbers[index++] = entry.getSerialNumber();
+            }
+            Arrays.sort(revokedSerialNumbers);
+        }
+        encodedLength = x509CRL.getEncoded().length;
+    }
+
+    /**
+     * @return the wrapped CRL
+     */
+    public X509CRL getX509CRL() {
+
+        return x509CRL;
+    }
+
+    /**
+     * @return the size of the encoded CRL in bytes
+     */
+    public int getEncodedLength() {
+
+        return encodedLength;
+    }
+
+    /**
+     * @return the number of revoked certificates in the CRL
+     */
+    public int getRevokedCount() {
+
+        return revokedSerialNumbers.length;
+    }
+
+    /**
+     * This method indicates, using the index, if the CRL contains an entry with the given serial number.
+     *
+     * @param serialNumber
+     * @return true if an entry with the given serial number is present
+     */
+    public boolean containsSerialNumber(final BigInteger serialNumber) {
+
+        return Arrays.binarySearch(revokedSerialNumbers, serialNumber) >= 0;
+    }
+
+    @Override
+    public void verify(final PublicKey key) throws CRLException, NoSuchAlgorithmException, InvalidKeyException, NoSuchProviderException,
+          SignatureException {
+
+        final String keyId = DSSUtils.toHex(key.getEncoded());
+        final Exception cachedException;
+        synchronized (verifications) {
+
+            if (!verifications.containsKey(keyId)) {
+
+                Exception exception = null;
+                try {
+
+                    x509CRL.verify(key);
+                } catch (CRLException e) {
+                    exception = e;
+                } catch (NoSuchAlgorithmException e) {
+                    exception = e;
+                } catch (InvalidKeyException e) {
+                    exception = e;
+                } catch (SignatureException e) {
+                    exception = e;
+                }
+                // NoSuchProviderException is not kept: it does not depend on the CRL.
+                verifications.put(keyId, exception);
+            }
+            cachedException = verifications.get(keyId);
+        }
+        if (cachedException instanceof CRLException) {
+
+            throw (CRLException) cachedException;
+        } else if (cachedException instanceof NoSuchAlgorithmException) {
+
+            throw (NoSuchAlgorithmException) cachedException;
+        } else if (cachedException instanceof InvalidKeyException) {
+
+            throw (InvalidKeyException) cachedException;
+        } else if (cachedException instanceof SignatureException) {
+
+            throw (SignatureException) cachedException;
+        }
+    }
+
+    @Override
+    public void verify(final PublicKey key, final String sigProvider) throws CRLException, NoSuchAlgorithmException, InvalidKeyException,
+          NoSuchProviderException, SignatureException {
+
+        x509CRL.verify(key, sigProvider);
+    }
+
+    @Override
+    public X509CRLEntry getRevokedCertificate(final BigInteger serialNumber) {
+
+        if (!containsSerialNumber(serialNumber)) {
+
+            return null;
+        }
+        return x509CRL.getRevokedCertificate(serialNumber);
+    }
+
+    @Override
+    public X509CRLEntry getRevokedCertificate(final X509Certificate certificate) {
+
+        if (!containsSerialNumber(certificate.getSerialNumber())) {
+
+            return null;
+        }
+        return x509CRL.getRevokedCertificate(certificate);
+    }
+
+    @Override
+    public boolean isRevoked(final Certificate certificate) {
+
+        if (certificate instanceof X509Certificate && !containsSerialNumber(((X509Certificate) certificate).getSerialNumber())) {
+
+            return false;
+        }
+        return x509CRL.isRevoked(certificate);
+    }
+
+    @Override
+    public Set<? extends X509CRLEntry> getRevokedCertificates() {
+
+        return x509CRL.getRevokedCertificates();
+    }
+
+    @Override
+    public byte[] getEncoded() throws CRLException {
+
+        return x509CRL.getEncoded();
+    }
+
+    @Override
+    public int getVersion() {
+
+        return x509CRL.getVersion();
+    }
+
+    @Override
+    public Principal getIssuerDN() {
+
+        return x509CRL.getIssuerDN();
+    }
+
+    @Override
+    public X500Principal getIssuerX500Principal() {
+
+        return x509CRL.getIssuerX500Principal();
+    }
+
+    @Override
+    public Date getThisUpdate() {
+
+        return x509CRL.getThisUpdate();
+    }
+
+    @Override
+    public Date getNextUpdate() {
+
+        return x509CRL.getNextUpdate();
+    }
+
+    @Override
+    public byte[] getTBSCertList() throws CRLException {
+
+        return x509CRL.getTBSCertList();
+    }
+
+    @Override
+    public byte[] getSignature() {
+
+        return x509CRL.getSignature();
+    }
+
+    @Override
+    public String getSigAlgName() {
+
+        return x509CRL.getSigAlgName();
+    }
+
+    @Override
+    public String getSigAlgOID() {
+
+        return x509CRL.getSigAlgOID();
+    }
+
+    @Override
+    public byte[] getSigAlgParams() {
+
+        return x509CRL.getSigAlgParams();
+    }
+
+    @Override
+    public boolean hasUnsupportedCriticalExtension() {
+
+        return x509CRL.hasUnsupportedCriticalExtension();
+    }
+
+    @Override
+    public Set<String> getCriticalExtensionOIDs() {
+
+        return x509CRL.getCriticalExtensionOIDs();
+    }
+
+    @Override
+    public Set<String> getNonCriticalExtensionOIDs() {
+
+        return x509CRL.getNonCriticalExtensionOIDs();
+    }
+
+    @Override
+    public byte[] getExtensionValue(final String oid) {
+
+        return x509CRL.getExtensionValue(oid);
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+
+        return x509CRL.equals(other instanceof IndexedX509CRL ? ((IndexedX509CRL) other).x509CRL : other);
+    }
+
+    @Override
+    public int hashCode() {
+
+        return x509CRL.hashCode();
+    }
+
+    @Override
+    public String toString() {
+
+        return x509CRL.toString();
+    }
+}
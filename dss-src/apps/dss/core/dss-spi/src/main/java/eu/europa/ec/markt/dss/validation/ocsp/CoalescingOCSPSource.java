@@ -0,0 +1,141 @@
+/*
+ * DSS - Digital Signature Services
+ *
+ * Copyright (C) 2013 European Commission, Directorate-General Internal Market and Services (DG MARKT), B-1049 Bruxelles/Brussel
+ *
+ * Developed by: 2013 ARHS Developments S.A. (rue Nicolas Bové 2B, L-1253 Luxembourg) http://www.arhs-developments.com
+ *
+ * This file is part of the "DSS - Digital Signature Services" project.
+ *
+ * "DSS - Digital Signature Services" is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU Lesser General Public License as published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * DSS is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * "DSS - Digital Signature Services".  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.europa.ec.markt.dss.validation.ocsp;
+
+import java.io.IOException;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import org.bouncycastle.ocsp.BasicOCSPResp;
+import org.bouncycastle.ocsp.CertificateID;
+import org.bouncycastle.ocsp.OCSPException;
+
+import eu.europa.ec.markt.dss.DSSUtils;
+import eu.europa.ec.markt.dss.exception.DSSException;
+import eu.europa.ec.markt.dss.validation.DelegatingSource;
+import eu.europa.ec.markt.dss.validation.RevocationPrefetcher;
+import eu.europa.ec.markt.dss.validation.RevocationRequestCoalescer;
+
+/**
+ * This {@link OCSPSource} shares the OCSP requests of the underlying source between the threads: concurrent requests for
+ * the same OCSP CertID (issuer name hash, issuer key hash and serial number) result in one call to the underlying source.
+ * When an executor is defined the OCSP requests for a certificate chain can be sent in parallel in advance (see
+ * {@link RevocationPrefetcher}).<br>
+ * The underlying source must be thread-safe.
+ */
+public class CoalescingOCSPSource implements OCSPSource, RevocationPrefetcher, DelegatingSource<OCSPSource> {
+
+    private final OCSPSource ocspSource;
+
+    private final RevocationRequestCoalescer<BasicOCSPResp> coalescer = new RevocationRequestCoalescer<BasicOCSPResp>();
+
+    /**
+     * The default constructor for CoalescingOCSPSource.
+     *
+     * @param ocspSource the underlying source
+     */
+    public CoalescingOCSPSource(final OCSPSource ocspSource) {
+
+        if (ocspSource == null) {
+
+            throw new DSSException("The OCSP source cannot be null.");
+        }
+        this.ocspSource = ocspSource;
+    }
+
+    /**
+     * @return the underlying source
+     */
+    public OCSPSource getOcspSource() {
+
+        return ocspSource;
+    }
+
+    @Override
+    public OCSPSource getDelegate() {
+
+        return ocspSource;
+    }
+
+    /**
+     * Sets the executor used to send the OCSP requests in advance. If null (default) no request is sent in advance.
+     *
+     * @param executorService
+     */
+    public void setExecutorService(final ExecutorService executorService) {
+
+        coalescer.setExecutorService(executorService);
+    }
+
+    /**
+     * Sets the time (in milliseconds) during which the response to a request sent in advance is kept.
+     *
+     * @param retentionTime
+     */
+    public void setRetentionTime(final long retentionTime) {
+
+        coalescer.setRetentionTime(retentionTime);
+    }
+
+    @Override
+    public BasicOCSPResp getOCSPResponse(final X509Certificate certificate, final X509Certificate issuerCertificate) throws IOException {
+
+        return coalescer.get(getKey(certificate, issuerCertificate), newLoader(certificate, issuerCertificate));
+    }
+
+    @Override
+    public void prefetch(final X509Certificate certificate, final X509Certificate issuerCertificate) {
+
+        coalescer.prefetch(getKey(certificate, issuerCertificate), newLoader(certificate, issuerCertificate));
+    }
+
+    private Callable<BasicOCSPResp> newLoader(final X509Certificate certificate, final X509Certificate issuerCertificate) {
+
+        return new Callable<BasicOCSPResp>() {
+
+            @Override
+            public BasicOCSPResp call() throws IOException {
+
+                return ocspSource.getOCSPResponse(certificate, issuerCertificate);
+            }
+        };
+    }
+
+    /**
+     * This method returns the key identifying the OCSP request: the issuer name hash, the issuer key hash and the serial
+     * number of the certificate.
+     *
+     * @param certificate
+     * @param issuerCertificate
+     * @return
+     */
+    private static String getKey(final X509Certificate certificate, final X509Certificate issuerCertificate) {
+
+        try {
+
+            final CertificateID certId = new CertificateID(CertificateID.HASH_SHA1, issuerCertificate, certificate.getSerialNumber());
+            return DSSUtils.toHex(certId.getIssuerNameHash()) + "|" + DSSUtils.toHex(certId.getIssuerKeyHash()) + "|" + certId.getSerialNumber();
+        } catch (OCSPException e) {
+            throw new DSSException(e);
+        }
+    }
+}
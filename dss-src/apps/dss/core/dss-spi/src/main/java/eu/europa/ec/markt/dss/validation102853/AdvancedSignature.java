@@ -20,6 +20,7 @@
 
 package eu.europa.ec.markt.dss.validation102853;
 
+import java.io.OutputStream;
 import java.security.cert.X509CRL;
 import java.util.Date;
 import java.util.List;
@@ -184,6 +185,15 @@ public interface AdvancedSignature {
      */
     public byte[] getArchiveTimestampData(TimestampToken timestampToken);
 
+    /**
+     * Writes the data sealed by the archive timestamp, as returned by {@link #getArchiveTimestampData(TimestampToken)},
+     * to the given stream without building them in memory.
+     *
+     * @param timestampToken null when adding a new archive timestamp
+     * @param output         the stream, typically a {@link MessageImprintOutputStream}
+     */
+    public void writeArchiveTimestampData(TimestampToken timestampToken, OutputStream output);
+
     /**
      * Returns the time-stamp which is placed on the digital signature (XAdES example: ds:SignatureValue element), the
      * signature time-stamp(s) present in the AdES-T form, the certification path references and the revocation status
@@ -255,6 +265,14 @@ public interface AdvancedSignature {
      */
     public byte[] getTimestampX1Data();
 
+    /**
+     * Writes the data to be time-stamped by a TimeStamp X1, as returned by {@link #getTimestampX1Data()}, to the given
+     * stream.
+     *
+     * @param output the stream, typically a {@link MessageImprintOutputStream}
+     */
+    public void writeTimestampX1Data(OutputStream output);
+
     /**
      * Returns the data to be time-stamped which contains the concatenation of CompleteCertificateRefs and
      * CompleteRevocationRefs elements (XAdES example).
@@ -263,6 +281,14 @@ public interface AdvancedSignature {
      */
     public byte[] getTimestampX2Data();
 
+    /**
+     * Writes the data to be time-stamped by a TimeStamp X2, as returned by {@link #getTimestampX2Data()}, to the given
+     * stream.
+     *
+     * @param output the stream, typically a {@link MessageImprintOutputStream}
+     */
+    public void writeTimestampX2Data(OutputStream output);
+
     /**
      * This method returns the DSS unique signature id. It allows to unambiguously identify each signature.
      *
@@ -73,7 +73,7 @@ public class CRLToken extends RevocationToken {
     }
 
     @Override
-    public boolean isSignedBy(final CertificateToken issuerToken) {
+    public synchronized boolean isSignedBy(final CertificateToken issuerToken) {
 
         if (this.issuerToken != null) {
 
@@ -23,9 +23,9 @@ package eu.europa.ec.markt.dss.validation102853;
 import java.io.Serializable;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -39,17 +39,24 @@ import eu.europa.ec.markt.dss.validation102853.condition.ServiceInfo;
  * This class hosts the set of certificates which is used during the validation process. A certificate can be found in
  * different sources: trusted list, signature, OCSP response... but each certificate is unambiguously identified by its
  * issuer DN and serial number. This class allows to keep only one occurrence of the certificate regardless its
- * provenance. Two pool of certificates can be merged using the {@link #merge(CertificatePool)} method.
+ * provenance. Two pool of certificates can be merged using the {@link #merge(CertificatePool)} method.<br>
+ * <br>
+ * The pool can be shared by the signatures of a document validated in parallel: all accesses are synchronized on the
+ * pool instance. Lock order: the pool lock can be held while a token lock is taken (see
+ * {@link CertificateToken#addSourceType(CertificateSourceType)}), never the reverse. The token locks are leaf locks: the
+ * synchronized methods of the tokens do not call the pool or another token.
  *
  * @author bielecro
  */
 public class CertificatePool implements Serializable {
 
     /**
-     * Map of encapsulated certificates with unique DSS identifier as key (hash code calculated on issuer distinguished name and serial
-     * number)
+     * Map of encapsulated certificates with the certificate's key as key (issuer distinguished name and serial number, see
+     * {@link CertificateIdentifier#getKey(X509Certificate)}), in the order of their addition. The DSS identifier of a
+     * certificate is its ordinal in this map: it is unique within the pool, and so within the diagnostic data, which also
+     * holds the digest of each certificate.
      */
-    private Map<Integer, CertificateToken> certById = new HashMap<Integer, CertificateToken>();
+    private Map<String, CertificateToken> certByKey = new LinkedHashMap<String, CertificateToken>();
 
     /**
      * Map f encapsulated certificates with subject distinguished name as key.
@@ -103,7 +110,8 @@ public class CertificatePool implements Serializable {
      * @param services
      * @return
      */
-    CertificateToken getInstance(final X509Certificate cert, final List<CertificateSourceType> sources, final List<ServiceInfo> services) {
+    synchronized CertificateToken getInstance(final X509Certificate cert, final List<CertificateSourceType> sources,
+                                              final List<ServiceInfo> services) {
 
         if (cert == null) {
 
@@ -114,12 +122,12 @@ public class CertificatePool implements Serializable {
             throw new RuntimeException("The certificate source type must be set.");
         }
 
-        final int id = CertificateIdentifier.getId(cert);
-        CertificateToken certToken = certById.get(id);
+        final String key = CertificateIdentifier.getKey(cert);
+        CertificateToken certToken = certByKey.get(key);
         if (certToken == null) {
 
-            certToken = CertificateToken.newInstance(cert, id);
-            certById.put(id, certToken);
+            certToken = CertificateToken.newInstance(cert, certByKey.size() + 1);
+            certByKey.put(key, certToken);
             final String subjectName = cert.getSubjectX500Principal().getName(X500Principal.CANONICAL);
             List<CertificateToken> list = certBySubject.get(subjectName);
             if (list == null) {
@@ -148,9 +156,9 @@ public class CertificatePool implements Serializable {
      *
      * @return
      */
-    public List<CertificateToken> getCertificateTokens() {
+    public synchronized List<CertificateToken> getCertificateTokens() {
 
-        ArrayList<CertificateToken> certificateTokenArrayList = new ArrayList<CertificateToken>(certById.values());
+        ArrayList<CertificateToken> certificateTokenArrayList = new ArrayList<CertificateToken>(certByKey.values());
         return Collections.unmodifiableList(certificateTokenArrayList);
     }
 
@@ -163,7 +171,7 @@ public class CertificatePool implements Serializable {
      */
     public void merge(final CertificatePool certPool) {
 
-        Collection<CertificateToken> certTokens = certPool.certById.values();
+        final List<CertificateToken> certTokens = certPool.getCertificateTokens();
         for (CertificateToken certificateToken : certTokens) {
 
             X509Certificate cert = certificateToken.getCertificate();
@@ -179,7 +187,7 @@ public class CertificatePool implements Serializable {
      * @param x500Principal subject distinguished name to match.
      * @return If no match is found then an empty list is returned.
      */
-    public List<CertificateToken> get(final X500Principal x500Principal) {
+    public synchronized List<CertificateToken> get(final X500Principal x500Principal) {
 
         List<CertificateToken> certificateTokenList = null;
         if (x500Principal != null) {
@@ -190,6 +198,10 @@ public class CertificatePool implements Serializable {
         if (certificateTokenList == null) {
 
             certificateTokenList = new ArrayList<CertificateToken>();
+        } else {
+
+            // The internal list can grow while the caller iterates over the returned list.
+            certificateTokenList = new ArrayList<CertificateToken>(certificateTokenList);
         }
         return Collections.unmodifiableList(certificateTokenList);
     }
@@ -82,10 +82,15 @@ public class CertificateToken extends Token {
     private List<ServiceInfo> associatedTSPS = new ArrayList<ServiceInfo>();
 
     /**
-     * DSS unique id based on the issuer distinguish name and serial number of encapsulated X509Certificate.
+     * DSS id: the ordinal of the encapsulated X509Certificate in its {@link CertificatePool}.
      */
     private int dssId;
 
+    /**
+     * The hash code of the wrapped certificate, computed once: it is computed from the encoded certificate.
+     */
+    private final int certHashCode;
+
     /**
      * The default algorithm used to compute the digest value of this certificate
      */
@@ -136,6 +141,7 @@ public class CertificateToken extends Token {
 
         this.dssId = id;
         this.cert = cert;
+        this.certHashCode = cert.hashCode();
         this.issuerX500Principal = cert.getIssuerX500Principal();
         this.algoOIDUsedToSignToken = cert.getSigAlgOID();
         this.algoUsedToSignToken = cert.getSigAlgName();
@@ -148,7 +154,7 @@ public class CertificateToken extends Token {
      *
      * @param certSourceType
      */
-    public void addSourceType(final CertificateSourceType certSourceType) {
+    public synchronized void addSourceType(final CertificateSourceType certSourceType) {
 
         if (certSourceType != null) {
 
@@ -164,7 +170,7 @@ public class CertificateToken extends Token {
      *
      * @param serviceInfo
      */
-    public void addServiceInfo(final ServiceInfo serviceInfo) {
+    public synchronized void addServiceInfo(final ServiceInfo serviceInfo) {
 
         if (serviceInfo != null) {
 
@@ -205,7 +211,7 @@ public class CertificateToken extends Token {
      * @param revocationToken This is the reference to the CertificateStatus. The object type is used because of the organisation
      *                        of module.
      */
-    public void setRevocationToken(RevocationToken revocationToken) {
+    public synchronized void setRevocationToken(RevocationToken revocationToken) {
 
         this.revocationToken = revocationToken;
     }
@@ -213,7 +219,7 @@ public class CertificateToken extends Token {
     /**
      * Returns the certificate revocation revocationToken object.
      */
-    public RevocationToken getRevocationToken() {
+    public synchronized RevocationToken getRevocationToken() {
 
         return revocationToken;
     }
@@ -304,10 +310,13 @@ public class CertificateToken extends Token {
         return this.dssId == id;
     }
 
+    /**
+     * The DSS id is only unique within a {@link CertificatePool}: the tokens are compared through their certificates.
+     */
     @Override
     public int hashCode() {
 
-        return dssId;
+        return certHashCode;
     }
 
     @Override
@@ -316,7 +325,8 @@ public class CertificateToken extends Token {
         if (obj == null || this.getClass() != obj.getClass()) {
             return false;
         }
-        return dssId == ((CertificateToken) obj).dssId;
+        final CertificateToken certToken = (CertificateToken) obj;
+        return certHashCode == certToken.certHashCode && cert.equals(certToken.cert);
     }
 
     /**
@@ -377,7 +387,7 @@ public class CertificateToken extends Token {
     }
 
     @Override
-    public boolean isSignedBy(CertificateToken issuerToken) {
+    public synchronized boolean isSignedBy(CertificateToken issuerToken) {
 
         signatureIntact = false;
         signatureInvalidityReason = "";
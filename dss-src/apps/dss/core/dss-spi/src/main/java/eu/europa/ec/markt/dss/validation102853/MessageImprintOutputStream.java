@@ -0,0 +1,109 @@
+/*
+ * DSS - Digital Signature Services
+ *
+ * Copyright (C) 2013 European Commission, Directorate-General Internal Market and Services (DG MARKT), B-1049 Bruxelles/Brussel
+ *
+ * Developed by: 2013 ARHS Developments S.A. (rue Nicolas Bové 2B, L-1253 Luxembourg) http://www.arhs-developments.com
+ *
+ * This file is part of the "DSS - Digital Signature Services" project.
+ *
+ * "DSS - Digital Signature Services" is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU Lesser General Public License as published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * DSS is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * "DSS - Digital Signature Services".  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.europa.ec.markt.dss.validation102853;
+
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes the message imprints of timestamps while the timestamped data are written: the data are never buffered, and
+ * they are digested once per hash algorithm, whatever the number of timestamps over the same data. When all the data
+ * are written, {@link #match()} checks each timestamp against the imprint computed with its algorithm.
+ */
+public class MessageImprintOutputStream extends OutputStream {
+
+    private final List<TimestampToken> timestamps;
+
+    /**
+     * The digests by OID of hash algorithm.
+     */
+    private final Map<String, MessageDigest> digests = new HashMap<String, MessageDigest>();
+
+    /**
+     * The default constructor for MessageImprintOutputStream.
+     *
+     * @param timestamps the timestamps over the data to be written
+     */
+    public MessageImprintOutputStream(final List<TimestampToken> timestamps) {
+
+        this.timestamps = timestamps;
+        for (final TimestampToken timestamp : timestamps) {
+
+            final String oid = timestamp.getMessageImprintAlgorithmOID();
+            if (!digests.containsKey(oid)) {
+
+                final MessageDigest digest = timestamp.newMessageDigest();
+                if (digest != null) {
+
+                    digests.put(oid, digest);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void write(final int b) {
+
+        for (final MessageDigest digest : digests.values()) {
+
+            digest.update((byte) b);
+        }
+    }
+
+    @Override
+    public void write(final byte[] b) {
+
+        write(b, 0, b.length);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) {
+
+        for (final MessageDigest digest : digests.values()) {
+
+            digest.update(b, off, len);
+        }
+    }
+
+    /**
+     * Checks each timestamp against the imprint of the written data. A timestamp whose hash algorithm is not available
+     * has already been marked as not intact.
+     */
+    public void match() {
+
+        final Map<String, byte[]> imprints = new HashMap<String, byte[]>();
+        for (final Map.Entry<String, MessageDigest> entry : digests.entrySet()) {
+
+            imprints.put(entry.getKey(), entry.getValue().digest());
+        }
+        for (final TimestampToken timestamp : timestamps) {
+
+            final byte[] imprint = imprints.get(timestamp.getMessageImprintAlgorithmOID());
+            if (imprint != null) {
+
+                timestamp.matchImprint(imprint);
+            }
+        }
+    }
+}
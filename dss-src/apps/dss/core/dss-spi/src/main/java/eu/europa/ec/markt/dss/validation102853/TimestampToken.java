@@ -129,7 +129,7 @@ public class TimestampToken extends Token {
     }
 
     @Override
-    public boolean isSignedBy(CertificateToken issuerToken) {
+    public synchronized boolean isSignedBy(CertificateToken issuerToken) {
 
         if (this.issuerToken != null) {
 
@@ -162,29 +162,60 @@ public class TimestampToken extends Token {
     }
 
     /**
-     * Checks if the TimeStampToken matches the signed data.
+     * Checks if the TimeStampToken matches the signed data. To check large data, or to check several timestamps over the
+     * same data, use a {@link MessageImprintOutputStream}.
      *
      * @param data
      * @return true if the data are verified by the TimeStampToken
      */
     public boolean matchData(byte[] data) {
 
+        signedData = DSSUtils.base64Encode(data);
+        final MessageDigest digest = newMessageDigest();
+        if (digest == null) {
+
+            return signedDataIntact;
+        }
+        return matchImprint(digest.digest(data));
+    }
+
+    /**
+     * @return the OID of the hash algorithm of the message imprint
+     */
+    String getMessageImprintAlgorithmOID() {
+
+        return timeStamp.getTimeStampInfo().getHashAlgorithm().getAlgorithm().getId();
+    }
+
+    /**
+     * Creates a digest for the hash algorithm of the message imprint. When the algorithm is not available the signed data
+     * are considered as not intact and null is returned.
+     *
+     * @return the digest or null
+     */
+    MessageDigest newMessageDigest() {
+
         try {
 
-            signedData = DSSUtils.base64Encode(data);
-            //          System.out.println("signed da --> " + signedData);
-            String hashAlgorithm = timeStamp.getTimeStampInfo().getHashAlgorithm().getAlgorithm().getId();
-            MessageDigest digest = MessageDigest.getInstance(hashAlgorithm);
-            byte[] computedDigest = digest.digest(data);
-            // System.out.println("Signature --> " + DSSUtils.base64Encode(computedDigest));
-            byte[] timestampDigest = timeStamp.getTimeStampInfo().getMessageImprintDigest();
-            // System.out.println("Timestamp --> " + DSSUtils.base64Encode(timestampDigest));
-            signedDataIntact = Arrays.equals(computedDigest, timestampDigest);
+            return MessageDigest.getInstance(getMessageImprintAlgorithmOID());
         } catch (NoSuchAlgorithmException e) {
 
             signedDataIntact = false;
             signedDataMessage = "NoSuchAlgorithmException: " + e.getMessage();
+            return null;
         }
+    }
+
+    /**
+     * Checks if the TimeStampToken matches the digest of the signed data.
+     *
+     * @param computedDigest the digest of the signed data, computed with the hash algorithm of the message imprint
+     * @return true if the data are verified by the TimeStampToken
+     */
+    boolean matchImprint(final byte[] computedDigest) {
+
+        final byte[] timestampDigest = timeStamp.getTimeStampInfo().getMessageImprintDigest();
+        signedDataIntact = Arrays.equals(computedDigest, timestampDigest);
         return signedDataIntact;
     }
 
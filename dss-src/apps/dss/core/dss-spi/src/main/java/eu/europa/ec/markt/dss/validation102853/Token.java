@@ -37,7 +37,7 @@ public abstract class Token implements Serializable {
      * This attribute represents the {@link CertificateToken} which is the issuer of the encapsulated Token. In other
      * words this is the CertificateToken used to sign the enclosed Token.
      */
-    protected CertificateToken issuerToken;
+    protected volatile CertificateToken issuerToken;
 
     /**
      * {@link X500Principal} of the signer's certificate of this token.
@@ -29,9 +29,10 @@ public class TokenValidationExtraInfo implements Serializable{
 
    /*
     * This is the list of text messages created during the signature validation process. It allows to get more
-    * information about different problems encountered during the curse of this process.
+    * information about different problems encountered during the curse of this process. The same token can be shared
+    * between signatures validated concurrently, so the list is synchronized.
     */
-   protected ArrayList<String> validationInfo = new ArrayList<String>();
+   protected List<String> validationInfo = Collections.synchronizedList(new ArrayList<String>());
 
    public void infoTheSigningCertNotFound() {
 
@@ -50,7 +51,10 @@ public class TokenValidationExtraInfo implements Serializable{
     */
    public List<String> getValidationInfo() {
 
-      return Collections.unmodifiableList(validationInfo);
+      synchronized (validationInfo) {
+
+         return Collections.unmodifiableList(new ArrayList<String>(validationInfo));
+      }
    }
 
 }
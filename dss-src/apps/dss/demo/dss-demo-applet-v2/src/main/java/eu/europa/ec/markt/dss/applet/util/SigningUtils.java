@@ -1,10 +1,13 @@
 package eu.europa.ec.markt.dss.applet.util;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.security.NoSuchAlgorithmException;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.output.ByteArrayOutputStream;
 import org.bouncycastle.cms.CMSException;
 import org.bouncycastle.cms.CMSSignedData;
@@ -19,6 +22,7 @@ import eu.europa.ec.markt.dss.signature.InMemoryDocument;
 import eu.europa.ec.markt.dss.signature.SignatureFormat;
 import eu.europa.ec.markt.dss.signature.SignaturePackaging;
 import eu.europa.ec.markt.dss.signature.SignatureParameters;
+import eu.europa.ec.markt.dss.signature.TemporaryFileDocument;
 import eu.europa.ec.markt.dss.signature.asic.ASiCXMLSignatureService;
 import eu.europa.ec.markt.dss.signature.cades.CAdESService;
 import eu.europa.ec.markt.dss.signature.pades.PAdESServiceV2;
@@ -129,16 +133,46 @@ public final class SigningUtils {
       }
 
       InputStream inputStream = null;
+      boolean signed = false;
       try {
          inputStream = signatureService.toBeSigned(document, parameters);
          final byte[] signatureValue = tokenConnection.sign(inputStream, parameters.getDigestAlgorithm(), privateKey);
-         return signatureService.signDocument(document, parameters, signatureValue);
+         final DSSDocument signedDocument = signatureService.signDocument(document, parameters, signatureValue);
+         signed = true;
+         return signedDocument;
       } finally {
          DSSUtils.closeQuietly(inputStream);
+         // the PDF revision prepared for a cancelled or failed signature is released
+         if (!signed && signatureService instanceof PAdESServiceV2) {
+            ((PAdESServiceV2) signatureService).abortSignature(parameters);
+         }
       }
 
    }
 
+   /**
+    * Writes the document returned by a signature service to the given file, then releases it: a large signed PDF is
+    * returned in a temporary file.
+    * 
+    * @param document the signed or extended document
+    * @param target the file to write
+    * @throws IOException
+    */
+   public static void saveAndRelease(final DSSDocument document, final File target) throws IOException {
+
+      InputStream input = null;
+      OutputStream output = null;
+      try {
+         input = document.openStream();
+         output = new FileOutputStream(target);
+         IOUtils.copy(input, output);
+      } finally {
+         DSSUtils.closeQuietly(input);
+         DSSUtils.closeQuietly(output);
+         TemporaryFileDocument.release(document);
+      }
+   }
+
    private SigningUtils() {
 
    }
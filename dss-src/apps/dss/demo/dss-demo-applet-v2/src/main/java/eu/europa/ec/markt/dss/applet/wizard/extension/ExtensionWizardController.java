@@ -1,14 +1,12 @@
 package eu.europa.ec.markt.dss.applet.wizard.extension;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
 import javax.inject.Inject;
 
-import org.apache.commons.io.IOUtils;
 
 import eu.europa.ec.markt.dss.applet.controller.ActivityController;
 import eu.europa.ec.markt.dss.applet.main.DSSAppletCore;
@@ -88,7 +86,7 @@ public class ExtensionWizardController extends WizardController<ExtendSignatureM
 
         final DSSDocument signedDocument = SigningUtils.extendDocument(signedFile, originalFile, parameters, tspSource, certificateVerifier);
 
-        IOUtils.copy(signedDocument.openStream(), new FileOutputStream(model.getTargetFile()));
+        SigningUtils.saveAndRelease(signedDocument, model.getTargetFile());
 
     }
 
@@ -1,7 +1,6 @@
 package eu.europa.ec.markt.dss.applet.wizard.signature;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
@@ -12,7 +11,6 @@ import java.util.Map;
 import javax.inject.Inject;
 
 import org.apache.commons.codec.binary.Base64;
-import org.apache.commons.io.IOUtils;
 
 import eu.europa.ec.markt.dss.DigestAlgorithm;
 import eu.europa.ec.markt.dss.applet.controller.ActivityController;
@@ -201,6 +199,6 @@ public class SignatureWizardController extends DSSWizardController<SignatureMode
 
         final DSSDocument signedDocument = SigningUtils
               .signDocument(fileToSign, parameters, tspSource, certificateVerifier, tokenConnection, privateKey);
-        IOUtils.copy(signedDocument.openStream(), new FileOutputStream(model.getTargetFile()));
+        SigningUtils.saveAndRelease(signedDocument, model.getTargetFile());
     }
 }
@@ -10,7 +10,6 @@ import javax.inject.Inject;
 
 import org.w3c.dom.Document;
 
-import eu.europa.ec.markt.dss.CertificateIdentifier;
 import eu.europa.ec.markt.dss.applet.controller.ActivityController;
 import eu.europa.ec.markt.dss.applet.controller.DSSWizardController;
 import eu.europa.ec.markt.dss.applet.main.DSSAppletCore;
@@ -124,8 +123,6 @@ public class ValidationWizardController extends DSSWizardController<ValidationMo
         final DSSDocument signedDocument = new FileDocument(signed);
         final File externalSignatureFile = model.getOriginalFile();
 
-        CertificateIdentifier.clear();
-
         eu.europa.ec.markt.dss.validation102853.SignedDocumentValidator validator = eu.europa.ec.markt.dss.validation102853.SignedDocumentValidator
               .fromDocument(signedDocument);
         validator.setCertificateVerifier(trustedListCertificateVerifier);
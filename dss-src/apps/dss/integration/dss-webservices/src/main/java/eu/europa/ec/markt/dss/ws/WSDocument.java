@@ -61,7 +61,12 @@ public class WSDocument implements DSSDocument {
    public WSDocument(DSSDocument doc) throws IOException {
 
       ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-      IOUtils.copy(doc.openStream(), buffer);
+      InputStream input = doc.openStream();
+      try {
+         IOUtils.copy(input, buffer);
+      } finally {
+         input.close();
+      }
       binary = buffer.toByteArray();
    }
 
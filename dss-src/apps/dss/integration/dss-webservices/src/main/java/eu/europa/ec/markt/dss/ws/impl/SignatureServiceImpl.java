@@ -33,10 +33,13 @@ import javax.jws.WebService;
 import org.apache.commons.io.IOUtils;
 
 import eu.europa.ec.markt.dss.exception.DSSException;
+import eu.europa.ec.markt.dss.signature.DSSDocument;
 import eu.europa.ec.markt.dss.signature.DocumentSignatureService;
 import eu.europa.ec.markt.dss.signature.SignatureFormat;
 import eu.europa.ec.markt.dss.signature.SignaturePackaging;
 import eu.europa.ec.markt.dss.signature.SignatureParameters;
+import eu.europa.ec.markt.dss.signature.TemporaryFileDocument;
+import eu.europa.ec.markt.dss.signature.pades.PAdESServiceV2;
 import eu.europa.ec.markt.dss.ws.SignatureService;
 import eu.europa.ec.markt.dss.ws.SignedPropertiesContainer;
 import eu.europa.ec.markt.dss.ws.WSDocument;
@@ -151,6 +154,12 @@ public class SignatureServiceImpl implements SignatureService {
 		} catch (DSSException e) {
 
 			throw new IOException(e);
+		} finally {
+
+			// the service is stateless: signDocument prepares the PDF revision again
+			if (service instanceof PAdESServiceV2) {
+				((PAdESServiceV2) service).abortSignature(params);
+			}
 		}
 	}
 
@@ -161,7 +170,7 @@ public class SignatureServiceImpl implements SignatureService {
 		SignatureParameters params = createParameters(signatureInfoLevel, signedPropertiesContainer);
 		DocumentSignatureService service = getServiceForSignatureFormat(signatureInfoLevel);
 		try {
-			return new WSDocument(service.signDocument(document, params, signedDigest));
+			return toWSDocument(service.signDocument(document, params, signedDigest));
 		} catch (DSSException e) {
 
 			throw new IOException(e);
@@ -173,7 +182,20 @@ public class SignatureServiceImpl implements SignatureService {
 
 		SignatureParameters params = createParameters(signatureInfoLevel);
 		DocumentSignatureService service = getServiceForSignatureFormat(signatureInfoLevel);
-		return new WSDocument(service.extendDocument(signedDocument, originalDocument, params));
+		return toWSDocument(service.extendDocument(signedDocument, originalDocument, params));
+	}
+
+	/**
+	 * Copies the document returned by a signature service and releases it: a large signed PDF is returned in a
+	 * temporary file.
+	 */
+	private static WSDocument toWSDocument(DSSDocument document) throws IOException {
+
+		try {
+			return new WSDocument(document);
+		} finally {
+			TemporaryFileDocument.release(document);
+		}
 	}
 
 }
\ No newline at end of file
@@ -54,10 +54,16 @@ public class ValidationServiceImpl implements ValidationService {
     public WSValidationReport validateDocument(WSDocument document, WSDocument originalContent) throws IOException {
 
         SignedDocumentValidator validator = SignedDocumentValidator.fromDocument(document);
-        validator.setCertificateVerifier(certificateVerifier);
-        validator.setExternalContent(originalContent);
+        try {
 
-        ValidationReport report = validator.validateDocument();
-        return new WSValidationReport(report);
+            validator.setCertificateVerifier(certificateVerifier);
+            validator.setExternalContent(originalContent);
+
+            ValidationReport report = validator.validateDocument();
+            return new WSValidationReport(report);
+        } finally {
+
+            validator.close();
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,329 @@
+/*
+ * DSS - Digital Signature Services
+ *
+ * Copyright (C) 2013 European Commission, Directorate-General Internal Market and Services (DG MARKT), B-1049 Bruxelles/Brussel
+ *
+ * Developed by: 2013 ARHS Developments S.A. (rue Nicolas Bové 2B, L-1253 Luxembourg) http://www.arhs-developments.com
+ *
+ * This file is part of the "DSS - Digital Signature Services" project.
+ *
+ * "DSS - Digital Signature Services" is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU Lesser General Public License as published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * DSS is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * "DSS - Digital Signature Services".  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.europa.ec.markt.tlmanager.core.validation;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.sax.SAXSource;
+
+import org.apache.commons.io.IOUtils;
+import org.xml.sax.InputSource;
+
+import eu.europa.ec.markt.tlmanager.util.WhitespaceFilterXML;
+import eu.europa.ec.markt.tsl.jaxb.tsl.TrustStatusListType;
+
+/**
+ * Headless validation of a batch of trusted lists, outside of the Swing user interface. The files are read and
+ * validated in parallel, each one by its own <code>Validation</code>, and the results are returned in the order of
+ * the files. The <code>main</code> method prints them as tab-separated lines:
+ * 
+ * <pre>
+ * file  MESSAGE  level  message
+ * file  RULE     check method name  elapsed milliseconds
+ * file  RESULT   OK | ERRORS | FAILED  elapsed milliseconds
+ * </pre>
+ * 
+ * The lists are validated as they are read: they are not migrated and each one is validated as a trusted list or as a
+ * list of the lists according to its own TSLType, whatever the configured mode.
+ */
+public class BatchValidation {
+    private static final Logger LOG = Logger.getLogger(BatchValidation.class.getName());
+
+    private static final Class[] boundClasses = new Class[] { eu.europa.ec.markt.tsl.jaxb.tsl.ObjectFactory.class,
+            eu.europa.ec.markt.tsl.jaxb.tslx.ObjectFactory.class,
+            eu.europa.ec.markt.tsl.jaxb.ecc.ObjectFactory.class,
+            eu.europa.ec.markt.tsl.jaxb.xades.ObjectFactory.class };
+
+    private static final String SEPARATOR = "\t";
+
+    // a JAXBContext is thread-safe, unlike the unmarshallers created from it
+    private static JAXBContext jaxbContext;
+
+    private final ValidationParameters vParams;
+    private final int threads;
+
+    /**
+     * The result of the validation of one file.
+     */
+    public static class Result {
+        private final File file;
+        private final ValidationLogger logger;
+        private final Map<String, Long> ruleTimings;
+        private final Exception failure;
+        private final long elapsed;
+
+        Result(File file, ValidationLogger logger, Map<String, Long> ruleTimings, Exception failure, long elapsed) {
+            this.file = file;
+            this.logger = logger;
+            this.ruleTimings = ruleTimings;
+            this.failure = failure;
+            this.elapsed = elapsed;
+        }
+
+        /**
+         * @return the validated file
+         */
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * @return the validation messages, or null if the file could not be read
+         */
+        public ValidationLogger getLogger() {
+            return logger;
+        }
+
+        /**
+         * @return the time spent in each check method, in nanoseconds
+         */
+        public Map<String, Long> getRuleTimings() {
+            return ruleTimings;
+        }
+
+        /**
+         * @return the exception that prevented the validation, or null
+         */
+        public Exception getFailure() {
+            return failure;
+        }
+
+        /**
+         * @return the time spent to read and validate the file, in nanoseconds
+         */
+        public long getElapsed() {
+            return elapsed;
+        }
+
+        /**
+         * @return true if the file was validated without error
+         */
+        public boolean isValid() {
+            return failure == null && !logger.hasErrors();
+        }
+    }
+
+    /**
+     * The default constructor for BatchValidation.
+     * 
+     * @param vParams the parameters shared by all the validations
+     * @param threads the number of files validated at the same time
+     */
+    public BatchValidation(ValidationParameters vParams, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of threads must be positive: " + threads);
+        }
+        this.vParams = vParams;
+        this.threads = threads;
+    }
+
+    /**
+     * Validates the given trusted list files.
+     * 
+     * @param files the files to validate
+     * @return the results, in the order of the files
+     * @throws InterruptedException if the current thread is interrupted while waiting for the results
+     */
+    public List<Result> validate(List<File> files) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, files.size())));
+        try {
+            List<Future<Result>> futures = new ArrayList<Future<Result>>();
+            for (final File file : files) {
+                futures.add(executor.submit(new Callable<Result>() {
+                    @Override
+                    public Result call() {
+                        return validate(file);
+                    }
+                }));
+            }
+            List<Result> results = new ArrayList<Result>();
+            for (Future<Result> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    // validate(File) catches everything it can report
+                    throw new RuntimeException(e.getCause());
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Reads and validates a single trusted list file.
+     * 
+     * @param file the file to validate
+     * @return the result
+     */
+    public Result validate(File file) {
+        long start = System.nanoTime();
+        try {
+            TrustStatusListType tsl = read(file);
+            Validation validation = new Validation(vParams, tsl, Validation.isTrustedList(tsl));
+            ValidationLogger logger = validation.validate();
+            return new Result(file, logger, validation.getRuleTimings(), null, System.nanoTime() - start);
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, "Cannot validate " + file + ": " + ex.getMessage(), ex);
+            return new Result(file, null, Collections.<String, Long>emptyMap(), ex, System.nanoTime() - start);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static TrustStatusListType read(File file) throws Exception {
+        InputStream inputStream = new FileInputStream(file);
+        try {
+            SAXParserFactory spf = SAXParserFactory.newInstance();
+            spf.setNamespaceAware(true);
+            SAXParser parser = spf.newSAXParser();
+
+            WhitespaceFilterXML inFilter = new WhitespaceFilterXML();
+            inFilter.setParent(parser.getXMLReader());
+            SAXSource source = new SAXSource(inFilter, new InputSource(inputStream));
+
+            Unmarshaller unmarshaller = getJAXBContext().createUnmarshaller();
+            JAXBElement<TrustStatusListType> jaxbElement = (JAXBElement<TrustStatusListType>) unmarshaller
+                    .unmarshal(source);
+            return jaxbElement.getValue();
+        } finally {
+            IOUtils.closeQuietly(inputStream);
+        }
+    }
+
+    private static synchronized JAXBContext getJAXBContext() throws JAXBException {
+        if (jaxbContext == null) {
+            jaxbContext = JAXBContext.newInstance(boundClasses);
+        }
+        return jaxbContext;
+    }
+
+    /**
+     * Prints the results as tab-separated lines.
+     * 
+     * @param results the results to print
+     * @param out the stream to print to
+     */
+    public static void print(List<Result> results, PrintStream out) {
+        for (Result result : results) {
+            String file = result.getFile().getPath();
+            if (result.getLogger() != null) {
+                for (ValidationLogger.Message message : result.getLogger().getMessages()) {
+                    out.println(file + SEPARATOR + "MESSAGE" + SEPARATOR + message.getLevel() + SEPARATOR
+                            + flatten(message.getMessage()));
+                }
+            } else {
+                out.println(file + SEPARATOR + "MESSAGE" + SEPARATOR + "Error" + SEPARATOR
+                        + flatten(String.valueOf(result.getFailure())));
+            }
+            for (Map.Entry<String, Long> timing : result.getRuleTimings().entrySet()) {
+                out.println(file + SEPARATOR + "RULE" + SEPARATOR + timing.getKey() + SEPARATOR
+                        + toMillis(timing.getValue()));
+            }
+            String status = result.getFailure() != null ? "FAILED" : result.isValid() ? "OK" : "ERRORS";
+            out.println(file + SEPARATOR + "RESULT" + SEPARATOR + status + SEPARATOR + toMillis(result.getElapsed()));
+        }
+    }
+
+    private static String flatten(String text) {
+        return text == null ? "" : text.replaceAll("[\\t\\r\\n]+", " ");
+    }
+
+    private static String toMillis(long nanos) {
+        return String.format("%.3f", nanos / 1000000d);
+    }
+
+    /**
+     * Validates trusted list files from the command line:
+     * <code>BatchValidation [-closed] [-threads n] file|directory...</code><br>
+     * The XML files of a directory are validated. The exit status is 1 if a file is not valid.
+     * 
+     * @param args the command line arguments
+     */
+    public static void main(String args[]) throws Exception {
+        ValidationParameters vp = new ValidationParameters();
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<File> files = new ArrayList<File>();
+        for (int i = 0; i < args.length; i++) {
+            if ("-closed".equals(args[i])) {
+                vp.setListIsClosed(true);
+            } else if ("-threads".equals(args[i]) && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else {
+                addFiles(new File(args[i]), files);
+            }
+        }
+        if (files.isEmpty()) {
+            System.err.println("Usage: " + BatchValidation.class.getName() + " [-closed] [-threads n] file|directory...");
+            System.exit(2);
+        }
+
+        List<Result> results = new BatchValidation(vp, threads).validate(files);
+        print(results, System.out);
+        System.out.flush();
+        for (Result result : results) {
+            if (!result.isValid()) {
+                System.exit(1);
+            }
+        }
+    }
+
+    private static void addFiles(File file, List<File> files) throws IOException {
+        if (file.isDirectory()) {
+            File[] xmlFiles = file.listFiles(new FileFilter() {
+                @Override
+                public boolean accept(File pathname) {
+                    return pathname.isFile() && pathname.getName().toLowerCase().endsWith(".xml");
+                }
+            });
+            if (xmlFiles == null) {
+                throw new IOException("Cannot list the files of " + file);
+            }
+            Arrays.sort(xmlFiles);
+            files.addAll(Arrays.asList(xmlFiles));
+        } else {
+            files.add(file);
+        }
+    }
+}
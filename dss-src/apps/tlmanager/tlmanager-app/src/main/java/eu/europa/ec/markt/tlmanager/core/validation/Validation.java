@@ -20,7 +20,6 @@
 
 package eu.europa.ec.markt.tlmanager.core.validation;
 
-import java.io.ByteArrayInputStream;
 import java.io.Serializable;
 import java.lang.reflect.Method;
 import java.math.BigInteger;
@@ -33,6 +32,8 @@ import java.util.Collections;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.ResourceBundle;
@@ -100,7 +101,10 @@ import eu.europa.ec.markt.tsl.jaxb.xades.ObjectIdentifierType;
  * 1. checking of mandatory values ('checkMandatory'...)
  * 2. checking of business rules ('checkRule'...)<p>
  * If there are errors in phase 1, the 2nd phase won't be started. Although the individual validation
- * methods here may rely on the work of <code>ObjectFiller</code>, null checks are done again extensively.
+ * methods here may rely on the work of <code>ObjectFiller</code>, null checks are done again extensively.<p>
+ * The check methods are looked up once per class loading. The certificates of the list are decoded once per
+ * <code>Validation</code> and the time spent in each check is available with {@link #getRuleTimings()}. An instance
+ * validates a single list and must not be shared between threads; different instances can run concurrently.
  * 
  *
  * @version $Revision: 2840 $ - $Date: 2013-11-04 12:30:49 +0100 (lun., 04 nov. 2013) $
@@ -115,6 +119,11 @@ public class Validation {
 
     private TrustStatusListType tsl;
     private ValidationParameters vParams;
+
+    /**
+     * True if the validated list is a trusted list, false if it is a list of the lists.
+     */
+    private final boolean tlMode;
     private static final ResourceBundle uiKeys = ResourceBundle.getBundle("eu/europa/ec/markt/tlmanager/uiKeysCore",
             Configuration.getInstance().getLocale());
     // exploded objects
@@ -131,31 +140,89 @@ public class Validation {
         Tsl, Pointer, Tsp, Service, History, Extension
     };
 
+    private static final String MANDATORY_PREFIX = "checkMandatory";
+    private static final String RULE_PREFIX = "checkRule";
+
+    // the check methods, registered once instead of being looked up at each validation
+    private static final List<Method> mandatoryChecks = findChecks(MANDATORY_PREFIX);
+    private static final List<Method> ruleChecks = findChecks(RULE_PREFIX);
+
+    // the certificates of the list, decoded once: the same byte arrays are visited by several checks
+    private final Map<byte[], X509Certificate> certificates = new IdentityHashMap<byte[], X509Certificate>();
+    private final Map<byte[], DSSException> certificateErrors = new IdentityHashMap<byte[], DSSException>();
+
+    // the time spent in each check method, in nanoseconds
+    private final Map<String, Long> ruleTimings = new LinkedHashMap<String, Long>();
+
     /**
-     * Instantiates a new validation.
+     * Instantiates a new validation of a list of the type edited by the application (see
+     * {@link Configuration#isTlMode()}).
      * 
      * @param tsl the tsl
      */
     public Validation(ValidationParameters vp, TrustStatusListType tsl) {
+        this(vp, tsl, Configuration.getInstance().isTlMode());
+    }
+
+    /**
+     * Instantiates a new validation.
+     * 
+     * @param tsl the tsl
+     * @param tlMode true if the tsl is a trusted list, false if it is a list of the lists
+     */
+    public Validation(ValidationParameters vp, TrustStatusListType tsl, boolean tlMode) {
         this.tsl = tsl;
         this.vParams = vp;
+        this.tlMode = tlMode;
         explodeTSL();
         logger = new ValidationLogger();
     }
 
+    /**
+     * Tells whether a list is a trusted list or a list of the lists, from its TSLType (before or after the migration).
+     * 
+     * @param tsl the tsl
+     * @return false if the TSLType is the one of a list of the lists, true otherwise
+     */
+    public static boolean isTrustedList(TrustStatusListType tsl) {
+        if (tsl.getSchemeInformation() == null || tsl.getSchemeInformation().getTSLType() == null) {
+            return true;
+        }
+        final String tslType = tsl.getSchemeInformation().getTSLType().trim();
+        final Configuration configuration = Configuration.getInstance();
+        if (tslType.equals(configuration.getLotlTslTypeEu())
+                || "http://uri.etsi.org/TrstSvc/eSigDir-1999-93-EC-TrustedList/TSLType/schemes".equals(tslType)) {
+            return false;
+        }
+        final String lotlTslTypeNonEu = configuration.getLotlTslTypeNonEu();
+        return lotlTslTypeNonEu == null || !tslType.matches(lotlTslTypeNonEu.replaceAll("(#CC#)", "(.+)"));
+    }
+
+    /**
+     * Returns the configuration of the type of the validated list.
+     * 
+     * @return tl or lotl
+     */
+    private Configuration.TSL getTSLConfiguration() {
+        if (tlMode) {
+            return Configuration.getInstance().getTL();
+        }
+        return Configuration.getInstance().getLOTL();
+    }
+
     /**
      * Performs the validation.
      */
     public ValidationLogger validate() {
         // 1st phase
-        callMethods("checkMandatory");
+        callMethods(mandatoryChecks);
         // if there are errors till now, next phase is not started
         if (logger.hasErrors()) {
             logger.info(uiKeys.getString("Validation.mandatory.fieldsNOk"));
         } else {
             // 2nd phase
             logger.info(uiKeys.getString("Validation.mandatory.fieldsOk"));
-            callMethods("checkRule");
+            callMethods(ruleChecks);
             if (logger.hasErrors()) {
                 logger.info(uiKeys.getString("Validation.mandatory.rulesNOk"));
             } else {
@@ -166,19 +233,65 @@ public class Validation {
         return logger;
     }
 
-    private void callMethods(String methodNamePrefix) {
-        for (Method m : this.getClass().getDeclaredMethods()) {
+    /**
+     * Gets the time spent in each check method called by the last validation, in the order of the calls.
+     * 
+     * @return the elapsed time in nanoseconds by check method name
+     */
+    public Map<String, Long> getRuleTimings() {
+        return Collections.unmodifiableMap(ruleTimings);
+    }
+
+    private static List<Method> findChecks(String methodNamePrefix) {
+        List<Method> checks = new ArrayList<Method>();
+        for (Method m : Validation.class.getDeclaredMethods()) {
             if (m.getName().startsWith(methodNamePrefix)) {
-                try {
-                    m.invoke(this, null);
-                } catch (Exception ex) {
-                    String name = m.getName();
-                    LOG.log(Level.SEVERE, ">>> Cannot call the following method: " + name + " with " + ex.getMessage(),
-                          ex);
-                    logger.info(uiKeys.getString("Validation.mandatory.internalError") + " " + name);
-                }
+                m.setAccessible(true);
+                checks.add(m);
+            }
+        }
+        return Collections.unmodifiableList(checks);
+    }
+
+    private void callMethods(List<Method> checks) {
+        for (Method m : checks) {
+            String name = m.getName();
+            long start = System.nanoTime();
+            try {
+                m.invoke(this);
+            } catch (Exception ex) {
+                LOG.log(Level.SEVERE, ">>> Cannot call the following method: " + name + " with " + ex.getMessage(),
+                      ex);
+                logger.info(uiKeys.getString("Validation.mandatory.internalError") + " " + name);
+            } finally {
+                ruleTimings.put(name, System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Decodes a certificate of the list, only once for a given encoded value.
+     * 
+     * @param encoded the DER-encoded certificate
+     * @return the certificate
+     * @throws DSSException if the certificate cannot be decoded
+     */
+    private X509Certificate loadCertificate(byte[] encoded) {
+        X509Certificate certificate = certificates.get(encoded);
+        if (certificate == null) {
+            DSSException error = certificateErrors.get(encoded);
+            if (error != null) {
+                throw error;
+            }
+            try {
+                certificate = DSSUtils.loadCertificate(encoded);
+            } catch (DSSException e) {
+                certificateErrors.put(encoded, e);
+                throw e;
             }
+            certificates.put(encoded, certificate);
         }
+        return certificate;
     }
 
     // Note: tsl and schemeInformation are the only objects that do not need to be null-checked
@@ -366,8 +479,7 @@ public class Validation {
         for (DigitalIdentityType ids: digitalIds) {
             if (ids.getX509Certificate() != null) {
                 try {
-                    ByteArrayInputStream bais = new ByteArrayInputStream(ids.getX509Certificate());
-                    X509Certificate certificate = DSSUtils.loadCertificate(bais);
+                    X509Certificate certificate = loadCertificate(ids.getX509Certificate());
                     gotCert = true;
 
                     certSName = certificate.getSubjectX500Principal();
@@ -675,7 +787,7 @@ public class Validation {
                                 validateList(name, QNames._SchemeOperatorName_QNAME.getLocalPart(), list.getName(),
                                         pointer);
                             } else if (element.getName().equals(QNames._SchemeTypeCommunityRules_QNAME)) {
-                                if (!Configuration.getInstance().isTlMode()) {
+                                if (!tlMode) {
                                     NonEmptyURIListType list = (NonEmptyURIListType) element.getValue();
                                     validateList(name, QNames._SchemeTypeCommunityRules_QNAME.getLocalPart(),
                                             list.getURI(), pointer);
@@ -928,7 +1040,7 @@ public class Validation {
      * If the type of the TSL is 'generic', the number of pointer to other TSL must be equal to 2.
      */
     private void checkRulePointerToOtherTSL() {
-        if (Configuration.getInstance().isTlMode()) {
+        if (tlMode) {
             if (pointers == null || pointers.size() != 2) {
                 logger.error(uiKeys.getString("Validation.rule.pointerToOtherTSL.tl"));
             }
@@ -939,13 +1051,14 @@ public class Validation {
      * If Type = "generic", there must be at least 2 URIs in TypeCommunityRule. If Type = "schemes", there must be only
      * 1 URI in TypeCommunityRule. Note: This check is done with values from the TSL page
      *
-     * Note: this check is done reading the starting mode of the application (not with tsl.schemeInformation.tslType)
+     * Note: this check is done with the mode given to the validation (the starting mode of the application in the editor,
+     * the TSLType of each list in a batch validation)
      */
     private void checkRuleTypeCommunityRule() {
         String name = QNames._SchemeTypeCommunityRules_QNAME.getLocalPart();
         NonEmptyMultiLangURIListType schemeTypeCommunityRules = schemeInformation.getSchemeTypeCommunityRules();
         List<NonEmptyMultiLangURIType> uris = schemeTypeCommunityRules.getURI();
-        if (Configuration.getInstance().isTlMode()) {
+        if (tlMode) {
             if (uris.size() < 2) {
                 logger.error(name + uiKeys.getString("Validation.rule.typeCommunityRule.tl"), tsl);
             }
@@ -963,7 +1076,7 @@ public class Validation {
         final String schemeTerritory = tsl.getSchemeInformation().getSchemeTerritory();
         if (Configuration.getInstance().getCountryCodes().isCodeInList(schemeTerritory)) {
             // eu country, TSL Type value is fixed
-            if (!tslType.equals(Configuration.getInstance().getTSL().getTslType())) {
+            if (!tslType.equals(getTSLConfiguration().getTslType())) {
                 logger.error(name + uiKeys.getString("Validation.rule.tslType.inverse"), tsl);
             }
         }
@@ -992,7 +1105,7 @@ public class Validation {
         final String tslType = tsl.getSchemeInformation().getTSLType();
         final String schemeTerritory = tsl.getSchemeInformation().getSchemeTerritory();
         if (!Configuration.getInstance().getCountryCodes().isCodeInList(schemeTerritory)) {
-            final String tslTypeNonEu = Configuration.getInstance().getTSL().getTslType();
+            final String tslTypeNonEu = getTSLConfiguration().getTslType();
             String regExp = tslTypeNonEu.replaceAll("(#CC#)", "(.+)");
             final Pattern pattern = Pattern.compile(regExp);
             final Matcher matcher = pattern.matcher(tslType);
@@ -1016,7 +1129,7 @@ public class Validation {
 
         final String schemeTerritory = tsl.getSchemeInformation().getSchemeTerritory();
         if (Configuration.getInstance().getCountryCodes().isCodeInList(schemeTerritory)) {
-            String tslTypeInverseEu = Configuration.getInstance().getTSL().getTslTypeInverse();
+            String tslTypeInverseEu = getTSLConfiguration().getTslTypeInverse();
             if (pointers != null) {
                 for (OtherTSLPointerType pointer : pointers) {
                     List<Serializable> othInfo = pointer.getAdditionalInformation()
@@ -1085,7 +1198,7 @@ public class Validation {
                 }
 
                 if (!Configuration.getInstance().getCountryCodes().isCodeInList(territory)) {
-                    final String tslTypeInverseNonEu = Configuration.getInstance().getTSL().getTslTypeInverse();
+                    final String tslTypeInverseNonEu = getTSLConfiguration().getTslTypeInverse();
                     String regExp = tslTypeInverseNonEu.replaceAll("(#CC#)", "(.+)");
                     final Pattern pattern = Pattern.compile(regExp);
                     final Matcher matcher = pattern.matcher(tslType);
@@ -1181,7 +1294,7 @@ public class Validation {
                     if (publicKey == null) {
                         try {
                             byte[] x509Certificate = id.getX509Certificate();
-                            final X509Certificate x509 = DSSUtils.loadCertificate(x509Certificate);
+                            final X509Certificate x509 = loadCertificate(x509Certificate);
                             publicKey = x509.getPublicKey().getEncoded();
                             continue;
                         } catch (DSSException e) {
@@ -1219,7 +1332,7 @@ public class Validation {
                     byte[] x509Certificate = id.getX509Certificate();
                     if (x509Certificate != null) {
                         try {
-                            final X509Certificate x509 = DSSUtils.loadCertificate(x509Certificate);
+                            final X509Certificate x509 = loadCertificate(x509Certificate);
                             publicKeySet.add(x509.getPublicKey());
                             subjectSet.add(x509.getSubjectX500Principal());
                         } catch (DSSException e) {
@@ -1264,7 +1377,7 @@ public class Validation {
                         byte[] x509Certificate = id.getX509Certificate();
                         if (x509Certificate != null) {
                             try {
-                                final X509Certificate x509 = DSSUtils.loadCertificate(x509Certificate);
+                                final X509Certificate x509 = loadCertificate(x509Certificate);
                                 publicKeySet.add(x509.getPublicKey());
                                 subjectSet.add(x509.getSubjectX500Principal());
                             } catch (DSSException e) {
@@ -1339,7 +1452,7 @@ public class Validation {
         final String name = QNames._StatusDeterminationApproach_QNAME.getLocalPart();
         final String schemeTerritory = tsl.getSchemeInformation().getSchemeTerritory();
         final String statusDeterminationApproach = tsl.getSchemeInformation().getStatusDeterminationApproach();
-        final String tslStatusDeterminationApproach = Configuration.getInstance().getTSL()
+        final String tslStatusDeterminationApproach = getTSLConfiguration()
               .getTslStatusDeterminationApproach();
         if (Configuration.getInstance().getCountryCodes().isCodeInList(schemeTerritory)) {
             // EU country
@@ -1548,7 +1661,7 @@ public class Validation {
                 
                 X509Certificate certificate = null;
                 try {
-                    certificate = DSSUtils.loadCertificate(new ByteArrayInputStream(certS));
+                    certificate = loadCertificate(certS);
 
                     subjectName = certificate.getSubjectX500Principal();
                     skiS = DSSUtils.getSki(certificate);